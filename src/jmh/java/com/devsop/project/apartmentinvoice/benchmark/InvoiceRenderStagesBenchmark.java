@@ -0,0 +1,86 @@
+package com.devsop.project.apartmentinvoice.benchmark;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import com.devsop.project.apartmentinvoice.service.pdf.HtmlPdfRenderer;
+
+/**
+ * Single invoice render split into its stages. Each benchmark starts from the
+ * previous stage's output (prepared once in setUp), so the numbers add up to
+ * roughly PdfRenderBenchmark.invoice:
+ *
+ *   thymeleaf -> jsoupParse -> w3cConvert -> layout (includes font loading)
+ *
+ * fontLoad measures parsing the Thai TTF on its own, which layout pays on every call
+ * because the fonts are handed to OpenHTMLtoPDF as fresh streams per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class InvoiceRenderStagesBenchmark {
+
+  private static final String FONT = "/fonts/THSarabunNew.ttf";
+
+  private SpringTemplateEngine engine;
+  private Map<String, Object> model;
+  private String html;
+  private Document jsoupDoc;
+  private org.w3c.dom.Document w3cDoc;
+
+  @Setup
+  public void setUp() {
+    engine = PdfFixtures.templateEngine();
+    model = PdfFixtures.invoiceModel();
+    html = PdfFixtures.process(engine, "invoice", model);
+    jsoupDoc = HtmlPdfRenderer.parseXhtml(html);
+    w3cDoc = HtmlPdfRenderer.toW3c(jsoupDoc);
+  }
+
+  @Benchmark
+  public String thymeleaf() {
+    return PdfFixtures.process(engine, "invoice", model);
+  }
+
+  @Benchmark
+  public Document jsoupParse() {
+    return HtmlPdfRenderer.parseXhtml(html);
+  }
+
+  @Benchmark
+  public org.w3c.dom.Document w3cConvert() {
+    return HtmlPdfRenderer.toW3c(jsoupDoc);
+  }
+
+  @Benchmark
+  public byte[] layout() throws Exception {
+    return HtmlPdfRenderer.layout(w3cDoc);
+  }
+
+  @Benchmark
+  public PDType0Font fontLoad() throws Exception {
+    try (PDDocument doc = new PDDocument();
+         InputStream in = InvoiceRenderStagesBenchmark.class.getResourceAsStream(FONT)) {
+      return PDType0Font.load(doc, in);
+    }
+  }
+}
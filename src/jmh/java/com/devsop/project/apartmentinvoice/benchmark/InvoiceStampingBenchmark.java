@@ -0,0 +1,98 @@
+package com.devsop.project.apartmentinvoice.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import com.devsop.project.apartmentinvoice.entity.Invoice;
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
+import com.devsop.project.apartmentinvoice.service.InvoicePdfService;
+import com.devsop.project.apartmentinvoice.service.InvoiceSettingsService;
+import com.devsop.project.apartmentinvoice.service.PdfService;
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayQrService;
+
+/**
+ * InvoicePdfService.renderInvoices for a bulk print of N invoices in both modes:
+ *
+ *   full    -> invoice.html rendered per invoice, then PdfService.mergePdfs
+ *   stamped -> background rendered once (cached after the first call), fields drawn with PDFBox
+ *
+ * setUp prints the output size of both modes once, since stamped also embeds the chrome
+ * and the font subset once per document instead of once per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class InvoiceStampingBenchmark {
+
+  @Param({"10", "100"})
+  public int count;
+
+  private InvoicePdfService full;
+  private InvoicePdfService stamped;
+  private List<Invoice> invoices;
+
+  @Setup
+  public void setUp() {
+    PdfService pdfService = new PdfService(PdfFixtures.templateEngine(), null);
+    InvoiceSettings settings = (InvoiceSettings) PdfFixtures.invoiceModel().get("settings");
+    InvoiceSettingsService settingsService = new InvoiceSettingsService(null) {
+      @Override
+      public InvoiceSettings getSettings() {
+        return settings;
+      }
+    };
+    PromptPayQrService promptPayQrService = new PromptPayQrService(1024);
+
+    full = invoicePdfService(pdfService, settingsService, promptPayQrService, false);
+    stamped = invoicePdfService(pdfService, settingsService, promptPayQrService, true);
+
+    invoices = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      invoices.add(PdfFixtures.invoice(i + 1, 101 + i));
+    }
+    System.out.printf("%n%d invoices: full %,d bytes, stamped %,d bytes%n",
+        count, full().length, stamped().length);
+  }
+
+  @Benchmark
+  public byte[] full() {
+    return full.renderInvoices(invoices);
+  }
+
+  @Benchmark
+  public byte[] stamped() {
+    return stamped.renderInvoices(invoices);
+  }
+
+  private static InvoicePdfService invoicePdfService(PdfService pdfService, InvoiceSettingsService settingsService,
+      PromptPayQrService promptPayQrService, boolean stamping) {
+    InvoicePdfService service = new InvoicePdfService(pdfService, settingsService, promptPayQrService);
+    setField(service, "uploadBaseDir", "./uploads");
+    setField(service, "stampingEnabled", stamping);
+    return service;
+  }
+
+  private static void setField(Object target, String name, Object value) {
+    Field field = ReflectionUtils.findField(target.getClass(), name);
+    ReflectionUtils.makeAccessible(field);
+    ReflectionUtils.setField(field, target, value);
+  }
+}
@@ -0,0 +1,56 @@
+package com.devsop.project.apartmentinvoice.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsop.project.apartmentinvoice.service.PdfService;
+
+/**
+ * PdfService.mergePdfs for a bulk print of N invoices. The input PDFs are rendered
+ * once in setUp (distinct invoices, so nothing is shared between pages).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MergePdfsBenchmark {
+
+  @Param({"10", "100", "500"})
+  public int count;
+
+  private PdfService pdfService;
+  private List<byte[]> pdfs;
+
+  @Setup
+  public void setUp() {
+    pdfService = new PdfService(PdfFixtures.templateEngine(), null);
+    Map<String, Object> model = PdfFixtures.invoiceModel();
+
+    pdfs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      model.put("invoice", PdfFixtures.invoice(i + 1, 101 + i));
+      pdfs.add(pdfService.renderTemplateToPdf("invoice", model));
+    }
+  }
+
+  @Benchmark
+  public byte[] merge() {
+    return pdfService.mergePdfs(pdfs);
+  }
+}
@@ -0,0 +1,134 @@
+package com.devsop.project.apartmentinvoice.benchmark;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import com.devsop.project.apartmentinvoice.entity.Invoice;
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
+import com.devsop.project.apartmentinvoice.entity.Lease;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.entity.Tenant;
+
+/**
+ * Sample data + a standalone Thymeleaf engine configured like Spring Boot's
+ * (classpath:/templates/*.html), so benchmarks run without an application context.
+ */
+final class PdfFixtures {
+
+  static final Locale LOCALE = Locale.forLanguageTag("th-TH");
+
+  private PdfFixtures() {
+  }
+
+  static SpringTemplateEngine templateEngine() {
+    ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+    resolver.setPrefix("templates/");
+    resolver.setSuffix(".html");
+    resolver.setTemplateMode(TemplateMode.HTML);
+    resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    resolver.setCacheable(true);
+
+    SpringTemplateEngine engine = new SpringTemplateEngine();
+    engine.setTemplateResolver(resolver);
+    return engine;
+  }
+
+  static String process(SpringTemplateEngine engine, String template, Map<String, Object> model) {
+    Context ctx = new Context(LOCALE);
+    model.forEach(ctx::setVariable);
+    return engine.process(template, ctx);
+  }
+
+  static Map<String, Object> invoiceModel() {
+    InvoiceSettings settings = new InvoiceSettings();
+    settings.setId(1L);
+    settings.setPaymentDescription("ธนาคารกสิกรไทย\nเลขที่บัญชี 123-4-56789-0\nชื่อบัญชี หอพักตัวอย่าง");
+    settings.setInterestRatePerMonth(new BigDecimal("1.50"));
+
+    Map<String, Object> model = new HashMap<>();
+    model.put("invoice", invoice(1L, 101));
+    model.put("settings", settings);
+    model.put("qrCodeFullPath", "");
+    return model;
+  }
+
+  static Map<String, Object> leaseModel() {
+    Tenant tenant = tenant(1L);
+    Room room = room(1L, 101, tenant);
+
+    Lease lease = new Lease();
+    lease.setId(1L);
+    lease.setRoom(room);
+    lease.setTenant(tenant);
+    lease.setStartDate(LocalDate.of(2025, 1, 1));
+    lease.setEndDate(LocalDate.of(2025, 12, 31));
+    lease.setMonthlyRent(new BigDecimal("7000.00"));
+    lease.setDepositBaht(new BigDecimal("14000.00"));
+    lease.setCustomIdCard("1-2345-67890-12-3");
+    lease.setCustomAddress("99/1 ถนนสุขุมวิท กรุงเทพฯ 10110");
+
+    Map<String, Object> model = new HashMap<>();
+    model.put("lease", lease);
+    model.put("room", room);
+    model.put("tenant", tenant);
+    return model;
+  }
+
+  static Invoice invoice(long id, int roomNumber) {
+    Tenant tenant = tenant(id);
+    Room room = room(id, roomNumber, tenant);
+
+    Invoice inv = new Invoice();
+    inv.setId(id);
+    inv.setRoom(room);
+    inv.setTenant(tenant);
+    inv.setBillingYear(2025);
+    inv.setBillingMonth(9);
+    inv.setIssueDate(LocalDate.of(2025, 9, 2));
+    inv.setDueDate(LocalDate.of(2025, 9, 9));
+    inv.setRentBaht(new BigDecimal("7000.00"));
+    inv.setElectricityUnits(new BigDecimal("100"));
+    inv.setElectricityRate(new BigDecimal("8.00"));
+    inv.setElectricityBaht(new BigDecimal("800.00"));
+    inv.setWaterUnits(new BigDecimal("3"));
+    inv.setWaterRate(new BigDecimal("18.00"));
+    inv.setWaterBaht(new BigDecimal("54.00"));
+    inv.setOtherBaht(new BigDecimal("50.00"));
+    inv.setCommonFeeBaht(new BigDecimal("300.00"));
+    inv.setGarbageFeeBaht(new BigDecimal("30.00"));
+    inv.setMaintenanceBaht(BigDecimal.ZERO);
+    inv.setTotalBaht(new BigDecimal("8234.00"));
+    inv.setPreviousBalance(new BigDecimal("1200.00"));
+    inv.setInterestCharge(new BigDecimal("18.00"));
+    inv.setAccumulatedTotal(new BigDecimal("9452.00"));
+    return inv;
+  }
+
+  private static Tenant tenant(long id) {
+    Tenant tenant = new Tenant();
+    tenant.setId(id);
+    tenant.setName("สมชาย ใจดี");
+    tenant.setPhone("081-222-3333");
+    return tenant;
+  }
+
+  private static Room room(long id, int number, Tenant tenant) {
+    Room room = new Room();
+    room.setId(id);
+    room.setNumber(number);
+    room.setStatus("OCCUPIED");
+    room.setTenant(tenant);
+    room.setCommonFeeBaht(new BigDecimal("300.00"));
+    room.setGarbageFeeBaht(new BigDecimal("30.00"));
+    return room;
+  }
+}
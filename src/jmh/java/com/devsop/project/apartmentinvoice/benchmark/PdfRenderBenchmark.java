@@ -0,0 +1,51 @@
+package com.devsop.project.apartmentinvoice.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsop.project.apartmentinvoice.service.PdfService;
+
+/**
+ * End-to-end PdfService.renderTemplateToPdf for the two real templates
+ * (invoice.html and lease/print.html), in-process (no worker pool).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class PdfRenderBenchmark {
+
+  private PdfService pdfService;
+  private Map<String, Object> invoiceModel;
+  private Map<String, Object> leaseModel;
+
+  @Setup
+  public void setUp() {
+    pdfService = new PdfService(PdfFixtures.templateEngine(), null);
+    invoiceModel = PdfFixtures.invoiceModel();
+    leaseModel = PdfFixtures.leaseModel();
+  }
+
+  @Benchmark
+  public byte[] invoice() {
+    return pdfService.renderTemplateToPdf("invoice", invoiceModel);
+  }
+
+  @Benchmark
+  public byte[] lease() {
+    return pdfService.renderTemplateToPdf("lease/print", leaseModel);
+  }
+}
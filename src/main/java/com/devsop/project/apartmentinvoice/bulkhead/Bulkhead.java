@@ -0,0 +1,74 @@
+package com.devsop.project.apartmentinvoice.bulkhead;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+
+/**
+ * Concurrency limit for one workload class: a fixed number of permits plus a short
+ * bounded queue. Callers that find the queue full, or wait longer than maxWaitMillis,
+ * are rejected instead of piling up on the shared request threads.
+ */
+public class Bulkhead {
+
+  @Getter
+  private final String name;
+  @Getter
+  private final int maxConcurrent;
+  @Getter
+  private final int queueSize;
+  @Getter
+  private final long retryAfterSeconds;
+
+  private final long maxWaitMillis;
+  private final Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+
+  public Bulkhead(String name, int maxConcurrent, int queueSize, long maxWaitMillis, long retryAfterSeconds) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("Bulkhead " + name + ": max-concurrent must be >= 1");
+    }
+    this.name = name;
+    this.maxConcurrent = maxConcurrent;
+    this.queueSize = Math.max(0, queueSize);
+    this.maxWaitMillis = Math.max(0, maxWaitMillis);
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.permits = new Semaphore(maxConcurrent, true);
+  }
+
+  /**
+   * Try to enter the bulkhead; returns false when the caller should be rejected.
+   * Every successful call must be paired with {@link #exit()}.
+   */
+  public boolean tryEnter() {
+    if (permits.tryAcquire()) {
+      return true;
+    }
+    if (queued.incrementAndGet() > queueSize) {
+      queued.decrementAndGet();
+      return false;
+    }
+    try {
+      return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  public void exit() {
+    permits.release();
+  }
+
+  public int getInFlight() {
+    return maxConcurrent - permits.availablePermits();
+  }
+
+  public int getQueued() {
+    return queued.get();
+  }
+}
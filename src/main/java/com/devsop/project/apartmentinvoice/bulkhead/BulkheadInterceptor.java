@@ -0,0 +1,161 @@
+package com.devsop.project.apartmentinvoice.bulkhead;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Per-workload bulkheads for the heavy endpoints (PDF rendering, CSV import, wide reports).
+ * Each workload class gets its own {@link Bulkhead}; requests over the limit get
+ * 429 Too Many Requests with a Retry-After header.
+ *
+ * Limits are read from application.yaml: bulkhead.{workload}.max-concurrent / queue-size /
+ * max-wait-ms / retry-after-seconds. Set bulkhead.enabled=false to switch all of them off.
+ */
+@Component
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+  private static final String ENTERED_ATTRIBUTE = BulkheadInterceptor.class.getName() + ".bulkhead";
+
+  private final AntPathMatcher matcher = new AntPathMatcher();
+  private final List<Route> routes = new ArrayList<>();
+  private final Environment env;
+  private final MeterRegistry registry;
+  private final boolean enabled;
+
+  public BulkheadInterceptor(Environment env, MeterRegistry registry) {
+    this.env = env;
+    this.registry = registry;
+    this.enabled = env.getProperty("bulkhead.enabled", Boolean.class, true);
+
+    // ---------- workload classes (defaults can be overridden in application.yaml) ----------
+    register(bulkhead("pdf-bulk", 2, 2, 5000, 10),
+        "POST /api/invoices/bulk-pdf",
+        "POST /api/leases/bulk-pdf");
+    register(bulkhead("pdf", 4, 8, 2000, 2),
+        "GET /api/invoices/*/pdf",
+        "GET /api/leases/*/print",
+        "GET /invoices/*/pdf");
+    // dry runs are read-only and called on every edit in the frontend: own, wider bulkhead
+    register(bulkhead("csv-dry-run", 4, 8, 2000, 1),
+        "POST /api/invoices/import-csv?dryRun=true");
+    register(bulkhead("csv-import", 1, 1, 2000, 15),
+        "POST /api/invoices/import-csv",
+        "POST /api/onboarding/import",
+        "POST /api/meter-readings/bulk");
+    register(bulkhead("reports", 4, 8, 2000, 2),
+        "GET /api/reports/**");
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+      throws IOException {
+    if (!enabled) {
+      return true;
+    }
+
+    Bulkhead bulkhead = match(request);
+    if (bulkhead == null) {
+      return true;
+    }
+
+    if (bulkhead.tryEnter()) {
+      request.setAttribute(ENTERED_ATTRIBUTE, bulkhead);
+      return true;
+    }
+
+    rejected(bulkhead).increment();
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setHeader("Retry-After", String.valueOf(bulkhead.getRetryAfterSeconds()));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().write("{\"error\":\"Too many concurrent " + bulkhead.getName()
+        + " requests, please retry later\"}");
+    return false;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    Object entered = request.getAttribute(ENTERED_ATTRIBUTE);
+    if (entered instanceof Bulkhead bulkhead) {
+      request.removeAttribute(ENTERED_ATTRIBUTE);
+      bulkhead.exit();
+    }
+  }
+
+  // ---------- helpers ----------
+
+  private Bulkhead match(HttpServletRequest request) {
+    String method = request.getMethod();
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    for (Route route : routes) {
+      if (route.method.equals(method) && matcher.match(route.pattern, path)
+          && (route.param == null || route.value.equalsIgnoreCase(request.getParameter(route.param)))) {
+        return route.bulkhead;
+      }
+    }
+    return null;
+  }
+
+  private Bulkhead bulkhead(String name, int maxConcurrent, int queueSize, long maxWaitMs, long retryAfterSeconds) {
+    String prefix = "bulkhead." + name + ".";
+    Bulkhead bulkhead = new Bulkhead(
+        name,
+        env.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+        env.getProperty(prefix + "queue-size", Integer.class, queueSize),
+        env.getProperty(prefix + "max-wait-ms", Long.class, maxWaitMs),
+        env.getProperty(prefix + "retry-after-seconds", Long.class, retryAfterSeconds));
+
+    Gauge.builder("apartment.bulkhead.inflight", bulkhead, Bulkhead::getInFlight)
+        .description("Requests currently executing inside the bulkhead")
+        .tag("workload", name)
+        .register(registry);
+    Gauge.builder("apartment.bulkhead.queued", bulkhead, Bulkhead::getQueued)
+        .description("Requests waiting for a bulkhead permit")
+        .tag("workload", name)
+        .register(registry);
+    return bulkhead;
+  }
+
+  private Counter rejected(Bulkhead bulkhead) {
+    return Counter.builder("apartment.bulkhead.rejected")
+        .description("Requests rejected with 429 because the bulkhead was full")
+        .tag("workload", bulkhead.getName())
+        .register(registry);
+  }
+
+  /**
+   * Endpoints are "METHOD /path/pattern" with an optional "?param=value" condition.
+   * Routes are matched in registration order, so register conditional routes first.
+   */
+  private void register(Bulkhead bulkhead, String... endpoints) {
+    for (String endpoint : endpoints) {
+      String[] parts = endpoint.split(" ", 2);
+      String[] pathAndQuery = parts[1].split("\\?", 2);
+      String param = null;
+      String value = null;
+      if (pathAndQuery.length == 2) {
+        String[] kv = pathAndQuery[1].split("=", 2);
+        param = kv[0];
+        value = kv.length == 2 ? kv[1] : "";
+      }
+      routes.add(new Route(parts[0], pathAndQuery[0], param, value, bulkhead));
+    }
+  }
+
+  private record Route(String method, String pattern, String param, String value, Bulkhead bulkhead) {
+  }
+}
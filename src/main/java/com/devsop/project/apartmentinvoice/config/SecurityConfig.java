@@ -40,6 +40,8 @@ public class SecurityConfig {
                 .requestMatchers("/", "/error", "/api/health", "/api/auth/**", "/h2-console/**", "/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
                 // .requestMatchers(HttpMethod.GET, "/api", "/api/").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // signed download links of the local storage backend: the signature is the authorization
+                .requestMatchers(HttpMethod.GET, "/files/**").permitAll()
 
                 // ---------- 2. SPECIFIC ROLE ENDPOINTS ----------
                 .requestMatchers("/api/users/**").hasAnyAuthority("ROLE_ADMIN", "ADMIN")
@@ -52,6 +54,7 @@ public class SecurityConfig {
 
                 // Allow STAFF to upload documents (for maintenance image uploads)
                 .requestMatchers(HttpMethod.POST, "/api/documents/upload").hasAnyAuthority("ROLE_ADMIN", "ADMIN", "ROLE_STAFF", "STAFF")
+                .requestMatchers("/api/documents/uploads/**").hasAnyAuthority("ROLE_ADMIN", "ADMIN", "ROLE_STAFF", "STAFF")
 
                 // Allow STAFF to manage supply inventory
                 .requestMatchers(HttpMethod.POST, "/api/supplies/**").hasAnyAuthority("ROLE_ADMIN", "ADMIN", "ROLE_STAFF", "STAFF")
@@ -0,0 +1,111 @@
+package com.devsop.project.apartmentinvoice.config;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.devsop.project.apartmentinvoice.service.storage.CachingStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.CompressingStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.InstrumentedStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+import com.devsop.project.apartmentinvoice.service.storage.WriteBehindStorageService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+
+/**
+ * StorageService seen by the application: the backend selected by storage.type, wrapped by the
+ * decorators that are switched on, innermost first:
+ * backend -> metrics and trace spans of each backend call (always, see InstrumentedStorageService)
+ *         -> gzip of text-heavy files (always reads, writes when storage.compression.enabled,
+ *            see CompressingStorageService)
+ *         -> write-behind spool (storage.write-behind.enabled, see WriteBehindStorageService)
+ *         -> read-through cache (storage.cache.enabled, see CachingStorageService).
+ */
+@Configuration
+public class StorageConfig {
+
+  @Bean
+  @Primary
+  StorageService storageService(
+      CompressingStorageService compressing,
+      ObjectProvider<WriteBehindStorageService> writeBehind,
+      @Value("${storage.cache.enabled:false}") boolean cacheEnabled,
+      @Value("${storage.cache.dir:/tmp/storage-cache}") String cacheDir,
+      @Value("${storage.cache.max-disk-mb:512}") long maxDiskMb,
+      @Value("${storage.cache.max-heap-mb:16}") long maxHeapMb,
+      @Value("${storage.cache.max-heap-entry-kb:256}") long maxHeapEntryKb,
+      @Value("${storage.cache.revalidate-seconds:30}") long revalidateSeconds,
+      MeterRegistry registry) {
+    StorageService storage = writeBehind.getIfAvailable(() -> compressing);
+    if (cacheEnabled) {
+      storage = new CachingStorageService(
+          storage,
+          Paths.get(cacheDir),
+          maxDiskMb * 1024 * 1024,
+          maxHeapMb * 1024 * 1024,
+          maxHeapEntryKb * 1024,
+          Duration.ofSeconds(revalidateSeconds),
+          registry);
+    }
+    return storage;
+  }
+
+  /**
+   * Always in the chain, even with compression of new writes off: objects already stored compressed
+   * must stay readable.
+   */
+  @Bean
+  CompressingStorageService compressingStorageService(
+      InstrumentedStorageService instrumented,
+      @Value("${storage.compression.enabled:false}") boolean enabled,
+      @Value("${storage.compression.level:6}") int level,
+      @Value("${storage.compression.types:text/csv,text/plain,application/json,application/pdf}") List<String> types,
+      MeterRegistry registry) {
+    return new CompressingStorageService(instrumented, enabled, level, types, registry);
+  }
+
+  /** Directly around the backend: timings are backend calls only, not cache hits or spooled writes */
+  @Bean
+  InstrumentedStorageService instrumentedStorageService(
+      @Qualifier(StorageService.BACKEND) StorageService backend,
+      @Value("${storage.type:local}") String backendName,
+      MeterRegistry registry,
+      ObjectProvider<OpenTelemetry> openTelemetry) {
+    return new InstrumentedStorageService(
+        backend, backendName, registry, openTelemetry.getIfAvailable(OpenTelemetry::noop));
+  }
+
+  /** Own bean so that its workers are stopped on shutdown (pending files stay in the spool) */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "storage.write-behind.enabled", havingValue = "true")
+  WriteBehindStorageService writeBehindStorageService(
+      CompressingStorageService compressing,
+      @Value("${storage.write-behind.dir:/var/spool/apartment-storage}") String dir,
+      @Value("${storage.write-behind.workers:4}") int workers,
+      @Value("${storage.write-behind.max-spool-mb:1024}") long maxSpoolMb,
+      @Value("${storage.write-behind.initial-backoff-ms:500}") long initialBackoffMs,
+      @Value("${storage.write-behind.max-backoff-ms:60000}") long maxBackoffMs,
+      @Value("${storage.write-behind.breaker-threshold:5}") int breakerThreshold,
+      @Value("${storage.write-behind.breaker-open-seconds:30}") long breakerOpenSeconds,
+      MeterRegistry registry) {
+    return new WriteBehindStorageService(
+        compressing,
+        Paths.get(dir),
+        workers,
+        maxSpoolMb * 1024 * 1024,
+        Duration.ofMillis(initialBackoffMs),
+        Duration.ofMillis(maxBackoffMs),
+        breakerThreshold,
+        Duration.ofSeconds(breakerOpenSeconds),
+        registry);
+  }
+}
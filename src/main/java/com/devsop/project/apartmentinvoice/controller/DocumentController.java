@@ -1,8 +1,12 @@
 package com.devsop.project.apartmentinvoice.controller;
 
+import java.net.URI;
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -21,6 +25,7 @@ import org.springframework.web.server.ResponseStatusException;
 import com.devsop.project.apartmentinvoice.entity.Document;
 import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
 import com.devsop.project.apartmentinvoice.service.DocumentService;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService.Variant;
 
 import lombok.RequiredArgsConstructor;
 
@@ -91,25 +96,114 @@ public class DocumentController {
     return documentService.getDocumentsByEntity(type, entityId);
   }
 
+  /**
+   * Documents of many entities of one type in one request (one query), grouped by entity ID.
+   * Example: GET /api/documents/MAINTENANCE/batch?ids=1,2,3 -> {"1": [...], "2": [], "3": [...]}
+   *
+   * @param entityType Type of entity
+   * @param ids Entity IDs (at most 500)
+   * @return Documents per entity ID, every requested ID included
+   */
+  @GetMapping("/{entityType}/batch")
+  public Map<Long, List<Document>> getDocumentsByEntities(
+      @PathVariable String entityType,
+      @RequestParam("ids") List<Long> ids
+  ) {
+    return documentService.getDocumentsByEntities(parseEntityType(entityType), ids);
+  }
+
+  /**
+   * Document counts of many entities (attachment badges of a table) in one request.
+   * Example: GET /api/documents/LEASE/batch/counts?ids=4,5 -> {"4": 2, "5": 0}
+   */
+  @GetMapping("/{entityType}/batch/counts")
+  public Map<Long, Long> countDocumentsByEntities(
+      @PathVariable String entityType,
+      @RequestParam("ids") List<Long> ids
+  ) {
+    return documentService.countDocumentsByEntities(parseEntityType(entityType), ids);
+  }
+
+  private static EntityType parseEntityType(String entityType) {
+    try {
+      return EntityType.valueOf(entityType.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST,
+        "Invalid entity type. Must be LEASE, MAINTENANCE, or INVOICE"
+      );
+    }
+  }
+
   /**
    * Download a document file.
-   * Returns the file content directly instead of using signed URLs.
+   * The file is streamed from storage (constant memory per request); a Range header gets a
+   * 206 Partial Content answer, so large scanned PDFs can be viewed page by page and resumed.
+   *
+   * With redirect=true, and when signed URLs are enabled and the backend can sign one, the answer is
+   * a 302 redirect to a short-lived direct link instead, so the bytes do not pass through this server.
+   *
+   * @param variant thumb or web for a downscaled JPEG of an image (list previews), omitted = original
+   * @param redirect true to accept a redirect to signed storage (opt-in: the default answer is always 200)
    */
   @GetMapping("/{id}/download")
-  public ResponseEntity<byte[]> downloadDocument(@PathVariable Long id) {
+  public ResponseEntity<Resource> downloadDocument(
+      @PathVariable Long id,
+      @RequestParam(value = "variant", required = false) String variant,
+      @RequestParam(value = "redirect", defaultValue = "false") boolean redirect
+  ) {
     Document document = documentService.getDocumentById(id);
-    byte[] fileContent = documentService.getFileContent(id);
+    Variant imageVariant = Variant.fromParam(variant);
+    if (redirect) {
+      String url = documentService.getSignedUrl(document, imageVariant);
+      if (url != null) {
+        return ResponseEntity.status(HttpStatus.FOUND)
+            .location(URI.create(url))
+            .cacheControl(CacheControl.noStore())
+            .build();
+      }
+    }
+    Resource content = documentService.getFileResource(document, imageVariant);
 
     HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.parseMediaType(document.getMimeType()));
-    headers.setContentDisposition(
-        ContentDisposition.attachment()
-            .filename(document.getFileName())
-            .build()
-    );
-    headers.setContentLength(fileContent.length);
-
-    return new ResponseEntity<>(fileContent, headers, HttpStatus.OK);
+    if (imageVariant != null) {
+      headers.setContentType(MediaType.IMAGE_JPEG);
+      headers.setContentDisposition(ContentDisposition.inline().filename(content.getFilename()).build());
+    } else {
+      headers.setContentType(MediaType.parseMediaType(document.getMimeType()));
+      headers.setContentDisposition(
+          ContentDisposition.attachment()
+              .filename(document.getFileName())
+              .build()
+      );
+    }
+    // Content-Length / Content-Range / Accept-Ranges are set by Spring from the Resource and the Range header
+
+    return new ResponseEntity<>(content, headers, HttpStatus.OK);
+  }
+
+  /**
+   * Short-lived direct download link (for opening in a new tab or an &lt;img&gt; tag).
+   * Falls back to the API download URL when the backend cannot sign one.
+   */
+  @GetMapping("/{id}/download-url")
+  public Map<String, Object> getDownloadUrl(
+      @PathVariable Long id,
+      @RequestParam(value = "variant", required = false) String variant
+  ) {
+    Document document = documentService.getDocumentById(id);
+    Variant imageVariant = Variant.fromParam(variant);
+    String url = documentService.getSignedUrl(document, imageVariant);
+    if (url == null) {
+      return Map.of(
+          "url", "/api/documents/" + id + "/download?redirect=false"
+              + (imageVariant != null ? "&variant=" + imageVariant.key() : ""),
+          "direct", false);
+    }
+    return Map.of(
+        "url", url,
+        "direct", true,
+        "expiresInSeconds", documentService.getSignedUrlTtlSeconds());
   }
 
   /**
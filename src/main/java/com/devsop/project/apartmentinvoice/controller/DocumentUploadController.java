@@ -0,0 +1,128 @@
+package com.devsop.project.apartmentinvoice.controller;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.dto.UploadInitRequest;
+import com.devsop.project.apartmentinvoice.entity.Document;
+import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+import com.devsop.project.apartmentinvoice.entity.UploadPart;
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.service.ChunkedUploadService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Chunked (resumable) document uploads for files above the 10MB multipart limit:
+ *
+ * 1. POST   /api/documents/uploads                      {fileName, mimeType, totalSize, entityType, entityId}
+ * 2. PUT    /api/documents/uploads/{id}/parts/{n}       raw part bytes + header X-Content-SHA256 (hex)
+ * 3. POST   /api/documents/uploads/{id}/commit          -> Document
+ *
+ * GET /api/documents/uploads/{id} lists received and missing parts, so a client resumes after
+ * a dropped connection by sending only the missing ones. DELETE cancels the upload.
+ */
+@RestController
+@RequestMapping("/api/documents/uploads")
+@RequiredArgsConstructor
+public class DocumentUploadController {
+
+  private final ChunkedUploadService chunkedUploadService;
+
+  @PostMapping
+  public ResponseEntity<?> initiate(@RequestBody UploadInitRequest request, Principal principal) {
+    EntityType type;
+    try {
+      type = EntityType.valueOf(String.valueOf(request.getEntityType()).toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST,
+        "Invalid entity type. Must be LEASE, MAINTENANCE, or INVOICE"
+      );
+    }
+    if (request.getTotalSize() == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "totalSize is required");
+    }
+
+    String username = (principal != null) ? principal.getName() : "admin";
+    UploadSession session = chunkedUploadService.initiate(
+        request.getFileName(),
+        request.getMimeType(),
+        request.getTotalSize(),
+        type,
+        request.getEntityId(),
+        username);
+
+    return ResponseEntity.status(HttpStatus.CREATED).body(describe(session, List.of()));
+  }
+
+  /**
+   * One part, streamed from the request body to storage (not a multipart form).
+   */
+  @PutMapping("/{uploadId}/parts/{partNumber}")
+  public ResponseEntity<?> uploadPart(
+      @PathVariable String uploadId,
+      @PathVariable int partNumber,
+      @RequestHeader(value = "X-Content-SHA256", required = false) String sha256,
+      HttpServletRequest request
+  ) throws IOException {
+    UploadPart part = chunkedUploadService.uploadPart(uploadId, partNumber, sha256, request.getInputStream());
+    return ResponseEntity.ok(Map.of(
+      "partNumber", part.getPartNumber(),
+      "size", part.getSize(),
+      "sha256", part.getSha256()
+    ));
+  }
+
+  @GetMapping("/{uploadId}")
+  public ResponseEntity<?> status(@PathVariable String uploadId) {
+    UploadSession session = chunkedUploadService.getSession(uploadId);
+    return ResponseEntity.ok(describe(session, chunkedUploadService.getParts(uploadId)));
+  }
+
+  @PostMapping("/{uploadId}/commit")
+  public Document commit(@PathVariable String uploadId) {
+    return chunkedUploadService.commit(uploadId);
+  }
+
+  @DeleteMapping("/{uploadId}")
+  public ResponseEntity<?> abort(@PathVariable String uploadId) {
+    chunkedUploadService.abort(uploadId);
+    return ResponseEntity.ok(Map.of("message", "Upload aborted"));
+  }
+
+  private static Map<String, Object> describe(UploadSession session, List<UploadPart> parts) {
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("uploadId", session.getId());
+    body.put("status", session.getStatus());
+    body.put("fileName", session.getFileName());
+    body.put("totalSize", session.getTotalSize());
+    body.put("partSize", session.getPartSize());
+    body.put("partCount", session.partCount());
+    body.put("receivedParts", parts.stream().map(UploadPart::getPartNumber).toList());
+    body.put("missingParts", session.getStatus() == UploadSession.Status.OPEN
+        ? ChunkedUploadService.missingParts(session, parts)
+        : List.of());
+    if (session.getDocumentId() != null) {
+      body.put("documentId", session.getDocumentId());
+    }
+    return body;
+  }
+}
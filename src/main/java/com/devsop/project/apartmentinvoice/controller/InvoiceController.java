@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -28,6 +29,7 @@ import com.devsop.project.apartmentinvoice.entity.Invoice;
 import com.devsop.project.apartmentinvoice.entity.Lease;
 import com.devsop.project.apartmentinvoice.entity.Maintenance;
 import com.devsop.project.apartmentinvoice.entity.Maintenance.Status;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
 import com.devsop.project.apartmentinvoice.entity.Room;
 import com.devsop.project.apartmentinvoice.entity.Tenant;
 import com.devsop.project.apartmentinvoice.repository.InvoiceRepository;
@@ -35,18 +37,17 @@ import com.devsop.project.apartmentinvoice.repository.LeaseRepository;
 import com.devsop.project.apartmentinvoice.repository.MaintenanceRepository;
 import com.devsop.project.apartmentinvoice.repository.RoomRepository;
 import com.devsop.project.apartmentinvoice.service.CsvImportService;
+import com.devsop.project.apartmentinvoice.service.InvoicePdfService;
 import com.devsop.project.apartmentinvoice.service.InvoiceService;
-import com.devsop.project.apartmentinvoice.service.InvoiceSettingsService;
-import com.devsop.project.apartmentinvoice.service.PdfService;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.nio.file.Paths;
-
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/invoices") // ✅ ใช้สำหรับ REST APIs ทั้งหมด
 @RequiredArgsConstructor
@@ -62,13 +63,10 @@ public class InvoiceController {
   private final RoomRepository roomRepo;
   private final LeaseRepository leaseRepo;
   private final MaintenanceRepository maintenanceRepo;
-  private final PdfService pdfService;
   private final InvoiceService invoiceService;
+  private final InvoicePdfService invoicePdfService;
   private final CsvImportService csvImportService;
-  private final InvoiceSettingsService settingsService;
-
-  @Value("${file.upload.dir:./uploads}")
-  private String uploadBaseDir;
+  private final MeterReadingService meterReadingService;
 
   // ---------- JSON APIs ----------
 
@@ -172,17 +170,28 @@ public class InvoiceController {
     if (rent == null) rent = java.math.BigDecimal.ZERO;
     in.setRentBaht(rent);
 
+    // ไม่ได้ส่งหน่วย/ยอดเงินมา -> คำนวณหน่วยจากค่ามิเตอร์ของเดือนนั้น (delta จากค่าก่อนหน้า, query เดียว)
+    var elecUnits  = req.getElectricityUnits();
+    var waterUnits = req.getWaterUnits();
+    boolean deriveElec  = elecUnits == null && req.getElectricityBaht() == null;
+    boolean deriveWater = waterUnits == null && req.getWaterBaht() == null;
+    if (deriveElec || deriveWater) {
+      Map<MeterType, java.math.BigDecimal> usage = meterReadingService.usageForPeriod(room.getId(), year, month);
+      if (deriveElec)  elecUnits  = meterUnits(usage, MeterType.ELECTRICITY, room, year, month);
+      if (deriveWater) waterUnits = meterUnits(usage, MeterType.WATER, room, year, month);
+    }
+
     var elecBaht = req.getElectricityBaht();
-    if (elecBaht == null && req.getElectricityUnits() != null && req.getElectricityRate() != null)
-      elecBaht = req.getElectricityUnits().multiply(req.getElectricityRate());
-    in.setElectricityUnits(req.getElectricityUnits());
+    if (elecBaht == null && elecUnits != null && req.getElectricityRate() != null)
+      elecBaht = elecUnits.multiply(req.getElectricityRate());
+    in.setElectricityUnits(elecUnits);
     in.setElectricityRate(req.getElectricityRate());
     in.setElectricityBaht(elecBaht);
 
     var waterBaht = req.getWaterBaht();
-    if (waterBaht == null && req.getWaterUnits() != null && req.getWaterRate() != null)
-      waterBaht = req.getWaterUnits().multiply(req.getWaterRate());
-    in.setWaterUnits(req.getWaterUnits());
+    if (waterBaht == null && waterUnits != null && req.getWaterRate() != null)
+      waterBaht = waterUnits.multiply(req.getWaterRate());
+    in.setWaterUnits(waterUnits);
     in.setWaterRate(req.getWaterRate());
     in.setWaterBaht(waterBaht);
 
@@ -231,28 +240,25 @@ public class InvoiceController {
     return repo.save(in);
   }
 
+  /** หน่วยจากค่ามิเตอร์ (null = ไม่มีค่ามิเตอร์ในเดือนนั้น); ค่าน้อยกว่าครั้งก่อน = ข้อมูลผิด -> 400 */
+  private static java.math.BigDecimal meterUnits(Map<MeterType, java.math.BigDecimal> usage, MeterType meterType,
+                                                 Room room, Integer year, Integer month) {
+    java.math.BigDecimal units = usage.get(meterType);
+    if (units != null && units.signum() < 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          meterType + " reading of room " + room.getNumber() + " in " + year + "-" + month
+              + " is lower than the previous reading");
+    }
+    return units;
+  }
+
   // ---------- PDF Generator ----------
   @GetMapping(value = "/{id}/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
   public ResponseEntity<byte[]> getInvoicePdf(@PathVariable Long id) {
     Invoice invoice = repo.findById(id)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Invoice not found"));
 
-    // Get invoice settings for payment info and QR code
-    com.devsop.project.apartmentinvoice.entity.InvoiceSettings settings = settingsService.getSettings();
-
-    // Build full path to QR code for PDF embedding
-    String qrCodeFullPath = null;
-    if (settings.getQrCodeImagePath() != null) {
-      qrCodeFullPath = java.nio.file.Paths.get(uploadBaseDir, settings.getQrCodeImagePath())
-        .toAbsolutePath().toString().replace("\\", "/");
-    }
-
-    Map<String, Object> model = new java.util.HashMap<>();
-    model.put("invoice", invoice);
-    model.put("settings", settings);
-    model.put("qrCodeFullPath", qrCodeFullPath);
-
-    byte[] pdf = pdfService.renderTemplateToPdf("invoice", model);
+    byte[] pdf = invoicePdfService.renderInvoice(invoice);
 
     return ResponseEntity.ok()
         .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=invoice-" + id + ".pdf")
@@ -261,17 +267,63 @@ public class InvoiceController {
   }
 
   // ---------- CSV Import ----------
+  /**
+   * Accepts .csv or .xlsx (every sheet of the workbook, e.g. one per floor, is imported).
+   * dryRun=true: validate only (parse, room lookup, duplicates, pricing) and return a per-line report;
+   * no invoices are created and the file is not stored.
+   * A file identical to an earlier import returns that import's result (duplicate=true);
+   * force=true imports it again.
+   * errors lists the first csv.import.inline-error-limit errors only; errorCounts covers the whole
+   * file and errorReportUrl downloads every error as CSV.
+   */
   @PostMapping("/import-csv")
-  public ResponseEntity<?> importCsv(@RequestParam("file") MultipartFile file) {
-    CsvImportService.ImportResult result = csvImportService.importInvoicesFromCsv(file);
-
-    return ResponseEntity.ok(Map.of(
-      "message", "CSV import completed",
-      "successCount", result.getSuccessCount(),
-      "failureCount", result.getFailureCount(),
-      "totalProcessed", result.getTotalProcessed(),
-      "errors", result.getErrors()
-    ));
+  public ResponseEntity<?> importCsv(
+      @RequestParam("file") MultipartFile file,
+      @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun,
+      @RequestParam(value = "force", defaultValue = "false") boolean force) {
+    if (dryRun) {
+      CsvImportService.ImportResult report = csvImportService.validateCsv(file);
+      return ResponseEntity.ok(Map.of(
+        "message", "CSV validation completed (dry run, nothing saved)",
+        "dryRun", true,
+        "successCount", report.getSuccessCount(),
+        "failureCount", report.getFailureCount(),
+        "totalProcessed", report.getTotalProcessed(),
+        "errors", report.getErrors(),
+        "errorCounts", report.getErrorCounts(),
+        "lines", report.getLines()
+      ));
+    }
+
+    CsvImportService.ImportResult result = csvImportService.importInvoicesFromCsv(file, force);
+
+    Map<String, Object> body = new java.util.LinkedHashMap<>();
+    body.put("message", result.isDuplicate()
+        ? "CSV file was already imported; returning the earlier result"
+        : "CSV import completed");
+    body.put("successCount", result.getSuccessCount());
+    body.put("failureCount", result.getFailureCount());
+    body.put("totalProcessed", result.getTotalProcessed());
+    body.put("errors", result.getErrors());
+    body.put("errorsTruncated", result.isErrorsTruncated());
+    body.put("errorCounts", result.getErrorCounts());
+    body.put("errorReportUrl", result.getErrorReportPath() != null && result.getBatchId() != null
+        ? "/api/invoices/import-batches/" + result.getBatchId() + "/errors"
+        : null);
+    body.put("batchId", result.getBatchId());
+    body.put("duplicate", result.isDuplicate());
+    return ResponseEntity.ok(body);
+  }
+
+  /** รายการ error ทั้งหมดของการ import (CSV: sheet, line, type, message) */
+  @GetMapping(value = "/import-batches/{id}/errors", produces = "text/csv")
+  public ResponseEntity<Resource> downloadImportErrors(@PathVariable Long id) {
+    // streamed from storage while the response is written, like DocumentController.downloadDocument
+    Resource report = csvImportService.getErrorReport(id);
+    return ResponseEntity.ok()
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=import-" + id + "-errors.csv")
+        .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+        .body(report);
   }
 
   // ---------- Get Current Month Invoices ----------
@@ -283,39 +335,24 @@ public class InvoiceController {
   // ---------- Bulk PDF Generator ----------
   @PostMapping(value = "/bulk-pdf", produces = MediaType.APPLICATION_PDF_VALUE)
   public ResponseEntity<byte[]> getBulkInvoicePdf(@Valid @RequestBody BulkPrintRequest request) {
-    List<byte[]> pdfList = new java.util.ArrayList<>();
-
-    // Get invoice settings once for all PDFs
-    com.devsop.project.apartmentinvoice.entity.InvoiceSettings settings = settingsService.getSettings();
-    String qrCodeFullPath = null;
-    if (settings.getQrCodeImagePath() != null) {
-      qrCodeFullPath = java.nio.file.Paths.get(uploadBaseDir, settings.getQrCodeImagePath())
-        .toAbsolutePath().toString().replace("\\", "/");
-    }
+    List<Invoice> invoices = new java.util.ArrayList<>();
 
     for (Long id : request.getIds()) {
-      try {
-        Invoice invoice = repo.findById(id)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Invoice not found: " + id));
-
-        Map<String, Object> model = new java.util.HashMap<>();
-        model.put("invoice", invoice);
-        model.put("settings", settings);
-        model.put("qrCodeFullPath", qrCodeFullPath);
-
-        byte[] pdf = pdfService.renderTemplateToPdf("invoice", model);
-        pdfList.add(pdf);
-      } catch (Exception e) {
+      Invoice invoice = repo.findById(id).orElse(null);
+      if (invoice == null) {
         // Log error but continue with other invoices
-        System.err.println("Failed to generate PDF for invoice " + id + ": " + e.getMessage());
+        log.warn("Failed to generate PDF for invoice {}: Invoice not found", id);
+        continue;
       }
+      invoices.add(invoice);
     }
 
-    if (pdfList.isEmpty()) {
+    if (invoices.isEmpty()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No valid invoices found to print");
     }
 
-    byte[] mergedPdf = pdfService.mergePdfs(pdfList);
+    // settings/QR are resolved once for the whole batch inside InvoicePdfService
+    byte[] mergedPdf = invoicePdfService.renderInvoices(invoices);
     String filename = "invoices-bulk-" + java.time.LocalDateTime.now().format(
         java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".pdf";
 
@@ -50,7 +50,7 @@ public class InvoiceSettingsController {
   }
 
   /**
-   * Update invoice settings (payment description, interest rate).
+   * Update invoice settings (payment description, interest rate, PromptPay ID).
    * QR code is updated separately via /qr-upload endpoint.
    */
   @PutMapping
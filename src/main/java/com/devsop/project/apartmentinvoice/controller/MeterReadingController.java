@@ -0,0 +1,67 @@
+package com.devsop.project.apartmentinvoice.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.dto.MeterReadingRequest;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.ReadingDelta;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/meter-readings")
+@RequiredArgsConstructor
+public class MeterReadingController {
+
+  private final MeterReadingService meterReadingService;
+
+  /**
+   * บันทึกค่ามิเตอร์หลายรายการในครั้งเดียว (ค่าสะสมหน้ามิเตอร์)
+   * แถวที่ผิด/ซ้ำจะถูกข้ามและรายงานใน errors
+   */
+  @PostMapping("/bulk")
+  public ResponseEntity<?> ingest(@RequestBody List<MeterReadingRequest> readings) {
+    MeterReadingService.IngestResult result = meterReadingService.ingest(readings);
+
+    return ResponseEntity.ok(Map.of(
+      "message", "Meter readings imported",
+      "successCount", result.getSuccessCount(),
+      "failureCount", result.getFailureCount(),
+      "totalProcessed", result.getTotalProcessed(),
+      "errors", result.getErrors()
+    ));
+  }
+
+  /**
+   * ค่ามิเตอร์ของห้องในช่วงวันที่ พร้อมหน่วยที่ใช้ (delta จากค่าก่อนหน้า) สำหรับกราฟการใช้งาน
+   * ตัวอย่าง: GET /api/meter-readings?roomId=1&meterType=ELECTRICITY&from=2025-01-01&to=2025-12-31
+   */
+  @GetMapping
+  public List<ReadingDelta> range(@RequestParam Long roomId,
+                                  @RequestParam(required = false) MeterType meterType,
+                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    if (from.isAfter(to)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+    }
+    List<ReadingDelta> readings = meterReadingService.findDeltas(List.of(roomId), from, to);
+    if (meterType == null) {
+      return readings;
+    }
+    return readings.stream().filter(r -> r.meterType() == meterType).toList();
+  }
+}
@@ -0,0 +1,42 @@
+package com.devsop.project.apartmentinvoice.controller;
+
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.devsop.project.apartmentinvoice.service.OnboardingImportService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/onboarding")
+@RequiredArgsConstructor
+public class OnboardingController {
+
+  private final OnboardingImportService onboardingImportService;
+
+  /**
+   * นำเข้าห้อง + ผู้เช่า + สัญญาเช่าทั้งตึกจากไฟล์เดียว (.csv หรือ .json, ดู OnboardingRow)
+   * แถวที่ผิดจะถูกข้ามและรายงานใน errors ส่วนแถวที่ถูกต้องบันทึกตามปกติ
+   */
+  @PostMapping("/import")
+  public ResponseEntity<?> importFile(@RequestParam("file") MultipartFile file) {
+    OnboardingImportService.OnboardingResult result = onboardingImportService.importFile(file);
+
+    return ResponseEntity.ok(Map.of(
+      "message", "Onboarding import completed",
+      "successCount", result.getSuccessCount(),
+      "failureCount", result.getFailureCount(),
+      "totalProcessed", result.getTotalProcessed(),
+      "roomsCreated", result.getRoomsCreated(),
+      "tenantsCreated", result.getTenantsCreated(),
+      "leasesCreated", result.getLeasesCreated(),
+      "errors", result.getErrors()
+    ));
+  }
+}
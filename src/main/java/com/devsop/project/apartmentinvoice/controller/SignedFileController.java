@@ -0,0 +1,65 @@
+package com.devsop.project.apartmentinvoice.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriUtils;
+
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.LocalUrlSigner;
+import com.devsop.project.apartmentinvoice.service.storage.StorageResource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Serves signed links of the local backend (LocalStorageService.createSignedUrl), the local stand-in
+ * for GCS signed URLs. No login and no database lookup: the HMAC signature is the authorization.
+ * Range requests are answered like /api/documents/{id}/download.
+ */
+@RestController
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SignedFileController {
+
+  private final LocalStorageService localStorageService;
+
+  @GetMapping(LocalUrlSigner.PATH_PREFIX + "**")
+  public ResponseEntity<Resource> download(
+      HttpServletRequest request,
+      @RequestParam("expires") long expires,
+      @RequestParam("type") String type,
+      @RequestParam("disposition") String disposition,
+      @RequestParam("signature") String signature
+  ) {
+    String prefix = request.getContextPath() + LocalUrlSigner.PATH_PREFIX;
+    String filePath = UriUtils.decode(request.getRequestURI().substring(prefix.length()), StandardCharsets.UTF_8);
+
+    if (!localStorageService.verifySignedUrl(filePath, type, disposition, expires, signature)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid or expired link");
+    }
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType(type));
+    headers.set(HttpHeaders.CONTENT_DISPOSITION, disposition);
+    // the browser may keep it as long as the link is valid
+    long remaining = Math.max(0, expires - System.currentTimeMillis() / 1000);
+    headers.setCacheControl(CacheControl.maxAge(Duration.ofSeconds(remaining)).cachePrivate());
+
+    String fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
+    Resource content = new StorageResource(
+        localStorageService, filePath, localStorageService.getFileSize(filePath), fileName);
+    return new ResponseEntity<>(content, headers, HttpStatus.OK);
+  }
+}
@@ -0,0 +1,7 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+/** Number of documents attached to one entity (attachment badges) */
+public record EntityDocumentCount(
+    Long entityId,
+    Long count
+) {}
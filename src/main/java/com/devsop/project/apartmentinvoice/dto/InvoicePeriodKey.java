@@ -0,0 +1,8 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+/** (room, billing period) of an invoice; one invoice per room per month */
+public record InvoicePeriodKey(
+    Long roomId,
+    Integer billingYear,
+    Integer billingMonth
+) {}
@@ -0,0 +1,24 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One meter reading for bulk ingest (POST /api/meter-readings/bulk).
+ * readingValue = ค่าที่อ่านได้จากหน้ามิเตอร์ (สะสม) ไม่ใช่จำนวนหน่วยที่ใช้
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterReadingRequest {
+  private Integer roomNumber;
+  private MeterType meterType;
+  private LocalDate readingDate;
+  private BigDecimal readingValue;
+}
@@ -0,0 +1,37 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of a bulk onboarding file: a room, optionally with its tenant and lease.
+ * CSV columns (same order): roomNumber, commonFeeBaht, garbageFeeBaht, tenantName, tenantPhone,
+ * tenantLineId, leaseStartDate, leaseEndDate, monthlyRent, depositBaht
+ * JSON: an array of objects with these property names (dates as yyyy-MM-dd)
+ *
+ * - ไม่มี tenantName = ห้องว่าง (FREE)
+ * - มี tenantName = สร้าง lease ACTIVE ให้ด้วย (leaseStartDate ไม่ส่ง = วันนี้)
+ * - ห้องที่มีอยู่แล้วใช้ได้ ถ้าแถวนั้นมีผู้เช่าและห้องยังไม่มี lease ACTIVE
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OnboardingRow {
+
+  private Integer roomNumber;
+  private BigDecimal commonFeeBaht;
+  private BigDecimal garbageFeeBaht;
+
+  private String tenantName;
+  private String tenantPhone;
+  private String tenantLineId;
+
+  private LocalDate leaseStartDate;
+  private LocalDate leaseEndDate;
+  private BigDecimal monthlyRent;
+  private BigDecimal depositBaht;
+}
@@ -0,0 +1,7 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+/** Storage path referenced by a row, with the row id for keyset paging (orphan sweep) */
+public record StoredPathRef(
+    Long id,
+    String path
+) {}
@@ -0,0 +1,20 @@
+package com.devsop.project.apartmentinvoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Start of a chunked upload (POST /api/documents/uploads).
+ * totalSize = ขนาดไฟล์ทั้งไฟล์ (bytes), server เป็นคนกำหนดขนาด part
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadInitRequest {
+  private String fileName;
+  private String mimeType;
+  private Long totalSize;
+  private String entityType;
+  private Long entityId;
+}
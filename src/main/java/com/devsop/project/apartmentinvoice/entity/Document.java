@@ -2,14 +2,21 @@ package com.devsop.project.apartmentinvoice.entity;
 
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -19,8 +26,12 @@ import lombok.Setter;
 /**
  * Stores metadata for uploaded documents (contracts, receipts, maintenance reports).
  * Files are stored on filesystem, this entity tracks file paths and metadata.
+ *
+ * Looked up by owning entity (entity_type, entity_id), one entity or many at once (IN list), on the
+ * composite index of those columns.
  */
 @Entity
+@Table(indexes = @Index(name = "ix_document_entity", columnList = "entity_type, entity_id"))
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
 public class Document {
@@ -55,11 +66,20 @@ public class Document {
   /**
    * File path on disk (relative to upload directory).
    * Example: "lease/123/contract_20241028.pdf"
+   * For documents stored as a blob this is the blob's storagePath.
    */
   @Column(length = 500, nullable = false)
   @NotNull
   private String filePath;
 
+  /**
+   * Shared content (null for documents uploaded before content-addressable storage).
+   */
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "blob_id")
+  @JsonIgnore
+  private DocumentBlob blob;
+
   /**
    * File size in bytes.
    */
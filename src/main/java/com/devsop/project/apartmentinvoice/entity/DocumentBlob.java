@@ -0,0 +1,66 @@
+package com.devsop.project.apartmentinvoice.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Stored file content, keyed by its SHA-256 (content-addressable).
+ * Documents with identical bytes point at the same blob; refCount = number of such documents,
+ * the file is removed from storage when the last one is deleted.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class DocumentBlob {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /**
+   * Hex SHA-256 of the content (unique: one stored copy per distinct content).
+   */
+  @Column(length = 64, nullable = false, unique = true)
+  @NotNull
+  private String contentHash;
+
+  /**
+   * Storage path of the content (e.g. "blobs/ab/ab12...ef_1a2b3c4d.pdf").
+   */
+  @Column(length = 500, nullable = false)
+  @NotNull
+  private String storagePath;
+
+  @Column
+  private Long fileSize;
+
+  @Column(length = 100)
+  private String mimeType;
+
+  /**
+   * Number of documents pointing at this blob (changed only by atomic UPDATEs, see DocumentBlobRepository).
+   */
+  @Column(nullable = false)
+  private Integer refCount = 1;
+
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) {
+      createdAt = LocalDateTime.now();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.devsop.project.apartmentinvoice.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One CSV invoice import, keyed by the SHA-256 of the uploaded file.
+ * Re-uploading a byte-identical file returns the stored outcome instead of reprocessing every row.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class ImportBatch {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /**
+   * Hex SHA-256 of the file content (unique: one batch per distinct file).
+   */
+  @Column(length = 64, nullable = false, unique = true)
+  @NotNull
+  private String contentHash;
+
+  /**
+   * Original filename uploaded by user.
+   */
+  @Column
+  private String fileName;
+
+  /**
+   * Storage path of the backup copy (e.g. "imports/csv/20250101-120000_ab12cd34_meters.csv").
+   */
+  @Column(length = 500)
+  private String storagePath;
+
+  @Column
+  private Long fileSize;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  @NotNull
+  private Status status = Status.PROCESSING;
+
+  @Column
+  private Integer successCount;
+
+  @Column
+  private Integer failureCount;
+
+  /**
+   * First error lines of the import ("Line N: message"), one per line (capped, see errorReportPath).
+   */
+  @Column(columnDefinition = "TEXT")
+  private String errors;
+
+  /**
+   * Error count per type ("ROOM_NOT_FOUND=3"), one per line.
+   */
+  @Column(length = 1000)
+  private String errorCounts;
+
+  /**
+   * Storage path of the full per-line error report CSV (null when the import had no errors).
+   */
+  @Column(length = 500)
+  private String errorReportPath;
+
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+
+  /**
+   * Start of the latest import run (PROCESSING since then; a run older than the timeout is presumed dead).
+   */
+  @Column
+  private LocalDateTime startedAt;
+
+  @Column
+  private LocalDateTime completedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) {
+      createdAt = LocalDateTime.now();
+    }
+  }
+
+  public enum Status {
+    PROCESSING, // กำลัง import
+    COMPLETED,  // import เสร็จแล้ว (อาจมีบางแถว error)
+    FAILED      // import ล้มทั้งไฟล์ (เช่น อ่านไฟล์ไม่ได้) -> อัปโหลดซ้ำได้
+  }
+}
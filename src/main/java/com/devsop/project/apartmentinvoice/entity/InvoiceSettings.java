@@ -18,7 +18,7 @@ import lombok.Setter;
 /**
  * Singleton entity for apartment-wide invoice settings.
  * Only one row should exist (id=1).
- * Contains payment information displayed on invoices: QR code, bank details, interest rate.
+ * Contains payment information displayed on invoices: QR code / PromptPay ID, bank details, interest rate.
  */
 @Entity
 @Getter @Setter
@@ -43,6 +43,15 @@ public class InvoiceSettings {
   @Column(length = 500)
   private String qrCodeImagePath;
 
+  /**
+   * PromptPay ID (mobile number, national/tax ID or e-wallet ID).
+   * When set, each unpaid invoice gets its own PromptPay QR carrying the amount due
+   * instead of the static QR image above.
+   * Example: "0812345678"
+   */
+  @Column(length = 20)
+  private String promptPayId;
+
   /**
    * Monthly interest rate for late payments (percentage).
    * Example: 2.00 = 2% per month
@@ -0,0 +1,66 @@
+package com.devsop.project.apartmentinvoice.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Cumulative meter value read on a date (what is printed on the meter, not units used).
+ * Units for a billing month are derived from consecutive readings (see MeterReadingService).
+ *
+ * One row per (room, meter type, reading date); the unique index on those columns, in that order,
+ * serves both "previous reading" lookups and date-range scans for usage charts.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(
+    name = "ux_meter_reading_room_type_date",
+    columnNames = {"room_id", "meter_type", "reading_date"}))
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class MeterReading {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(optional = false, fetch = FetchType.LAZY)
+  @NotNull
+  @JsonIgnore
+  private Room room;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 12, nullable = false)
+  @NotNull
+  private MeterType meterType;
+
+  @Column(nullable = false)
+  @NotNull
+  private LocalDate readingDate;
+
+  @Column(precision = 12, scale = 2, nullable = false)
+  @NotNull
+  private BigDecimal readingValue;
+
+  public enum MeterType {
+    ELECTRICITY, // มิเตอร์ไฟฟ้า (kWh)
+    WATER        // มิเตอร์น้ำ (m³)
+  }
+}
@@ -0,0 +1,69 @@
+package com.devsop.project.apartmentinvoice.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One received part of a chunked upload (stored as its own file until the commit joins them).
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(
+    name = "ux_upload_part_upload_part_number",
+    columnNames = {"upload_id", "part_number"}))
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class UploadPart {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "upload_id", length = 36, nullable = false)
+  @NotNull
+  private String uploadId;
+
+  /**
+   * 1-based position of the part in the file.
+   */
+  @Column(name = "part_number", nullable = false)
+  @NotNull
+  private Integer partNumber;
+
+  @Column(nullable = false)
+  @NotNull
+  private Long size;
+
+  /**
+   * Hex SHA-256 of the part, checked against the client's value when the part was received.
+   */
+  @Column(length = 64, nullable = false)
+  @NotNull
+  private String sha256;
+
+  @Column(length = 500, nullable = false)
+  @NotNull
+  private String storagePath;
+
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) {
+      createdAt = LocalDateTime.now();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.devsop.project.apartmentinvoice.entity;
+
+import java.time.LocalDateTime;
+
+import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A chunked (resumable) document upload: initiated with the file's size and type, filled part by part,
+ * and turned into a Document on commit. Parts are tracked in UploadPart.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class UploadSession {
+
+  /**
+   * Random UUID handed to the client (upload id in the URLs).
+   */
+  @Id
+  @Column(length = 36)
+  private String id;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  @NotNull
+  private EntityType entityType;
+
+  @Column(nullable = false)
+  @NotNull
+  private Long entityId;
+
+  @Column(nullable = false)
+  @NotNull
+  private String fileName;
+
+  @Column(length = 100, nullable = false)
+  @NotNull
+  private String mimeType;
+
+  /**
+   * Declared size of the whole file in bytes.
+   */
+  @Column(nullable = false)
+  @NotNull
+  private Long totalSize;
+
+  /**
+   * Size of every part except the last one.
+   */
+  @Column(nullable = false)
+  @NotNull
+  private Long partSize;
+
+  @Column
+  private String uploadedBy;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  @NotNull
+  private Status status = Status.OPEN;
+
+  /**
+   * Document created by the commit (repeated commits return it).
+   */
+  @Column
+  private Long documentId;
+
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+
+  @Column
+  private LocalDateTime completedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) {
+      createdAt = LocalDateTime.now();
+    }
+  }
+
+  public int partCount() {
+    return (int) ((totalSize + partSize - 1) / partSize);
+  }
+
+  public enum Status {
+    OPEN,       // กำลังอัปโหลด part
+    COMMITTING, // กำลังรวม part (กัน commit ซ้อนกัน)
+    COMMITTED,  // รวม part เป็น document แล้ว
+    ABORTED     // ยกเลิก, part ถูกลบ
+  }
+}
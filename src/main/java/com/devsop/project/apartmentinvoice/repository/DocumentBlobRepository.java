@@ -0,0 +1,56 @@
+package com.devsop.project.apartmentinvoice.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
+import com.devsop.project.apartmentinvoice.entity.DocumentBlob;
+
+/**
+ * Repository for DocumentBlob entity.
+ * Reference counts are changed with single UPDATE statements so concurrent uploads/deletes of
+ * the same content never lose an increment.
+ */
+public interface DocumentBlobRepository extends JpaRepository<DocumentBlob, Long> {
+
+  /**
+   * Find the blob of a content by its SHA-256 (unique index lookup).
+   */
+  Optional<DocumentBlob> findByContentHash(String contentHash);
+
+  /**
+   * Add one reference. Returns 0 when the blob row is already gone (deleted by its last release).
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount + 1 WHERE b.id = :id")
+  int incrementRefCount(@Param("id") Long id);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount - 1 WHERE b.id = :id AND b.refCount > 0")
+  int decrementRefCount(@Param("id") Long id);
+
+  /**
+   * Delete the blob row if nothing references it any more. Returns 1 when this call removed it
+   * (the caller then owns deleting the stored file), 0 when it was re-referenced meanwhile.
+   */
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM DocumentBlob b WHERE b.id = :id AND b.refCount <= 0")
+  int deleteIfUnreferenced(@Param("id") Long id);
+
+  /**
+   * Storage paths only, page by page after a row id (orphan sweep, see OrphanFileSweeper).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.StoredPathRef(b.id, b.storagePath) FROM DocumentBlob b " +
+         "WHERE b.id > :afterId ORDER BY b.id")
+  List<StoredPathRef> findStoragePaths(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -1,9 +1,15 @@
 package com.devsop.project.apartmentinvoice.repository;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.devsop.project.apartmentinvoice.dto.EntityDocumentCount;
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
 import com.devsop.project.apartmentinvoice.entity.Document;
 import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
 
@@ -22,4 +28,27 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
    * Find all documents of a specific type (e.g., all LEASE documents).
    */
   List<Document> findByEntityType(EntityType entityType);
+
+  /**
+   * Documents of many entities of one type in one query (IN on the (entity_type, entity_id) index).
+   */
+  List<Document> findByEntityTypeAndEntityIdInOrderByEntityIdAscIdAsc(
+    EntityType entityType, Collection<Long> entityIds);
+
+  /**
+   * Document count per entity, for the entities that have any (answered from the index alone).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.EntityDocumentCount(d.entityId, COUNT(d)) " +
+         "FROM Document d WHERE d.entityType = :entityType AND d.entityId IN :entityIds " +
+         "GROUP BY d.entityId")
+  List<EntityDocumentCount> countByEntityTypeAndEntityIdIn(
+    @Param("entityType") EntityType entityType,
+    @Param("entityIds") Collection<Long> entityIds);
+
+  /**
+   * Storage paths only, page by page after a row id (orphan sweep, see OrphanFileSweeper).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.StoredPathRef(d.id, d.filePath) FROM Document d " +
+         "WHERE d.id > :afterId ORDER BY d.id")
+  List<StoredPathRef> findFilePaths(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,51 @@
+package com.devsop.project.apartmentinvoice.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
+import com.devsop.project.apartmentinvoice.entity.ImportBatch;
+
+/**
+ * Repository for ImportBatch entity.
+ */
+public interface ImportBatchRepository extends JpaRepository<ImportBatch, Long> {
+
+  /**
+   * Find the import of a file by its SHA-256 (unique index lookup).
+   */
+  Optional<ImportBatch> findByContentHash(String contentHash);
+
+  /**
+   * Take over an import left PROCESSING since before cutoff (the server running it died).
+   * Returns 1 for the single caller that took it over.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("UPDATE ImportBatch b SET b.startedAt = :now WHERE b.id = :id " +
+         "AND b.status = com.devsop.project.apartmentinvoice.entity.ImportBatch.Status.PROCESSING " +
+         "AND COALESCE(b.startedAt, b.createdAt) < :cutoff")
+  int reclaimStale(@Param("id") Long id, @Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+  /**
+   * Stored CSV backups, page by page after a row id (orphan sweep, see OrphanFileSweeper).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.StoredPathRef(b.id, b.storagePath) FROM ImportBatch b " +
+         "WHERE b.id > :afterId AND b.storagePath IS NOT NULL ORDER BY b.id")
+  List<StoredPathRef> findStoragePaths(@Param("afterId") Long afterId, Pageable pageable);
+
+  /**
+   * Stored error reports, page by page after a row id (orphan sweep, see OrphanFileSweeper).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.StoredPathRef(b.id, b.errorReportPath) FROM ImportBatch b " +
+         "WHERE b.id > :afterId AND b.errorReportPath IS NOT NULL ORDER BY b.id")
+  List<StoredPathRef> findErrorReportPaths(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -1,5 +1,6 @@
 package com.devsop.project.apartmentinvoice.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -7,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import com.devsop.project.apartmentinvoice.dto.InvoicePeriodKey;
 import com.devsop.project.apartmentinvoice.entity.Invoice;
 import com.devsop.project.apartmentinvoice.entity.Invoice.Status;
 
@@ -31,4 +33,29 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     @Param("month") Integer month,
     @Param("paidStatus") Status paidStatus
   );
+
+  // ---------- set-oriented CSV import (one query per file instead of per row) ----------
+
+  /** (room, year, month) of existing invoices, for duplicate detection */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.InvoicePeriodKey(i.room.id, i.billingYear, i.billingMonth) " +
+         "FROM Invoice i WHERE i.room.id IN :roomIds AND i.billingYear IN :years")
+  List<InvoicePeriodKey> findPeriodKeysByRoomIdsAndYears(
+    @Param("roomIds") Collection<Long> roomIds,
+    @Param("years") Collection<Integer> years
+  );
+
+  /**
+   * Unpaid invoices of many rooms before the given (latest) period.
+   * Callers narrow down per row to the periods before each new invoice.
+   */
+  @Query("SELECT i FROM Invoice i WHERE i.room.id IN :roomIds " +
+         "AND i.status <> :paidStatus " +
+         "AND (i.billingYear < :year OR (i.billingYear = :year AND i.billingMonth < :month)) " +
+         "ORDER BY i.billingYear, i.billingMonth")
+  List<Invoice> findUnpaidInvoicesByRoomsBeforePeriod(
+    @Param("roomIds") Collection<Long> roomIds,
+    @Param("year") Integer year,
+    @Param("month") Integer month,
+    @Param("paidStatus") Status paidStatus
+  );
 }
@@ -1,6 +1,7 @@
 package com.devsop.project.apartmentinvoice.repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -59,6 +60,20 @@ public interface LeaseRepository extends JpaRepository<Lease, Long> {
          """)
   Optional<Lease> findActiveLeaseByRoomOnDate(Long roomId, LocalDate onDate);
 
+  /** ACTIVE leases of many rooms overlapping [from, to] (ใช้กับ CSV import ทั้งไฟล์ในครั้งเดียว) */
+  @Query("""
+         select l
+         from Lease l
+         join fetch l.room r
+         join fetch l.tenant t
+         where r.id in :roomIds
+           and l.startDate <= :to
+           and (l.endDate is null or l.endDate >= :from)
+           and l.status = com.devsop.project.apartmentinvoice.entity.Lease.Status.ACTIVE
+         order by l.startDate desc
+         """)
+  List<Lease> findActiveLeasesByRoomsBetween(Collection<Long> roomIds, LocalDate from, LocalDate to);
+
   @Query("""
          select l
          from Lease l
@@ -85,6 +100,7 @@ public interface LeaseRepository extends JpaRepository<Lease, Long> {
   List<Lease> findByStatus(Status status);
   List<Lease> findByRoom_IdAndStatus(Long roomId, Status status);
   List<Lease> findByTenant_IdAndStatus(Long tenantId, Status status);
+  List<Lease> findByRoom_IdInAndStatus(Collection<Long> roomIds, Status status);
 
   List<Lease> findByRoom_IdAndStartDateLessThanEqualAndEndDateGreaterThanEqual(
       Long roomId, LocalDate date1, LocalDate date2);
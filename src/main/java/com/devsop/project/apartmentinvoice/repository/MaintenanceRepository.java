@@ -23,6 +23,14 @@ public interface MaintenanceRepository extends JpaRepository<Maintenance, Long>
       LocalDate end
   );
 
+  /** งานที่เสร็จแล้วของหลายห้องในช่วงวันที่ (CSV import: รวมค่าซ่อมต่อห้อง/เดือนในหน่วยความจำ) */
+  List<Maintenance> findByRoom_IdInAndStatusAndCompletedDateBetween(
+      Collection<Long> roomIds,
+      Maintenance.Status status,
+      LocalDate start,
+      LocalDate end
+  );
+
   // ---------- เพิ่มสำหรับ Dashboard / สรุปผล ----------
   /** นับจำนวนงานตามสถานะทั้งหมดในระบบ (เช่น PLANNED / IN_PROGRESS / COMPLETED / CANCELED) */
   long countByStatus(Maintenance.Status status);
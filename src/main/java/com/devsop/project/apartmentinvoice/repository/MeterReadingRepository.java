@@ -0,0 +1,12 @@
+package com.devsop.project.apartmentinvoice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.devsop.project.apartmentinvoice.entity.MeterReading;
+
+/**
+ * Repository for MeterReading entity.
+ * Bulk inserts and windowed delta/range queries (previous reading per row) live in MeterReadingService.
+ */
+public interface MeterReadingRepository extends JpaRepository<MeterReading, Long> {
+}
@@ -1,5 +1,7 @@
 package com.devsop.project.apartmentinvoice.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,4 +11,5 @@ import com.devsop.project.apartmentinvoice.entity.Room;
 public interface RoomRepository extends JpaRepository<Room, Long> {
     Optional<Room> findByNumber(Integer number);
     boolean existsByNumber(Integer number);
+    List<Room> findByNumberIn(Collection<Integer> numbers);
 }
@@ -1,7 +1,12 @@
 package com.devsop.project.apartmentinvoice.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.devsop.project.apartmentinvoice.entity.Tenant;
 
-public interface TenantRepository extends JpaRepository<Tenant, Long> {}
+public interface TenantRepository extends JpaRepository<Tenant, Long> {
+  List<Tenant> findByNameIn(Collection<String> names);
+}
@@ -0,0 +1,40 @@
+package com.devsop.project.apartmentinvoice.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
+import com.devsop.project.apartmentinvoice.entity.UploadPart;
+import com.devsop.project.apartmentinvoice.entity.UploadSession.Status;
+
+/**
+ * Repository for UploadPart entity.
+ */
+public interface UploadPartRepository extends JpaRepository<UploadPart, Long> {
+
+  /**
+   * Received parts of an upload in file order.
+   */
+  List<UploadPart> findByUploadIdOrderByPartNumber(String uploadId);
+
+  Optional<UploadPart> findByUploadIdAndPartNumber(String uploadId, Integer partNumber);
+
+  /**
+   * Storage paths of parts of uploads in the given statuses, page by page after a row id
+   * (orphan sweep, see OrphanFileSweeper).
+   */
+  @Query("SELECT new com.devsop.project.apartmentinvoice.dto.StoredPathRef(p.id, p.storagePath) FROM UploadPart p " +
+         "WHERE p.id > :afterId " +
+         "AND EXISTS (SELECT s.id FROM UploadSession s WHERE s.id = p.uploadId AND s.status IN :statuses) " +
+         "ORDER BY p.id")
+  List<StoredPathRef> findStoragePaths(
+    @Param("afterId") Long afterId,
+    @Param("statuses") Collection<Status> statuses,
+    Pageable pageable);
+}
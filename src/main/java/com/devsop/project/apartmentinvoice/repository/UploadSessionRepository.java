@@ -0,0 +1,35 @@
+package com.devsop.project.apartmentinvoice.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.entity.UploadSession.Status;
+
+/**
+ * Repository for UploadSession entity.
+ */
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+  /**
+   * Move an upload from one status to another if it is still in the first one.
+   * Returns 1 for the single caller that made the change (e.g. the one commit that may join the parts).
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+  int changeStatus(@Param("id") String id, @Param("from") Status from, @Param("to") Status to);
+
+  /**
+   * Uploads in a status that neither started nor received a part since cutoff (abandoned uploads).
+   */
+  @Query("SELECT s.id FROM UploadSession s WHERE s.status = :status AND s.createdAt < :cutoff " +
+         "AND NOT EXISTS (SELECT p.id FROM UploadPart p WHERE p.uploadId = s.id AND p.createdAt >= :cutoff)")
+  List<String> findIdleIds(@Param("status") Status status, @Param("cutoff") LocalDateTime cutoff);
+}
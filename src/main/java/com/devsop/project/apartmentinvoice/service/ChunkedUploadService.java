@@ -0,0 +1,407 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.entity.Document;
+import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+import com.devsop.project.apartmentinvoice.entity.UploadPart;
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.repository.UploadPartRepository;
+import com.devsop.project.apartmentinvoice.repository.UploadSessionRepository;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+import com.devsop.project.apartmentinvoice.service.storage.StoredFilePage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resumable chunked document uploads: initiate -> PUT parts (any order, retried freely) -> commit.
+ *
+ * Each part is streamed from the request body straight to storage (uploads/<id>/...) while its SHA-256
+ * is computed, then checked against the hash sent by the client; a bad part is dropped and can be sent
+ * again. Memory per upload stays at one copy buffer whatever the file size. The commit joins the parts
+ * in storage (StorageService.compose) into a content-addressed blob, or only references the blob when
+ * the same content is already stored (see DocumentService.createDocument).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+  private static final String PART_PREFIX = "uploads/";
+  private static final int DELETE_PAGE_SIZE = 1000;
+
+  private final UploadSessionRepository uploadSessionRepository;
+  private final UploadPartRepository uploadPartRepository;
+  private final DocumentService documentService;
+  private final StorageService storageService;
+
+  @Value("${document.upload.part-size-mb:8}")
+  private long partSizeMb;
+
+  @Value("${document.upload.max-size-mb:200}")
+  private long maxSizeMb;
+
+  /**
+   * Start an upload. The server decides the part size: every part except the last must have exactly
+   * that many bytes.
+   */
+  public UploadSession initiate(
+      String fileName,
+      String mimeType,
+      long totalSize,
+      EntityType entityType,
+      Long entityId,
+      String uploadedBy) {
+    if (fileName == null || fileName.isBlank()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fileName is required");
+    }
+    if (entityId == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "entityId is required");
+    }
+    if (totalSize <= 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "totalSize must be positive");
+    }
+    if (totalSize > maxSizeMb * 1024 * 1024) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "File size exceeds maximum limit of " + maxSizeMb + "MB");
+    }
+    documentService.checkAllowedType(mimeType);
+
+    UploadSession session = new UploadSession();
+    session.setId(UUID.randomUUID().toString());
+    session.setFileName(fileName);
+    session.setMimeType(mimeType);
+    session.setTotalSize(totalSize);
+    session.setPartSize(partSizeMb * 1024 * 1024);
+    session.setEntityType(entityType);
+    session.setEntityId(entityId);
+    session.setUploadedBy(uploadedBy);
+    session.setStatus(UploadSession.Status.OPEN);
+    return uploadSessionRepository.save(session);
+  }
+
+  /**
+   * Store one part. The body is read once, straight into storage; the part is kept only if its
+   * size fits the session and its SHA-256 equals expectedSha256 (hex). Sending a part again
+   * replaces it (retry after a dropped connection); the replaced copy stays in storage until the
+   * upload is committed, aborted or expired, because a commit that already read the part list may
+   * still be joining it.
+   */
+  public UploadPart uploadPart(String uploadId, int partNumber, String expectedSha256, InputStream body) {
+    UploadSession session = getOpenSession(uploadId);
+    int partCount = session.partCount();
+    if (partNumber < 1 || partNumber > partCount) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "partNumber must be between 1 and " + partCount);
+    }
+    if (expectedSha256 == null || !expectedSha256.matches("[0-9a-fA-F]{64}")) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "X-Content-SHA256 header with the hex SHA-256 of the part is required");
+    }
+    long expectedSize = partNumber < partCount
+        ? session.getPartSize()
+        : session.getTotalSize() - (long) (partCount - 1) * session.getPartSize();
+
+    // a new path per attempt, under the upload's prefix: a retry never overwrites the file a concurrent
+    // commit may be reading, and deleteParts finds every attempt by listing the prefix
+    String path = String.format("%s%s/%05d-%s", PART_PREFIX, uploadId, partNumber,
+        UUID.randomUUID().toString().substring(0, 8));
+    MessageDigest digest = newSha256();
+    CountingInputStream counted = new CountingInputStream(new DigestInputStream(body, digest), expectedSize);
+    try {
+      storageService.uploadFile(counted, path.substring(path.lastIndexOf('/') + 1), "application/octet-stream", path);
+    } catch (RuntimeException e) {
+      deleteQuietly(path);
+      if (counted.tooLarge) {
+        throw new ResponseStatusException(
+            HttpStatus.BAD_REQUEST,
+            "Part " + partNumber + " is larger than " + expectedSize + " bytes");
+      }
+      throw e;
+    }
+
+    String actualSha256 = HexFormat.of().formatHex(digest.digest());
+    if (counted.count != expectedSize) {
+      deleteQuietly(path);
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "Part " + partNumber + " must be " + expectedSize + " bytes, received " + counted.count);
+    }
+    if (!actualSha256.equalsIgnoreCase(expectedSha256)) {
+      deleteQuietly(path);
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "Part " + partNumber + " SHA-256 mismatch (received " + actualSha256 + ")");
+    }
+
+    UploadPart part = uploadPartRepository.findByUploadIdAndPartNumber(uploadId, partNumber).orElse(null);
+    if (part == null) {
+      part = new UploadPart();
+      part.setUploadId(uploadId);
+      part.setPartNumber(partNumber);
+    }
+    part.setSize(counted.count);
+    part.setSha256(actualSha256);
+    part.setStoragePath(path);
+    try {
+      part = uploadPartRepository.saveAndFlush(part);
+    } catch (DataIntegrityViolationException e) {
+      // the same part sent twice at the same time: the other request's copy is kept
+      deleteQuietly(path);
+      throw new ResponseStatusException(
+          HttpStatus.CONFLICT,
+          "Part " + partNumber + " is being uploaded by another request");
+    }
+    return part;
+  }
+
+  /**
+   * Upload by id (404 if unknown).
+   */
+  public UploadSession getSession(String uploadId) {
+    return uploadSessionRepository.findById(uploadId)
+        .orElseThrow(() -> new ResponseStatusException(
+            HttpStatus.NOT_FOUND,
+            "Upload not found: " + uploadId));
+  }
+
+  public List<UploadPart> getParts(String uploadId) {
+    return uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId);
+  }
+
+  /**
+   * Join the parts into the document. Committing a committed upload returns the same document.
+   */
+  public Document commit(String uploadId) {
+    UploadSession session = getSession(uploadId);
+    if (session.getStatus() == UploadSession.Status.COMMITTED) {
+      return documentService.getDocumentById(session.getDocumentId());
+    }
+    List<UploadPart> parts = uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId);
+    List<Integer> missing = missingParts(session, parts);
+    if (!missing.isEmpty()) {
+      throw new ResponseStatusException(
+          HttpStatus.CONFLICT,
+          "Missing parts: " + missing);
+    }
+    // one commit at a time; parts can no longer be replaced from here on
+    if (uploadSessionRepository.changeStatus(uploadId,
+        UploadSession.Status.OPEN, UploadSession.Status.COMMITTING) != 1) {
+      throw new ResponseStatusException(
+          HttpStatus.CONFLICT,
+          "Upload is " + getSession(uploadId).getStatus().name().toLowerCase(Locale.ROOT));
+    }
+
+    List<String> partPaths = parts.stream().map(UploadPart::getStoragePath).toList();
+    Document document;
+    try {
+      String contentHash = sha256(partPaths);
+      document = documentService.createDocument(
+          session.getEntityType(),
+          session.getEntityId(),
+          session.getFileName(),
+          session.getMimeType(),
+          session.getTotalSize(),
+          session.getUploadedBy(),
+          contentHash,
+          (fileName, filePath) -> storageService.compose(partPaths, session.getMimeType(), filePath));
+    } catch (IOException | RuntimeException e) {
+      uploadSessionRepository.changeStatus(uploadId, UploadSession.Status.COMMITTING, UploadSession.Status.OPEN);
+      if (e instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to commit upload: " + e.getMessage(),
+          e);
+    }
+
+    session.setStatus(UploadSession.Status.COMMITTED);
+    session.setDocumentId(document.getId());
+    session.setCompletedAt(LocalDateTime.now());
+    uploadSessionRepository.save(session);
+    deleteParts(uploadId, parts);
+    return document;
+  }
+
+  /**
+   * Cancel an upload and delete its parts.
+   */
+  public void abort(String uploadId) {
+    UploadSession session = getOpenSession(uploadId);
+    deleteParts(uploadId, uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId));
+    session.setStatus(UploadSession.Status.ABORTED);
+    session.setCompletedAt(LocalDateTime.now());
+    uploadSessionRepository.save(session);
+  }
+
+  /**
+   * Abort uploads left open with no new part for maxIdle (client gone) and delete their parts.
+   * Called by the orphan sweep (see OrphanFileSweeper). Returns the number of uploads expired.
+   */
+  public int expireIdleUploads(Duration maxIdle) {
+    LocalDateTime cutoff = LocalDateTime.now().minus(maxIdle);
+    int expired = 0;
+    for (String uploadId : uploadSessionRepository.findIdleIds(UploadSession.Status.OPEN, cutoff)) {
+      // a part or commit arriving right now wins: only an upload still OPEN is aborted
+      if (uploadSessionRepository.changeStatus(uploadId,
+          UploadSession.Status.OPEN, UploadSession.Status.ABORTED) != 1) {
+        continue;
+      }
+      deleteParts(uploadId, uploadPartRepository.findByUploadIdOrderByPartNumber(uploadId));
+      uploadSessionRepository.findById(uploadId).ifPresent(session -> {
+        session.setCompletedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+      });
+      expired++;
+    }
+    if (expired > 0) {
+      log.info("Expired {} upload(s) idle for more than {}", expired, maxIdle);
+    }
+    return expired;
+  }
+
+  /** Part numbers not received yet, in order */
+  public static List<Integer> missingParts(UploadSession session, List<UploadPart> parts) {
+    boolean[] received = new boolean[session.partCount() + 1];
+    for (UploadPart part : parts) {
+      if (part.getPartNumber() >= 1 && part.getPartNumber() < received.length) {
+        received[part.getPartNumber()] = true;
+      }
+    }
+    List<Integer> missing = new ArrayList<>();
+    for (int i = 1; i < received.length; i++) {
+      if (!received[i]) {
+        missing.add(i);
+      }
+    }
+    return missing;
+  }
+
+  private UploadSession getOpenSession(String uploadId) {
+    UploadSession session = getSession(uploadId);
+    if (session.getStatus() != UploadSession.Status.OPEN) {
+      throw new ResponseStatusException(
+          HttpStatus.CONFLICT,
+          "Upload is " + session.getStatus().name().toLowerCase(Locale.ROOT));
+    }
+    return session;
+  }
+
+  /**
+   * SHA-256 of the whole file, read part by part from storage (the per-part hashes cannot be combined,
+   * and parts may have arrived in any order or on other instances).
+   */
+  private String sha256(List<String> partPaths) throws IOException {
+    MessageDigest digest = newSha256();
+    for (String path : partPaths) {
+      try (InputStream in = new DigestInputStream(storageService.openStream(path), digest)) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Delete every file of an upload: the current parts and the copies replaced by retries, found by
+   * listing the upload's prefix. Files that cannot be deleted are left to the orphan sweep.
+   */
+  private void deleteParts(String uploadId, List<UploadPart> parts) {
+    String prefix = PART_PREFIX + uploadId + "/";
+    try {
+      StoredFilePage page = storageService.listFiles(prefix, null, DELETE_PAGE_SIZE);
+      while (true) {
+        List<String> paths = page.files().stream().map(StoredFilePage.StoredFile::path).toList();
+        if (!paths.isEmpty()) {
+          for (String failed : storageService.deleteFiles(paths)) {
+            log.warn("Could not delete upload part {}", failed);
+          }
+        }
+        if (!page.hasNext()) {
+          break;
+        }
+        page = storageService.listFiles(prefix, page.nextPageToken(), DELETE_PAGE_SIZE);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not delete the parts of upload {}: {}", uploadId, e.getMessage());
+    }
+    uploadPartRepository.deleteAll(parts);
+  }
+
+  private void deleteQuietly(String path) {
+    try {
+      storageService.deleteFile(path);
+    } catch (RuntimeException e) {
+      log.warn("Could not delete upload part {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /** Counts the bytes read and fails as soon as the body goes past the expected part size */
+  private static final class CountingInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+    private boolean tooLarge;
+
+    CountingInputStream(InputStream in, long limit) {
+      super(in);
+      this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        advance(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        advance(n);
+      }
+      return n;
+    }
+
+    private void advance(long n) throws IOException {
+      count += n;
+      if (count > limit) {
+        tooLarge = true;
+        throw new IOException("Part is larger than " + limit + " bytes");
+      }
+    }
+  }
+}
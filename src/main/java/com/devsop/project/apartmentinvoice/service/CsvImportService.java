@@ -1,41 +1,111 @@
 package com.devsop.project.apartmentinvoice.service;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.devsop.project.apartmentinvoice.dto.InvoicePeriodKey;
+import com.devsop.project.apartmentinvoice.entity.ImportBatch;
 import com.devsop.project.apartmentinvoice.entity.Invoice;
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
 import com.devsop.project.apartmentinvoice.entity.Lease;
 import com.devsop.project.apartmentinvoice.entity.Maintenance;
 import com.devsop.project.apartmentinvoice.entity.Maintenance.Status;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
 import com.devsop.project.apartmentinvoice.entity.Room;
 import com.devsop.project.apartmentinvoice.metrics.InvoiceMetrics;
+import com.devsop.project.apartmentinvoice.repository.ImportBatchRepository;
 import com.devsop.project.apartmentinvoice.repository.InvoiceRepository;
 import com.devsop.project.apartmentinvoice.repository.LeaseRepository;
 import com.devsop.project.apartmentinvoice.repository.MaintenanceRepository;
 import com.devsop.project.apartmentinvoice.repository.RoomRepository;
 import com.devsop.project.apartmentinvoice.service.InvoiceService.DebtCalculation;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.UsageKey;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvFormatException;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvRecord;
+import com.devsop.project.apartmentinvoice.service.csv.ErrorReportWriter;
+import com.devsop.project.apartmentinvoice.service.csv.StripedLocks;
+import com.devsop.project.apartmentinvoice.service.csv.XlsxRecordReader;
+import com.devsop.project.apartmentinvoice.service.storage.StorageResource;
 import com.devsop.project.apartmentinvoice.service.storage.StorageService;
 
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service for importing invoices from CSV files.
  * CSV Format: Room Number, Electricity Units, Water Units, Billing Month, Billing Year, Electricity Rate, Water Rate
+ * .xlsx workbooks with the same columns are accepted too (every sheet is imported, see importXlsx).
+ *
+ * The file is streamed through an RFC 4180 reader (quoted fields, embedded commas/newlines) and
+ * imported in chunks of csv.import.chunk-size records. Per chunk: validate rows in parallel into
+ * typed records, load rooms/leases/existing invoices/debts/maintenance with a fixed number of
+ * queries, build invoices in memory, then insert and commit them with JDBC batching
+ * (InvoiceBatchWriter).
+ *
+ * Building is partitioned by room: rows of one room depend on each other (duplicates, carried
+ * debt) and stay in file order, rows of different rooms are independent and run on a bounded pool.
+ * Per-row outcomes are merged back into ImportResult by line number, so the result is the same
+ * as a sequential run. XLSX sheets run in parallel, but a chunk holds the locks of its rooms from
+ * lookup to commit: a sheet reaching a room another sheet is importing waits, then loads that
+ * sheet's invoices as existing invoices / carried debt.
+ *
+ * Blank unit cells mean "derive from meter readings": units are the delta between the stored
+ * readings of that month and the reading before (MeterReadingService, one windowed query per chunk).
+ *
+ * Each real import is recorded as an ImportBatch keyed by the file's SHA-256, so an identical
+ * re-upload returns the earlier result instead of being processed again.
+ *
+ * Only the first csv.import.inline-error-limit errors are kept in memory and returned; every error
+ * is counted by type and written row by row to an error report CSV, stored under imports/errors/.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CsvImportService {
@@ -44,9 +114,31 @@ public class CsvImportService {
   private final RoomRepository roomRepository;
   private final LeaseRepository leaseRepository;
   private final MaintenanceRepository maintenanceRepository;
-  private final InvoiceService invoiceService;
+  private final InvoiceSettingsService settingsService;
+  private final InvoiceBatchWriter invoiceBatchWriter;
   private final InvoiceMetrics invoiceMetrics;
   private final StorageService storageService;
+  private final ImportBatchRepository importBatchRepository;
+  private final MeterReadingService meterReadingService;
+
+  @Value("${csv.import.chunk-size:1000}")
+  private int chunkSize;
+
+  @Value("${csv.import.sheet-parallelism:4}")
+  private int sheetParallelism;
+
+  @Value("${csv.import.inline-error-limit:" + ImportResult.DEFAULT_INLINE_ERROR_LIMIT + "}")
+  private int inlineErrorLimit;
+
+  /** A PROCESSING batch older than this is presumed dead (server restarted mid-import) and may be taken over */
+  @Value("${csv.import.processing-timeout-minutes:60}")
+  private long processingTimeoutMinutes;
+
+  /** 0 = number of cores */
+  @Value("${csv.import.partition-parallelism:0}")
+  private int partitionParallelism;
+
+  private volatile ExecutorService partitionPool;
 
   /**
    * Import invoices from CSV file.
@@ -55,15 +147,116 @@ public class CsvImportService {
    * @return ImportResult with success/failure counts and error details
    */
   public ImportResult importInvoicesFromCsv(MultipartFile file) {
-    uploadCsvToStorage(file);
-    return invoiceMetrics.recordImport(() -> importCsvInternal(file));
+    return importInvoicesFromCsv(file, false);
   }
 
-  private void uploadCsvToStorage(MultipartFile file) {
-    if (file.isEmpty()) {
-      return;
+  /**
+   * Import invoices from CSV file, skipping files that were already imported.
+   *
+   * The upload is hashed first (SHA-256, read from the multipart temp file only, as in
+   * DocumentService). If an ImportBatch with the same hash has completed, the stored outcome is
+   * returned without reading a single row or writing to storage (one unique-index lookup). Otherwise
+   * the batch is claimed and only then is the file copied to imports/csv/. A file whose previous
+   * import failed as a whole, or is still PROCESSING after csv.import.processing-timeout-minutes
+   * (the server running it died), is imported again. Empty files and files that are neither .csv nor
+   * .xlsx are rejected before anything is hashed, recorded or stored.
+   *
+   * @param force re-import even if the same file was imported before (e.g. after adding missing rooms)
+   */
+  public ImportResult importInvoicesFromCsv(MultipartFile file, boolean force) {
+    if (file.isEmpty() || !isImportFile(file.getOriginalFilename())) {
+      // rejected (400) by importCsvInternal
+      return invoiceMetrics.recordImport(() -> importCsvInternal(file, new ImportResult()));
+    }
+
+    String contentHash = sha256(file);
+
+    ImportBatch batch = importBatchRepository.findByContentHash(contentHash).orElse(null);
+    if (batch != null && !force) {
+      if (batch.getStatus() == ImportBatch.Status.COMPLETED) {
+        return ImportResult.fromBatch(batch);
+      }
+      if (batch.getStatus() == ImportBatch.Status.PROCESSING) {
+        LocalDateTime now = LocalDateTime.now();
+        if (importBatchRepository.reclaimStale(batch.getId(), now.minusMinutes(processingTimeoutMinutes), now) != 1) {
+          throw new ResponseStatusException(HttpStatus.CONFLICT, "This CSV file is already being imported");
+        }
+        log.warn("Import batch {} was left processing since {}, importing {} again",
+            batch.getId(), batch.getStartedAt() != null ? batch.getStartedAt() : batch.getCreatedAt(),
+            batch.getFileName());
+      }
+    }
+
+    String previousCopy = null;
+    String previousReport = null;
+    if (batch == null) {
+      batch = new ImportBatch();
+      batch.setContentHash(contentHash);
+    } else {
+      previousCopy = batch.getStoragePath();
+      previousReport = batch.getErrorReportPath();
+    }
+    batch.setFileName(file.getOriginalFilename());
+    batch.setFileSize(file.getSize());
+    batch.setStatus(ImportBatch.Status.PROCESSING);
+    batch.setStartedAt(LocalDateTime.now());
+    batch.setCompletedAt(null);
+
+    try {
+      importBatchRepository.saveAndFlush(batch);
+    } catch (DataIntegrityViolationException e) {
+      // same file uploaded concurrently: the other request owns the unique hash
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "This CSV file is already being imported");
     }
 
+    ImportResult spilling = ImportResult.spilling(inlineErrorLimit);
+    try {
+      String csvPath = uploadCsvToStorage(file);
+      batch.setStoragePath(csvPath);
+      if (previousCopy != null) {
+        discardCopy(previousCopy);
+      }
+      ImportResult result = invoiceMetrics.recordImport(() -> importCsvInternal(file, spilling));
+      result.errorReportPath = storeErrorReport(result, csvPath);
+      batch.setStatus(ImportBatch.Status.COMPLETED);
+      batch.setSuccessCount(result.getSuccessCount());
+      batch.setFailureCount(result.getFailureCount());
+      batch.setErrors(result.getErrors().stream()
+          .map(error -> error.replaceAll("[\\r\\n]+", " "))
+          .collect(Collectors.joining("\n")));
+      batch.setErrorCounts(result.getErrorCounts().entrySet().stream()
+          .map(entry -> entry.getKey().name() + "=" + entry.getValue())
+          .collect(Collectors.joining("\n")));
+      batch.setErrorReportPath(result.getErrorReportPath());
+      batch.setCompletedAt(LocalDateTime.now());
+      importBatchRepository.save(batch);
+      if (previousReport != null && !previousReport.equals(result.getErrorReportPath())) {
+        discardCopy(previousReport);
+      }
+      result.batchId = batch.getId();
+      return result;
+    } catch (RuntimeException e) {
+      spilling.discardErrorReport();
+      batch.setStatus(ImportBatch.Status.FAILED);
+      batch.setCompletedAt(LocalDateTime.now());
+      importBatchRepository.save(batch);
+      throw e;
+    }
+  }
+
+  /**
+   * Dry run: same parsing, room resolution, duplicate detection and pricing as a real import,
+   * but nothing is written (no invoices, no storage backup, no import metrics).
+   * Returns a per-line report (ImportResult.getLines) so the frontend can validate on every edit.
+   */
+  public ImportResult validateCsv(MultipartFile file) {
+    return importCsvInternal(file, ImportResult.dryRun(inlineErrorLimit));
+  }
+
+  /**
+   * Copy the upload to imports/csv/. Returns the storage path of the copy.
+   */
+  private String uploadCsvToStorage(MultipartFile file) {
     try {
       String originalFilename = file.getOriginalFilename();
       if (originalFilename == null || originalFilename.isEmpty()) {
@@ -75,9 +268,15 @@ public class CsvImportService {
       String uniqueFilename = String.format("%s_%s_%s", timestamp, uuidPart, originalFilename);
 
       String filePath = "imports/csv/" + uniqueFilename;
-      String contentType = file.getContentType() != null ? file.getContentType() : "text/csv";
+      String contentType = file.getContentType() != null ? file.getContentType()
+          : originalFilename.toLowerCase().endsWith(".xlsx")
+              ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"
+              : "text/csv";
 
-      storageService.uploadFile(file.getInputStream(), uniqueFilename, contentType, filePath);
+      try (InputStream in = file.getInputStream()) {
+        storageService.uploadFile(in, uniqueFilename, contentType, filePath);
+      }
+      return filePath;
     } catch (IOException e) {
       throw new ResponseStatusException(
           HttpStatus.INTERNAL_SERVER_ERROR,
@@ -87,185 +286,934 @@ public class CsvImportService {
     }
   }
 
-  private ImportResult importCsvInternal(MultipartFile file) {
+  /** SHA-256 (hex) of the upload, read from the multipart temp file */
+  private static String sha256(MultipartFile file) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to read CSV upload: " + e.getMessage(),
+          e
+      );
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Upload the spilled per-line error report next to the CSV copy
+   * (imports/csv/x.csv -> imports/errors/x.errors.csv). Null if there were no errors or the upload failed.
+   */
+  private String storeErrorReport(ImportResult result, String csvPath) {
+    Path report = null;
+    try {
+      report = result.finishErrorReport();
+      if (report == null) {
+        return null;
+      }
+      String baseName = csvPath.substring(csvPath.lastIndexOf('/') + 1);
+      int dot = baseName.lastIndexOf('.');
+      String fileName = (dot > 0 ? baseName.substring(0, dot) : baseName) + ".errors.csv";
+      String filePath = "imports/errors/" + fileName;
+      try (InputStream in = Files.newInputStream(report)) {
+        storageService.uploadFile(in, fileName, "text/csv", filePath);
+      }
+      return filePath;
+    } catch (IOException | RuntimeException e) {
+      // the invoices are saved; only the downloadable report is missing
+      log.warn("Could not store import error report: {}", e.getMessage());
+      return null;
+    } finally {
+      if (report != null) {
+        try {
+          Files.deleteIfExists(report);
+        } catch (IOException e) {
+          log.warn("Could not delete temp error report {}: {}", report, e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Full per-line error report (CSV) of an import batch, as a streamable Resource
+   * (read from storage while the response is written, see StorageResource).
+   *
+   * @throws ResponseStatusException 404 if the batch does not exist or had no errors
+   */
+  public Resource getErrorReport(Long batchId) {
+    ImportBatch batch = importBatchRepository.findById(batchId)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import batch not found"));
+    String path = batch.getErrorReportPath();
+    if (path == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Import batch has no error report");
+    }
+    return new StorageResource(storageService, path, storageService.getFileSize(path),
+        "import-" + batchId + "-errors.csv");
+  }
+
+  /** Best effort: a superseded backup copy or report left behind is harmless */
+  private void discardCopy(String path) {
+    try {
+      storageService.deleteFile(path);
+    } catch (RuntimeException e) {
+      log.warn("Could not delete CSV copy {}: {}", path, e.getMessage());
+    }
+  }
+
+  /** .csv or .xlsx by name; an upload without a name is read as CSV */
+  private static boolean isImportFile(String originalName) {
+    if (originalName == null) {
+      return true;
+    }
+    String name = originalName.toLowerCase();
+    return name.endsWith(".csv") || name.endsWith(".xlsx");
+  }
+
+  private ImportResult importCsvInternal(MultipartFile file, ImportResult result) {
     if (file.isEmpty()) {
-      invoiceMetrics.incrementImportErrors();
+      countImportError(result);
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV file is empty");
     }
 
     String originalName = file.getOriginalFilename();
-    if (originalName != null && !originalName.toLowerCase().endsWith(".csv")) {
-      invoiceMetrics.incrementImportErrors();
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File must be a CSV file");
+    if (originalName != null && originalName.toLowerCase().endsWith(".xlsx")) {
+      return importXlsx(file, result);
+    }
+    if (!isImportFile(originalName)) {
+      countImportError(result);
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File must be a CSV or XLSX file");
     }
 
-    ImportResult result = new ImportResult();
-    int lineNumber = 0;
+    ChunkingSink sink = new ChunkingSink(result, result.isDryRun() ? new DryRunCarry() : null, null);
 
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-      String line;
-      boolean isFirstLine = true;
+    try (CsvRecordReader reader = new CsvRecordReader(
+        new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)))) {
+      CsvRecord record;
+      while ((record = reader.next()) != null) {
+        sink.accept(record);
+      }
+      sink.flush();
 
-      while ((line = reader.readLine()) != null) {
-        lineNumber++;
+    } catch (CsvFormatException e) {
+      // rows before the malformed record are still imported; the rest of the file cannot be parsed
+      sink.flush();
+      recordImportError(result, e.getLineNumber(), ErrorType.INVALID_FORMAT, "Invalid CSV format: " + e.getMessage());
+    } catch (IOException e) {
+      countImportError(result);
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to read CSV file: " + e.getMessage()
+      );
+    }
 
-        if (isFirstLine && line.toLowerCase().contains("room")) {
-          isFirstLine = false;
-          continue;
-        }
-        isFirstLine = false;
+    return result;
+  }
+
+  /**
+   * .xlsx: each sheet (e.g. one per floor) is streamed with XlsxRecordReader through its own
+   * ChunkingSink, up to csv.import.sheet-parallelism sheets at a time. The workbook is spooled to a
+   * temp file so every sheet reader can open it independently. Results are merged in sheet order,
+   * errors prefixed with the sheet name.
+   */
+  private ImportResult importXlsx(MultipartFile file, ImportResult result) {
+    Path workbook = null;
+    List<ImportResult> sheetResults = new ArrayList<>();
+    try {
+      workbook = Files.createTempFile("invoice-import-", ".xlsx");
+      try (InputStream in = file.getInputStream()) {
+        Files.copy(in, workbook, StandardCopyOption.REPLACE_EXISTING);
+      }
+      File workbookFile = workbook.toFile();
+      List<String> sheets = XlsxRecordReader.sheetNames(workbookFile);
+
+      WorkbookImport workbookImport = new WorkbookImport(result.isDryRun() ? new DryRunCarry() : null);
+      for (String sheet : sheets) {
+        sheetResults.add(result.forSheet(sheet));
+      }
 
-        if (line.trim().isEmpty()) {
-          continue;
+      ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(sheetParallelism, sheets.size())));
+      try {
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < sheets.size(); i++) {
+          int index = i;
+          tasks.add(pool.submit(() -> importSheet(workbookFile, index, sheetResults.get(index), workbookImport)));
         }
+        for (Future<?> task : tasks) {
+          task.get();
+        }
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException runtime) {
+          throw runtime;
+        }
+        throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Import interrupted");
+      } finally {
+        pool.shutdownNow();
+      }
+
+      for (int i = 0; i < sheets.size(); i++) {
+        result.merge(sheets.get(i), sheetResults.get(i));
+      }
+      return result;
 
+    } catch (IOException e) {
+      countImportError(result);
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read XLSX file: " + e.getMessage());
+    } finally {
+      // merged sheets have already handed their error rows over; this only cleans up after a failure
+      sheetResults.forEach(ImportResult::discardErrorReport);
+      if (workbook != null) {
         try {
-          processLine(line, lineNumber, result);
-        } catch (Exception e) {
-          recordImportError(result, lineNumber, "Error processing line: " + e.getMessage());
+          Files.deleteIfExists(workbook);
+        } catch (IOException e) {
+          log.warn("Could not delete temp workbook {}: {}", workbook, e.getMessage());
         }
       }
+    }
+  }
 
-    } catch (Exception e) {
-      invoiceMetrics.incrementImportErrors();
-      throw new ResponseStatusException(
-          HttpStatus.INTERNAL_SERVER_ERROR,
-          "Failed to read CSV file: " + e.getMessage()
-      );
+  private void importSheet(File workbook, int sheetIndex, ImportResult sheetResult, WorkbookImport workbookImport) {
+    ChunkingSink sink = new ChunkingSink(sheetResult, workbookImport.carry, workbookImport);
+    try {
+      XlsxRecordReader.readSheet(workbook, sheetIndex, sink);
+      sink.flush();
+    } catch (IOException e) {
+      // same as a malformed CSV: keep what was read, report the rest of the sheet as unreadable
+      sink.flush();
+      recordImportError(sheetResult, sink.lastLineNumber + 1, ErrorType.INVALID_FORMAT, e.getMessage());
     }
+  }
 
-    return result;
+  /**
+   * Feeds records of one source (a CSV file or one XLSX sheet) into importChunk in chunks of
+   * csv.import.chunk-size; skips blank records and a leading header row.
+   */
+  private class ChunkingSink implements Consumer<CsvRecord> {
+    private final ImportResult result;
+    // dry run: invoices built from earlier chunks are not in the DB, carry them in memory instead
+    private final DryRunCarry carry;
+    private final WorkbookImport workbookImport;
+    private final int chunk = Math.max(1, chunkSize);
+    private final List<CsvRecord> records = new ArrayList<>();
+    private boolean firstRecord = true;
+    private int lastLineNumber;
+
+    /** @param workbookImport state shared by the sheets of an XLSX workbook; null for a CSV file */
+    ChunkingSink(ImportResult result, DryRunCarry carry, WorkbookImport workbookImport) {
+      this.result = result;
+      this.carry = carry;
+      this.workbookImport = workbookImport;
+    }
+
+    @Override
+    public void accept(CsvRecord record) {
+      lastLineNumber = record.lineNumber();
+      if (record.isBlank()) {
+        return;
+      }
+      if (firstRecord) {
+        firstRecord = false;
+        if (isHeader(record)) {
+          return;
+        }
+      }
+
+      records.add(record);
+      if (records.size() >= chunk) {
+        flush();
+      }
+    }
+
+    void flush() {
+      importChunk(records, result, carry, workbookImport);
+      records.clear();
+    }
+  }
+
+  /**
+   * Header = first record whose room column is not a number (data rows always start with a room number).
+   */
+  private boolean isHeader(CsvRecord record) {
+    try {
+      Integer.parseInt(record.get(0).trim());
+      return false;
+    } catch (NumberFormatException e) {
+      return true;
+    }
   }
 
-  private void recordImportError(ImportResult result, int lineNumber, String message) {
-    result.addError(lineNumber, message);
-    invoiceMetrics.incrementImportErrors();
+  /**
+   * Import one chunk of records and commit it (InvoiceBatchWriter), so a large file never
+   * holds more than csv.import.chunk-size rows in memory and a bad row only affects itself.
+   */
+  private void importChunk(List<CsvRecord> records, ImportResult result, DryRunCarry carry,
+                           WorkbookImport workbookImport) {
+    if (records.isEmpty()) {
+      return;
+    }
+
+    // ---------- 1) Validate แบบขนาน -> typed rows (ไม่แตะ DB, ลำดับแถวคงเดิม) ----------
+    List<CsvRow> rows = records.parallelStream().map(this::parseRecord).toList();
+
+    // XLSX: ถือ lock ของห้องใน chunk ตั้งแต่โหลด lookups จน commit เสร็จ
+    // sheet อื่นที่มีห้องเดียวกันจะรอ แล้วเห็น invoice ของ chunk นี้เป็น invoice เดิม/หนี้ค้าง
+    // (duplicate ข้าม sheet ตรวจจาก DB เท่านั้น: insert ที่ล้มเหลวจึงไม่กัน sheet อื่น)
+    List<Lock> locks = List.of();
+    if (workbookImport != null) {
+      locks = workbookImport.roomLocks.getAll(rows.stream()
+          .filter(r -> r.error() == null).map(CsvRow::roomNumber).collect(Collectors.toSet()));
+      locks.forEach(Lock::lock);
+    }
+    try {
+      importRows(rows, result, carry);
+    } finally {
+      for (int i = locks.size() - 1; i >= 0; i--) {
+        locks.get(i).unlock();
+      }
+    }
   }
 
-  private void processLine(String line, int lineNumber, ImportResult result) {
-    String[] parts = line.split(",");
+  /** Phases 2-4 of importChunk, under the chunk's room locks when importing a workbook */
+  private void importRows(List<CsvRow> rows, ImportResult result, DryRunCarry carry) {
+    // ---------- 2) ดึงข้อมูลอ้างอิงทั้ง chunk ในไม่กี่ query ----------
+    // chunk ก่อนหน้า commit แล้ว จึงเห็นเป็น invoice เดิม/หนี้ค้างจาก DB ได้เลย
+    ImportLookups lookups = loadLookups(rows, carry);
+
+    // ---------- 3) สร้าง invoice ในหน่วยความจำ แบ่งตามห้องแล้วทำขนานกัน ----------
+    RowOutcome[] outcomes = buildPartitioned(rows, lookups);
+
+    // รวมผลตามลำดับบรรทัด (เหมือนทำทีละแถว)
+    List<Integer> pendingLines = new ArrayList<>();
+    List<Invoice> pendingInvoices = new ArrayList<>();
+    for (RowOutcome outcome : outcomes) {
+      if (outcome.error != null) {
+        recordImportError(result, outcome.lineNumber, outcome.errorType, outcome.error);
+      } else if (outcome.invoice != null) {
+        pendingLines.add(outcome.lineNumber);
+        pendingInvoices.add(outcome.invoice);
+      }
+    }
 
-    if (parts.length < 7) {
-      recordImportError(result, lineNumber, "Invalid CSV format. Expected 7 columns, found " + parts.length);
+    // ---------- 4) Insert แบบ JDBC batch (dry run: รายงานผลอย่างเดียว) ----------
+    if (result.isDryRun()) {
+      for (int i = 0; i < pendingInvoices.size(); i++) {
+        result.incrementSuccess();
+        result.addLine(LineReport.ok(pendingLines.get(i), pendingInvoices.get(i)));
+        carry.add(pendingInvoices.get(i));
+      }
       return;
     }
 
+    if (!pendingInvoices.isEmpty()) {
+      List<String> insertErrors = invoiceBatchWriter.insertAll(pendingInvoices);
+      for (int i = 0; i < pendingInvoices.size(); i++) {
+        String error = insertErrors.get(i);
+        if (error == null) {
+          result.incrementSuccess();
+          invoiceMetrics.incrementInvoiceCreated();
+        } else {
+          recordImportError(result, pendingLines.get(i), ErrorType.UNEXPECTED, "Unexpected error: " + error);
+        }
+      }
+    }
+  }
+
+  private void recordImportError(ImportResult result, int lineNumber, ErrorType type, String message) {
+    result.addError(lineNumber, type, message);
+    if (result.isDryRun()) {
+      result.addLine(LineReport.error(lineNumber, message));
+    }
+    countImportError(result);
+  }
+
+  private void countImportError(ImportResult result) {
+    if (!result.isDryRun()) {
+      invoiceMetrics.incrementImportErrors();
+    }
+  }
+
+  // ---------- phase 1: validate ----------
+
+  /** Thread-safe: pure function of the record (runs on the common fork-join pool) */
+  private CsvRow parseRecord(CsvRecord record) {
+    int lineNumber = record.lineNumber();
+
+    if (record.size() < 7) {
+      return CsvRow.invalid(lineNumber, ErrorType.INVALID_FORMAT, "Invalid CSV format. Expected 7 columns, found " + record.size());
+    }
+
     try {
-      Integer roomNumber = Integer.parseInt(parts[0].trim());
-      BigDecimal electricityUnits = new BigDecimal(parts[1].trim());
-      BigDecimal waterUnits = new BigDecimal(parts[2].trim());
-      Integer billingMonth = Integer.parseInt(parts[3].trim());
-      Integer billingYear = Integer.parseInt(parts[4].trim());
-      BigDecimal electricityRate = new BigDecimal(parts[5].trim());
-      BigDecimal waterRate = new BigDecimal(parts[6].trim());
+      Integer roomNumber = Integer.parseInt(record.get(0).trim());
+      BigDecimal electricityUnits = parseUnits(record.get(1));
+      BigDecimal waterUnits = parseUnits(record.get(2));
+      Integer billingMonth = Integer.parseInt(record.get(3).trim());
+      Integer billingYear = Integer.parseInt(record.get(4).trim());
+      BigDecimal electricityRate = new BigDecimal(record.get(5).trim());
+      BigDecimal waterRate = new BigDecimal(record.get(6).trim());
 
       if (billingMonth < 1 || billingMonth > 12) {
-        recordImportError(result, lineNumber, "Invalid billing month: " + billingMonth);
-        return;
+        return CsvRow.invalid(lineNumber, ErrorType.INVALID_MONTH, "Invalid billing month: " + billingMonth);
       }
 
-      Optional<Room> roomOpt = roomRepository.findByNumber(roomNumber);
-      if (roomOpt.isEmpty()) {
-        recordImportError(result, lineNumber, "Room not found: " + roomNumber);
-        return;
+      return new CsvRow(lineNumber, roomNumber, electricityUnits, waterUnits,
+          billingMonth, billingYear, electricityRate, waterRate, null, null);
+
+    } catch (NumberFormatException e) {
+      return CsvRow.invalid(lineNumber, ErrorType.INVALID_NUMBER, "Invalid number format: " + e.getMessage());
+    } catch (Exception e) {
+      return CsvRow.invalid(lineNumber, ErrorType.OTHER, "Error processing line: " + e.getMessage());
+    }
+  }
+
+  /** Blank = not given, derived from meter readings in phase 3 */
+  private static BigDecimal parseUnits(String value) {
+    String trimmed = value.trim();
+    return trimmed.isEmpty() ? null : new BigDecimal(trimmed);
+  }
+
+  // ---------- phase 2: bulk lookups ----------
+
+  /**
+   * Loads everything phase 3 needs for the distinct rooms/periods of the file:
+   * rooms, active leases, existing (room, period) keys, unpaid invoices, maintenance costs and,
+   * when a row leaves its units blank, the monthly meter usage.
+   * Query count is constant regardless of the number of rows.
+   */
+  private ImportLookups loadLookups(List<CsvRow> rows, DryRunCarry carry) {
+    ImportLookups lookups = new ImportLookups();
+    if (carry != null) {
+      carry.copyTo(lookups);
+    }
+
+    List<CsvRow> valid = rows.stream().filter(r -> r.error() == null).toList();
+    if (valid.isEmpty()) {
+      return lookups;
+    }
+
+    Set<Integer> roomNumbers = valid.stream().map(CsvRow::roomNumber).collect(Collectors.toSet());
+    for (Room room : roomRepository.findByNumberIn(roomNumbers)) {
+      lookups.roomsByNumber.put(room.getNumber(), room);
+    }
+    if (lookups.roomsByNumber.isEmpty()) {
+      return lookups;
+    }
+
+    Set<Long> roomIds = lookups.roomsByNumber.values().stream().map(Room::getId).collect(Collectors.toSet());
+    Set<Integer> years = valid.stream().map(CsvRow::billingYear).collect(Collectors.toSet());
+    LocalDate from = valid.stream().map(CsvRow::periodStart).min(LocalDate::compareTo).orElseThrow();
+    LocalDate latest = valid.stream().map(CsvRow::periodStart).max(LocalDate::compareTo).orElseThrow();
+    LocalDate to = latest.withDayOfMonth(latest.lengthOfMonth());
+
+    for (Lease lease : leaseRepository.findActiveLeasesByRoomsBetween(roomIds, from, to)) {
+      lookups.leasesByRoom.computeIfAbsent(lease.getRoom().getId(), k -> new ArrayList<>()).add(lease);
+    }
+
+    lookups.existingPeriods.addAll(invoiceRepository.findPeriodKeysByRoomIdsAndYears(roomIds, years));
+
+    List<Invoice> unpaid = invoiceRepository.findUnpaidInvoicesByRoomsBeforePeriod(
+        roomIds, latest.getYear(), latest.getMonthValue(), Invoice.Status.PAID);
+    for (Invoice invoice : unpaid) {
+      lookups.unpaidByRoom.computeIfAbsent(invoice.getRoom().getId(), k -> new ArrayList<>()).add(invoice);
+    }
+
+    List<Maintenance> maintenance = maintenanceRepository
+        .findByRoom_IdInAndStatusAndCompletedDateBetween(roomIds, Status.COMPLETED, from, to);
+    for (Maintenance m : maintenance) {
+      if (m.getCostBaht() == null || m.getCompletedDate() == null) {
+        continue;
       }
-      Room room = roomOpt.get();
+      InvoicePeriodKey key = new InvoicePeriodKey(
+          m.getRoom().getId(), m.getCompletedDate().getYear(), m.getCompletedDate().getMonthValue());
+      lookups.maintenanceByPeriod.merge(key, m.getCostBaht(), BigDecimal::add);
+    }
 
-      Optional<Invoice> existingInvoice = invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(
-          room.getId(),
-          billingYear,
-          billingMonth
-      );
-      if (existingInvoice.isPresent()) {
-        recordImportError(result, lineNumber, "Invoice already exists for room " + roomNumber + " in " + billingYear + "-" + billingMonth);
-        return;
+    if (valid.stream().anyMatch(CsvRow::derivesUnits)) {
+      lookups.meterUsage.putAll(meterReadingService.findMonthlyUsage(roomIds, from, to));
+    }
+
+    InvoiceSettings settings = settingsService.getSettings();
+    lookups.interestRatePerMonth = settings != null ? settings.getInterestRatePerMonth() : null;
+    return lookups;
+  }
+
+  // ---------- phase 3: build (no queries) ----------
+
+  /**
+   * Builds every valid row of the chunk. Rows are grouped by room number; each group is built in
+   * file order, groups are spread over the partition pool. Returns one outcome per row, in row order.
+   */
+  private RowOutcome[] buildPartitioned(List<CsvRow> rows, ImportLookups lookups) {
+    RowOutcome[] outcomes = new RowOutcome[rows.size()];
+    Map<Integer, List<Integer>> byRoom = new LinkedHashMap<>();
+    for (int i = 0; i < rows.size(); i++) {
+      CsvRow row = rows.get(i);
+      outcomes[i] = new RowOutcome(row.lineNumber());
+      if (row.error() != null) {
+        outcomes[i].fail(row.errorType(), row.error());
+      } else {
+        byRoom.computeIfAbsent(row.roomNumber(), k -> new ArrayList<>()).add(i);
       }
+    }
 
-      LocalDate issueDate = LocalDate.of(billingYear, billingMonth, 1);
-      Lease lease = leaseRepository.findActiveLeaseByRoomOnDate(room.getId(), issueDate).orElse(null);
+    List<List<Integer>> partitions = new ArrayList<>(byRoom.values());
+    int threads = Math.min(partitionThreads(), partitions.size());
+    if (threads < 2) {
+      partitions.forEach(partition -> buildPartition(partition, rows, lookups, outcomes));
+      return outcomes;
+    }
 
-      var tenant = (lease != null) ? lease.getTenant() : room.getTenant();
-      if (tenant == null) {
-        recordImportError(result, lineNumber, "Room " + roomNumber + " has no tenant assigned");
-        return;
+    // one task per thread, rooms dealt round-robin
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      tasks.add(() -> {
+        for (int p = first; p < partitions.size(); p += threads) {
+          buildPartition(partitions.get(p), rows, lookups, outcomes);
+        }
+        return null;
+      });
+    }
+    try {
+      for (Future<Void> task : partitionPool().invokeAll(tasks)) {
+        task.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Import interrupted");
+    }
+    return outcomes;
+  }
+
+  /** Rows of one room, in file order (each row sees the invoices built by the rows before it) */
+  private void buildPartition(List<Integer> indexes, List<CsvRow> rows, ImportLookups lookups, RowOutcome[] outcomes) {
+    for (int i : indexes) {
+      try {
+        outcomes[i].invoice = buildInvoice(rows.get(i), lookups, outcomes[i]);
+      } catch (Exception e) {
+        outcomes[i].fail(ErrorType.UNEXPECTED, "Unexpected error: " + e.getMessage());
+      }
+    }
+  }
+
+  private int partitionThreads() {
+    return partitionParallelism > 0 ? partitionParallelism : Runtime.getRuntime().availableProcessors();
+  }
+
+  private ExecutorService partitionPool() {
+    ExecutorService pool = partitionPool;
+    if (pool == null) {
+      synchronized (this) {
+        if (partitionPool == null) {
+          AtomicInteger sequence = new AtomicInteger();
+          partitionPool = Executors.newFixedThreadPool(partitionThreads(), r -> {
+            Thread t = new Thread(r, "csv-import-" + sequence.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          });
+        }
+        pool = partitionPool;
       }
+    }
+    return pool;
+  }
 
-      DebtCalculation debt = invoiceService.calculateAccumulatedDebt(room.getId(), billingYear, billingMonth);
+  @PreDestroy
+  void shutdownPartitionPool() {
+    if (partitionPool != null) {
+      partitionPool.shutdownNow();
+    }
+  }
 
-      Invoice invoice = new Invoice();
-      invoice.setRoom(room);
-      invoice.setTenant(tenant);
-      invoice.setBillingYear(billingYear);
-      invoice.setBillingMonth(billingMonth);
-      invoice.setIssueDate(issueDate);
-      invoice.setDueDate(issueDate.plusDays(7));
+  /**
+   * Builds the invoice for one row from the prefetched lookups, or sets the outcome's error and returns null.
+   * Rows of a room are processed in file order; each built invoice is added to the lookups so that
+   * later rows see it as a duplicate / as unpaid debt, exactly as if it had already been saved.
+   * Runs concurrently for different rooms: only touches the lookups entries of its own room.
+   */
+  private Invoice buildInvoice(CsvRow row, ImportLookups lookups, RowOutcome outcome) {
+    Integer roomNumber = row.roomNumber();
+    Integer billingYear = row.billingYear();
+    Integer billingMonth = row.billingMonth();
 
-      invoice.setElectricityUnits(electricityUnits);
-      invoice.setElectricityRate(electricityRate);
-      invoice.setElectricityBaht(electricityUnits.multiply(electricityRate));
+    Room room = lookups.roomsByNumber.get(roomNumber);
+    if (room == null) {
+      outcome.fail(ErrorType.ROOM_NOT_FOUND, "Room not found: " + roomNumber);
+      return null;
+    }
 
-      invoice.setWaterUnits(waterUnits);
-      invoice.setWaterRate(waterRate);
-      invoice.setWaterBaht(waterUnits.multiply(waterRate));
+    InvoicePeriodKey period = new InvoicePeriodKey(room.getId(), billingYear, billingMonth);
+    if (lookups.existingPeriods.contains(period)) {
+      outcome.fail(ErrorType.DUPLICATE_INVOICE,
+          "Invoice already exists for room " + roomNumber + " in " + billingYear + "-" + billingMonth);
+      return null;
+    }
+
+    LocalDate issueDate = row.periodStart();
+    Lease lease = lookups.activeLease(room.getId(), issueDate);
 
-      invoice.setRentBaht(lease != null && lease.getMonthlyRent() != null ? lease.getMonthlyRent() : BigDecimal.ZERO);
-      invoice.setCommonFeeBaht(room.getCommonFeeBaht() != null ? room.getCommonFeeBaht() : BigDecimal.ZERO);
-      invoice.setGarbageFeeBaht(room.getGarbageFeeBaht() != null ? room.getGarbageFeeBaht() : BigDecimal.ZERO);
-      invoice.setOtherBaht(BigDecimal.ZERO);
+    var tenant = (lease != null) ? lease.getTenant() : room.getTenant();
+    if (tenant == null) {
+      outcome.fail(ErrorType.NO_TENANT, "Room " + roomNumber + " has no tenant assigned");
+      return null;
+    }
 
-      LocalDate firstDay = LocalDate.of(billingYear, billingMonth, 1);
-      LocalDate lastDay = firstDay.withDayOfMonth(firstDay.lengthOfMonth());
+    BigDecimal electricityUnits = row.electricityUnits();
+    BigDecimal waterUnits = row.waterUnits();
+    if (row.derivesUnits()) {
+      if (electricityUnits == null) {
+        electricityUnits = meterUnits(lookups, room, MeterType.ELECTRICITY, row, outcome);
+        if (electricityUnits == null) {
+          return null;
+        }
+      }
+      if (waterUnits == null) {
+        waterUnits = meterUnits(lookups, room, MeterType.WATER, row, outcome);
+        if (waterUnits == null) {
+          return null;
+        }
+      }
+    }
 
-      List<Maintenance> maintenanceItems = maintenanceRepository
-          .findByRoom_IdAndStatusAndCompletedDateBetween(room.getId(), Status.COMPLETED, firstDay, lastDay);
+    DebtCalculation debt = InvoiceService.calculateDebt(
+        lookups.unpaidBefore(room.getId(), billingYear, billingMonth),
+        lookups.interestRatePerMonth, billingYear, billingMonth);
 
-      BigDecimal maintenanceSum = maintenanceItems.stream()
-          .map(Maintenance::getCostBaht)
-          .filter(c -> c != null)
-          .reduce(BigDecimal.ZERO, BigDecimal::add);
+    Invoice invoice = new Invoice();
+    invoice.setRoom(room);
+    invoice.setTenant(tenant);
+    invoice.setBillingYear(billingYear);
+    invoice.setBillingMonth(billingMonth);
+    invoice.setIssueDate(issueDate);
+    invoice.setDueDate(issueDate.plusDays(7));
 
-      invoice.setMaintenanceBaht(maintenanceSum);
+    invoice.setElectricityUnits(electricityUnits);
+    invoice.setElectricityRate(row.electricityRate());
+    invoice.setElectricityBaht(electricityUnits.multiply(row.electricityRate()));
 
-      BigDecimal currentTotal = BigDecimal.ZERO;
-      currentTotal = currentTotal.add(sum(invoice.getRentBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getElectricityBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getWaterBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getCommonFeeBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getGarbageFeeBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getOtherBaht()));
-      currentTotal = currentTotal.add(sum(invoice.getMaintenanceBaht()));
+    invoice.setWaterUnits(waterUnits);
+    invoice.setWaterRate(row.waterRate());
+    invoice.setWaterBaht(waterUnits.multiply(row.waterRate()));
 
-      invoice.setTotalBaht(currentTotal);
+    invoice.setRentBaht(lease != null && lease.getMonthlyRent() != null ? lease.getMonthlyRent() : BigDecimal.ZERO);
+    invoice.setCommonFeeBaht(room.getCommonFeeBaht() != null ? room.getCommonFeeBaht() : BigDecimal.ZERO);
+    invoice.setGarbageFeeBaht(room.getGarbageFeeBaht() != null ? room.getGarbageFeeBaht() : BigDecimal.ZERO);
+    invoice.setOtherBaht(BigDecimal.ZERO);
+    invoice.setMaintenanceBaht(lookups.maintenanceByPeriod.getOrDefault(period, BigDecimal.ZERO));
 
-      invoice.setPreviousBalance(debt.getPreviousBalance());
-      invoice.setInterestCharge(debt.getInterestCharge());
-      invoice.setAccumulatedTotal(currentTotal.add(debt.getPreviousBalance()).add(debt.getInterestCharge()));
+    BigDecimal currentTotal = BigDecimal.ZERO;
+    currentTotal = currentTotal.add(sum(invoice.getRentBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getElectricityBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getWaterBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getCommonFeeBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getGarbageFeeBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getOtherBaht()));
+    currentTotal = currentTotal.add(sum(invoice.getMaintenanceBaht()));
 
-      invoiceRepository.save(invoice);
-      result.incrementSuccess();
-      invoiceMetrics.incrementInvoiceCreated();
+    invoice.setTotalBaht(currentTotal);
 
-    } catch (NumberFormatException e) {
-      recordImportError(result, lineNumber, "Invalid number format: " + e.getMessage());
-    } catch (Exception e) {
-      recordImportError(result, lineNumber, "Unexpected error: " + e.getMessage());
+    invoice.setPreviousBalance(debt.getPreviousBalance());
+    invoice.setInterestCharge(debt.getInterestCharge());
+    invoice.setAccumulatedTotal(currentTotal.add(debt.getPreviousBalance()).add(debt.getInterestCharge()));
+
+    lookups.existingPeriods.add(period);
+    lookups.unpaidByRoom.computeIfAbsent(room.getId(), k -> new ArrayList<>()).add(invoice);
+    return invoice;
+  }
+
+  /** Units of one meter in the row's billing month from the prefetched usage, or sets the outcome's error and returns null */
+  private BigDecimal meterUnits(ImportLookups lookups, Room room, MeterType meterType, CsvRow row, RowOutcome outcome) {
+    String meter = meterType == MeterType.ELECTRICITY ? "electricity" : "water";
+    String period = row.billingYear() + "-" + row.billingMonth();
+    BigDecimal units = lookups.meterUsage.get(
+        new UsageKey(room.getId(), meterType, row.billingYear(), row.billingMonth()));
+    if (units == null) {
+      outcome.fail(ErrorType.METER_READING,
+          "No " + meter + " meter readings for room " + room.getNumber() + " in " + period);
+      return null;
     }
+    if (units.signum() < 0) {
+      outcome.fail(ErrorType.METER_READING, "Room " + room.getNumber() + " " + meter
+          + " reading in " + period + " is lower than the previous reading");
+      return null;
+    }
+    return units;
   }
 
   private BigDecimal sum(BigDecimal val) {
     return val != null ? val : BigDecimal.ZERO;
   }
 
+  /** One parsed CSV line: typed values, or an error (type and message) if the line is invalid */
+  private record CsvRow(
+      int lineNumber,
+      Integer roomNumber,
+      BigDecimal electricityUnits,
+      BigDecimal waterUnits,
+      Integer billingMonth,
+      Integer billingYear,
+      BigDecimal electricityRate,
+      BigDecimal waterRate,
+      ErrorType errorType,
+      String error
+  ) {
+    static CsvRow invalid(int lineNumber, ErrorType errorType, String error) {
+      return new CsvRow(lineNumber, null, null, null, null, null, null, null, errorType, error);
+    }
+
+    LocalDate periodStart() {
+      return LocalDate.of(billingYear, billingMonth, 1);
+    }
+
+    /** Units column left blank: take them from meter readings */
+    boolean derivesUnits() {
+      return electricityUnits == null || waterUnits == null;
+    }
+  }
+
+  /** Result of building one row: the invoice or an error (written by one build thread, read after the join) */
+  private static class RowOutcome {
+    private final int lineNumber;
+    private Invoice invoice;
+    private ErrorType errorType;
+    private String error;
+
+    RowOutcome(int lineNumber) {
+      this.lineNumber = lineNumber;
+    }
+
+    void fail(ErrorType type, String message) {
+      this.errorType = type;
+      this.error = message;
+    }
+  }
+
+  /**
+   * Dry run only: invoices "created" by earlier chunks, which a real import would find in the DB.
+   * Shared by the sheets of a workbook, hence synchronized.
+   */
+  private static class DryRunCarry {
+    private final Set<InvoicePeriodKey> periods = new HashSet<>();
+    private final Map<Long, List<Invoice>> unpaidByRoom = new HashMap<>();
+
+    synchronized void add(Invoice invoice) {
+      Long roomId = invoice.getRoom().getId();
+      periods.add(new InvoicePeriodKey(roomId, invoice.getBillingYear(), invoice.getBillingMonth()));
+      unpaidByRoom.computeIfAbsent(roomId, k -> new ArrayList<>()).add(invoice);
+    }
+
+    synchronized void copyTo(ImportLookups lookups) {
+      lookups.existingPeriods.addAll(periods);
+      unpaidByRoom.forEach((roomId, invoices) ->
+          lookups.unpaidByRoom.computeIfAbsent(roomId, k -> new ArrayList<>()).addAll(invoices));
+    }
+  }
+
+  /** State shared by the sheets of one XLSX workbook, which are imported in parallel */
+  private static class WorkbookImport {
+    /** Held by a chunk for its rooms from lookup to commit (see importChunk) */
+    private final StripedLocks roomLocks = new StripedLocks(1024);
+    /** Dry run: one carry for all sheets, so a sheet sees what the others "created" */
+    private final DryRunCarry carry;
+
+    WorkbookImport(DryRunCarry carry) {
+      this.carry = carry;
+    }
+  }
+
+  /** Prefetched reference data for one chunk (see loadLookups) */
+  private static class ImportLookups {
+    private final Map<Integer, Room> roomsByNumber = new HashMap<>();
+    private final Map<Long, List<Lease>> leasesByRoom = new HashMap<>();
+    // written while building (one room per thread): concurrent containers, per-room lists
+    private final Set<InvoicePeriodKey> existingPeriods = ConcurrentHashMap.newKeySet();
+    private final Map<Long, List<Invoice>> unpaidByRoom = new ConcurrentHashMap<>();
+    private final Map<InvoicePeriodKey, BigDecimal> maintenanceByPeriod = new HashMap<>();
+    private final Map<UsageKey, BigDecimal> meterUsage = new HashMap<>();
+    private BigDecimal interestRatePerMonth;
+
+    /** Same rule as LeaseRepository.findActiveLeaseByRoomOnDate (leases are sorted newest first) */
+    Lease activeLease(Long roomId, LocalDate onDate) {
+      for (Lease lease : leasesByRoom.getOrDefault(roomId, List.of())) {
+        if (!lease.getStartDate().isAfter(onDate)
+            && (lease.getEndDate() == null || !lease.getEndDate().isBefore(onDate))) {
+          return lease;
+        }
+      }
+      return null;
+    }
+
+    /** Same rule as InvoiceRepository.findUnpaidInvoicesByRoomBeforePeriod */
+    List<Invoice> unpaidBefore(Long roomId, int year, int month) {
+      List<Invoice> unpaid = new ArrayList<>();
+      for (Invoice invoice : unpaidByRoom.getOrDefault(roomId, List.of())) {
+        int y = invoice.getBillingYear();
+        if (y < year || (y == year && invoice.getBillingMonth() < month)) {
+          unpaid.add(invoice);
+        }
+      }
+      return unpaid;
+    }
+  }
+
+  /**
+   * Dry-run report for one CSV line: OK with the computed amounts, or ERROR with the message.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class LineReport {
+    private final int lineNumber;
+    private final String status;
+    private final String message;
+    private final Integer roomNumber;
+    private final Integer billingYear;
+    private final Integer billingMonth;
+    private final BigDecimal totalBaht;
+    private final BigDecimal previousBalance;
+    private final BigDecimal interestCharge;
+    private final BigDecimal accumulatedTotal;
+    /** XLSX sheet name (null for CSV) */
+    private final String sheet;
+
+    static LineReport ok(int lineNumber, Invoice invoice) {
+      return new LineReport(lineNumber, "OK", null,
+          invoice.getRoom().getNumber(), invoice.getBillingYear(), invoice.getBillingMonth(),
+          invoice.getTotalBaht(), invoice.getPreviousBalance(), invoice.getInterestCharge(),
+          invoice.getAccumulatedTotal(), null);
+    }
+
+    static LineReport error(int lineNumber, String message) {
+      return new LineReport(lineNumber, "ERROR", message, null, null, null, null, null, null, null, null);
+    }
+
+    LineReport withSheet(String sheetName) {
+      return new LineReport(lineNumber, status, message, roomNumber, billingYear, billingMonth,
+          totalBaht, previousBalance, interestCharge, accumulatedTotal, sheetName);
+    }
+  }
+
+  /**
+   * Error category, for the aggregate counts of an import (set where the error is raised).
+   */
+  public enum ErrorType {
+    INVALID_FORMAT,
+    INVALID_NUMBER,
+    INVALID_MONTH,
+    ROOM_NOT_FOUND,
+    DUPLICATE_INVOICE,
+    NO_TENANT,
+    METER_READING,
+    UNEXPECTED,
+    OTHER
+  }
+
   public static class ImportResult {
+    /** Errors returned inline (in the response and ImportBatch.errors); the rest are only in the report */
+    public static final int DEFAULT_INLINE_ERROR_LIMIT = 100;
+
     private int successCount = 0;
+    private int failureCount = 0;
     private final List<String> errors = new ArrayList<>();
+    private final Map<ErrorType, Integer> errorCounts = new EnumMap<>(ErrorType.class);
+    private int inlineErrorLimit = DEFAULT_INLINE_ERROR_LIMIT;
+    private boolean dryRun;
+    private final List<LineReport> lines = new ArrayList<>();
+    private Long batchId;
+    private boolean duplicate;
+
+    // full error report: spilled to a temp file row by row (real imports only), uploaded at the end
+    private boolean spillErrors;
+    private String sheet;
+    private ErrorReportWriter report;
+    private String errorReportPath;
+
+    static ImportResult dryRun(int inlineErrorLimit) {
+      ImportResult result = new ImportResult();
+      result.dryRun = true;
+      result.inlineErrorLimit = inlineErrorLimit;
+      return result;
+    }
+
+    /** Real import: errors beyond the inline limit go to the error report only */
+    static ImportResult spilling(int inlineErrorLimit) {
+      ImportResult result = new ImportResult();
+      result.inlineErrorLimit = inlineErrorLimit;
+      result.spillErrors = true;
+      return result;
+    }
+
+    /** Result for one XLSX sheet, merged back with merge(sheet, result) */
+    ImportResult forSheet(String sheetName) {
+      ImportResult result = new ImportResult();
+      result.dryRun = dryRun;
+      result.inlineErrorLimit = inlineErrorLimit;
+      result.spillErrors = spillErrors;
+      result.sheet = sheetName;
+      return result;
+    }
+
+    /** Outcome of an earlier import of the same file */
+    static ImportResult fromBatch(ImportBatch batch) {
+      ImportResult result = new ImportResult();
+      result.batchId = batch.getId();
+      result.duplicate = true;
+      result.successCount = batch.getSuccessCount() != null ? batch.getSuccessCount() : 0;
+      if (batch.getErrors() != null && !batch.getErrors().isEmpty()) {
+        result.errors.addAll(List.of(batch.getErrors().split("\n")));
+      }
+      result.failureCount = batch.getFailureCount() != null ? batch.getFailureCount() : result.errors.size();
+      if (batch.getErrorCounts() != null && !batch.getErrorCounts().isEmpty()) {
+        for (String entry : batch.getErrorCounts().split("\n")) {
+          int eq = entry.indexOf('=');
+          result.errorCounts.put(ErrorType.valueOf(entry.substring(0, eq)), Integer.parseInt(entry.substring(eq + 1)));
+        }
+      }
+      result.errorReportPath = batch.getErrorReportPath();
+      return result;
+    }
 
     public void incrementSuccess() {
       successCount++;
     }
 
     public void addError(int lineNumber, String message) {
-      errors.add("Line " + lineNumber + ": " + message);
+      addError(lineNumber, ErrorType.OTHER, message);
+    }
+
+    public void addError(int lineNumber, ErrorType type, String message) {
+      failureCount++;
+      errorCounts.merge(type, 1, Integer::sum);
+      if (errors.size() < inlineErrorLimit) {
+        errors.add("Line " + lineNumber + ": " + message);
+      }
+      if (spillErrors) {
+        spill(lineNumber, type, message);
+      }
+    }
+
+    private void spill(int lineNumber, ErrorType type, String message) {
+      try {
+        if (report == null) {
+          report = sheet == null ? ErrorReportWriter.create() : ErrorReportWriter.createPart();
+        }
+        report.write(sheet, lineNumber, type.name(), message);
+      } catch (IOException e) {
+        // the import itself is fine; only the downloadable report is lost
+        log.warn("Could not write import error report, continuing without it: {}", e.getMessage());
+        spillErrors = false;
+        discardErrorReport();
+      }
     }
 
     public int getSuccessCount() {
@@ -273,15 +1221,103 @@ public class CsvImportService {
     }
 
     public int getFailureCount() {
-      return errors.size();
+      return failureCount;
     }
 
+    /** First errors only (see getErrorCounts / getErrorReportPath for all of them) */
     public List<String> getErrors() {
       return errors;
     }
 
+    /** true if more errors occurred than are listed in getErrors */
+    public boolean isErrorsTruncated() {
+      return failureCount > errors.size();
+    }
+
+    /** Number of errors per type, over the whole file */
+    public Map<ErrorType, Integer> getErrorCounts() {
+      return errorCounts;
+    }
+
     public int getTotalProcessed() {
-      return successCount + errors.size();
+      return successCount + failureCount;
+    }
+
+    public boolean isDryRun() {
+      return dryRun;
+    }
+
+    void addLine(LineReport line) {
+      lines.add(line);
+    }
+
+    /** Append the result of one XLSX sheet; its errors are prefixed with the sheet name */
+    void merge(String sheetName, ImportResult other) {
+      successCount += other.successCount;
+      failureCount += other.failureCount;
+      other.errorCounts.forEach((type, count) -> errorCounts.merge(type, count, Integer::sum));
+      for (String error : other.errors) {
+        if (errors.size() >= inlineErrorLimit) {
+          break;
+        }
+        errors.add("[" + sheetName + "] " + error);
+      }
+      for (LineReport line : other.lines) {
+        lines.add(line.withSheet(sheetName));
+      }
+      if (other.report != null) {
+        try {
+          if (spillErrors && report == null) {
+            report = ErrorReportWriter.create();
+          }
+          if (spillErrors) {
+            report.append(other.report);
+          }
+        } catch (IOException e) {
+          log.warn("Could not write import error report, continuing without it: {}", e.getMessage());
+          spillErrors = false;
+          discardErrorReport();
+        } finally {
+          other.discardErrorReport();
+        }
+      }
+    }
+
+    /** Close the spilled report and hand over its temp file (null if there were no errors) */
+    Path finishErrorReport() throws IOException {
+      if (report == null) {
+        return null;
+      }
+      Path file = report.finish();
+      report = null;
+      return file;
+    }
+
+    void discardErrorReport() {
+      if (report != null) {
+        report.discard();
+        report = null;
+      }
+    }
+
+    /** Per-line report, only filled in dry-run mode */
+    public List<LineReport> getLines() {
+      return lines;
+    }
+
+    /** ImportBatch id of the import (null for dry runs) */
+    public Long getBatchId() {
+      return batchId;
+    }
+
+    /** true if the file had already been imported and this is the stored result */
+    public boolean isDuplicate() {
+      return duplicate;
+    }
+
+    /** Storage path of the full error report CSV (null if none) */
+    public String getErrorReportPath() {
+      return errorReportPath;
     }
   }
 }
@@ -1,28 +1,59 @@
 package com.devsop.project.apartmentinvoice.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.devsop.project.apartmentinvoice.dto.EntityDocumentCount;
 import com.devsop.project.apartmentinvoice.entity.Document;
 import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+import com.devsop.project.apartmentinvoice.entity.DocumentBlob;
+import com.devsop.project.apartmentinvoice.repository.DocumentBlobRepository;
 import com.devsop.project.apartmentinvoice.repository.DocumentRepository;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService.Variant;
+import com.devsop.project.apartmentinvoice.service.storage.StorageResource;
 import com.devsop.project.apartmentinvoice.service.storage.StorageService;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * Service for managing document uploads, downloads, and deletions.
  * Uses StorageService abstraction for pluggable storage backends (local or GCS).
+ *
+ * Content is stored once per SHA-256 (DocumentBlob, under blobs/); documents with the same bytes
+ * share the blob and only add a reference, so a duplicate upload writes nothing to storage.
+ * Images also get downscaled variants (thumb / web, see ImageVariantService) next to the blob.
  */
+@Slf4j
 @Service
 public class DocumentService {
 
   private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
+  private static final int MAX_BATCH_ENTITIES = 500; // IN list size per request
   private static final List<String> ALLOWED_MIME_TYPES = Arrays.asList(
       "image/jpeg",
       "image/png",
@@ -30,17 +61,40 @@ public class DocumentService {
       "application/pdf");
 
   private final DocumentRepository documentRepository;
+  private final DocumentBlobRepository documentBlobRepository;
   private final StorageService storageService;
+  private final ImageVariantService imageVariantService;
+
+  /** Signed storage URLs may be handed out (redirect / download-url); off = always stream through the API */
+  @Value("${document.download.signed-urls:false}")
+  private boolean signedUrls;
+
+  @Value("${document.download.signed-url-ttl-seconds:300}")
+  private long signedUrlTtlSeconds;
 
   public DocumentService(
       DocumentRepository documentRepository,
-      StorageService storageService) {
+      DocumentBlobRepository documentBlobRepository,
+      StorageService storageService,
+      ImageVariantService imageVariantService) {
     this.documentRepository = documentRepository;
+    this.documentBlobRepository = documentBlobRepository;
     this.storageService = storageService;
+    this.imageVariantService = imageVariantService;
+  }
+
+  /**
+   * Writes content to a new storage path. Called only when the content is not stored yet.
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    void writeTo(String fileName, String filePath) throws IOException;
   }
 
   /**
    * Upload a file and create a Document record.
+   * The upload is hashed first (read from the multipart temp file only); if the content is already
+   * stored the document just references the existing blob.
    */
   public Document uploadDocument(
       MultipartFile file,
@@ -58,13 +112,54 @@ public class DocumentService {
     }
 
     String contentType = file.getContentType();
+    checkAllowedType(contentType);
+
+    try {
+      String contentHash = sha256(file);
+      return createDocument(entityType, entityId, file.getOriginalFilename(), contentType, file.getSize(),
+          uploadedBy, contentHash, (fileName, filePath) -> {
+            // hashed again while streaming: detects content that changed between the two reads
+            MessageDigest digest = newSha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+              storageService.uploadFile(in, fileName, contentType, filePath);
+            }
+            if (!contentHash.equals(HexFormat.of().formatHex(digest.digest()))) {
+              deleteStoredFile(filePath);
+              throw new IOException("File content changed during upload");
+            }
+          });
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to upload file: " + e.getMessage(),
+          e);
+    }
+  }
+
+  /**
+   * Reject MIME types other than JPG, PNG and PDF.
+   */
+  public void checkAllowedType(String contentType) {
     if (contentType == null || !ALLOWED_MIME_TYPES.contains(contentType)) {
       throw new ResponseStatusException(
           HttpStatus.BAD_REQUEST,
           "File type not allowed. Only JPG, PNG, and PDF files are accepted.");
     }
+  }
 
-    String originalFilename = file.getOriginalFilename();
+  /**
+   * Create a Document for content with a known SHA-256: references the existing blob of that content,
+   * or stores it with the writer first (multipart upload, or the parts of a chunked upload).
+   */
+  public Document createDocument(
+      EntityType entityType,
+      Long entityId,
+      String originalFilename,
+      String contentType,
+      long size,
+      String uploadedBy,
+      String contentHash,
+      ContentWriter writer) throws IOException {
     if (originalFilename == null || originalFilename.isEmpty()) {
       originalFilename = "file";
     }
@@ -75,29 +170,114 @@ public class DocumentService {
       extension = originalFilename.substring(dotIndex);
     }
 
-    String uniqueFilename = UUID.randomUUID().toString() + extension;
-    String filePath = String.format("%s/%d/%s",
-        entityType.name().toLowerCase(), entityId, uniqueFilename);
+    DocumentBlob blob = acquireBlob(contentHash, size, contentType, extension, writer);
 
+    Document document = new Document();
+    document.setEntityType(entityType);
+    document.setEntityId(entityId);
+    document.setFileName(originalFilename);
+    document.setFilePath(blob.getStoragePath());
+    document.setFileSize(size);
+    document.setMimeType(contentType);
+    document.setUploadedBy(uploadedBy);
+    document.setBlob(blob);
+
+    Document saved;
     try {
-      // Upload file using storage service
-      storageService.uploadFile(file.getInputStream(), uniqueFilename, contentType, filePath);
-
-      Document document = new Document();
-      document.setEntityType(entityType);
-      document.setEntityId(entityId);
-      document.setFileName(originalFilename);
-      document.setFilePath(filePath);
-      document.setFileSize(file.getSize());
-      document.setMimeType(contentType);
-      document.setUploadedBy(uploadedBy);
-
-      return documentRepository.save(document);
-    } catch (IOException e) {
-      throw new ResponseStatusException(
-          HttpStatus.INTERNAL_SERVER_ERROR,
-          "Failed to upload file: " + e.getMessage(),
-          e);
+      saved = documentRepository.save(document);
+    } catch (RuntimeException e) {
+      releaseBlob(blob.getId(), blob.getStoragePath(), contentType);
+      throw e;
+    }
+    if (ImageVariantService.isImage(contentType)) {
+      // in the background: the upload response does not wait for the resize
+      imageVariantService.generateAsync(blob.getStoragePath());
+    }
+    return saved;
+  }
+
+  /**
+   * Reference the blob of this content, storing it first if it is new.
+   *
+   * A new blob is written by the writer to blobs/<2 hex>/<hash>_<random><ext>. The random part keeps
+   * a re-created blob from sharing a path with one whose file is still being deleted. If another upload of the same
+   * content wins the unique hash, our copy is dropped and theirs is referenced.
+   */
+  private DocumentBlob acquireBlob(
+      String contentHash,
+      long size,
+      String contentType,
+      String extension,
+      ContentWriter writer) throws IOException {
+    Optional<DocumentBlob> existing = documentBlobRepository.findByContentHash(contentHash);
+    if (existing.isPresent() && documentBlobRepository.incrementRefCount(existing.get().getId()) == 1) {
+      return existing.get();
+    }
+
+    String uniqueFilename = contentHash + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
+    String filePath = String.format("blobs/%s/%s", contentHash.substring(0, 2), uniqueFilename);
+
+    writer.writeTo(uniqueFilename, filePath);
+
+    DocumentBlob blob = new DocumentBlob();
+    blob.setContentHash(contentHash);
+    blob.setStoragePath(filePath);
+    blob.setFileSize(size);
+    blob.setMimeType(contentType);
+    blob.setRefCount(1);
+    try {
+      return documentBlobRepository.saveAndFlush(blob);
+    } catch (DataIntegrityViolationException e) {
+      // same content uploaded concurrently: the other request owns the unique hash
+      deleteStoredFile(filePath);
+      DocumentBlob winner = documentBlobRepository.findByContentHash(contentHash)
+          .filter(b -> documentBlobRepository.incrementRefCount(b.getId()) == 1)
+          .orElseThrow(() -> new ResponseStatusException(
+              HttpStatus.CONFLICT,
+              "The same file is being uploaded or deleted concurrently, please retry"));
+      return winner;
+    }
+  }
+
+  /**
+   * Drop one reference; the last reference removes the blob row and its stored file (with image variants).
+   */
+  private void releaseBlob(Long blobId, String storagePath, String mimeType) {
+    documentBlobRepository.decrementRefCount(blobId);
+    if (documentBlobRepository.deleteIfUnreferenced(blobId) == 1) {
+      deleteContent(storagePath, mimeType);
+    }
+  }
+
+  private void deleteContent(String filePath, String mimeType) {
+    deleteStoredFile(filePath);
+    if (ImageVariantService.isImage(mimeType)) {
+      imageVariantService.deleteVariants(filePath);
+    }
+  }
+
+  /** A file left behind here is removed later by OrphanFileSweeper (storage.sweeper.enabled) */
+  private void deleteStoredFile(String filePath) {
+    try {
+      storageService.deleteFile(filePath);
+    } catch (Exception e) {
+      System.err.println("Warning: Failed to delete file from storage: " + e.getMessage());
+    }
+  }
+
+  private static String sha256(MultipartFile file) throws IOException {
+    MessageDigest digest = newSha256();
+    try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
     }
   }
 
@@ -113,6 +293,87 @@ public class DocumentService {
     return storageService.downloadFile(document.getFilePath());
   }
 
+  /**
+   * File content as a streamable Resource (read from storage while the response is written;
+   * supports HTTP Range, see StorageResource).
+   */
+  public Resource getFileResource(Document document) {
+    long size = document.getFileSize() != null
+        ? document.getFileSize()
+        : storageService.getFileSize(document.getFilePath());
+    return new StorageResource(storageService, document.getFilePath(), size, document.getFileName());
+  }
+
+  /**
+   * A downscaled JPEG variant of an image document (generated on first request if missing,
+   * e.g. for documents uploaded before variants existed). Null variant = the original file.
+   */
+  public Resource getFileResource(Document document, Variant variant) {
+    if (variant == null) {
+      return getFileResource(document);
+    }
+    String path = ensureVariant(document, variant);
+    return new StorageResource(storageService, path, storageService.getFileSize(path),
+        variantFileName(document, variant));
+  }
+
+  /** Storage path of an image variant, generated if missing (400 for non-image documents) */
+  private String ensureVariant(Document document, Variant variant) {
+    if (!ImageVariantService.isImage(document.getMimeType())) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "Variants are only available for JPG and PNG documents");
+    }
+    return imageVariantService.ensure(document.getFilePath(), variant);
+  }
+
+  /** "scan.png" -> "scan-thumb.jpg" */
+  private static String variantFileName(Document document, Variant variant) {
+    String fileName = document.getFileName();
+    int dotIndex = fileName.lastIndexOf('.');
+    String baseName = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+    return baseName + "-" + variant.key() + ".jpg";
+  }
+
+  /**
+   * Short-lived URL from which the client downloads the file (or image variant) straight from storage,
+   * with the same Content-Type / Content-Disposition as the API download. Null when signed URLs are
+   * switched off, the backend cannot serve the file yet or signing fails; the caller then streams it.
+   */
+  public String getSignedUrl(Document document, Variant variant) {
+    if (!signedUrls) {
+      return null;
+    }
+    String path;
+    String contentType;
+    ContentDisposition disposition;
+    if (variant == null) {
+      path = document.getFilePath();
+      contentType = document.getMimeType();
+      disposition = ContentDisposition.attachment()
+          .filename(document.getFileName(), StandardCharsets.UTF_8)
+          .build();
+    } else {
+      path = ensureVariant(document, variant);
+      contentType = "image/jpeg";
+      disposition = ContentDisposition.inline()
+          .filename(variantFileName(document, variant), StandardCharsets.UTF_8)
+          .build();
+    }
+    try {
+      return storageService.createSignedUrl(path, contentType, disposition.toString(),
+          Duration.ofSeconds(signedUrlTtlSeconds));
+    } catch (RuntimeException e) {
+      // the file can still be streamed: a signing problem must not fail the download
+      log.warn("Could not sign a download URL for document {}: {}", document.getId(), e.getMessage());
+      return null;
+    }
+  }
+
+  public long getSignedUrlTtlSeconds() {
+    return signedUrlTtlSeconds;
+  }
+
   /**
    * Get document metadata by ID.
    */
@@ -131,7 +392,62 @@ public class DocumentService {
   }
 
   /**
-   * Delete a document and its file from storage.
+   * Documents of many entities of one type (e.g. every row of a maintenance table) with one query,
+   * grouped by entity ID in request order. Entities without documents map to an empty list.
+   */
+  public Map<Long, List<Document>> getDocumentsByEntities(EntityType entityType, List<Long> entityIds) {
+    Map<Long, List<Document>> byEntity = new LinkedHashMap<>();
+    for (Long entityId : batchIds(entityIds)) {
+      byEntity.put(entityId, new ArrayList<>());
+    }
+    if (byEntity.isEmpty()) {
+      return byEntity;
+    }
+    for (Document document : documentRepository.findByEntityTypeAndEntityIdInOrderByEntityIdAscIdAsc(
+        entityType, byEntity.keySet())) {
+      byEntity.get(document.getEntityId()).add(document);
+    }
+    return byEntity;
+  }
+
+  /**
+   * Document count per entity (attachment badges) with one GROUP BY query; 0 for entities without documents.
+   */
+  public Map<Long, Long> countDocumentsByEntities(EntityType entityType, List<Long> entityIds) {
+    Map<Long, Long> counts = new LinkedHashMap<>();
+    for (Long entityId : batchIds(entityIds)) {
+      counts.put(entityId, 0L);
+    }
+    if (counts.isEmpty()) {
+      return counts;
+    }
+    for (EntityDocumentCount count : documentRepository.countByEntityTypeAndEntityIdIn(
+        entityType, counts.keySet())) {
+      counts.put(count.entityId(), count.count());
+    }
+    return counts;
+  }
+
+  /** Distinct IDs in request order; the IN list is capped so one request cannot ask for the whole table */
+  private static LinkedHashSet<Long> batchIds(List<Long> entityIds) {
+    LinkedHashSet<Long> ids = new LinkedHashSet<>();
+    if (entityIds != null) {
+      for (Long entityId : entityIds) {
+        if (entityId != null) {
+          ids.add(entityId);
+        }
+      }
+    }
+    if (ids.size() > MAX_BATCH_ENTITIES) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "At most " + MAX_BATCH_ENTITIES + " entity IDs per request");
+    }
+    return ids;
+  }
+
+  /**
+   * Delete a document. Its file is removed from storage only when no other document shares it.
    */
   public void deleteDocument(Long documentId) {
     Document document = documentRepository.findById(documentId)
@@ -139,12 +455,14 @@ public class DocumentService {
             HttpStatus.NOT_FOUND,
             "Document not found: " + documentId));
 
-    try {
-      storageService.deleteFile(document.getFilePath());
-    } catch (Exception e) {
-      System.err.println("Warning: Failed to delete file from storage: " + e.getMessage());
-    }
-
+    DocumentBlob blob = document.getBlob();
     documentRepository.deleteById(documentId);
+
+    if (blob != null) {
+      // filePath is the blob's storagePath (no need to load the lazy blob)
+      releaseBlob(blob.getId(), document.getFilePath(), document.getMimeType());
+    } else {
+      deleteContent(document.getFilePath(), document.getMimeType());
+    }
   }
 }
@@ -0,0 +1,122 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devsop.project.apartmentinvoice.entity.Invoice;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Inserts new invoices with JDBC batching.
+ *
+ * Invoice uses IDENTITY ids, which makes Hibernate insert one row per statement; going
+ * through JdbcTemplate lets the driver send a whole chunk at once. Each chunk runs in its
+ * own transaction. A failed chunk is retried row by row so that only the offending rows fail.
+ * (MySQL: add rewriteBatchedStatements=true to the JDBC URL to get multi-row inserts.)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceBatchWriter {
+
+  private static final String INSERT_SQL = """
+      INSERT INTO invoice (
+        room_id, tenant_id, billing_year, billing_month, issue_date, due_date, paid_date,
+        rent_baht, electricity_units, electricity_rate, electricity_baht,
+        water_units, water_rate, water_baht, other_baht, common_fee_baht, garbage_fee_baht,
+        maintenance_baht, total_baht, previous_balance, interest_charge, accumulated_total, status
+      ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${csv.import.batch-size:500}")
+  private int batchSize;
+
+  /**
+   * Insert all invoices in chunks of csv.import.batch-size.
+   *
+   * @return one entry per invoice (same order): null if inserted, otherwise the error message
+   */
+  public List<String> insertAll(List<Invoice> invoices) {
+    String[] errors = new String[invoices.size()];
+    int chunkSize = Math.max(1, batchSize);
+
+    for (int from = 0; from < invoices.size(); from += chunkSize) {
+      List<Invoice> chunk = invoices.subList(from, Math.min(from + chunkSize, invoices.size()));
+      try {
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(), InvoiceBatchWriter::bind));
+      } catch (DataAccessException e) {
+        log.warn("Invoice batch insert failed ({} rows), retrying row by row: {}", chunk.size(), e.getMessage());
+        for (int i = 0; i < chunk.size(); i++) {
+          Invoice invoice = chunk.get(i);
+          try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, invoice)));
+          } catch (DataAccessException rowError) {
+            errors[from + i] = rowError.getMostSpecificCause().getMessage();
+          }
+        }
+      }
+    }
+    return Arrays.asList(errors);
+  }
+
+  private static void bind(PreparedStatement ps, Invoice inv) throws SQLException {
+    int i = 1;
+    ps.setLong(i++, inv.getRoom().getId());
+    ps.setLong(i++, inv.getTenant().getId());
+    ps.setInt(i++, inv.getBillingYear());
+    ps.setInt(i++, inv.getBillingMonth());
+    setDate(ps, i++, inv.getIssueDate());
+    setDate(ps, i++, inv.getDueDate());
+    setDate(ps, i++, inv.getPaidDate());
+    setDecimal(ps, i++, inv.getRentBaht());
+    setDecimal(ps, i++, inv.getElectricityUnits());
+    setDecimal(ps, i++, inv.getElectricityRate());
+    setDecimal(ps, i++, inv.getElectricityBaht());
+    setDecimal(ps, i++, inv.getWaterUnits());
+    setDecimal(ps, i++, inv.getWaterRate());
+    setDecimal(ps, i++, inv.getWaterBaht());
+    setDecimal(ps, i++, inv.getOtherBaht());
+    setDecimal(ps, i++, inv.getCommonFeeBaht());
+    setDecimal(ps, i++, inv.getGarbageFeeBaht());
+    setDecimal(ps, i++, inv.getMaintenanceBaht());
+    setDecimal(ps, i++, inv.getTotalBaht());
+    setDecimal(ps, i++, inv.getPreviousBalance());
+    setDecimal(ps, i++, inv.getInterestCharge());
+    setDecimal(ps, i++, inv.getAccumulatedTotal());
+    ps.setString(i, inv.getStatus().name());
+  }
+
+  private static void setDate(PreparedStatement ps, int index, LocalDate value) throws SQLException {
+    if (value == null) {
+      ps.setNull(index, Types.DATE);
+    } else {
+      ps.setObject(index, value);
+    }
+  }
+
+  private static void setDecimal(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
+    if (value == null) {
+      ps.setNull(index, Types.NUMERIC);
+    } else {
+      ps.setBigDecimal(index, value);
+    }
+  }
+}
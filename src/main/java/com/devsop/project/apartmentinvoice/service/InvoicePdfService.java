@@ -0,0 +1,434 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.pdfbox.multipdf.LayerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.entity.Invoice;
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayQrService;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Renders invoice PDFs for the single and bulk invoice endpoints.
+ *
+ * Two rendering modes:
+ * - full (default): invoice.html is rendered end-to-end for every invoice.
+ * - stamped (pdf.invoice.stamping.enabled=true): the static chrome of invoice-stamp.html
+ *   (headings, table frame, payment description, QR) is rendered once per settings version and
+ *   imported as a PDF form XObject. Each invoice's variable text is drawn on top of it directly
+ *   with PDFBox (no HTML render per invoice), using one Thai font loaded per output document.
+ *   A bulk print therefore embeds the chrome and the font subset once.
+ *
+ * When InvoiceSettings.promptPayId is set, unpaid invoices get a per-invoice PromptPay QR
+ * (amount = accumulatedTotal) embedded as a data URI; otherwise the static QR image is used.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoicePdfService {
+
+  private static final String FULL_TEMPLATE = "invoice";
+  private static final String STAMP_TEMPLATE = "invoice-stamp";
+  private static final String FONT = "/fonts/THSarabunNew.ttf";
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+  // Fields geometry of invoice-stamp.html, in mm from the top-left corner (CSS px = 0.75 pt)
+  private static final float PAGE_HEIGHT = PDRectangle.A4.getHeight();
+  private static final float VALUE_LEFT_MM = 60;
+  private static final float VALUE_TOP_MM = 36;
+  private static final float VALUE_STEP_MM = 7;
+  private static final float VALUE_FONT_SIZE = 16 * 0.75f;
+  private static final float ROW_TOP_MM = 90;
+  private static final float ROW_HEIGHT_MM = 8;
+  private static final float CELL_FONT_SIZE = 15 * 0.75f;
+  /** Right edge of the units / rate / amount text: row left 16mm + column left + width - 2mm padding */
+  private static final float UNITS_RIGHT_MM = 16 + 80 + 30 - 2;
+  private static final float RATE_RIGHT_MM = 16 + 110 + 30 - 2;
+  private static final float AMOUNT_RIGHT_MM = 16 + 140 + 38 - 2;
+  private static final float STATUS_LEFT_MM = 32;
+  private static final float STATUS_TOP_MM = 184;
+  private static final float QR_LEFT_MM = 138;
+  private static final float QR_TOP_MM = 204;
+  private static final float QR_SIZE_MM = 46;
+  private static final float[] TEXT = {0x22 / 255f, 0x22 / 255f, 0x22 / 255f};
+  private static final float[] ALERT = {0xcc / 255f, 0, 0};
+
+  private final PdfService pdfService;
+  private final InvoiceSettingsService settingsService;
+  private final PromptPayQrService promptPayQrService;
+
+  @Value("${file.upload.dir:./uploads}")
+  private String uploadBaseDir;
+
+  @Value("${pdf.invoice.stamping.enabled:false}")
+  private boolean stampingEnabled;
+
+  /** Rendered background pages keyed by "settings version|paid" (only the current version is kept) */
+  private final Map<String, byte[]> backgroundCache = new ConcurrentHashMap<>();
+  private volatile String cachedSettingsVersion;
+
+  /**
+   * Render a single invoice. Rendering errors are propagated to the caller.
+   */
+  public byte[] renderInvoice(Invoice invoice) {
+    InvoiceSettings settings = settingsService.getSettings();
+    String qrCodeFullPath = qrCodeFullPath(settings);
+
+    if (stampingEnabled) {
+      return renderStamped(List.of(invoice), settings, qrCodeFullPath, false);
+    }
+    return pdfService.renderTemplateToPdf(FULL_TEMPLATE, fullModel(invoice, settings, qrCodeFullPath));
+  }
+
+  /**
+   * Render many invoices into one PDF.
+   * Invoices that fail to render are logged and skipped; 400 if none could be rendered.
+   */
+  public byte[] renderInvoices(List<Invoice> invoices) {
+    InvoiceSettings settings = settingsService.getSettings();
+    String qrCodeFullPath = qrCodeFullPath(settings);
+
+    if (stampingEnabled) {
+      return renderStamped(invoices, settings, qrCodeFullPath, true);
+    }
+
+    List<byte[]> pdfList = new ArrayList<>();
+    for (Invoice invoice : invoices) {
+      try {
+        pdfList.add(pdfService.renderTemplateToPdf(FULL_TEMPLATE, fullModel(invoice, settings, qrCodeFullPath)));
+      } catch (Exception e) {
+        log.warn("Failed to generate PDF for invoice {}: {}", invoice.getId(), e.getMessage());
+      }
+    }
+
+    if (pdfList.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No valid invoices found to print");
+    }
+    return pdfService.mergePdfs(pdfList);
+  }
+
+  // ---------- full mode ----------
+
+  private Map<String, Object> fullModel(Invoice invoice, InvoiceSettings settings, String qrCodeFullPath) {
+    Map<String, Object> model = new HashMap<>();
+    model.put("invoice", invoice);
+    model.put("settings", settings);
+    model.put("qrCodeFullPath", qrCodeFullPath);
+    model.put("qrCodeDataUri", qrCodeDataUri(invoice, settings));
+    return model;
+  }
+
+  // ---------- stamped mode ----------
+
+  private byte[] renderStamped(List<Invoice> invoices, InvoiceSettings settings, String qrCodeFullPath, boolean skipFailures) {
+    try (PDDocument out = new PDDocument();
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
+      LayerUtility layers = new LayerUtility(out);
+
+      // One imported XObject per variant, shared by every page of this document
+      Map<Boolean, PDFormXObject> backgrounds = new HashMap<>();
+      // One font (one embedded subset) and one image per distinct PromptPay QR for the whole document
+      PDType0Font font = loadFont(out);
+      Map<String, PDImageXObject> qrImages = new HashMap<>();
+
+      for (Invoice invoice : invoices) {
+        boolean paid = invoice.getStatus() == Invoice.Status.PAID;
+        try {
+          PDFormXObject background = backgrounds.get(paid);
+          if (background == null) {
+            background = importForm(layers, background(settings, qrCodeFullPath, paid));
+            backgrounds.put(paid, background);
+          }
+
+          PDImageXObject qr = null;
+          String qrCodeDataUri = qrCodeDataUri(invoice, settings);
+          if (qrCodeDataUri != null) {
+            qr = qrImages.get(qrCodeDataUri);
+            if (qr == null) {
+              qr = PDImageXObject.createFromByteArray(out, decodeDataUri(qrCodeDataUri), "promptpay-qr");
+              qrImages.put(qrCodeDataUri, qr);
+            }
+          }
+
+          PDPage page = new PDPage(PDRectangle.A4);
+          try (PDPageContentStream content = new PDPageContentStream(out, page)) {
+            content.drawForm(background);
+            drawFields(content, font, invoice, qr);
+          }
+          out.addPage(page);
+        } catch (Exception e) {
+          if (!skipFailures) {
+            throw e;
+          }
+          log.warn("Failed to generate PDF for invoice {}: {}", invoice.getId(), e.getMessage());
+        }
+      }
+
+      if (out.getNumberOfPages() == 0) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No valid invoices found to print");
+      }
+
+      out.save(bytes);
+      return bytes.toByteArray();
+
+    } catch (ResponseStatusException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException("❌ Failed to render stamped invoice PDF: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Variable text of one invoice, drawn straight into the page content stream.
+   * Positions mirror the boxes of invoice-stamp.html (mm from the top-left corner of A4).
+   */
+  private void drawFields(PDPageContentStream content, PDType0Font font, Invoice inv, PDImageXObject qr)
+      throws IOException {
+    String[] values = {
+        String.valueOf(inv.getRoom().getNumber()),
+        inv.getTenant().getName(),
+        inv.getTenant().getPhone() != null ? inv.getTenant().getPhone() : "-",
+        inv.getBillingMonth() + "/" + inv.getBillingYear(),
+        date(inv.getIssueDate()),
+        date(inv.getDueDate()),
+    };
+    for (int i = 0; i < values.length; i++) {
+      float top = mm(VALUE_TOP_MM + i * VALUE_STEP_MM);
+      drawText(content, font, VALUE_FONT_SIZE, mm(VALUE_LEFT_MM), top + ascent(font, VALUE_FONT_SIZE), values[i], TEXT);
+    }
+
+    List<StampRow> rows = stampRows(inv);
+    for (int i = 0; i < rows.size(); i++) {
+      StampRow row = rows.get(i);
+      float top = mm(ROW_TOP_MM + i * ROW_HEIGHT_MM);
+      // line-height = row height: the line box is centred in the cell
+      float lineHeight = (font.getFontDescriptor().getAscent() - font.getFontDescriptor().getDescent())
+          / 1000f * CELL_FONT_SIZE;
+      float baseline = top + (mm(ROW_HEIGHT_MM) - lineHeight) / 2 + ascent(font, CELL_FONT_SIZE);
+      if (!row.isFooter()) {
+        drawRight(content, font, mm(UNITS_RIGHT_MM), baseline, row.getUnits() != null ? row.getUnits() : "-", TEXT);
+        drawRight(content, font, mm(RATE_RIGHT_MM), baseline, row.getRate() != null ? row.getRate() : "-", TEXT);
+      }
+      drawRight(content, font, mm(AMOUNT_RIGHT_MM), baseline, row.getAmount(), row.isAlert() ? ALERT : TEXT);
+    }
+
+    if (qr != null) {
+      float size = mm(QR_SIZE_MM);
+      content.drawImage(qr, mm(QR_LEFT_MM), PAGE_HEIGHT - mm(QR_TOP_MM) - size, size, size);
+    }
+
+    String status = inv.getStatus() != null ? inv.getStatus().name() : "";
+    if (inv.getPaidDate() != null) {
+      status += " • ชำระเมื่อ " + date(inv.getPaidDate());
+    }
+    drawText(content, font, VALUE_FONT_SIZE, mm(STATUS_LEFT_MM), mm(STATUS_TOP_MM) + ascent(font, VALUE_FONT_SIZE),
+        status, TEXT);
+  }
+
+  private static void drawRight(PDPageContentStream content, PDType0Font font, float right, float baseline,
+      String text, float[] colour) throws IOException {
+    String printable = printable(font, text);
+    float width = font.getStringWidth(printable) / 1000f * CELL_FONT_SIZE;
+    drawText(content, font, CELL_FONT_SIZE, right - width, baseline, printable, colour);
+  }
+
+  /** x and baseline are measured from the top-left corner, like the template */
+  private static void drawText(PDPageContentStream content, PDType0Font font, float size, float x, float baseline,
+      String text, float[] colour) throws IOException {
+    content.beginText();
+    content.setFont(font, size);
+    content.setNonStrokingColor(colour[0], colour[1], colour[2]);
+    content.newLineAtOffset(x, PAGE_HEIGHT - baseline);
+    content.showText(printable(font, text));
+    content.endText();
+  }
+
+  /** Drop characters the font has no glyph for (the HTML renderer would have fallen back to another font) */
+  private static String printable(PDType0Font font, String text) {
+    if (text == null) {
+      return "";
+    }
+    try {
+      font.encode(text);
+      return text;
+    } catch (IllegalArgumentException | IOException e) {
+      StringBuilder kept = new StringBuilder();
+      text.codePoints().forEach(cp -> {
+        String ch = new String(Character.toChars(cp));
+        try {
+          font.encode(ch);
+          kept.append(ch);
+        } catch (IllegalArgumentException | IOException ignored) {
+          // ไม่มี glyph ในฟอนต์
+        }
+      });
+      return kept.toString();
+    }
+  }
+
+  private static float ascent(PDType0Font font, float size) {
+    return font.getFontDescriptor().getAscent() / 1000f * size;
+  }
+
+  private static float mm(float mm) {
+    return mm * 72f / 25.4f;
+  }
+
+  private static String date(LocalDate date) {
+    return date != null ? DATE.format(date) : "";
+  }
+
+  private static byte[] decodeDataUri(String dataUri) {
+    return Base64.getDecoder().decode(dataUri.substring(dataUri.indexOf(',') + 1));
+  }
+
+  /** Loaded into the output document so every page shares one embedded subset */
+  private static PDType0Font loadFont(PDDocument out) throws IOException {
+    try (InputStream in = InvoicePdfService.class.getResourceAsStream(FONT)) {
+      if (in == null) {
+        throw new IOException("Font not found on classpath: " + FONT);
+      }
+      return PDType0Font.load(out, in);
+    }
+  }
+
+  /**
+   * Background page for the current settings version, rendered once and reused.
+   * Paid invoices use a variant without the payment box.
+   */
+  private byte[] background(InvoiceSettings settings, String qrCodeFullPath, boolean paid) {
+    String version = settings.getId() + "@" + settings.getUpdatedAt() + "@" + qrCodeFullPath
+        + "@" + settings.getPromptPayId();
+    if (!version.equals(cachedSettingsVersion)) {
+      backgroundCache.clear();
+      cachedSettingsVersion = version;
+    }
+
+    return backgroundCache.computeIfAbsent(version + "|" + paid, key ->
+        pdfService.renderTemplateToPdf(STAMP_TEMPLATE, backgroundModel(settings, qrCodeFullPath, paid)));
+  }
+
+  /** Import page 0 of a rendered PDF into the target document as a form XObject */
+  private PDFormXObject importForm(LayerUtility layers, byte[] pdf) throws IOException {
+    try (PDDocument source = PDDocument.load(pdf)) {
+      return layers.importPageAsForm(source, 0);
+    }
+  }
+
+  private Map<String, Object> backgroundModel(InvoiceSettings settings, String qrCodeFullPath, boolean paid) {
+    Map<String, Object> model = new HashMap<>();
+    model.put("settings", settings);
+    model.put("qrCodeFullPath", qrCodeFullPath);
+    // static QR only without PromptPay; the per-invoice PromptPay QR is drawn with the fields
+    model.put("dynamicQr", settings.getPromptPayId() != null);
+    model.put("paid", paid);
+    model.put("rows", stampRows(null));
+    return model;
+  }
+
+  /**
+   * Fixed set of table rows used by the stamped layout.
+   * Every row is always present so its position does not depend on the invoice;
+   * with invoice == null only the labels are filled (background layer).
+   */
+  private List<StampRow> stampRows(Invoice inv) {
+    List<StampRow> rows = new ArrayList<>();
+    rows.add(new StampRow("ค่าเช่าห้องพัก", null, null, inv == null ? null : money(inv.getRentBaht()), false, false));
+    rows.add(new StampRow("ค่าไฟฟ้า",
+        inv == null ? null : plain(inv.getElectricityUnits()),
+        inv == null ? null : plain(inv.getElectricityRate()),
+        inv == null ? null : money(inv.getElectricityBaht()), false, false));
+    rows.add(new StampRow("ค่าน้ำประปา",
+        inv == null ? null : plain(inv.getWaterUnits()),
+        inv == null ? null : plain(inv.getWaterRate()),
+        inv == null ? null : money(inv.getWaterBaht()), false, false));
+    rows.add(new StampRow("ค่าใช้จ่ายอื่น ๆ", null, null, inv == null ? null : money(inv.getOtherBaht()), false, false));
+    rows.add(new StampRow("ค่าส่วนกลาง", null, null, inv == null ? null : money(inv.getCommonFeeBaht()), false, false));
+    rows.add(new StampRow("ค่าขยะ", null, null, inv == null ? null : money(inv.getGarbageFeeBaht()), false, false));
+    rows.add(new StampRow("ค่าซ่อมบำรุง (รวมเดือนนี้)", null, null, inv == null ? null : money(inv.getMaintenanceBaht()), false, false));
+
+    rows.add(new StampRow("รวมค่าใช้จ่ายเดือนนี้", null, null, inv == null ? null : money(inv.getTotalBaht()), true, false));
+    rows.add(new StampRow("ยอดค้างชำระจากเดือนก่อน", null, null, inv == null ? null : money(inv.getPreviousBalance()), true, true));
+    rows.add(new StampRow("ค่าปรับล่าช้า (ดอกเบี้ย)", null, null, inv == null ? null : money(inv.getInterestCharge()), true, true));
+
+    BigDecimal grandTotal = null;
+    if (inv != null) {
+      grandTotal = inv.getAccumulatedTotal() != null ? inv.getAccumulatedTotal() : inv.getTotalBaht();
+    }
+    rows.add(new StampRow("รวมทั้งสิ้น", null, null, inv == null ? null : money(grandTotal), true, false));
+    return rows;
+  }
+
+  private static String money(BigDecimal v) {
+    return String.format(Locale.US, "%,.2f", v != null ? v : BigDecimal.ZERO);
+  }
+
+  private static String plain(BigDecimal v) {
+    return v != null ? v.toPlainString() : "-";
+  }
+
+  // ---------- shared ----------
+
+  /** Full path to the QR code image for PDF embedding */
+  private String qrCodeFullPath(InvoiceSettings settings) {
+    if (settings.getQrCodeImagePath() == null) {
+      return null;
+    }
+    return java.nio.file.Paths.get(uploadBaseDir, settings.getQrCodeImagePath())
+        .toAbsolutePath().toString().replace("\\", "/");
+  }
+
+  /**
+   * PromptPay QR for the amount due (accumulatedTotal, or totalBaht when there is no carried debt).
+   * null when PromptPay is not configured or the invoice is already paid.
+   */
+  private String qrCodeDataUri(Invoice invoice, InvoiceSettings settings) {
+    if (settings.getPromptPayId() == null || invoice.getStatus() == Invoice.Status.PAID) {
+      return null;
+    }
+    BigDecimal amount = invoice.getAccumulatedTotal() != null ? invoice.getAccumulatedTotal() : invoice.getTotalBaht();
+    return promptPayQrService.qrDataUri(settings.getPromptPayId(), amount);
+  }
+
+  /** One table row of the stamped layout */
+  @Getter
+  @AllArgsConstructor
+  public static class StampRow {
+    private final String label;
+    private final String units;
+    private final String rate;
+    private final String amount;
+    /** Footer rows span the units/rate columns with a right-aligned label */
+    private final boolean footer;
+    /** Debt rows are highlighted in red */
+    private final boolean alert;
+  }
+}
@@ -48,7 +48,19 @@ public class InvoiceService {
 
     // Get interest rate from settings
     InvoiceSettings settings = settingsService.getSettings();
-    BigDecimal interestRatePerMonth = settings.getInterestRatePerMonth();
+    return calculateDebt(unpaidInvoices, settings.getInterestRatePerMonth(), billingYear, billingMonth);
+  }
+
+  /**
+   * Debt calculation over an already-loaded list of unpaid invoices (no queries).
+   * Shared by calculateAccumulatedDebt and the set-oriented CSV import, which loads the
+   * unpaid invoices of all rooms in the file at once.
+   *
+   * @param unpaidInvoices unpaid invoices of one room from periods before the new invoice
+   * @param interestRatePerMonth monthly interest rate in percent (null = no interest)
+   */
+  public static DebtCalculation calculateDebt(
+      List<Invoice> unpaidInvoices, BigDecimal interestRatePerMonth, Integer billingYear, Integer billingMonth) {
     if (interestRatePerMonth == null) {
       interestRatePerMonth = BigDecimal.ZERO;
     }
@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 
 import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
 import com.devsop.project.apartmentinvoice.repository.InvoiceSettingsRepository;
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayPayload;
 
 import lombok.RequiredArgsConstructor;
 
@@ -46,10 +47,17 @@ public class InvoiceSettingsService {
       if (settings.getInterestRatePerMonth() != null) {
         existing.setInterestRatePerMonth(settings.getInterestRatePerMonth());
       }
+      if (settings.getPromptPayId() != null) {
+        // empty string clears PromptPay and falls back to the static QR image
+        existing.setPromptPayId(validPromptPayId(settings.getPromptPayId()));
+      }
       return settingsRepository.save(existing);
     } else {
       // Create new settings with id=1
       settings.setId(1L);
+      if (settings.getPromptPayId() != null) {
+        settings.setPromptPayId(validPromptPayId(settings.getPromptPayId()));
+      }
       return settingsRepository.save(settings);
     }
   }
@@ -63,6 +71,22 @@ public class InvoiceSettingsService {
     return settingsRepository.save(settings);
   }
 
+  /**
+   * Validate a PromptPay ID (throws IllegalArgumentException -> 400); blank means "not used".
+   * Only digits with optional spaces/dashes are accepted, and only the digits are stored
+   * (at most 15, so the value always fits the column).
+   */
+  private String validPromptPayId(String promptPayId) {
+    if (promptPayId.isBlank()) {
+      return null;
+    }
+    if (!promptPayId.trim().matches("[0-9][0-9 -]*")) {
+      throw new IllegalArgumentException("Invalid PromptPay ID: only digits, spaces and dashes are allowed");
+    }
+    PromptPayPayload.normalize(promptPayId);
+    return promptPayId.replaceAll("[^0-9]", "");
+  }
+
   /**
    * Create default settings with placeholder values.
    */
@@ -0,0 +1,271 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devsop.project.apartmentinvoice.dto.MeterReadingRequest;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.repository.RoomRepository;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Meter readings (cumulative values) and the units derived from them.
+ *
+ * Units used between two readings = reading - previous reading of the same meter. The previous
+ * reading is taken with LAG() over the (room_id, meter_type, reading_date) index, so a whole batch
+ * of rooms/months is resolved by one windowed query instead of one "previous reading" query per row.
+ * Units of a billing month = sum of the deltas of the readings dated in that month.
+ */
+@Service
+@RequiredArgsConstructor
+public class MeterReadingService {
+
+  private static final String DELTA_SQL = """
+      SELECT room_id, meter_type, reading_date, reading_value, previous_value
+      FROM (
+        SELECT room_id, meter_type, reading_date, reading_value,
+               LAG(reading_value) OVER (PARTITION BY room_id, meter_type ORDER BY reading_date) AS previous_value
+        FROM meter_reading
+        WHERE room_id IN (:roomIds) AND reading_date <= :to
+      ) r
+      WHERE reading_date >= :from
+      ORDER BY room_id, meter_type, reading_date
+      """;
+
+  private static final String EXISTING_KEYS_SQL = """
+      SELECT room_id, meter_type, reading_date FROM meter_reading
+      WHERE room_id IN (:roomIds) AND reading_date BETWEEN :from AND :to
+      """;
+
+  private static final String INSERT_SQL = """
+      INSERT INTO meter_reading (room_id, meter_type, reading_date, reading_value)
+      VALUES (:roomId, :meterType, :readingDate, :readingValue)
+      """;
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final RoomRepository roomRepository;
+
+  /** One reading with the previous reading of the same meter (null = first reading, no usage known) */
+  public record ReadingDelta(
+      Long roomId,
+      MeterType meterType,
+      LocalDate readingDate,
+      BigDecimal readingValue,
+      BigDecimal previousValue
+  ) {
+    @JsonProperty("delta")
+    public BigDecimal delta() {
+      return previousValue != null ? readingValue.subtract(previousValue) : null;
+    }
+  }
+
+  /** Usage of one meter in one billing month */
+  public record UsageKey(Long roomId, MeterType meterType, int year, int month) {
+  }
+
+  /**
+   * Readings dated in [from, to] for the given rooms, each with its previous reading (which may be
+   * older than from), ordered by room, meter type and date. One query.
+   */
+  public List<ReadingDelta> findDeltas(Collection<Long> roomIds, LocalDate from, LocalDate to) {
+    if (roomIds == null || roomIds.isEmpty()) {
+      return List.of();
+    }
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("roomIds", roomIds)
+        .addValue("from", from)
+        .addValue("to", to);
+    return jdbcTemplate.query(DELTA_SQL, params, (rs, i) -> new ReadingDelta(
+        rs.getLong("room_id"),
+        MeterType.valueOf(rs.getString("meter_type")),
+        rs.getDate("reading_date").toLocalDate(),
+        rs.getBigDecimal("reading_value"),
+        rs.getBigDecimal("previous_value")));
+  }
+
+  /**
+   * Units per (room, meter, month) for every month in [from, to] that has readings.
+   * A month whose readings have no earlier reading to compare with is left out (usage unknown);
+   * a negative value means a reading is lower than the one before it.
+   */
+  public Map<UsageKey, BigDecimal> findMonthlyUsage(Collection<Long> roomIds, LocalDate from, LocalDate to) {
+    Map<UsageKey, BigDecimal> usage = new HashMap<>();
+    for (ReadingDelta reading : findDeltas(roomIds, from, to)) {
+      BigDecimal delta = reading.delta();
+      if (delta == null) {
+        continue;
+      }
+      UsageKey key = new UsageKey(reading.roomId(), reading.meterType(),
+          reading.readingDate().getYear(), reading.readingDate().getMonthValue());
+      usage.merge(key, delta, BigDecimal::add);
+    }
+    return usage;
+  }
+
+  /** Units of both meters of one room in one billing month (missing meter = no key) */
+  public Map<MeterType, BigDecimal> usageForPeriod(Long roomId, int year, int month) {
+    LocalDate from = LocalDate.of(year, month, 1);
+    LocalDate to = from.withDayOfMonth(from.lengthOfMonth());
+    Map<MeterType, BigDecimal> usage = new HashMap<>();
+    findMonthlyUsage(List.of(roomId), from, to).forEach((key, units) -> usage.put(key.meterType(), units));
+    return usage;
+  }
+
+  /**
+   * Bulk insert of readings.
+   * Rooms and already stored (room, meter, date) keys are prefetched in 2 queries; invalid rows are
+   * reported and skipped, valid rows are written as one JDBC batch in one transaction.
+   */
+  public IngestResult ingest(List<MeterReadingRequest> readings) {
+    IngestResult result = new IngestResult();
+    if (readings == null || readings.isEmpty()) {
+      return result;
+    }
+
+    Set<Integer> roomNumbers = readings.stream()
+        .map(MeterReadingRequest::getRoomNumber)
+        .filter(n -> n != null)
+        .collect(Collectors.toSet());
+    Map<Integer, Long> roomIds = new HashMap<>();
+    if (!roomNumbers.isEmpty()) {
+      for (Room room : roomRepository.findByNumberIn(roomNumbers)) {
+        roomIds.put(room.getNumber(), room.getId());
+      }
+    }
+    Set<ReadingKey> existing = loadExistingKeys(roomIds.values(), readings);
+
+    List<SqlParameterSource> rows = new ArrayList<>();
+    List<String> labels = new ArrayList<>();
+    for (int i = 0; i < readings.size(); i++) {
+      MeterReadingRequest reading = readings.get(i);
+      String label = "Row " + (i + 1);
+
+      String error = validate(reading, roomIds);
+      if (error != null) {
+        result.addError(label, error);
+        continue;
+      }
+      Long roomId = roomIds.get(reading.getRoomNumber());
+      ReadingKey key = new ReadingKey(roomId, reading.getMeterType(), reading.getReadingDate());
+      if (!existing.add(key)) {
+        result.addError(label, "Reading already exists for room " + reading.getRoomNumber() + " "
+            + reading.getMeterType() + " on " + reading.getReadingDate());
+        continue;
+      }
+
+      rows.add(new MapSqlParameterSource()
+          .addValue("roomId", roomId)
+          .addValue("meterType", reading.getMeterType().name())
+          .addValue("readingDate", reading.getReadingDate())
+          .addValue("readingValue", reading.getReadingValue()));
+      labels.add(label);
+    }
+
+    if (rows.isEmpty()) {
+      return result;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status ->
+          jdbcTemplate.batchUpdate(INSERT_SQL, rows.toArray(SqlParameterSource[]::new)));
+      result.successCount = rows.size();
+    } catch (DataAccessException e) {
+      for (String label : labels) {
+        result.addError(label, "Not saved (batch rolled back): " + e.getMostSpecificCause().getMessage());
+      }
+    }
+    return result;
+  }
+
+  private static String validate(MeterReadingRequest reading, Map<Integer, Long> roomIds) {
+    if (reading.getRoomNumber() == null) {
+      return "roomNumber is required";
+    }
+    if (!roomIds.containsKey(reading.getRoomNumber())) {
+      return "Room not found: " + reading.getRoomNumber();
+    }
+    if (reading.getMeterType() == null) {
+      return "meterType is required";
+    }
+    if (reading.getReadingDate() == null) {
+      return "readingDate is required";
+    }
+    if (reading.getReadingValue() == null) {
+      return "readingValue is required";
+    }
+    if (reading.getReadingValue().signum() < 0) {
+      return "readingValue must not be negative";
+    }
+    return null;
+  }
+
+  private Set<ReadingKey> loadExistingKeys(Collection<Long> roomIds, List<MeterReadingRequest> readings) {
+    Set<ReadingKey> keys = new HashSet<>();
+    List<LocalDate> dates = readings.stream()
+        .map(MeterReadingRequest::getReadingDate)
+        .filter(d -> d != null)
+        .sorted()
+        .toList();
+    if (roomIds.isEmpty() || dates.isEmpty()) {
+      return keys;
+    }
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("roomIds", roomIds)
+        .addValue("from", dates.get(0))
+        .addValue("to", dates.get(dates.size() - 1));
+    jdbcTemplate.query(EXISTING_KEYS_SQL, params, rs -> {
+      keys.add(new ReadingKey(
+          rs.getLong("room_id"),
+          MeterType.valueOf(rs.getString("meter_type")),
+          rs.getDate("reading_date").toLocalDate()));
+    });
+    return keys;
+  }
+
+  private record ReadingKey(Long roomId, MeterType meterType, LocalDate readingDate) {
+  }
+
+  public static class IngestResult {
+    private int successCount = 0;
+    private final List<String> errors = new ArrayList<>();
+
+    void addError(String label, String message) {
+      errors.add(label + ": " + message);
+    }
+
+    /** Readings written */
+    public int getSuccessCount() {
+      return successCount;
+    }
+
+    public int getFailureCount() {
+      return errors.size();
+    }
+
+    public int getTotalProcessed() {
+      return successCount + errors.size();
+    }
+
+    public List<String> getErrors() {
+      return errors;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devsop.project.apartmentinvoice.entity.Lease;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Writes validated onboarding rows (rooms, tenants, leases) with JDBC batching.
+ *
+ * One call = one transaction: new tenants, new rooms, room updates and leases are each sent as a
+ * single batch; generated tenant/room ids are read back from the batch to fill the foreign keys.
+ * Rows are validated beforehand (OnboardingImportService), so a failure here rolls back the chunk.
+ */
+@Component
+@RequiredArgsConstructor
+public class OnboardingBatchWriter {
+
+  private static final String INSERT_TENANT_SQL =
+      "INSERT INTO tenant (name, phone, line_id) VALUES (:name, :phone, :lineId)";
+
+  private static final String INSERT_ROOM_SQL = """
+      INSERT INTO room (number, status, tenant_id, common_fee_baht, garbage_fee_baht)
+      VALUES (:number, :status, :tenantId, :commonFeeBaht, :garbageFeeBaht)
+      """;
+
+  private static final String OCCUPY_ROOM_SQL =
+      "UPDATE room SET status = 'OCCUPIED', tenant_id = :tenantId WHERE id = :id";
+
+  private static final String INSERT_LEASE_SQL = """
+      INSERT INTO lease (room_id, tenant_id, start_date, end_date, monthly_rent, deposit_baht, status, settled)
+      VALUES (:roomId, :tenantId, :startDate, :endDate, :monthlyRent, :depositBaht, :status, :settled)
+      """;
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  /** Tenant to create (rows with the same name + phone share one instance) */
+  public record NewTenant(String name, String phone, String lineId) {
+  }
+
+  public record LeasePlan(LocalDate startDate, LocalDate endDate, BigDecimal monthlyRent, BigDecimal depositBaht) {
+  }
+
+  /**
+   * One validated row.
+   * roomId null = create the room; tenant is either an existing tenantId or a NewTenant (or neither
+   * for a vacant room); lease is set whenever there is a tenant.
+   */
+  public record RoomPlan(
+      Long roomId,
+      Integer roomNumber,
+      BigDecimal commonFeeBaht,
+      BigDecimal garbageFeeBaht,
+      Long tenantId,
+      NewTenant newTenant,
+      LeasePlan lease
+  ) {
+    boolean hasTenant() {
+      return tenantId != null || newTenant != null;
+    }
+  }
+
+  public record ChunkResult(int roomsCreated, int tenantsCreated, int leasesCreated) {
+  }
+
+  /**
+   * Insert one chunk in a single transaction.
+   *
+   * @param createdTenants tenants already created by earlier chunks (updated with this chunk's tenants after commit)
+   * @throws org.springframework.dao.DataAccessException if the chunk could not be written (nothing is kept)
+   */
+  public ChunkResult writeChunk(List<RoomPlan> chunk, Map<NewTenant, Long> createdTenants) {
+    Map<NewTenant, Long> chunkTenants = new HashMap<>();
+
+    ChunkResult result = transactionTemplate.execute(status -> {
+      // ---- 1) tenants ใหม่ (ไม่ซ้ำกับ chunk ก่อนหน้า)
+      Set<NewTenant> tenants = new LinkedHashSet<>();
+      for (RoomPlan plan : chunk) {
+        if (plan.newTenant() != null && !createdTenants.containsKey(plan.newTenant())) {
+          tenants.add(plan.newTenant());
+        }
+      }
+      List<NewTenant> tenantList = new ArrayList<>(tenants);
+      List<Long> tenantIds = insertReturningIds(INSERT_TENANT_SQL, tenantList.stream()
+          .map(t -> new MapSqlParameterSource()
+              .addValue("name", t.name())
+              .addValue("phone", t.phone())
+              .addValue("lineId", t.lineId()))
+          .toList());
+      for (int i = 0; i < tenantList.size(); i++) {
+        chunkTenants.put(tenantList.get(i), tenantIds.get(i));
+      }
+
+      // ---- 2) rooms ใหม่ + อัปเดตห้องเดิมที่ได้ผู้เช่า
+      List<RoomPlan> newRooms = chunk.stream().filter(p -> p.roomId() == null).toList();
+      List<Long> roomIds = insertReturningIds(INSERT_ROOM_SQL, newRooms.stream()
+          .map(p -> new MapSqlParameterSource()
+              .addValue("number", p.roomNumber())
+              .addValue("status", p.hasTenant() ? "OCCUPIED" : "FREE")
+              .addValue("tenantId", tenantIdOf(p, createdTenants, chunkTenants))
+              .addValue("commonFeeBaht", p.commonFeeBaht())
+              .addValue("garbageFeeBaht", p.garbageFeeBaht()))
+          .toList());
+      Map<RoomPlan, Long> roomIdByPlan = new IdentityHashMap<>();
+      for (int i = 0; i < newRooms.size(); i++) {
+        roomIdByPlan.put(newRooms.get(i), roomIds.get(i));
+      }
+
+      SqlParameterSource[] occupied = chunk.stream()
+          .filter(p -> p.roomId() != null && p.hasTenant())
+          .map(p -> new MapSqlParameterSource()
+              .addValue("id", p.roomId())
+              .addValue("tenantId", tenantIdOf(p, createdTenants, chunkTenants)))
+          .toArray(SqlParameterSource[]::new);
+      if (occupied.length > 0) {
+        jdbcTemplate.batchUpdate(OCCUPY_ROOM_SQL, occupied);
+      }
+
+      // ---- 3) leases
+      SqlParameterSource[] leases = chunk.stream()
+          .filter(p -> p.lease() != null)
+          .map(p -> new MapSqlParameterSource()
+              .addValue("roomId", p.roomId() != null ? p.roomId() : roomIdByPlan.get(p))
+              .addValue("tenantId", tenantIdOf(p, createdTenants, chunkTenants))
+              .addValue("startDate", p.lease().startDate())
+              .addValue("endDate", p.lease().endDate())
+              .addValue("monthlyRent", p.lease().monthlyRent())
+              .addValue("depositBaht", p.lease().depositBaht())
+              .addValue("status", Lease.Status.ACTIVE.name())
+              .addValue("settled", Boolean.FALSE))
+          .toArray(SqlParameterSource[]::new);
+      if (leases.length > 0) {
+        jdbcTemplate.batchUpdate(INSERT_LEASE_SQL, leases);
+      }
+
+      return new ChunkResult(newRooms.size(), tenantList.size(), leases.length);
+    });
+
+    // committed: later chunks reuse these tenants
+    createdTenants.putAll(chunkTenants);
+    return result;
+  }
+
+  private static Long tenantIdOf(RoomPlan plan, Map<NewTenant, Long> created, Map<NewTenant, Long> inChunk) {
+    if (plan.tenantId() != null) {
+      return plan.tenantId();
+    }
+    if (plan.newTenant() == null) {
+      return null;
+    }
+    Long id = inChunk.get(plan.newTenant());
+    return id != null ? id : created.get(plan.newTenant());
+  }
+
+  /** Batch insert and return the generated ids in row order */
+  private List<Long> insertReturningIds(String sql, List<MapSqlParameterSource> rows) {
+    if (rows.isEmpty()) {
+      return List.of();
+    }
+    KeyHolder keys = new GeneratedKeyHolder();
+    jdbcTemplate.batchUpdate(sql, rows.toArray(SqlParameterSource[]::new), keys, new String[] {"id"});
+    // key column is "id"/"ID" (H2, PostgreSQL) or "GENERATED_KEY" (MySQL): take the only value
+    return keys.getKeyList().stream()
+        .map(k -> ((Number) k.values().iterator().next()).longValue())
+        .toList();
+  }
+}
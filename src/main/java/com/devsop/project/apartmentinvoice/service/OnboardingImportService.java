@@ -0,0 +1,398 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.dto.OnboardingRow;
+import com.devsop.project.apartmentinvoice.entity.Lease;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.entity.Tenant;
+import com.devsop.project.apartmentinvoice.repository.LeaseRepository;
+import com.devsop.project.apartmentinvoice.repository.RoomRepository;
+import com.devsop.project.apartmentinvoice.repository.TenantRepository;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.ChunkResult;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.LeasePlan;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.NewTenant;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.RoomPlan;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bulk onboarding of a building from one CSV or JSON file (see OnboardingRow for the columns).
+ *
+ * Replaces N calls to RoomController.create / TenantController.create / LeaseService.createLease:
+ * 1) parse all rows
+ * 2) prefetch existing rooms (by number), their ACTIVE leases and tenants (by name) in 3 queries
+ * 3) validate every row in memory against those sets and against earlier rows of the file
+ *    (same rules as the single-entity endpoints: unique room number, one ACTIVE lease per room)
+ * 4) write valid rows with OnboardingBatchWriter, one transaction per onboarding.import.batch-size rows
+ */
+@Service
+@RequiredArgsConstructor
+public class OnboardingImportService {
+
+  private static final TypeReference<List<OnboardingRow>> ROW_LIST = new TypeReference<>() {};
+
+  private final RoomRepository roomRepository;
+  private final LeaseRepository leaseRepository;
+  private final TenantRepository tenantRepository;
+  private final OnboardingBatchWriter batchWriter;
+  private final ObjectMapper objectMapper;
+
+  @Value("${onboarding.import.batch-size:200}")
+  private int batchSize;
+
+  public OnboardingResult importFile(MultipartFile file) {
+    if (file.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+    }
+
+    String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+    List<ParsedRow> rows;
+    try (InputStream in = file.getInputStream()) {
+      if (name.endsWith(".csv")) {
+        rows = parseCsv(in);
+      } else if (name.endsWith(".json")) {
+        rows = parseJson(in);
+      } else {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File must be a CSV or JSON file");
+      }
+    } catch (JsonProcessingException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid JSON: " + e.getOriginalMessage());
+    } catch (IOException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read file: " + e.getMessage());
+    }
+
+    OnboardingResult result = new OnboardingResult();
+    List<Planned> planned = plan(rows, result);
+    write(planned, result);
+    return result;
+  }
+
+  // ---------- parse ----------
+
+  private List<ParsedRow> parseCsv(InputStream in) throws IOException {
+    List<ParsedRow> rows = new ArrayList<>();
+    try (CsvRecordReader reader = new CsvRecordReader(
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))) {
+      boolean firstRecord = true;
+      CsvRecord record;
+      while ((record = reader.next()) != null) {
+        if (record.isBlank()) {
+          continue;
+        }
+        if (firstRecord) {
+          firstRecord = false;
+          if (!isInteger(record.get(0))) {
+            continue; // header
+          }
+        }
+        rows.add(parseRecord(record));
+      }
+    }
+    return rows;
+  }
+
+  private ParsedRow parseRecord(CsvRecord record) {
+    String label = "Line " + record.lineNumber();
+    try {
+      OnboardingRow row = new OnboardingRow(
+          integer(column(record, 0)),
+          decimal(column(record, 1)),
+          decimal(column(record, 2)),
+          column(record, 3),
+          column(record, 4),
+          column(record, 5),
+          date(column(record, 6)),
+          date(column(record, 7)),
+          decimal(column(record, 8)),
+          decimal(column(record, 9)));
+      return new ParsedRow(label, row, null);
+    } catch (NumberFormatException e) {
+      return new ParsedRow(label, null, "Invalid number format: " + e.getMessage());
+    } catch (DateTimeParseException e) {
+      return new ParsedRow(label, null, "Invalid date (expected yyyy-MM-dd): " + e.getParsedString());
+    }
+  }
+
+  private List<ParsedRow> parseJson(InputStream in) throws IOException {
+    List<OnboardingRow> data = objectMapper.readValue(in, ROW_LIST);
+    List<ParsedRow> rows = new ArrayList<>(data.size());
+    for (int i = 0; i < data.size(); i++) {
+      OnboardingRow row = data.get(i);
+      rows.add(row == null
+          ? new ParsedRow("Row " + (i + 1), null, "Row is null")
+          : new ParsedRow("Row " + (i + 1), row, null));
+    }
+    return rows;
+  }
+
+  private static String column(CsvRecord record, int index) {
+    if (index >= record.size()) {
+      return null;
+    }
+    String value = record.get(index).trim();
+    return value.isEmpty() ? null : value;
+  }
+
+  private static boolean isInteger(String value) {
+    try {
+      Integer.parseInt(value.trim());
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static Integer integer(String value) {
+    return value == null ? null : Integer.valueOf(value);
+  }
+
+  private static BigDecimal decimal(String value) {
+    return value == null ? null : new BigDecimal(value);
+  }
+
+  private static LocalDate date(String value) {
+    return value == null ? null : LocalDate.parse(value);
+  }
+
+  // ---------- validate (in memory) ----------
+
+  /**
+   * Validate rows against the prefetched rooms / ACTIVE leases / tenants and against each other.
+   * Invalid rows are recorded in the result; the rest are returned as write plans in file order.
+   */
+  private List<Planned> plan(List<ParsedRow> rows, OnboardingResult result) {
+    Set<Integer> roomNumbers = rows.stream()
+        .filter(r -> r.data() != null && r.data().getRoomNumber() != null)
+        .map(r -> r.data().getRoomNumber())
+        .collect(Collectors.toSet());
+    Set<String> tenantNames = rows.stream()
+        .filter(r -> r.data() != null && !isBlank(r.data().getTenantName()))
+        .map(r -> r.data().getTenantName().trim())
+        .collect(Collectors.toSet());
+
+    Map<Integer, Room> roomsByNumber = new HashMap<>();
+    if (!roomNumbers.isEmpty()) {
+      for (Room room : roomRepository.findByNumberIn(roomNumbers)) {
+        roomsByNumber.put(room.getNumber(), room);
+      }
+    }
+
+    Set<Long> occupiedRoomIds = new HashSet<>();
+    if (!roomsByNumber.isEmpty()) {
+      Set<Long> roomIds = roomsByNumber.values().stream().map(Room::getId).collect(Collectors.toSet());
+      for (Lease lease : leaseRepository.findByRoom_IdInAndStatus(roomIds, Lease.Status.ACTIVE)) {
+        occupiedRoomIds.add(lease.getRoom().getId());
+      }
+    }
+
+    Map<TenantKey, Long> existingTenants = new HashMap<>();
+    if (!tenantNames.isEmpty()) {
+      for (Tenant tenant : tenantRepository.findByNameIn(tenantNames)) {
+        existingTenants.putIfAbsent(TenantKey.of(tenant.getName(), tenant.getPhone()), tenant.getId());
+      }
+    }
+
+    Set<Integer> seenNumbers = new HashSet<>();
+    Map<TenantKey, NewTenant> newTenants = new HashMap<>();
+    List<Planned> planned = new ArrayList<>();
+
+    for (ParsedRow parsed : rows) {
+      if (parsed.error() != null) {
+        result.addError(parsed.label(), parsed.error());
+        continue;
+      }
+      OnboardingRow row = parsed.data();
+      String error = validate(row, roomsByNumber, occupiedRoomIds, seenNumbers);
+      if (error != null) {
+        result.addError(parsed.label(), error);
+        continue;
+      }
+
+      Room existingRoom = roomsByNumber.get(row.getRoomNumber());
+      Long tenantId = null;
+      NewTenant newTenant = null;
+      LeasePlan lease = null;
+      if (!isBlank(row.getTenantName())) {
+        TenantKey key = TenantKey.of(row.getTenantName(), row.getTenantPhone());
+        tenantId = existingTenants.get(key);
+        if (tenantId == null) {
+          // หลายห้องของผู้เช่าคนเดียวกัน (ชื่อ + เบอร์เดียวกัน) ใช้ tenant ร่วมกัน
+          newTenant = newTenants.computeIfAbsent(key,
+              k -> new NewTenant(k.name(), trimToNull(row.getTenantPhone()), trimToNull(row.getTenantLineId())));
+        }
+        lease = new LeasePlan(
+            row.getLeaseStartDate() != null ? row.getLeaseStartDate() : LocalDate.now(),
+            row.getLeaseEndDate(),
+            row.getMonthlyRent(),
+            row.getDepositBaht());
+      }
+
+      RoomPlan roomPlan = new RoomPlan(
+          existingRoom != null ? existingRoom.getId() : null,
+          row.getRoomNumber(),
+          row.getCommonFeeBaht(),
+          row.getGarbageFeeBaht(),
+          tenantId,
+          newTenant,
+          lease);
+      planned.add(new Planned(parsed.label(), roomPlan));
+    }
+    return planned;
+  }
+
+  /** Returns the error message for the row, or null if it is valid. Marks the room number as seen. */
+  private String validate(OnboardingRow row, Map<Integer, Room> roomsByNumber,
+                          Set<Long> occupiedRoomIds, Set<Integer> seenNumbers) {
+    Integer number = row.getRoomNumber();
+    if (number == null) {
+      return "roomNumber is required";
+    }
+    if (!seenNumbers.add(number)) {
+      return "Duplicate room number in file: " + number;
+    }
+
+    boolean hasTenant = !isBlank(row.getTenantName());
+    boolean hasLease = row.getLeaseStartDate() != null || row.getLeaseEndDate() != null
+        || row.getMonthlyRent() != null || row.getDepositBaht() != null;
+    if (!hasTenant && hasLease) {
+      return "Lease columns require a tenant name";
+    }
+
+    Room existing = roomsByNumber.get(number);
+    if (existing != null && !hasTenant) {
+      return "Room number already exists: " + number;
+    }
+    if (existing != null && occupiedRoomIds.contains(existing.getId())) {
+      return "Room " + number + " already has an ACTIVE lease";
+    }
+
+    if (isNegative(row.getCommonFeeBaht()) || isNegative(row.getGarbageFeeBaht())
+        || isNegative(row.getMonthlyRent()) || isNegative(row.getDepositBaht())) {
+      return "Amounts must not be negative";
+    }
+    if (row.getLeaseStartDate() != null && row.getLeaseEndDate() != null
+        && row.getLeaseEndDate().isBefore(row.getLeaseStartDate())) {
+      return "leaseEndDate is before leaseStartDate";
+    }
+    return null;
+  }
+
+  private static boolean isNegative(BigDecimal value) {
+    return value != null && value.signum() < 0;
+  }
+
+  private static boolean isBlank(String value) {
+    return value == null || value.isBlank();
+  }
+
+  private static String trimToNull(String value) {
+    return isBlank(value) ? null : value.trim();
+  }
+
+  // ---------- write ----------
+
+  private void write(List<Planned> planned, OnboardingResult result) {
+    Map<NewTenant, Long> createdTenants = new HashMap<>();
+    int chunkSize = Math.max(1, batchSize);
+
+    for (int from = 0; from < planned.size(); from += chunkSize) {
+      List<Planned> chunk = planned.subList(from, Math.min(from + chunkSize, planned.size()));
+      try {
+        ChunkResult written = batchWriter.writeChunk(
+            chunk.stream().map(Planned::plan).toList(), createdTenants);
+        result.roomsCreated += written.roomsCreated();
+        result.tenantsCreated += written.tenantsCreated();
+        result.leasesCreated += written.leasesCreated();
+        result.successCount += chunk.size();
+      } catch (DataAccessException e) {
+        String message = "Not saved (batch rolled back): " + e.getMostSpecificCause().getMessage();
+        for (Planned p : chunk) {
+          result.addError(p.label(), message);
+        }
+      }
+    }
+  }
+
+  /** One input row: parsed data, or the parse error. label = "Line N" (CSV) / "Row N" (JSON) */
+  private record ParsedRow(String label, OnboardingRow data, String error) {
+  }
+
+  private record Planned(String label, RoomPlan plan) {
+  }
+
+  /** Tenant identity used for matching: trimmed name + phone (phone may be empty) */
+  private record TenantKey(String name, String phone) {
+    static TenantKey of(String name, String phone) {
+      return new TenantKey(name.trim(), Objects.requireNonNullElse(trimToNull(phone), ""));
+    }
+  }
+
+  public static class OnboardingResult {
+    private int successCount = 0;
+    private int roomsCreated = 0;
+    private int tenantsCreated = 0;
+    private int leasesCreated = 0;
+    private final List<String> errors = new ArrayList<>();
+
+    void addError(String label, String message) {
+      errors.add(label + ": " + message);
+    }
+
+    /** Rows written */
+    public int getSuccessCount() {
+      return successCount;
+    }
+
+    public int getFailureCount() {
+      return errors.size();
+    }
+
+    public int getTotalProcessed() {
+      return successCount + errors.size();
+    }
+
+    public int getRoomsCreated() {
+      return roomsCreated;
+    }
+
+    public int getTenantsCreated() {
+      return tenantsCreated;
+    }
+
+    public int getLeasesCreated() {
+      return leasesCreated;
+    }
+
+    public List<String> getErrors() {
+      return errors;
+    }
+  }
+}
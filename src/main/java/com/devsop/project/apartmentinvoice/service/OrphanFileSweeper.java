@@ -0,0 +1,322 @@
+package com.devsop.project.apartmentinvoice.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.repository.DocumentBlobRepository;
+import com.devsop.project.apartmentinvoice.repository.DocumentRepository;
+import com.devsop.project.apartmentinvoice.repository.ImportBatchRepository;
+import com.devsop.project.apartmentinvoice.repository.UploadPartRepository;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService.Variant;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+import com.devsop.project.apartmentinvoice.service.storage.StoredFilePage;
+import com.devsop.project.apartmentinvoice.service.storage.StoredFilePage.StoredFile;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes stored files that no row references any more: deletes whose storage call failed
+ * (DocumentService only logs those), copies dropped by a lost upload race, abandoned compose temp files.
+ *
+ * One run:
+ * 1. expires chunked uploads idle for longer than the grace period (see ChunkedUploadService), then loads
+ *    every referenced path (documents, blobs, CSV backups and error reports, parts of uploads still open
+ *    or committing) into a compact hash set, page by page;
+ * 2. lists the configured prefixes page by page and collects files that are not referenced and older than
+ *    the grace period (image variants count as referenced while their original is);
+ * 3. deletes them in batches of batch-size files, one deleteFiles call each, at most max-deletes per run.
+ *
+ * References are loaded before the listing, and files are written to storage before their row is saved,
+ * so a file still being uploaded is only protected by its age: the grace period must be far longer than
+ * any upload (hours, not seconds).
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.sweeper.enabled", havingValue = "true")
+public class OrphanFileSweeper {
+
+  private static final int REFERENCE_PAGE_SIZE = 1000;
+
+  /** Uploads whose parts are still needed; parts of aborted uploads are orphans */
+  private static final Set<UploadSession.Status> LIVE_UPLOADS =
+      Set.of(UploadSession.Status.OPEN, UploadSession.Status.COMMITTING);
+
+  /**
+   * Prefixes swept unless storage.sweeper.prefixes says otherwise. Not imports/: CSV files archived there
+   * before import_batch existed (V6) have no row, so every one of them would look orphaned.
+   */
+  public static final String DEFAULT_PREFIXES = "blobs/,uploads/,lease/,maintenance/,invoice/";
+
+  /** Counts of one run */
+  public record SweepResult(
+      long scanned,
+      long orphans,
+      long deleted,
+      long failed,
+      long bytesReclaimed,
+      boolean dryRun) {
+  }
+
+  private final StorageService storageService;
+  private final DocumentRepository documentRepository;
+  private final DocumentBlobRepository documentBlobRepository;
+  private final ImportBatchRepository importBatchRepository;
+  private final UploadPartRepository uploadPartRepository;
+  private final ChunkedUploadService chunkedUploadService;
+
+  @Value("${storage.sweeper.prefixes:" + DEFAULT_PREFIXES + "}")
+  private List<String> prefixes;
+
+  @Value("${storage.sweeper.grace-hours:24}")
+  private long graceHours;
+
+  @Value("${storage.sweeper.page-size:1000}")
+  private int pageSize;
+
+  @Value("${storage.sweeper.batch-size:100}")
+  private int batchSize;
+
+  @Value("${storage.sweeper.max-deletes:10000}")
+  private long maxDeletes;
+
+  @Value("${storage.sweeper.dry-run:false}")
+  private boolean dryRun;
+
+  private final Counter deletedFiles;
+  private final Counter failedFiles;
+  private final Counter reclaimedBytes;
+  private final Timer duration;
+
+  public OrphanFileSweeper(
+      StorageService storageService,
+      DocumentRepository documentRepository,
+      DocumentBlobRepository documentBlobRepository,
+      ImportBatchRepository importBatchRepository,
+      UploadPartRepository uploadPartRepository,
+      ChunkedUploadService chunkedUploadService,
+      MeterRegistry registry) {
+    this.storageService = storageService;
+    this.documentRepository = documentRepository;
+    this.documentBlobRepository = documentBlobRepository;
+    this.importBatchRepository = importBatchRepository;
+    this.uploadPartRepository = uploadPartRepository;
+    this.chunkedUploadService = chunkedUploadService;
+
+    this.deletedFiles = Counter.builder("apartment.storage.sweeper.files")
+        .description("Orphaned stored files by outcome of their delete")
+        .tag("result", "deleted")
+        .register(registry);
+    this.failedFiles = Counter.builder("apartment.storage.sweeper.files")
+        .description("Orphaned stored files by outcome of their delete")
+        .tag("result", "failed")
+        .register(registry);
+    this.reclaimedBytes = Counter.builder("apartment.storage.sweeper.reclaimed")
+        .description("Stored bytes freed by deleting orphaned files")
+        .baseUnit("bytes")
+        .register(registry);
+    this.duration = Timer.builder("apartment.storage.sweeper.duration")
+        .description("Time of one orphan sweep run")
+        .register(registry);
+  }
+
+  @Scheduled(
+      initialDelayString = "${storage.sweeper.initial-delay-minutes:10}",
+      fixedDelayString = "${storage.sweeper.interval-minutes:1440}",
+      timeUnit = TimeUnit.MINUTES)
+  public void scheduledSweep() {
+    try {
+      sweep();
+    } catch (RuntimeException e) {
+      // next run starts over from the database; nothing to resume
+      log.warn("Orphan file sweep failed: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * One full run (see class comment). Synchronized: a manual run never overlaps the scheduled one.
+   */
+  public synchronized SweepResult sweep() {
+    Timer.Sample sample = Timer.start();
+    Instant cutoff = Instant.now().minus(Duration.ofHours(graceHours));
+    try {
+      chunkedUploadService.expireIdleUploads(Duration.ofHours(graceHours));
+    } catch (RuntimeException e) {
+      // their parts stay referenced until a later run expires them
+      log.warn("Could not expire idle uploads: {}", e.getMessage());
+    }
+    PathHashSet referenced = loadReferencedPaths();
+
+    long scanned = 0;
+    long orphans = 0;
+    long[] outcome = new long[3]; // deleted, failed, bytes
+    List<StoredFile> batch = new ArrayList<>(batchSize);
+    listing:
+    for (String prefix : prefixes) {
+      String pageToken = null;
+      do {
+        StoredFilePage page = storageService.listFiles(prefix.trim(), pageToken, pageSize);
+        for (StoredFile file : page.files()) {
+          scanned++;
+          if (file.updated().isAfter(cutoff) || isReferenced(referenced, file.path())) {
+            continue;
+          }
+          orphans++;
+          batch.add(file);
+          if (batch.size() >= batchSize) {
+            deleteBatch(batch, outcome);
+          }
+          if (orphans >= maxDeletes) {
+            log.warn("Orphan file sweep stopped at max-deletes ({}), the rest is left for the next run",
+                maxDeletes);
+            break listing;
+          }
+        }
+        pageToken = page.nextPageToken();
+      } while (pageToken != null);
+    }
+    deleteBatch(batch, outcome);
+    sample.stop(duration);
+
+    SweepResult result = new SweepResult(scanned, orphans, outcome[0], outcome[1], outcome[2], dryRun);
+    log.info("Orphan file sweep: {} files scanned, {} referenced paths, {} orphans, {} deleted ({} bytes), "
+        + "{} failed{}", scanned, referenced.size(), orphans, result.deleted(), result.bytesReclaimed(),
+        result.failed(), dryRun ? " (dry run, nothing deleted)" : "");
+    return result;
+  }
+
+  /** One deleteFiles call per batch (GCS: one batch request per 100 files) */
+  private void deleteBatch(List<StoredFile> batch, long[] outcome) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (dryRun) {
+      for (StoredFile file : batch) {
+        log.info("Orphan file (dry run, kept): {} ({} bytes, written {})", file.path(), file.size(),
+            file.updated());
+      }
+      batch.clear();
+      return;
+    }
+    Set<String> failed;
+    try {
+      failed = new HashSet<>(storageService.deleteFiles(batch.stream().map(StoredFile::path).toList()));
+    } catch (RuntimeException e) {
+      // the whole request failed: the files are still there and are retried by the next run
+      log.warn("Could not delete a batch of {} orphaned files: {}", batch.size(), e.getMessage());
+      failed = batch.stream().map(StoredFile::path).collect(Collectors.toSet());
+    }
+    for (StoredFile file : batch) {
+      if (failed.contains(file.path())) {
+        outcome[1]++;
+        failedFiles.increment();
+        log.warn("Could not delete orphaned file {}", file.path());
+        continue;
+      }
+      outcome[0]++;
+      outcome[2] += file.size();
+      deletedFiles.increment();
+      reclaimedBytes.increment(file.size());
+    }
+    batch.clear();
+  }
+
+  /** A variant (".thumb.jpg" / ".web.jpg") lives as long as its original */
+  private static boolean isReferenced(PathHashSet referenced, String path) {
+    if (referenced.contains(path)) {
+      return true;
+    }
+    for (Variant variant : Variant.values()) {
+      String suffix = ImageVariantService.variantPath("", variant);
+      if (path.endsWith(suffix) && referenced.contains(path.substring(0, path.length() - suffix.length()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private PathHashSet loadReferencedPaths() {
+    PathHashSet referenced = new PathHashSet();
+    addAll(referenced, documentRepository::findFilePaths);
+    addAll(referenced, documentBlobRepository::findStoragePaths);
+    addAll(referenced, importBatchRepository::findStoragePaths);
+    addAll(referenced, importBatchRepository::findErrorReportPaths);
+    addAll(referenced, (afterId, page) -> uploadPartRepository.findStoragePaths(afterId, LIVE_UPLOADS, page));
+    referenced.seal();
+    return referenced;
+  }
+
+  /** Keyset paging (id > last id): rows deleted meanwhile cannot shift a page and hide another row */
+  private static void addAll(PathHashSet referenced, BiFunction<Long, Pageable, List<StoredPathRef>> query) {
+    Pageable page = PageRequest.of(0, REFERENCE_PAGE_SIZE);
+    long afterId = 0;
+    List<StoredPathRef> rows;
+    do {
+      rows = query.apply(afterId, page);
+      for (StoredPathRef row : rows) {
+        referenced.add(row.path());
+        afterId = row.id();
+      }
+    } while (rows.size() == REFERENCE_PAGE_SIZE);
+  }
+
+  /**
+   * Set of 64-bit path hashes (FNV-1a) in a sorted array: 8 bytes per referenced path whatever its length,
+   * so a million documents take 8MB. A hash collision can only make an orphan look referenced (it is kept),
+   * never delete a referenced file.
+   */
+  static final class PathHashSet {
+
+    private long[] hashes = new long[1024];
+    private int size;
+
+    void add(String path) {
+      if (size == hashes.length) {
+        hashes = Arrays.copyOf(hashes, size * 2);
+      }
+      hashes[size++] = hash(path);
+    }
+
+    /** Sort once all paths are added; contains() is a binary search */
+    void seal() {
+      Arrays.sort(hashes, 0, size);
+    }
+
+    boolean contains(String path) {
+      return Arrays.binarySearch(hashes, 0, size, hash(path)) >= 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private static long hash(String path) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < path.length(); i++) {
+        hash ^= path.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return hash;
+    }
+  }
+}
@@ -2,25 +2,20 @@ package com.devsop.project.apartmentinvoice.service;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
-import org.jsoup.Jsoup;
-import org.jsoup.helper.W3CDom;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Document.OutputSettings;
-import org.jsoup.nodes.Entities;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
 import com.devsop.project.apartmentinvoice.entity.Lease;
-import com.openhtmltopdf.extend.FSSupplier;
-import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.devsop.project.apartmentinvoice.service.pdf.HtmlPdfRenderer;
+import com.devsop.project.apartmentinvoice.service.pdf.PdfWorkerPool;
 
 import lombok.RequiredArgsConstructor;
 
@@ -29,6 +24,7 @@ import lombok.RequiredArgsConstructor;
 public class PdfService {
 
     private final SpringTemplateEngine templateEngine;
+    private final ObjectProvider<PdfWorkerPool> workerPool;
 
     /**
      * Render Thymeleaf template -> PDF (ใช้ Jsoup แปลงเป็น XHTML ก่อน)
@@ -39,36 +35,17 @@ public class PdfService {
     }
 
     public byte[] renderTemplateToPdf(String templateName, Map<String, Object> model, Locale locale) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try {
             // ---------- 1) Render HTML ด้วย Thymeleaf ----------
             Context ctx = new Context(locale);
             if (model != null) model.forEach(ctx::setVariable);
             String html = templateEngine.process(templateName, ctx);
 
-            // ---------- 2) แปลง HTML -> XHTML ด้วย Jsoup ----------
-            Document jsoupDoc = Jsoup.parse(html, "UTF-8");
-            jsoupDoc.outputSettings(new OutputSettings()
-                    .syntax(OutputSettings.Syntax.xml)
-                    .charset(StandardCharsets.UTF_8)
-                    .escapeMode(Entities.EscapeMode.xhtml)
-                    .prettyPrint(false));
-            org.w3c.dom.Document w3cDoc = new W3CDom().fromJsoup(jsoupDoc);
-
-            // ---------- 3) Render PDF ด้วย OpenHTMLtoPDF ----------
-            PdfRendererBuilder builder = new PdfRendererBuilder();
-            builder.useFastMode();
-            builder.withW3cDocument(w3cDoc, null);
-            builder.toStream(out);
-            builder.useDefaultPageSize(210, 297, PdfRendererBuilder.PageSizeUnits.MM);
-
-            // ---------- 4) โหลดฟอนต์ภาษาไทยจาก classpath ----------
-            loadFont(builder, "/fonts/THSarabunNew.ttf", "TH Sarabun New");
-            loadFont(builder, "/fonts/NotoSansThai-Regular.ttf", "Noto Sans Thai");
-            loadFont(builder, "/fonts/NotoSansThai-Bold.ttf", "Noto Sans Thai Bold");
-
-            builder.run();
-            return out.toByteArray();
+            // ---------- 2) HTML -> PDF (in-process หรือส่งไป render worker) ----------
+            return renderHtmlToPdf(html);
 
+        } catch (ResponseStatusException e) {
+            throw e; // e.g. 503 when no render worker is available
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("❌ Failed to render PDF: " + e.getMessage(), e);
@@ -76,21 +53,15 @@ public class PdfService {
     }
 
     /**
-     * โหลดฟอนต์จาก classpath (ใช้ FSSupplier เพื่อรองรับใน container environment)
+     * Uses the out-of-process worker pool when pdf.worker.enabled=true,
+     * otherwise renders inside the API JVM.
      */
-    private void loadFont(PdfRendererBuilder builder, String path, String name) {
-        try {
-            FSSupplier<InputStream> supplier = () -> {
-                InputStream is = PdfService.class.getResourceAsStream(path);
-                if (is == null) {
-                    System.err.println("⚠️ Font not found at " + path);
-                }
-                return is;
-            };
-            builder.useFont(supplier, name);
-        } catch (Exception e) {
-            System.err.println("⚠️ Cannot load font " + name + ": " + e.getMessage());
+    private byte[] renderHtmlToPdf(String html) throws Exception {
+        PdfWorkerPool pool = (workerPool != null) ? workerPool.getIfAvailable() : null;
+        if (pool != null) {
+            return pool.render(html);
         }
+        return HtmlPdfRenderer.render(html);
     }
 
     /** สำหรับสัญญาเช่า (lease/print.html) */
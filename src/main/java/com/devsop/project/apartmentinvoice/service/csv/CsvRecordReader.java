@@ -0,0 +1,156 @@
+package com.devsop.project.apartmentinvoice.service.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader.
+ *
+ * - fields may be quoted; inside quotes, commas and line breaks are data and "" is a literal quote
+ * - records end with CRLF, LF or CR
+ * - a leading UTF-8 BOM is ignored
+ *
+ * Reads one record at a time from the underlying Reader, so memory use does not depend on file size.
+ * Not thread-safe.
+ */
+public class CsvRecordReader implements Closeable {
+
+  private static final int EOF = -1;
+
+  private final Reader in;
+  private final StringBuilder field = new StringBuilder();
+
+  /** physical line the reader is currently on (1-based) */
+  private int line = 1;
+  private int lookahead = -2;
+  private boolean started;
+
+  public CsvRecordReader(Reader in) {
+    this.in = in;
+  }
+
+  /**
+   * Next record, or null at end of input.
+   * A blank line is returned as a record with a single empty field.
+   *
+   * @throws CsvFormatException if a quoted field is not closed before end of input
+   */
+  public CsvRecord next() throws IOException {
+    int c = read();
+    if (!started) {
+      started = true;
+      if (c == '\uFEFF') {
+        c = read();
+      }
+    }
+    if (c == EOF) {
+      return null;
+    }
+
+    int startLine = line;
+    List<String> fields = new ArrayList<>();
+    field.setLength(0);
+    boolean quoted = false;
+    boolean afterQuote = false;
+
+    while (true) {
+      if (quoted) {
+        if (c == EOF) {
+          throw new CsvFormatException(startLine, "Unclosed quoted field");
+        }
+        if (c == '"') {
+          int n = read();
+          if (n == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            afterQuote = true;
+            c = n;
+            continue;
+          }
+        } else {
+          if (c == '\n' || (c == '\r' && peek() != '\n')) {
+            line++;
+          }
+          field.append((char) c);
+        }
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+        afterQuote = false;
+      } else if (c == '\r' || c == '\n' || c == EOF) {
+        if (c == '\r' && peek() == '\n') {
+          read();
+        }
+        if (c != EOF) {
+          line++;
+        }
+        fields.add(field.toString());
+        return new CsvRecord(startLine, fields);
+      } else if (c == '"' && field.isEmpty() && !afterQuote) {
+        quoted = true;
+      } else {
+        // lenient: characters after a closing quote or a stray quote are kept as data
+        field.append((char) c);
+      }
+      c = read();
+    }
+  }
+
+  private int read() throws IOException {
+    if (lookahead != -2) {
+      int c = lookahead;
+      lookahead = -2;
+      return c;
+    }
+    return in.read();
+  }
+
+  private int peek() throws IOException {
+    if (lookahead == -2) {
+      lookahead = in.read();
+    }
+    return lookahead;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * One CSV record.
+   * @param lineNumber physical line (1-based) where the record starts
+   */
+  public record CsvRecord(int lineNumber, List<String> fields) {
+
+    public boolean isBlank() {
+      return fields.stream().allMatch(String::isBlank);
+    }
+
+    public int size() {
+      return fields.size();
+    }
+
+    public String get(int index) {
+      return fields.get(index);
+    }
+  }
+
+  /** Malformed CSV (e.g. unterminated quote); the rest of the input cannot be read reliably */
+  public static class CsvFormatException extends IOException {
+    private final int lineNumber;
+
+    public CsvFormatException(int lineNumber, String message) {
+      super(message);
+      this.lineNumber = lineNumber;
+    }
+
+    public int getLineNumber() {
+      return lineNumber;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.devsop.project.apartmentinvoice.service.csv;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Per-line import error report, written row by row to a temp file (RFC 4180, UTF-8).
+ * Columns: sheet, line, type, message.
+ *
+ * Only the current row is held in memory, however many errors the import produces.
+ * Not thread-safe: one writer per import (or per XLSX sheet, appended to the import's writer).
+ */
+public class ErrorReportWriter implements Closeable {
+
+  public static final String HEADER = "sheet,line,type,message";
+
+  private final Path file;
+  private final BufferedWriter out;
+  private int rows;
+  private boolean closed;
+
+  private ErrorReportWriter(boolean header) throws IOException {
+    this.file = Files.createTempFile("import-errors-", ".csv");
+    this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    if (header) {
+      out.write(HEADER);
+      out.write("\r\n");
+    }
+  }
+
+  /** Report with header row */
+  public static ErrorReportWriter create() throws IOException {
+    return new ErrorReportWriter(true);
+  }
+
+  /** Rows only, to be appended to another report (see append) */
+  public static ErrorReportWriter createPart() throws IOException {
+    return new ErrorReportWriter(false);
+  }
+
+  public void write(String sheet, int lineNumber, String type, String message) throws IOException {
+    out.write(escape(sheet));
+    out.write(',');
+    out.write(Integer.toString(lineNumber));
+    out.write(',');
+    out.write(escape(type));
+    out.write(',');
+    out.write(escape(message));
+    out.write("\r\n");
+    rows++;
+  }
+
+  /** Copy the rows of a part report after this report's rows; the part is deleted */
+  public void append(ErrorReportWriter part) throws IOException {
+    Path partFile = part.finish();
+    try (Reader in = Files.newBufferedReader(partFile, StandardCharsets.UTF_8)) {
+      in.transferTo(out);
+    } finally {
+      Files.deleteIfExists(partFile);
+    }
+    rows += part.rows;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  /** Flush and close; the caller owns (uploads, then deletes) the returned file */
+  public Path finish() throws IOException {
+    close();
+    return file;
+  }
+
+  /** Close and delete the temp file */
+  public void discard() {
+    try {
+      close();
+    } catch (IOException ignored) {
+      // deleting anyway
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ignored) {
+      // temp dir is cleaned by the OS
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      out.close();
+    }
+  }
+
+  private static String escape(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
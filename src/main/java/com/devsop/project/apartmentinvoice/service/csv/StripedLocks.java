@@ -0,0 +1,57 @@
+package com.devsop.project.apartmentinvoice.service.csv;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks indexed by key hash: equal keys always get the same lock, different keys
+ * usually get different ones. Memory stays constant however many keys (rooms) there are.
+ */
+public final class StripedLocks {
+
+  private final Lock[] stripes;
+
+  /** @param stripes number of locks (rounded up to a power of two) */
+  public StripedLocks(int stripes) {
+    int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripes = new Lock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+  }
+
+  public Lock get(Object key) {
+    return stripes[index(key)];
+  }
+
+  /**
+   * The distinct locks of several keys, in stripe order. Callers taking several locks take them in
+   * this order (and release in reverse), so two of them can never deadlock.
+   */
+  public List<Lock> getAll(Collection<?> keys) {
+    boolean[] used = new boolean[stripes.length];
+    for (Object key : keys) {
+      used[index(key)] = true;
+    }
+    List<Lock> locks = new ArrayList<>();
+    for (int i = 0; i < stripes.length; i++) {
+      if (used[i]) {
+        locks.add(stripes[i]);
+      }
+    }
+    return locks;
+  }
+
+  private int index(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16); // spread: small sequential keys (room numbers) still use every stripe
+    return h & (stripes.length - 1);
+  }
+
+  public int size() {
+    return stripes.length;
+  }
+}
@@ -0,0 +1,142 @@
+package com.devsop.project.apartmentinvoice.service.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvRecord;
+
+/**
+ * Streaming .xlsx reader (POI event API: SAX over the sheet XML, shared strings read-only).
+ *
+ * Rows are pushed to a consumer as CsvRecords (lineNumber = Excel row number), so a workbook
+ * goes through the same pipeline as a CSV file and is never loaded as a full XSSFWorkbook.
+ * Each call opens its own package on the file; different sheets can be read from different threads.
+ */
+public final class XlsxRecordReader {
+
+  private XlsxRecordReader() {
+  }
+
+  /** Sheet names in workbook order */
+  public static List<String> sheetNames(File file) throws IOException {
+    try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+      XSSFReader.SheetIterator sheets = sheets(new XSSFReader(pkg));
+      List<String> names = new ArrayList<>();
+      while (sheets.hasNext()) {
+        sheets.next().close();
+        names.add(sheets.getSheetName());
+      }
+      return names;
+    } catch (OpenXML4JException | InvalidOperationException | UnsupportedFileFormatException e) {
+      throw new IOException("Invalid XLSX file: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Stream the rows of one sheet (0-based index in workbook order) to the consumer.
+   * Missing cells become empty fields; empty rows are not reported.
+   */
+  public static void readSheet(File file, int sheetIndex, Consumer<CsvRecord> consumer) throws IOException {
+    try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+      XSSFReader reader = new XSSFReader(pkg);
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      StylesTable styles = reader.getStylesTable();
+      XSSFReader.SheetIterator sheets = sheets(reader);
+
+      for (int i = 0; sheets.hasNext(); i++) {
+        try (InputStream sheet = sheets.next()) {
+          if (i == sheetIndex) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(
+                styles, strings, new RowCollector(consumer), new RawNumberFormatter(), false));
+            parser.parse(new InputSource(sheet));
+            return;
+          }
+        }
+      }
+      throw new IOException("Sheet " + sheetIndex + " not found");
+    } catch (OpenXML4JException | SAXException | ParserConfigurationException
+        | InvalidOperationException | UnsupportedFileFormatException e) {
+      throw new IOException("Invalid XLSX file: " + e.getMessage(), e);
+    }
+  }
+
+  private static XSSFReader.SheetIterator sheets(XSSFReader reader) throws IOException {
+    try {
+      return (XSSFReader.SheetIterator) reader.getSheetsData();
+    } catch (OpenXML4JException e) {
+      throw new IOException("Invalid XLSX file: " + e.getMessage(), e);
+    }
+  }
+
+  /** Collects the cells of a row by column index and emits the row as a record */
+  private static class RowCollector implements SheetContentsHandler {
+    private final Consumer<CsvRecord> consumer;
+    private final List<String> fields = new ArrayList<>();
+
+    RowCollector(Consumer<CsvRecord> consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void startRow(int rowNum) {
+      fields.clear();
+    }
+
+    @Override
+    public void endRow(int rowNum) {
+      if (!fields.isEmpty()) {
+        consumer.accept(new CsvRecord(rowNum + 1, List.copyOf(fields)));
+      }
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+      int column = cellReference != null ? new CellReference(cellReference).getCol() : fields.size();
+      while (fields.size() < column) {
+        fields.add("");
+      }
+      fields.add(formattedValue != null ? formattedValue : "");
+    }
+  }
+
+  /**
+   * Numbers as plain values ("1234.5", not "1,234.50" from the cell's display format),
+   * so that they parse the same way as CSV; date formats are kept as displayed.
+   */
+  private static class RawNumberFormatter extends DataFormatter {
+    @Override
+    public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+      if (DateUtil.isADateFormat(formatIndex, formatString)) {
+        return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+      }
+      return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package com.devsop.project.apartmentinvoice.service.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.service.csv.StripedLocks;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Downscaled JPEG copies (variants) of uploaded images, stored next to the original:
+ * "blobs/ab/<hash>.png" -> "blobs/ab/<hash>.png.thumb.jpg" / ".web.jpg".
+ *
+ * Variants are generated in the background right after an upload, and on first request for
+ * documents uploaded before (or whose background job did not run). The original is decoded once,
+ * subsampled while reading, so a 10MB photo never becomes a full-resolution bitmap in heap.
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+  private static final List<String> IMAGE_MIME_TYPES = List.of("image/jpeg", "image/jpg", "image/png");
+
+  public enum Variant {
+    THUMB, // รูปย่อในหน้ารายการ
+    WEB;   // ขนาดดูบนเว็บ/มือถือ
+
+    public String key() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** ?variant=thumb|web (null/blank = original) */
+    public static Variant fromParam(String value) {
+      if (value == null || value.isBlank()) {
+        return null;
+      }
+      try {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new ResponseStatusException(
+            HttpStatus.BAD_REQUEST,
+            "Invalid variant. Must be thumb or web");
+      }
+    }
+  }
+
+  private final StorageService storageService;
+
+  @Value("${document.image.thumb-size:320}")
+  private int thumbSize;
+
+  @Value("${document.image.web-size:1600}")
+  private int webSize;
+
+  @Value("${document.image.jpeg-quality:0.8}")
+  private float jpegQuality;
+
+  @Value("${document.image.workers:2}")
+  private int workers;
+
+  /** Same original generated once even if the upload job and a download ask at the same time */
+  private final StripedLocks locks = new StripedLocks(64);
+
+  private volatile ExecutorService pool;
+
+  public ImageVariantService(StorageService storageService) {
+    this.storageService = storageService;
+  }
+
+  public static boolean isImage(String mimeType) {
+    return mimeType != null && IMAGE_MIME_TYPES.contains(mimeType.toLowerCase(Locale.ROOT));
+  }
+
+  public static String variantPath(String originalPath, Variant variant) {
+    return originalPath + "." + variant.key() + ".jpg";
+  }
+
+  /**
+   * Queue generation of all variants of an original (after upload). Failures are only logged:
+   * the variant is then generated on first request.
+   */
+  public void generateAsync(String originalPath) {
+    try {
+      pool().execute(() -> {
+        try {
+          ensureVariants(originalPath);
+        } catch (RuntimeException e) {
+          log.warn("Could not generate image variants of {}: {}", originalPath, e.getMessage());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      log.debug("Variant queue full, {} will be generated on first request", originalPath);
+    }
+  }
+
+  /**
+   * Storage path of a variant, generating the variants first if they do not exist yet.
+   */
+  public String ensure(String originalPath, Variant variant) {
+    String path = variantPath(originalPath, variant);
+    if (storageService.fileExists(path)) {
+      return path;
+    }
+    ensureVariants(originalPath);
+    return path;
+  }
+
+  /** Delete the variants of an original (missing ones are skipped) */
+  public void deleteVariants(String originalPath) {
+    for (Variant variant : Variant.values()) {
+      String path = variantPath(originalPath, variant);
+      try {
+        if (storageService.fileExists(path)) {
+          storageService.deleteFile(path);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Could not delete image variant {}: {}", path, e.getMessage());
+      }
+    }
+  }
+
+  private void ensureVariants(String originalPath) {
+    Lock lock = locks.get(originalPath);
+    lock.lock();
+    try {
+      // THUMB is written last: when it exists, every variant exists
+      if (storageService.fileExists(variantPath(originalPath, Variant.THUMB))) {
+        return;
+      }
+      BufferedImage image = read(originalPath, webSize);
+      BufferedImage web = scale(image, webSize);
+      BufferedImage thumb = scale(web, thumbSize);
+      store(variantPath(originalPath, Variant.WEB), web);
+      store(variantPath(originalPath, Variant.THUMB), thumb);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Decode the original, skipping pixels while reading so that the result is still at least
+   * targetSize on its longest side (a 6000px photo for a 1600px web copy is read at 1/3).
+   */
+  private BufferedImage read(String originalPath, int targetSize) {
+    try (InputStream in = storageService.openStream(originalPath);
+        ImageInputStream input = ImageIO.createImageInputStream(in)) {
+      Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+      if (readers == null || !readers.hasNext()) {
+        throw new ResponseStatusException(
+            HttpStatus.UNPROCESSABLE_ENTITY,
+            "Not a readable image: " + originalPath);
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = Math.max(1, longest / targetSize);
+        param.setSourceSubsampling(step, step, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to read image: " + e.getMessage(),
+          e);
+    }
+  }
+
+  /**
+   * Fit into maxSize x maxSize (never upscaled), RGB on white (PNG transparency flattened for JPEG).
+   * Large reductions are done in halving steps, which keeps thumbnails sharp with bilinear filtering.
+   */
+  private static BufferedImage scale(BufferedImage source, int maxSize) {
+    int longest = Math.max(source.getWidth(), source.getHeight());
+    double ratio = longest > maxSize ? (double) maxSize / longest : 1.0;
+    int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+    int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+    BufferedImage current = source;
+    int width = source.getWidth();
+    int height = source.getHeight();
+    do {
+      width = Math.max(targetWidth, width / 2);
+      height = Math.max(targetHeight, height / 2);
+      BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = step.createGraphics();
+      try {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(current, 0, 0, width, height, null);
+      } finally {
+        g.dispose();
+      }
+      current = step;
+    } while (width != targetWidth || height != targetHeight);
+    return current;
+  }
+
+  private void store(String path, BufferedImage image) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(output);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(jpegQuality);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR,
+          "Failed to encode image variant: " + e.getMessage(),
+          e);
+    } finally {
+      writer.dispose();
+    }
+    String fileName = path.substring(path.lastIndexOf('/') + 1);
+    storageService.uploadFile(new ByteArrayInputStream(out.toByteArray()), fileName, "image/jpeg", path);
+  }
+
+  /** Small background pool; a full queue drops the job (the variant is then made on first request) */
+  private ExecutorService pool() {
+    ExecutorService executor = pool;
+    if (executor == null) {
+      synchronized (this) {
+        if (pool == null) {
+          AtomicInteger sequence = new AtomicInteger();
+          pool = new ThreadPoolExecutor(Math.max(1, workers), Math.max(1, workers), 0L, TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(1000), r -> {
+                Thread t = new Thread(r, "image-variant-" + sequence.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+              });
+        }
+        executor = pool;
+      }
+    }
+    return executor;
+  }
+
+  @PreDestroy
+  void shutdownPool() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.devsop.project.apartmentinvoice.service.payment;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds Thai QR Payment (PromptPay) payloads following EMVCo Merchant-Presented QR.
+ *
+ *   00 payload format "01"
+ *   01 "11" static (no amount) / "12" dynamic (amount present)
+ *   29 merchant account: 00 AID A000000677010111, then 01 mobile / 02 national or tax ID / 03 e-wallet
+ *   53 currency 764 (THB), 54 amount, 58 country TH
+ *   63 CRC16-CCITT (0x1021, init 0xFFFF) over everything before it, including "6304"
+ */
+public final class PromptPayPayload {
+
+  private static final String PROMPTPAY_AID = "A000000677010111";
+
+  private PromptPayPayload() {
+  }
+
+  /**
+   * Build the payload string to encode in the QR.
+   * @param promptPayId mobile number (10 digits), national/tax ID (13 digits) or e-wallet ID (15 digits)
+   * @param amount amount in baht; null or <= 0 produces a static QR where the payer types the amount
+   */
+  public static String build(String promptPayId, BigDecimal amount) {
+    String account = normalize(promptPayId);
+    boolean hasAmount = amount != null && amount.signum() > 0;
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(tlv("00", "01"));
+    sb.append(tlv("01", hasAmount ? "12" : "11"));
+    sb.append(tlv("29", tlv("00", PROMPTPAY_AID) + tlv(accountTag(account), account)));
+    sb.append(tlv("53", "764"));
+    if (hasAmount) {
+      sb.append(tlv("54", formatAmount(amount)));
+    }
+    sb.append(tlv("58", "TH"));
+    sb.append("6304");
+    sb.append(String.format("%04X", crc16(sb.toString())));
+    return sb.toString();
+  }
+
+  /**
+   * Normalize a PromptPay ID to the form used inside the payload.
+   * Mobile numbers become 0066XXXXXXXXX (13 digits).
+   * @throws IllegalArgumentException if the ID is not a mobile number, national/tax ID or e-wallet ID
+   */
+  public static String normalize(String promptPayId) {
+    String digits = promptPayId == null ? "" : promptPayId.replaceAll("[^0-9]", "");
+    if (digits.length() == 10 && digits.startsWith("0")) {
+      return "0066" + digits.substring(1);
+    }
+    if (digits.length() == 13 || digits.length() == 15) {
+      return digits;
+    }
+    throw new IllegalArgumentException(
+        "Invalid PromptPay ID: must be a 10-digit mobile number, 13-digit national/tax ID or 15-digit e-wallet ID");
+  }
+
+  /** Amount as used in the payload and in cache keys, e.g. 9452.00 */
+  public static String formatAmount(BigDecimal amount) {
+    return amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+  }
+
+  private static String accountTag(String account) {
+    if (account.startsWith("0066") && account.length() == 13) {
+      return "01";
+    }
+    return account.length() == 15 ? "03" : "02";
+  }
+
+  private static String tlv(String tag, String value) {
+    return tag + String.format("%02d", value.length()) + value;
+  }
+
+  static int crc16(String data) {
+    int crc = 0xFFFF;
+    for (byte b : data.getBytes(StandardCharsets.US_ASCII)) {
+      crc ^= (b & 0xFF) << 8;
+      for (int i = 0; i < 8; i++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+    }
+    return crc & 0xFFFF;
+  }
+}
@@ -0,0 +1,85 @@
+package com.devsop.project.apartmentinvoice.service.payment;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * Per-invoice PromptPay QR codes, rendered in-process to PNG and returned as data URIs
+ * so the PDF renderer never touches the filesystem for the QR.
+ *
+ * Results are cached by (account, amount) in a bounded LRU: a bulk print of a month's
+ * invoices repeats many amounts (e.g. same rent, no usage), and reprints hit the cache.
+ */
+@Service
+public class PromptPayQrService {
+
+  private static final int QR_SIZE_PX = 300;
+
+  private final Map<String, String> cache;
+
+  public PromptPayQrService(@Value("${pdf.invoice.promptpay.qr-cache-size:1024}") int cacheSize) {
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > cacheSize;
+      }
+    });
+  }
+
+  /**
+   * data:image/png;base64,... for a PromptPay QR carrying the given amount.
+   * @throws IllegalArgumentException if promptPayId is not a valid PromptPay ID
+   */
+  public String qrDataUri(String promptPayId, BigDecimal amount) {
+    String account = PromptPayPayload.normalize(promptPayId);
+    String key = account + "|" + (amount != null ? PromptPayPayload.formatAmount(amount) : "");
+
+    String cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    String dataUri = "data:image/png;base64,"
+        + Base64.getEncoder().encodeToString(renderPng(PromptPayPayload.build(account, amount)));
+    cache.put(key, dataUri);
+    return dataUri;
+  }
+
+  private byte[] renderPng(String payload) {
+    try {
+      BitMatrix matrix = new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, QR_SIZE_PX, QR_SIZE_PX,
+          Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M, EncodeHintType.MARGIN, 1));
+
+      BufferedImage image = new BufferedImage(matrix.getWidth(), matrix.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+      for (int y = 0; y < matrix.getHeight(); y++) {
+        for (int x = 0; x < matrix.getWidth(); x++) {
+          image.setRGB(x, y, matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF);
+        }
+      }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ImageIO.write(image, "png", out);
+      return out.toByteArray();
+    } catch (WriterException | IOException e) {
+      throw new RuntimeException("❌ Failed to generate PromptPay QR: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.devsop.project.apartmentinvoice.service.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Document.OutputSettings;
+import org.jsoup.nodes.Entities;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+/**
+ * HTML -> PDF step of the rendering pipeline (Jsoup -> W3C DOM -> OpenHTMLtoPDF).
+ * Has no Spring dependencies so it can run both inside the API (PdfService)
+ * and inside an out-of-process render worker (PdfWorkerMain).
+ */
+public final class HtmlPdfRenderer {
+
+    /** classpath path -> font family name */
+    private static final String[][] FONTS = {
+            {"/fonts/THSarabunNew.ttf", "TH Sarabun New"},
+            {"/fonts/NotoSansThai-Regular.ttf", "Noto Sans Thai"},
+            {"/fonts/NotoSansThai-Bold.ttf", "Noto Sans Thai Bold"},
+    };
+
+    private HtmlPdfRenderer() {
+    }
+
+    public static byte[] render(String html) throws Exception {
+        return layout(toW3c(parseXhtml(html)));
+    }
+
+    // แต่ละ stage แยกเป็น method เพื่อให้วัดเวลาได้ทีละขั้น (ดู src/jmh)
+
+    /** ---------- 1) แปลง HTML -> XHTML ด้วย Jsoup ---------- */
+    public static Document parseXhtml(String html) {
+        Document jsoupDoc = Jsoup.parse(html, "UTF-8");
+        jsoupDoc.outputSettings(new OutputSettings()
+                .syntax(OutputSettings.Syntax.xml)
+                .charset(StandardCharsets.UTF_8)
+                .escapeMode(Entities.EscapeMode.xhtml)
+                .prettyPrint(false));
+        return jsoupDoc;
+    }
+
+    /** ---------- 2) Jsoup -> W3C DOM ---------- */
+    public static org.w3c.dom.Document toW3c(Document jsoupDoc) {
+        return new W3CDom().fromJsoup(jsoupDoc);
+    }
+
+    /** ---------- 3) Layout + render PDF ด้วย OpenHTMLtoPDF (รวมโหลดฟอนต์) ---------- */
+    public static byte[] layout(org.w3c.dom.Document w3cDoc) throws Exception {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PdfRendererBuilder builder = new PdfRendererBuilder();
+            builder.useFastMode();
+            builder.withW3cDocument(w3cDoc, null);
+            builder.toStream(out);
+            builder.useDefaultPageSize(210, 297, PdfRendererBuilder.PageSizeUnits.MM);
+
+            // โหลดฟอนต์ภาษาไทยจาก classpath
+            for (String[] font : FONTS) {
+                loadFont(builder, font[0], font[1]);
+            }
+
+            builder.run();
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * โหลดฟอนต์จาก classpath (ใช้ FSSupplier เพื่อรองรับใน container environment)
+     */
+    private static void loadFont(PdfRendererBuilder builder, String path, String name) {
+        try {
+            FSSupplier<InputStream> supplier = () -> {
+                InputStream is = HtmlPdfRenderer.class.getResourceAsStream(path);
+                if (is == null) {
+                    System.err.println("⚠️ Font not found at " + path);
+                }
+                return is;
+            };
+            builder.useFont(supplier, name);
+        } catch (Exception e) {
+            System.err.println("⚠️ Cannot load font " + name + ": " + e.getMessage());
+        }
+    }
+}
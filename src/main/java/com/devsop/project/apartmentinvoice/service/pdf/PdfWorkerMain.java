@@ -0,0 +1,110 @@
+package com.devsop.project.apartmentinvoice.service.pdf;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Entry point of an out-of-process PDF render worker.
+ * Started by PdfWorkerPool from the same jar/classpath with its own heap settings:
+ *
+ *   java [jvm-options] -cp app.jar -Dloader.main=...PdfWorkerMain \
+ *        org.springframework.boot.loader.launch.PropertiesLauncher /tmp/.../pdf-worker-1.sock
+ *
+ * Serves one request at a time on a Unix domain socket and exits when the parent JVM exits.
+ * No Spring context is started here: only HtmlPdfRenderer runs in the worker.
+ *
+ * Logging goes to stderr on purpose: without Spring Boot there is no logging configuration here
+ * (logback would fall back to DEBUG for every library), and the pool starts the worker with its
+ * output merged into the API process's stdout, so these lines land in the same log stream.
+ */
+public final class PdfWorkerMain {
+
+    /** HTML -> PDF step run for each RENDER request (HtmlPdfRenderer in production) */
+    @FunctionalInterface
+    interface Renderer {
+        byte[] render(String html) throws Exception;
+    }
+
+    private PdfWorkerMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            log("ERROR", "Usage: PdfWorkerMain <socket-path>");
+            System.exit(2);
+        }
+
+        // Never outlive the API process that started us
+        ProcessHandle.current().parent()
+                .ifPresent(parent -> parent.onExit().thenRun(() -> System.exit(0)));
+
+        Path socketPath = Path.of(args[0]);
+        Files.deleteIfExists(socketPath);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            socketPath.toFile().deleteOnExit();
+            serve(server, HtmlPdfRenderer::render);
+        }
+    }
+
+    /** Accept and answer requests until the server channel is closed */
+    static void serve(ServerSocketChannel server, Renderer renderer) {
+        while (server.isOpen()) {
+            try (SocketChannel client = server.accept()) {
+                handle(client, renderer);
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    log("WARN", "PDF worker connection failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void handle(SocketChannel client, Renderer renderer) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        DataOutputStream out = new DataOutputStream(Channels.newOutputStream(client));
+
+        PdfWorkerProtocol.Frame request = PdfWorkerProtocol.readFrame(in);
+        switch (request.type()) {
+            case PdfWorkerProtocol.OP_PING ->
+                PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.STATUS_OK, new byte[0]);
+            case PdfWorkerProtocol.OP_RENDER -> render(request.payload(), out, renderer);
+            default -> PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.STATUS_ERROR,
+                    ("Unknown op: " + request.type()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void render(byte[] htmlBytes, DataOutputStream out, Renderer renderer) throws IOException {
+        byte[] pdf;
+        try {
+            pdf = renderer.render(new String(htmlBytes, StandardCharsets.UTF_8));
+        } catch (OutOfMemoryError e) {
+            // Heap is in an unknown state; let the pool replace this worker
+            log("ERROR", "PDF worker out of memory, exiting");
+            System.exit(1);
+            return;
+        } catch (Throwable e) {
+            String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.STATUS_ERROR, message.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.STATUS_OK, pdf);
+    }
+
+    /** One line per event, tagged so worker lines can be told apart in the API's log */
+    private static void log(String level, String message) {
+        System.err.println(Instant.now() + " " + level + " [pdf-worker " + ProcessHandle.current().pid() + "] "
+                + message);
+    }
+}
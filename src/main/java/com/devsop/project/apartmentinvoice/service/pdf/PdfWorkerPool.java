@@ -0,0 +1,341 @@
+package com.devsop.project.apartmentinvoice.service.pdf;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pool of out-of-process PDF render workers (pdf.worker.enabled=true).
+ *
+ * The API JVM still runs Thymeleaf; the heavy HTML -> PDF step (Jsoup, W3C DOM, layout, fonts)
+ * is sent over a local Unix domain socket to a worker JVM started from the same jar.
+ * Workers have their own heap settings, are replaced after max-renders jobs or on any
+ * transport failure, and idle workers are pinged periodically.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "pdf.worker.enabled", havingValue = "true")
+public class PdfWorkerPool {
+
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    private final int poolSize;
+    private final int maxRenders;
+    private final String jvmOptions;
+    private final Path socketDir;
+    private final long renderTimeoutSeconds;
+    private final long healthCheckIntervalSeconds;
+    private final long startupTimeoutSeconds;
+
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicInteger sequence = new AtomicInteger();
+    /** Health checks and per-call timeout watchdogs */
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "pdf-worker-pool");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Worker start-up (blocks until the new JVM answers a ping) */
+    private final ExecutorService launcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pdf-worker-launcher");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Counter restartCounter;
+    private final Counter failureCounter;
+
+    private volatile boolean running = true;
+
+    public PdfWorkerPool(
+            MeterRegistry registry,
+            @Value("${pdf.worker.pool-size:2}") int poolSize,
+            @Value("${pdf.worker.max-renders:200}") int maxRenders,
+            @Value("${pdf.worker.jvm-options:-Xmx256m -XX:+UseSerialGC}") String jvmOptions,
+            @Value("${pdf.worker.socket-dir:${java.io.tmpdir}/apartment-pdf-workers}") String socketDir,
+            @Value("${pdf.worker.render-timeout-seconds:60}") long renderTimeoutSeconds,
+            @Value("${pdf.worker.health-check-interval-seconds:15}") long healthCheckIntervalSeconds,
+            @Value("${pdf.worker.startup-timeout-seconds:30}") long startupTimeoutSeconds) {
+        this.poolSize = poolSize;
+        this.maxRenders = maxRenders;
+        this.jvmOptions = jvmOptions;
+        this.socketDir = Paths.get(socketDir).toAbsolutePath().normalize();
+        this.renderTimeoutSeconds = renderTimeoutSeconds;
+        this.healthCheckIntervalSeconds = healthCheckIntervalSeconds;
+        this.startupTimeoutSeconds = startupTimeoutSeconds;
+
+        Gauge.builder("apartment.pdf.worker.live", live, AtomicInteger::get)
+            .description("Running PDF render worker processes")
+            .register(registry);
+        Gauge.builder("apartment.pdf.worker.idle", idle, BlockingQueue::size)
+            .description("PDF render workers waiting for a job")
+            .register(registry);
+        this.restartCounter = Counter.builder("apartment.pdf.worker.restarts")
+            .description("PDF render workers replaced (recycled, crashed or unhealthy)")
+            .register(registry);
+        this.failureCounter = Counter.builder("apartment.pdf.worker.failures")
+            .description("Render jobs lost because a worker crashed or timed out")
+            .register(registry);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(socketDir);
+        for (int i = 0; i < poolSize; i++) {
+            launcher.execute(this::spawnIntoPool);
+        }
+        scheduler.scheduleWithFixedDelay(this::healthCheck,
+            healthCheckIntervalSeconds, healthCheckIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        launcher.shutdownNow();
+        Worker w;
+        while ((w = idle.poll()) != null) {
+            w.destroy();
+        }
+    }
+
+    /**
+     * Render XHTML to PDF on a worker process.
+     * A render error reported by the worker keeps the worker; a crash or timeout replaces it.
+     */
+    public byte[] render(String html) {
+        Worker worker;
+        try {
+            worker = idle.poll(renderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for a PDF worker", e);
+        }
+        if (worker == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No PDF render worker available");
+        }
+
+        boolean healthy = false;
+        try {
+            PdfWorkerProtocol.Frame response = worker.call(
+                PdfWorkerProtocol.OP_RENDER, html.getBytes(StandardCharsets.UTF_8), renderTimeoutSeconds);
+            worker.renders++;
+            healthy = true;
+
+            if (response.type() != PdfWorkerProtocol.STATUS_OK) {
+                throw new IllegalStateException("PDF worker render error: "
+                    + new String(response.payload(), StandardCharsets.UTF_8));
+            }
+            return response.payload();
+        } catch (IOException e) {
+            failureCounter.increment();
+            throw new IllegalStateException("PDF worker " + worker.id + " failed: " + e.getMessage(), e);
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    // ---------- lifecycle ----------
+
+    private void release(Worker worker, boolean healthy) {
+        if (healthy && worker.renders < maxRenders && worker.process.isAlive()) {
+            idle.offer(worker);
+            return;
+        }
+        if (!running) {
+            retire(worker);
+            return;
+        }
+        // Stopping the old JVM may take seconds; keep it off the request thread
+        launcher.execute(() -> {
+            retire(worker);
+            spawnIntoPool();
+        });
+    }
+
+    private void retire(Worker worker) {
+        worker.destroy();
+        live.decrementAndGet();
+        restartCounter.increment();
+        log.info("PDF worker {} retired after {} renders", worker.id, worker.renders);
+    }
+
+    private void spawnIntoPool() {
+        if (!running || live.get() >= poolSize) {
+            return;
+        }
+        live.incrementAndGet();
+        try {
+            idle.offer(spawn());
+        } catch (Exception e) {
+            live.decrementAndGet();
+            log.error("Failed to start PDF worker: {}", e.getMessage());
+        }
+    }
+
+    /** Ping idle workers; replace dead ones and top the pool back up */
+    private void healthCheck() {
+        int checks = idle.size();
+        for (int i = 0; i < checks; i++) {
+            Worker worker = idle.poll();
+            if (worker == null) {
+                break;
+            }
+            boolean healthy;
+            try {
+                healthy = worker.process.isAlive()
+                    && worker.call(PdfWorkerProtocol.OP_PING, new byte[0], 5).type() == PdfWorkerProtocol.STATUS_OK;
+            } catch (IOException e) {
+                healthy = false;
+            }
+            if (healthy) {
+                idle.offer(worker);
+            } else {
+                log.warn("PDF worker {} failed health check", worker.id);
+                retire(worker);
+            }
+        }
+        // spawnIntoPool re-checks the live count, so surplus launches are no-ops
+        for (int i = live.get(); running && i < poolSize; i++) {
+            launcher.execute(this::spawnIntoPool);
+        }
+    }
+
+    private Worker spawn() throws IOException, InterruptedException {
+        int id = sequence.incrementAndGet();
+        Path socket = socketDir.resolve("pdf-worker-" + ProcessHandle.current().pid() + "-" + id + ".sock");
+        Files.deleteIfExists(socket);
+
+        Process process = new ProcessBuilder(command(socket))
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        Worker worker = new Worker(id, process, socket);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(startupTimeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("PDF worker " + id + " exited with code " + process.exitValue());
+            }
+            if (Files.exists(socket)) {
+                try {
+                    worker.call(PdfWorkerProtocol.OP_PING, new byte[0], 5);
+                    log.info("PDF worker {} started (pid {})", id, process.pid());
+                    return worker;
+                } catch (IOException e) {
+                    // socket bound but not accepting yet
+                }
+            }
+            Thread.sleep(100);
+        }
+        worker.destroy();
+        throw new IOException("PDF worker " + id + " did not start within " + startupTimeoutSeconds + "s");
+    }
+
+    /** Same jar (or IDE classpath) as the API, different main class and heap settings */
+    private List<String> command(Path socket) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (jvmOptions != null && !jvmOptions.isBlank()) {
+            cmd.addAll(Arrays.asList(jvmOptions.trim().split("\\s+")));
+        }
+
+        String classpath = System.getProperty("java.class.path");
+        cmd.add("-cp");
+        cmd.add(classpath);
+        boolean bootJar = !classpath.contains(File.pathSeparator) && classpath.endsWith(".jar");
+        if (bootJar) {
+            cmd.add("-Dloader.main=" + PdfWorkerMain.class.getName());
+            cmd.add(BOOT_LAUNCHER);
+        } else {
+            cmd.add(PdfWorkerMain.class.getName());
+        }
+        cmd.add(socket.toString());
+        return cmd;
+    }
+
+    // ---------- worker handle ----------
+
+    private final class Worker {
+        private final int id;
+        private final Process process;
+        private final Path socket;
+        private int renders;
+
+        Worker(int id, Process process, Path socket) {
+            this.id = id;
+            this.process = process;
+            this.socket = socket;
+        }
+
+        /** One request per connection; the channel is closed by a watchdog on timeout */
+        PdfWorkerProtocol.Frame call(byte op, byte[] payload, long timeoutSeconds) throws IOException {
+            try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                ScheduledFuture<?> watchdog = scheduler.schedule(() -> {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // already closed
+                    }
+                }, timeoutSeconds, TimeUnit.SECONDS);
+                try {
+                    PdfWorkerProtocol.writeFrame(new DataOutputStream(Channels.newOutputStream(channel)), op, payload);
+                    return PdfWorkerProtocol.readFrame(new DataInputStream(Channels.newInputStream(channel)));
+                } finally {
+                    watchdog.cancel(false);
+                }
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ignored) {
+                // worker may still hold it; it is recreated per worker id anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.devsop.project.apartmentinvoice.service.pdf;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format between PdfWorkerPool (API side) and PdfWorkerMain (worker process).
+ *
+ * Request:  [op:1 byte][length:4 bytes][payload]
+ * Response: [status:1 byte][length:4 bytes][payload]
+ *
+ * RENDER payload is UTF-8 HTML; an OK response carries the PDF bytes,
+ * an ERROR response carries a UTF-8 message. PING has an empty payload.
+ */
+final class PdfWorkerProtocol {
+
+    static final byte OP_RENDER = 1;
+    static final byte OP_PING = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    /** Upper bound for a single frame (HTML in, PDF out) */
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private PdfWorkerProtocol() {
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    static Frame readFrame(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid PDF worker frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    record Frame(byte type, byte[] payload) {
+    }
+}
@@ -0,0 +1,491 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import com.devsop.project.apartmentinvoice.service.csv.StripedLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of a remote StorageService (GCS in production).
+ *
+ * Two tiers:
+ * - disk: every file read is copied once to a local directory, bounded by total size, least recently used evicted first
+ * - heap: small files that are read again (hot), whole or by range, are also kept as byte arrays, bounded by
+ *   total size
+ *
+ * A cached copy is served only while its version (StorageService.getVersion, the GCS generation) matches
+ * the backend. The version is checked at most once per revalidate interval, so a hot file costs one metadata
+ * call per interval instead of one download per read. If the check itself fails (backend unavailable) the
+ * cached copy is served. Uploads and deletes go to the backend and drop the cached copy.
+ *
+ * The index is kept in memory only: the cache directory is emptied on start.
+ */
+@Slf4j
+public class CachingStorageService implements StorageService {
+
+    private final StorageService delegate;
+    private final Path cacheDir;
+    private final long maxDiskBytes;
+    private final long maxHeapBytes;
+    private final long maxHeapEntryBytes;
+    private final long revalidateMillis;
+
+    /** One download per file at a time: concurrent misses of the same path wait for the first fill */
+    private final StripedLocks fillLocks = new StripedLocks(64);
+
+    // access-ordered: iteration starts at the least recently used entry; guarded by this
+    private final LinkedHashMap<String, CachedFile> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, CachedFile> heapEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long heapBytes;
+
+    private final Counter heapHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter bytesFromHeap;
+    private final Counter bytesFromDisk;
+    private final Counter bytesFromBackend;
+
+    public CachingStorageService(
+            StorageService delegate,
+            Path cacheDir,
+            long maxDiskBytes,
+            long maxHeapBytes,
+            long maxHeapEntryBytes,
+            Duration revalidateAfter,
+            MeterRegistry registry) {
+        this.delegate = delegate;
+        this.cacheDir = cacheDir.toAbsolutePath().normalize();
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxHeapBytes = maxHeapBytes;
+        this.maxHeapEntryBytes = Math.min(maxHeapEntryBytes, maxHeapBytes);
+        this.revalidateMillis = revalidateAfter.toMillis();
+        clearCacheDir();
+
+        this.heapHits = requests(registry, "heap_hit");
+        this.diskHits = requests(registry, "disk_hit");
+        this.misses = requests(registry, "miss");
+        this.evictions = Counter.builder("apartment.storage.cache.evictions")
+                .description("Files evicted from the local disk cache")
+                .register(registry);
+        this.bytesFromHeap = bytesServed(registry, "heap");
+        this.bytesFromDisk = bytesServed(registry, "disk");
+        this.bytesFromBackend = bytesServed(registry, "backend");
+
+        Gauge.builder("apartment.storage.cache.hit.ratio", this, CachingStorageService::hitRatio)
+                .description("Share of reads served from the cache (heap or disk)")
+                .register(registry);
+        Gauge.builder("apartment.storage.cache.disk.bytes", this, c -> c.diskBytes())
+                .description("Bytes held by the local disk cache")
+                .register(registry);
+        Gauge.builder("apartment.storage.cache.heap.bytes", this, c -> c.heapBytes())
+                .description("Bytes held by the in-heap cache")
+                .register(registry);
+        Gauge.builder("apartment.storage.cache.entries", this, c -> c.diskEntryCount())
+                .description("Files currently cached on disk")
+                .register(registry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("apartment.storage.cache.requests")
+                .description("Reads through the storage cache by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter bytesServed(MeterRegistry registry, String source) {
+        return Counter.builder("apartment.storage.cache.bytes.served")
+                .description("Bytes returned to readers by where they came from")
+                .baseUnit("bytes")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    @Override
+    public String uploadFile(InputStream inputStream, String fileName, String contentType, String filePath) {
+        try {
+            return delegate.uploadFile(inputStream, fileName, contentType, filePath);
+        } finally {
+            invalidate(filePath);
+        }
+    }
+
+    @Override
+    public byte[] downloadFile(String filePath) {
+        Cached cached = cachedOrFill(filePath);
+        if (cached != null) {
+            try {
+                return read(filePath, cached);
+            } catch (IOException e) {
+                // evicted between lookup and read: fall through to the backend
+                invalidate(filePath);
+            }
+        }
+        byte[] content = delegate.downloadFile(filePath);
+        bytesFromBackend.increment(content.length);
+        return content;
+    }
+
+    @Override
+    public InputStream openStream(String filePath) {
+        return openRange(filePath, 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        Cached cached = cachedOrFill(filePath);
+        if (cached != null) {
+            CachedFile entry = cached.entry();
+            long served = Math.max(0, Math.min(length, entry.size - offset));
+            try {
+                byte[] content = entry.content;
+                boolean fromHeap = content != null;
+                if (content == null && !cached.filled() && entry.size <= maxHeapEntryBytes) {
+                    // small and read again: keep it in the heap tier, like read() does
+                    content = Files.readAllBytes(entry.file);
+                    promote(filePath, entry, content);
+                }
+                if (content != null) {
+                    countServed(cached, fromHeap, served);
+                    return new ByteArrayInputStream(content, (int) Math.min(offset, content.length), (int) served);
+                }
+                FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ);
+                channel.position(offset);
+                countServed(cached, false, served);
+                return new BoundedInputStream(Channels.newInputStream(channel), served);
+            } catch (IOException e) {
+                invalidate(filePath);
+            }
+        }
+        return delegate.openRange(filePath, offset, length);
+    }
+
+    @Override
+    public long getFileSize(String filePath) {
+        CachedFile entry = lookup(filePath);
+        return entry != null ? entry.size : delegate.getFileSize(filePath);
+    }
+
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        try {
+            return delegate.compose(sourcePaths, contentType, targetPath);
+        } finally {
+            invalidate(targetPath);
+        }
+    }
+
+    /** Direct downloads bypass the cache: the URL points at the backend */
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        return delegate.createSignedUrl(filePath, contentType, contentDisposition, ttl);
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        return delegate.getVersion(filePath);
+    }
+
+    /** Listing is metadata from the backend, never from the cache */
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        return delegate.listFiles(prefix, pageToken, pageSize);
+    }
+
+    @Override
+    public void deleteFile(String filePath) {
+        try {
+            delegate.deleteFile(filePath);
+        } finally {
+            invalidate(filePath);
+        }
+    }
+
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        try {
+            return delegate.deleteFiles(filePaths);
+        } finally {
+            filePaths.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public boolean fileExists(String filePath) {
+        return lookup(filePath) != null || delegate.fileExists(filePath);
+    }
+
+    /** A valid cache entry and whether this read just copied it from the backend */
+    private record Cached(CachedFile entry, boolean filled) {
+    }
+
+    /**
+     * Valid cached entry, filling the cache from the backend on a miss.
+     * Null when the file cannot be cached (larger than the disk budget); the caller reads the backend.
+     */
+    private Cached cachedOrFill(String filePath) {
+        CachedFile entry = lookup(filePath);
+        if (entry != null) {
+            return hit(entry);
+        }
+        Lock lock = fillLocks.get(filePath);
+        lock.lock();
+        try {
+            entry = lookup(filePath);
+            if (entry != null) {
+                return hit(entry);
+            }
+            misses.increment();
+            entry = fill(filePath);
+            return entry != null ? new Cached(entry, true) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Only reads count as hits: size and existence checks would inflate the hit ratio */
+    private Cached hit(CachedFile entry) {
+        if (entry.content != null) {
+            heapHits.increment();
+        } else {
+            diskHits.increment();
+        }
+        return new Cached(entry, false);
+    }
+
+    /**
+     * Cached entry whose version still matches the backend (checked at most once per revalidate interval),
+     * or null.
+     */
+    private CachedFile lookup(String filePath) {
+        CachedFile entry;
+        synchronized (this) {
+            entry = diskEntries.get(filePath);
+            if (entry != null && entry.content != null) {
+                heapEntries.get(filePath); // touch: keep hot entries at the recent end
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - entry.validatedAt >= revalidateMillis) {
+            String version;
+            try {
+                version = delegate.getVersion(filePath);
+            } catch (ResponseStatusException e) {
+                if (e.getStatusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                    invalidate(filePath);
+                    return null;
+                }
+                log.warn("Could not validate cached {} ({}), serving cached copy", filePath, e.getReason());
+                version = entry.version;
+            }
+            if (!version.equals(entry.version)) {
+                invalidate(filePath);
+                return null;
+            }
+            entry.validatedAt = now;
+        }
+        return entry;
+    }
+
+    /** Copy the file from the backend to the cache directory and index it; null when it is over the disk budget */
+    private CachedFile fill(String filePath) {
+        // too large to cache: do not download it twice (here and again by the caller)
+        if (delegate.getFileSize(filePath) > maxDiskBytes) {
+            return null;
+        }
+        // version first: if the object is replaced during the copy, the next validation sees a newer version
+        String version = delegate.getVersion(filePath);
+        Path file = null;
+        long size;
+        try {
+            file = Files.createTempFile(cacheDir, "entry-", ".bin");
+            try (InputStream in = delegate.openStream(filePath)) {
+                size = Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to cache file: " + e.getMessage(),
+                    e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+
+        if (size > maxDiskBytes) {
+            // replaced by a larger object since the size check
+            deleteQuietly(file);
+            return null;
+        }
+
+        CachedFile entry = new CachedFile(file, size, version, System.currentTimeMillis());
+        synchronized (this) {
+            CachedFile previous = diskEntries.put(filePath, entry);
+            if (previous != null) {
+                dropLocked(filePath, previous);
+            }
+            diskBytes += size;
+            evictDiskLocked();
+        }
+        return entry;
+    }
+
+    /**
+     * Content of a cached file: from the heap tier if present, otherwise from disk. A small file read
+     * from disk again is promoted to the heap tier.
+     */
+    private byte[] read(String filePath, Cached cached) throws IOException {
+        CachedFile entry = cached.entry();
+        byte[] content = entry.content;
+        if (content != null) {
+            countServed(cached, true, content.length);
+            return content.clone();
+        }
+        content = Files.readAllBytes(entry.file);
+        countServed(cached, false, content.length);
+        if (!cached.filled() && content.length <= maxHeapEntryBytes) {
+            promote(filePath, entry, content);
+        }
+        return content;
+    }
+
+    /** Bytes of a miss count as served by the backend (they were just downloaded) */
+    private void countServed(Cached cached, boolean fromHeap, long bytes) {
+        if (cached.filled()) {
+            bytesFromBackend.increment(bytes);
+        } else if (fromHeap) {
+            bytesFromHeap.increment(bytes);
+        } else {
+            bytesFromDisk.increment(bytes);
+        }
+    }
+
+    private synchronized void promote(String filePath, CachedFile entry, byte[] content) {
+        if (diskEntries.get(filePath) != entry || entry.content != null) {
+            return;
+        }
+        entry.content = content.clone();
+        heapEntries.put(filePath, entry);
+        heapBytes += content.length;
+
+        Iterator<Map.Entry<String, CachedFile>> eldest = heapEntries.entrySet().iterator();
+        while (heapBytes > maxHeapBytes && eldest.hasNext()) {
+            CachedFile evicted = eldest.next().getValue();
+            eldest.remove();
+            heapBytes -= evicted.size;
+            evicted.content = null;
+        }
+    }
+
+    private void evictDiskLocked() {
+        Iterator<Map.Entry<String, CachedFile>> eldest = diskEntries.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, CachedFile> evicted = eldest.next();
+            eldest.remove();
+            dropLocked(evicted.getKey(), evicted.getValue());
+            evictions.increment();
+        }
+    }
+
+    /** Forget the cached copy of a path (after an overwrite, a delete or a failed validation) */
+    private synchronized void invalidate(String filePath) {
+        CachedFile entry = diskEntries.remove(filePath);
+        if (entry != null) {
+            dropLocked(filePath, entry);
+        }
+    }
+
+    /** Release an entry already removed from diskEntries: heap tier, byte counts, file */
+    private void dropLocked(String filePath, CachedFile entry) {
+        diskBytes -= entry.size;
+        if (entry.content != null && heapEntries.remove(filePath) == entry) {
+            heapBytes -= entry.size;
+        }
+        entry.content = null;
+        // readers that already opened the file keep reading it (POSIX unlink semantics)
+        deleteQuietly(entry.file);
+    }
+
+    private void clearCacheDir() {
+        try {
+            Files.createDirectories(cacheDir);
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                files.filter(Files::isRegularFile).forEach(CachingStorageService::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare storage cache directory: " + cacheDir, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = heapHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    public synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized long heapBytes() {
+        return heapBytes;
+    }
+
+    public synchronized int diskEntryCount() {
+        return diskEntries.size();
+    }
+
+    private static final class CachedFile {
+        final Path file;
+        final long size;
+        final String version;
+        volatile long validatedAt;
+        /** Set while the file is also in the heap tier */
+        volatile byte[] content;
+
+        CachedFile(Path file, long size, String version, long validatedAt) {
+            this.file = file;
+            this.size = size;
+            this.version = version;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
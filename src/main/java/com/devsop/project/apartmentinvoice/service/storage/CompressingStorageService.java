@@ -0,0 +1,303 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transparent gzip compression of text-heavy files (CSV import backups and error reports, JSON, PDFs
+ * with uncompressed content streams) between the application and the backend.
+ *
+ * - Write: for a compressible Content-Type, the first 64KB are test-compressed; if that saves at least
+ *   10% the file is stored gzip-compressed, streamed (never whole in memory). Otherwise it is stored as is.
+ * - Codec: a compressed object is a standard gzip file whose header carries an "AI" extra field. The
+ *   header is the codec record: it is checked on read, so compressed and plain objects (older files,
+ *   images) live side by side under the same paths, and `gzip -d` still opens a downloaded object.
+ * - Read: decompressed while streamed; sizes are the uncompressed size (gzip ISIZE trailer).
+ *   A range read of a compressed object decompresses from the start and skips to the offset.
+ *
+ * Reads always decode, so switching compression of new writes off (compressWrites) keeps existing
+ * compressed objects readable. Compressed objects get no signed URL: they can only be served decoded.
+ */
+@Slf4j
+public class CompressingStorageService implements StorageService {
+
+    /** gzip member header: deflate, FLG.FEXTRA, MTIME 0, OS unknown, extra field "AI" (length 0) */
+    static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff,
+        4, 0, 'A', 'I', 0, 0
+    };
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int MIN_SIZE = 512;
+    private static final double MIN_SAVING = 0.10;
+
+    private final StorageService delegate;
+    private final boolean compressWrites;
+    private final int level;
+    private final Set<String> compressibleTypes;
+
+    private final Counter compressedFiles;
+    private final Counter plainFiles;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+
+    public CompressingStorageService(
+            StorageService delegate,
+            boolean compressWrites,
+            int level,
+            List<String> compressibleTypes,
+            MeterRegistry registry) {
+        this.delegate = delegate;
+        this.compressWrites = compressWrites;
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.compressibleTypes = compressibleTypes.stream()
+                .map(t -> t.trim().toLowerCase(Locale.ROOT))
+                .filter(t -> !t.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+
+        this.compressedFiles = files(registry, "compressed");
+        this.plainFiles = files(registry, "plain");
+        this.rawBytes = Counter.builder("apartment.storage.compression.bytes")
+                .description("Bytes of compressed writes, before (raw) and after (stored) compression")
+                .baseUnit("bytes")
+                .tag("stage", "raw")
+                .register(registry);
+        this.storedBytes = Counter.builder("apartment.storage.compression.bytes")
+                .description("Bytes of compressed writes, before (raw) and after (stored) compression")
+                .baseUnit("bytes")
+                .tag("stage", "stored")
+                .register(registry);
+    }
+
+    private static Counter files(MeterRegistry registry, String result) {
+        return Counter.builder("apartment.storage.compression.files")
+                .description("Writes of compressible types by whether they were stored compressed")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String uploadFile(InputStream inputStream, String fileName, String contentType, String filePath) {
+        if (!compressWrites || !isCompressible(contentType)) {
+            return delegate.uploadFile(inputStream, fileName, contentType, filePath);
+        }
+        BufferedInputStream buffered = new BufferedInputStream(inputStream, SAMPLE_SIZE);
+        byte[] sample;
+        try {
+            buffered.mark(SAMPLE_SIZE);
+            sample = buffered.readNBytes(SAMPLE_SIZE);
+            buffered.reset();
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+        if (!worthCompressing(sample)) {
+            plainFiles.increment();
+            return delegate.uploadFile(buffered, fileName, contentType, filePath);
+        }
+
+        GzipEncodingInputStream encoded = new GzipEncodingInputStream(buffered, HEADER, level);
+        try (encoded) {
+            String result = delegate.uploadFile(encoded, fileName, contentType, filePath);
+            compressedFiles.increment();
+            rawBytes.increment(encoded.rawBytes());
+            storedBytes.increment(encoded.encodedBytes());
+            return result;
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to compress file: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public byte[] downloadFile(String filePath) {
+        try (InputStream in = openStream(filePath)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String filePath) {
+        // one backend stream: the header is peeked, then the same stream is decoded or returned as is
+        BufferedInputStream in = new BufferedInputStream(delegate.openStream(filePath), 64 * 1024);
+        try {
+            in.mark(HEADER.length);
+            byte[] head = in.readNBytes(HEADER.length);
+            in.reset();
+            return Arrays.equals(head, HEADER) ? new GZIPInputStream(in, 64 * 1024) : in;
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        if (offset == 0) {
+            InputStream in = openStream(filePath);
+            return length == Long.MAX_VALUE ? in : new BoundedInputStream(in, length);
+        }
+        if (!isCompressed(filePath)) {
+            return delegate.openRange(filePath, offset, length);
+        }
+        InputStream in = openStream(filePath);
+        try {
+            in.skipNBytes(offset);
+        } catch (EOFException e) {
+            // range starts past the end: nothing to return
+            closeQuietly(in);
+            return InputStream.nullInputStream();
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+        return length == Long.MAX_VALUE ? in : new BoundedInputStream(in, length);
+    }
+
+    /** Uncompressed size: the ISIZE trailer (size modulo 4GB, far above the upload limits) */
+    @Override
+    public long getFileSize(String filePath) {
+        long size = delegate.getFileSize(filePath);
+        if (size < HEADER.length + 8 || !isCompressed(filePath)) {
+            return size;
+        }
+        try (InputStream in = delegate.openRange(filePath, size - 4, 4)) {
+            byte[] trailer = in.readNBytes(4);
+            return (trailer[0] & 0xffL) | (trailer[1] & 0xffL) << 8 | (trailer[2] & 0xffL) << 16
+                    | (trailer[3] & 0xffL) << 24;
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file size: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        return delegate.getVersion(filePath);
+    }
+
+    /**
+     * Parts of chunked uploads are application/octet-stream and stored as is, so the backend can
+     * join them directly.
+     */
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        return delegate.compose(sourcePaths, contentType, targetPath);
+    }
+
+    /**
+     * No URL for a compressed object: the client would get gzip bytes under the original type.
+     * Checked on the object itself, whatever its type: storage.compression.types may have changed since it was written.
+     */
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        if (isCompressed(filePath)) {
+            return null;
+        }
+        return delegate.createSignedUrl(filePath, contentType, contentDisposition, ttl);
+    }
+
+    /** Sizes in the listing are stored (compressed) sizes */
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        return delegate.listFiles(prefix, pageToken, pageSize);
+    }
+
+    @Override
+    public void deleteFile(String filePath) {
+        delegate.deleteFile(filePath);
+    }
+
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        return delegate.deleteFiles(filePaths);
+    }
+
+    @Override
+    public boolean fileExists(String filePath) {
+        return delegate.fileExists(filePath);
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';'); // "text/csv; charset=UTF-8"
+        String type = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType)
+                .trim().toLowerCase(Locale.ROOT);
+        return compressibleTypes.contains(type);
+    }
+
+    /** Header check with a small range read */
+    private boolean isCompressed(String filePath) {
+        try (InputStream in = delegate.openRange(filePath, 0, HEADER.length)) {
+            return Arrays.equals(in.readNBytes(HEADER.length), HEADER);
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /** Fast deflate of the first bytes: a PDF whose streams are already Flate-encoded gains nothing */
+    private static boolean worthCompressing(byte[] sample) {
+        if (sample.length < MIN_SIZE) {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer);
+            }
+            return compressed <= sample.length * (1 - MIN_SAVING);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Could not close storage stream: {}", e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.devsop.project.apartmentinvoice.service.storage;
 
+import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
@@ -12,15 +17,32 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Google Cloud Storage implementation of StorageService.
  * Used in production environments (GKE) with proper service account credentials.
  */
+@Slf4j
 @Service
 @ConditionalOnProperty(name = "storage.type", havingValue = "gcs")
+@Qualifier(StorageService.BACKEND)
 public class GcsStorageService implements StorageService {
 
+    /** GCS compose limit per request */
+    private static final int MAX_COMPOSE_SOURCES = 32;
+
+    /** GCS batch request limit */
+    private static final int MAX_BATCH_DELETES = 100;
+
     private final Storage storage;
     private final String bucketName;
 
@@ -63,6 +85,150 @@ public class GcsStorageService implements StorageService {
         }
     }
 
+    @Override
+    public InputStream openStream(String filePath) {
+        return openRange(filePath, 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        try {
+            // ReadChannel fetches the object chunk by chunk as it is read (ranged GETs), never as a whole
+            ReadChannel reader = storage.reader(BlobId.of(bucketName, filePath));
+            if (offset > 0) {
+                reader.seek(offset);
+            }
+            if (length != Long.MAX_VALUE) {
+                reader.limit(offset + length);
+            }
+            return Channels.newInputStream(reader);
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file from GCS: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public long getFileSize(String filePath) {
+        Blob blob;
+        try {
+            blob = storage.get(BlobId.of(bucketName, filePath));
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file metadata from GCS: " + e.getMessage(),
+                    e);
+        }
+        if (blob == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "GCS object not found: " + filePath);
+        }
+        return blob.getSize();
+    }
+
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        try {
+            BlobInfo target = BlobInfo.newBuilder(BlobId.of(bucketName, targetPath))
+                    .setContentType(contentType)
+                    .build();
+            // server-side join, at most 32 sources per request: later batches are appended to the result
+            List<String> batch = new ArrayList<>();
+            boolean started = false;
+            for (String sourcePath : sourcePaths) {
+                if (batch.isEmpty() && started) {
+                    batch.add(targetPath);
+                }
+                batch.add(sourcePath);
+                if (batch.size() == MAX_COMPOSE_SOURCES) {
+                    storage.compose(Storage.ComposeRequest.newBuilder().addSource(batch).setTarget(target).build());
+                    batch.clear();
+                    started = true;
+                }
+            }
+            if (!batch.isEmpty() || !started) {
+                storage.compose(Storage.ComposeRequest.newBuilder().addSource(batch).setTarget(target).build());
+            }
+            return targetPath;
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to compose file in GCS: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        try {
+            // V4 signing: the response headers are part of the signature (response-* query parameters)
+            URL url = storage.signUrl(
+                    BlobInfo.newBuilder(BlobId.of(bucketName, filePath)).build(),
+                    ttl.toSeconds(),
+                    TimeUnit.SECONDS,
+                    Storage.SignUrlOption.withV4Signature(),
+                    Storage.SignUrlOption.withQueryParams(Map.of(
+                            "response-content-type", contentType,
+                            "response-content-disposition", contentDisposition)));
+            return url.toString();
+        } catch (Exception e) {
+            // e.g. credentials without a private key or iam.serviceAccounts.signBlob: stream instead
+            log.warn("Failed to sign GCS URL for {}: {}", filePath, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        Blob blob;
+        try {
+            blob = storage.get(BlobId.of(bucketName, filePath),
+                    Storage.BlobGetOption.fields(Storage.BlobField.GENERATION));
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file metadata from GCS: " + e.getMessage(),
+                    e);
+        }
+        if (blob == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "GCS object not found: " + filePath);
+        }
+        // generation changes on every overwrite of the object
+        return String.valueOf(blob.getGeneration());
+    }
+
+    /** One list request per page; only name, size and update time are fetched */
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        try {
+            List<Storage.BlobListOption> options = new ArrayList<>(List.of(
+                    Storage.BlobListOption.prefix(prefix == null ? "" : prefix),
+                    Storage.BlobListOption.pageSize(pageSize),
+                    Storage.BlobListOption.fields(
+                            Storage.BlobField.NAME, Storage.BlobField.SIZE, Storage.BlobField.UPDATED)));
+            if (pageToken != null) {
+                options.add(Storage.BlobListOption.pageToken(pageToken));
+            }
+            Page<Blob> page = storage.list(bucketName, options.toArray(Storage.BlobListOption[]::new));
+
+            List<StoredFilePage.StoredFile> files = new ArrayList<>();
+            for (Blob blob : page.getValues()) { // this page only, not iterateAll()
+                OffsetDateTime updated = blob.getUpdateTimeOffsetDateTime();
+                files.add(new StoredFilePage.StoredFile(
+                        blob.getName(),
+                        blob.getSize() == null ? 0 : blob.getSize(),
+                        updated == null ? Instant.EPOCH : updated.toInstant()));
+            }
+            return new StoredFilePage(files, page.hasNextPage() ? page.getNextPageToken() : null);
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to list files in GCS: " + e.getMessage(),
+                    e);
+        }
+    }
+
     @Override
     public void deleteFile(String filePath) {
         try {
@@ -79,6 +245,29 @@ public class GcsStorageService implements StorageService {
         }
     }
 
+    /** One batch request per 100 objects (GCS batch limit) */
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        List<String> failed = new ArrayList<>();
+        try {
+            for (int from = 0; from < filePaths.size(); from += MAX_BATCH_DELETES) {
+                List<String> chunk = filePaths.subList(from, Math.min(filePaths.size(), from + MAX_BATCH_DELETES));
+                List<Boolean> deleted = storage.delete(chunk.stream().map(path -> BlobId.of(bucketName, path)).toList());
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (!Boolean.TRUE.equals(deleted.get(i))) {
+                        failed.add(chunk.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to delete files from GCS: " + e.getMessage(),
+                    e);
+        }
+        return failed;
+    }
+
     @Override
     public boolean fileExists(String filePath) {
         try {
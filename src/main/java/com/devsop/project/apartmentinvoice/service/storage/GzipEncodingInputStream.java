@@ -0,0 +1,103 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Reads a stream as gzip (RFC 1952), compressing while it is consumed: the whole content is never
+ * held in memory, so it can be passed straight to StorageService.uploadFile of the backend.
+ * The header is the one given (see CompressingStorageService.HEADER); CRC-32 and size trailer are
+ * appended once the source is exhausted.
+ */
+class GzipEncodingInputStream extends InputStream {
+
+    private final CheckedInputStream source;
+    private final Deflater deflater;
+    private final DeflaterInputStream body;
+
+    private byte[] pending;
+    private int pendingPos;
+    private boolean bodyDone;
+    private long rawBytes;
+    private long encodedBytes;
+
+    GzipEncodingInputStream(InputStream in, byte[] header, int level) {
+        this.source = new CheckedInputStream(in, new CRC32());
+        this.deflater = new Deflater(level, true); // raw deflate: header and trailer written here
+        this.body = new DeflaterInputStream(source, deflater, 64 * 1024);
+        this.pending = header;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (pending != null) {
+                int n = Math.min(len, pending.length - pendingPos);
+                System.arraycopy(pending, pendingPos, b, off, n);
+                pendingPos += n;
+                if (pendingPos == pending.length) {
+                    pending = null;
+                    pendingPos = 0;
+                }
+                encodedBytes += n;
+                return n;
+            }
+            if (!bodyDone) {
+                int n = body.read(b, off, len);
+                if (n > 0) {
+                    encodedBytes += n;
+                    return n;
+                }
+                if (n < 0) {
+                    bodyDone = true;
+                    pending = trailer();
+                }
+                continue;
+            }
+            return -1;
+        }
+    }
+
+    /** Bytes of content compressed (known once the whole source has been read) */
+    long rawBytes() {
+        return rawBytes;
+    }
+
+    /** Bytes of gzip produced so far (header, body and trailer) */
+    long encodedBytes() {
+        return encodedBytes;
+    }
+
+    private byte[] trailer() {
+        long crc = source.getChecksum().getValue();
+        rawBytes = deflater.getBytesRead();
+        long size = rawBytes; // ISIZE: size modulo 2^32
+        return new byte[] {
+            (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24),
+            (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import com.google.cloud.BaseServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Metrics and trace spans of every call to the storage backend, so a slow document page can be pinned
+ * on storage (or ruled out) next to the database spans of the same request.
+ *
+ * Wraps the backend itself (innermost, see StorageConfig): what is measured is the backend's own latency,
+ * not cache hits or spooled writes, and bytes are the stored (possibly compressed) bytes.
+ * - apartment.storage.backend.latency{backend, operation, outcome}: time per call
+ * - apartment.storage.backend.bytes{backend, direction}: bytes read from / written to the backend
+ * - apartment.storage.backend.errors{backend, operation, cause}: failures by cause (not_found, access_denied,
+ *   timeout, rate_limited, unavailable, io, other)
+ * - span "storage &lt;operation&gt;" (kind CLIENT), a child of the current request span.
+ *
+ * A streamed read (openStream, openRange) is one "read" call from open until the stream reaches its end or
+ * is closed: backends open lazily (a GCS ReadChannel fetches nothing until the first read), so the transfer
+ * is where the time goes. Its span stays open for that long and a read error marks it, and the latency, as failed.
+ */
+public class InstrumentedStorageService implements StorageService {
+
+    private static final AttributeKey<String> BACKEND = AttributeKey.stringKey("storage.backend");
+    private static final AttributeKey<String> OPERATION = AttributeKey.stringKey("storage.operation");
+    private static final AttributeKey<String> PATH = AttributeKey.stringKey("storage.path");
+
+    private final StorageService delegate;
+    private final String backend;
+    private final MeterRegistry registry;
+    private final Tracer tracer;
+
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+
+    public InstrumentedStorageService(
+            StorageService delegate,
+            String backend,
+            MeterRegistry registry,
+            OpenTelemetry openTelemetry) {
+        this.delegate = delegate;
+        this.backend = backend;
+        this.registry = registry;
+        this.tracer = openTelemetry.getTracer("apartment-invoice.storage");
+
+        this.bytesRead = bytes("read");
+        this.bytesWritten = bytes("written");
+    }
+
+    private Counter bytes(String direction) {
+        return Counter.builder("apartment.storage.backend.bytes")
+                .description("Bytes transferred to and from the storage backend")
+                .baseUnit("bytes")
+                .tag("backend", backend)
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    @Override
+    public String uploadFile(InputStream inputStream, String fileName, String contentType, String filePath) {
+        return record("upload", filePath,
+                () -> delegate.uploadFile(new MeteredInputStream(inputStream, null, bytesWritten),
+                        fileName, contentType, filePath));
+    }
+
+    @Override
+    public byte[] downloadFile(String filePath) {
+        byte[] content = record("download", filePath, () -> delegate.downloadFile(filePath));
+        bytesRead.increment(content.length);
+        return content;
+    }
+
+    @Override
+    public InputStream openStream(String filePath) {
+        return stream(filePath, () -> delegate.openStream(filePath));
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        return stream(filePath, () -> delegate.openRange(filePath, offset, length));
+    }
+
+    @Override
+    public long getFileSize(String filePath) {
+        return record("metadata", filePath, () -> delegate.getFileSize(filePath));
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        return record("metadata", filePath, () -> delegate.getVersion(filePath));
+    }
+
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        return record("compose", targetPath, () -> delegate.compose(sourcePaths, contentType, targetPath));
+    }
+
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        return record("sign", filePath,
+                () -> delegate.createSignedUrl(filePath, contentType, contentDisposition, ttl));
+    }
+
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        return record("list", prefix, () -> delegate.listFiles(prefix, pageToken, pageSize));
+    }
+
+    @Override
+    public void deleteFile(String filePath) {
+        record("delete", filePath, () -> {
+            delegate.deleteFile(filePath);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        return record("delete_batch", null, () -> delegate.deleteFiles(filePaths));
+    }
+
+    @Override
+    public boolean fileExists(String filePath) {
+        return record("exists", filePath, () -> delegate.fileExists(filePath));
+    }
+
+    /** Runs one backend call inside a child span, timing it and counting its failure */
+    private <T> T record(String operation, String path, Supplier<T> call) {
+        Call timed = new Call(operation, path);
+        try (Scope ignored = timed.span.makeCurrent()) {
+            T result = call.get();
+            timed.end("success");
+            return result;
+        } catch (RuntimeException e) {
+            timed.fail(e);
+            throw e;
+        }
+    }
+
+    /** Opens a stream as one "read" call, which ends when the returned stream is drained or closed */
+    private InputStream stream(String path, Supplier<InputStream> open) {
+        Call timed = new Call("read", path);
+        InputStream in;
+        try (Scope ignored = timed.span.makeCurrent()) {
+            in = open.get();
+        } catch (RuntimeException e) {
+            timed.fail(e);
+            throw e;
+        }
+        return new MeteredInputStream(in, timed, bytesRead);
+    }
+
+    private void error(String operation, Throwable e) {
+        Counter.builder("apartment.storage.backend.errors")
+                .description("Failed storage backend calls by cause")
+                .tag("backend", backend)
+                .tag("operation", operation)
+                .tag("cause", cause(e))
+                .register(registry)
+                .increment();
+    }
+
+    /** Low-cardinality cause of a failure, from the first recognisable exception in the cause chain */
+    static String cause(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ResponseStatusException status) {
+                if (status.getStatusCode().value() == 404) {
+                    return "not_found";
+                }
+                if (status.getStatusCode().value() == 403) {
+                    return "access_denied";
+                }
+            } else if (t instanceof BaseServiceException service) {
+                int code = service.getCode();
+                if (code == 404) {
+                    return "not_found";
+                }
+                if (code == 401 || code == 403) {
+                    return "access_denied";
+                }
+                if (code == 408 || code == 504) {
+                    return "timeout";
+                }
+                if (code == 429) {
+                    return "rate_limited";
+                }
+                if (code >= 500) {
+                    return "unavailable";
+                }
+            } else if (t instanceof InterruptedIOException) {
+                return "timeout"; // SocketTimeoutException
+            } else if (t instanceof NoSuchFileException || t instanceof FileNotFoundException) {
+                return "not_found";
+            } else if (t instanceof AccessDeniedException || t instanceof SecurityException) {
+                return "access_denied";
+            }
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof IOException) {
+                return "io";
+            }
+        }
+        return "other";
+    }
+
+    /** Span and latency sample of one backend call; ended once, with its outcome */
+    private final class Call {
+
+        private final String operation;
+        private final Span span;
+        private final Timer.Sample sample;
+        private boolean ended;
+
+        Call(String operation, String path) {
+            this.operation = operation;
+            this.span = tracer.spanBuilder("storage " + operation)
+                    .setSpanKind(SpanKind.CLIENT)
+                    .setAttribute(BACKEND, backend)
+                    .setAttribute(OPERATION, operation)
+                    .setAttribute(PATH, path)
+                    .startSpan();
+            this.sample = Timer.start(registry);
+        }
+
+        void fail(Throwable e) {
+            if (ended) {
+                return;
+            }
+            error(operation, e);
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, cause(e));
+            end("error");
+        }
+
+        void end(String outcome) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            sample.stop(Timer.builder("apartment.storage.backend.latency")
+                    .description("Latency of storage backend calls")
+                    .tag("backend", backend)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry));
+            span.end();
+        }
+    }
+
+    /**
+     * Counts bytes as they pass. For backend streams it also ends the read call at end of stream or close,
+     * or marks it failed on a read error. Upload input comes from the client: its errors are counted by
+     * the upload call, if it fails.
+     */
+    private final class MeteredInputStream extends FilterInputStream {
+
+        private final Call call; // null: upload input, not a backend read
+        private final Counter counter;
+
+        MeteredInputStream(InputStream in, Call call, Counter counter) {
+            super(in);
+            this.call = call;
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int b = in.read();
+                if (b >= 0) {
+                    counter.increment();
+                } else {
+                    ended();
+                }
+                return b;
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    counter.increment(n);
+                } else if (n < 0) {
+                    ended();
+                }
+                return n;
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // closed before the end (client went away, or the caller read only what it needed)
+                ended();
+            }
+        }
+
+        private void ended() {
+            if (call != null) {
+                call.end("success");
+            }
+        }
+
+        private void failed(Exception e) {
+            if (call != null) {
+                call.fail(e);
+            }
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package com.devsop.project.apartmentinvoice.service.storage;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
  * Local file system implementation of StorageService.
@@ -19,12 +34,22 @@ import java.nio.file.StandardCopyOption;
  */
 @Service
 @ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+@Qualifier(StorageService.BACKEND)
 public class LocalStorageService implements StorageService {
 
     private final Path rootLocation;
+    private final LocalUrlSigner urlSigner;
 
-    public LocalStorageService(@Value("${storage.local-path:/app/uploads}") String uploadPath) {
+    public LocalStorageService(String uploadPath) {
+        this(uploadPath, null);
+    }
+
+    @Autowired
+    public LocalStorageService(
+            @Value("${storage.local-path:/app/uploads}") String uploadPath,
+            @Value("${storage.local-signing-secret:}") String signingSecret) {
         this.rootLocation = Paths.get(uploadPath).toAbsolutePath().normalize();
+        this.urlSigner = new LocalUrlSigner(signingSecret);
         try {
             Files.createDirectories(this.rootLocation);
         } catch (IOException e) {
@@ -80,6 +105,188 @@ public class LocalStorageService implements StorageService {
         }
     }
 
+    @Override
+    public InputStream openStream(String filePath) {
+        return openRange(filePath, 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        Path file = resolveExisting(filePath);
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(offset);
+            // a bounded view of the channel: no copy of the file in memory, the OS page cache does the rest
+            InputStream in = Channels.newInputStream(channel);
+            return length == Long.MAX_VALUE ? in : new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    @Override
+    public long getFileSize(String filePath) {
+        try {
+            return Files.size(resolveExisting(filePath));
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "File not found: " + filePath,
+                    e);
+        }
+    }
+
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        Path target = rootLocation.resolve(targetPath).normalize();
+        if (!target.startsWith(rootLocation)) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "Access denied: Cannot write file outside upload directory");
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), ".compose-", ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (String sourcePath : sourcePaths) {
+                    try (FileChannel in = FileChannel.open(resolveExisting(sourcePath), StandardOpenOption.READ)) {
+                        // kernel-side copy, no user-space buffer per part
+                        long size = in.size();
+                        for (long position = 0; position < size; ) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return targetPath;
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to compose file: " + e.getMessage(),
+                    e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // moved or already gone
+                }
+            }
+        }
+    }
+
+    /**
+     * Link to SignedFileController (/files/...), which checks the HMAC signature and serves the file
+     * without a login or a database lookup.
+     */
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        return urlSigner.url(filePath, contentType, contentDisposition, ttl);
+    }
+
+    /**
+     * Check a link made by createSignedUrl (signature over all values, not expired).
+     */
+    public boolean verifySignedUrl(String filePath, String contentType, String contentDisposition, long expires,
+            String signature) {
+        return urlSigner.verify(filePath, contentType, contentDisposition, expires, signature);
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        try {
+            Path file = resolveExisting(filePath);
+            return Files.getLastModifiedTime(file).toMillis() + "-" + Files.size(file);
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "File not found: " + filePath,
+                    e);
+        }
+    }
+
+    /**
+     * Walks the directory of the prefix; the page token is the last path of the previous page.
+     * Only the first pageSize paths after it are kept while walking, so memory does not grow with the
+     * number of files (every page walks the tree again, which is fine for a development backend).
+     */
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        String pathPrefix = prefix == null ? "" : prefix;
+        Path dir = rootLocation.resolve(pathPrefix.substring(0, pathPrefix.lastIndexOf('/') + 1)).normalize();
+        if (!dir.startsWith(rootLocation)) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "Access denied: Cannot list files outside upload directory");
+        }
+        if (!Files.isDirectory(dir)) {
+            return new StoredFilePage(List.of(), null);
+        }
+
+        TreeMap<String, Path> first = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String path = rootLocation.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!path.startsWith(pathPrefix) || (pageToken != null && path.compareTo(pageToken) <= 0)) {
+                    return;
+                }
+                first.put(path, file);
+                if (first.size() > pageSize + 1) {
+                    first.pollLastEntry();
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to list files: " + e.getMessage(),
+                    e);
+        }
+        // one more than the page was kept: it tells whether there is a next page
+        String nextPageToken = null;
+        if (first.size() > pageSize) {
+            first.pollLastEntry();
+            nextPageToken = first.lastKey();
+        }
+
+        List<StoredFilePage.StoredFile> page = new ArrayList<>(first.size());
+        for (Map.Entry<String, Path> entry : first.entrySet()) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entry.getValue(), BasicFileAttributes.class);
+                page.add(new StoredFilePage.StoredFile(
+                        entry.getKey(), attributes.size(), attributes.lastModifiedTime().toInstant()));
+            } catch (NoSuchFileException e) {
+                // deleted while listing
+            } catch (IOException e) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Failed to list files: " + e.getMessage(),
+                        e);
+            }
+        }
+        return new StoredFilePage(page, nextPageToken);
+    }
+
+    /** Same checks as downloadFile: inside the upload directory and present */
+    private Path resolveExisting(String filePath) {
+        Path file = rootLocation.resolve(filePath).normalize();
+        if (!file.startsWith(rootLocation)) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "Access denied: Cannot access file outside upload directory");
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "File not found: " + filePath);
+        }
+        return file;
+    }
+
     @Override
     public void deleteFile(String filePath) {
         try {
@@ -106,6 +313,19 @@ public class LocalStorageService implements StorageService {
         }
     }
 
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        List<String> failed = new ArrayList<>();
+        for (String filePath : filePaths) {
+            try {
+                deleteFile(filePath);
+            } catch (ResponseStatusException e) {
+                failed.add(filePath);
+            }
+        }
+        return failed;
+    }
+
     @Override
     public boolean fileExists(String filePath) {
         try {
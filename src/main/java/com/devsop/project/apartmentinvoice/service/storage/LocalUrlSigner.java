@@ -0,0 +1,90 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.util.UriUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Signed download links for the local backend, the counterpart of GCS V4 signed URLs:
+ * /files/{path}?expires=..&type=..&disposition=..&signature=..
+ *
+ * The signature is an HMAC-SHA256 over the path, the expiry and the response headers, so none of
+ * them can be changed by the client. Links are verified (and the file served) by SignedFileController
+ * without a login. With no secret configured a random one is used, valid until the next restart.
+ */
+@Slf4j
+public class LocalUrlSigner {
+
+    public static final String PATH_PREFIX = "/files/";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public LocalUrlSigner(String secret) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            log.info("No storage.local-signing-secret set: signed file links are valid until restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    /**
+     * Relative URL of the file, valid for ttl.
+     */
+    public String url(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        long expires = System.currentTimeMillis() / 1000 + ttl.toSeconds();
+        return PATH_PREFIX + UriUtils.encodePath(filePath, StandardCharsets.UTF_8)
+                + "?expires=" + expires
+                + "&type=" + formEncode(contentType)
+                + "&disposition=" + formEncode(contentDisposition)
+                + "&signature=" + sign(filePath, contentType, contentDisposition, expires);
+    }
+
+    /**
+     * True when the signature matches these values and the link has not expired.
+     */
+    public boolean verify(String filePath, String contentType, String contentDisposition, long expires,
+            String signature) {
+        if (signature == null || expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        byte[] expected = sign(filePath, contentType, contentDisposition, expires).getBytes(StandardCharsets.US_ASCII);
+        // constant-time comparison: no timing hint about how much of a guess was right
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String filePath, String contentType, String contentDisposition, long expires) {
+        String payload = filePath + '\n' + expires + '\n' + nullToEmpty(contentType) + '\n'
+                + nullToEmpty(contentDisposition);
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static String formEncode(String value) {
+        return URLEncoder.encode(nullToEmpty(value), StandardCharsets.UTF_8);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,100 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A stored file as a Spring Resource, for streaming it as a response body.
+ *
+ * Returned from a controller as ResponseEntity&lt;Resource&gt;, Spring MVC copies it to the response
+ * in small buffers and answers HTTP Range requests itself (206 Partial Content / 416), via
+ * ResourceRegions. Every getInputStream() opens the file lazily: a skip before the first read
+ * (the start of a region) becomes StorageService.openRange, so the backend seeks instead of
+ * streaming and discarding the bytes before the range.
+ */
+public class StorageResource extends AbstractResource {
+
+    private final StorageService storageService;
+    private final String filePath;
+    private final long size;
+    private final String fileName;
+
+    /**
+     * @param size file size in bytes (known from metadata, avoids a backend call per request)
+     */
+    public StorageResource(StorageService storageService, String filePath, long size, String fileName) {
+        this.storageService = storageService;
+        this.filePath = filePath;
+        this.size = size;
+        this.fileName = fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Stored file [" + filePath + "]";
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new LazyRangeInputStream();
+    }
+
+    /** Opens the backend stream on first read, at the offset reached by skips before it */
+    private class LazyRangeInputStream extends InputStream {
+        private long offset;
+        private InputStream delegate;
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (delegate != null) {
+                return delegate.skip(n);
+            }
+            long skipped = Math.max(0, Math.min(n, size - offset));
+            offset += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return open().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+
+        private InputStream open() {
+            if (delegate == null) {
+                delegate = offset == 0
+                        ? storageService.openStream(filePath)
+                        : storageService.openRange(filePath, offset, size - offset);
+            }
+            return delegate;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.devsop.project.apartmentinvoice.service.storage;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
 
 /**
  * Storage service interface for file upload/download operations.
@@ -8,6 +10,12 @@ import java.io.InputStream;
  */
 public interface StorageService {
 
+    /**
+     * Qualifier of the backend bean selected by storage.type (local or GCS). Decorators (see StorageConfig)
+     * wrap it; everything else injects the plain StorageService.
+     */
+    String BACKEND = "storageBackend";
+
     /**
      * Upload a file to storage
      *
@@ -29,6 +37,87 @@ public interface StorageService {
      */
     byte[] downloadFile(String filePath);
 
+    /**
+     * Open a stream over the whole file. Content is read from the backend as the stream is consumed,
+     * so heap use does not depend on the file size. The caller closes the stream.
+     *
+     * @param filePath The path of the file to read
+     * @return The file content as a stream
+     * @throws RuntimeException if the file cannot be opened
+     */
+    InputStream openStream(String filePath);
+
+    /**
+     * Open a stream over part of a file (HTTP Range): length bytes starting at offset.
+     * The backend seeks to offset instead of reading and discarding the bytes before it.
+     *
+     * @param filePath The path of the file to read
+     * @param offset First byte to return (0-based)
+     * @param length Number of bytes to return (fewer if the file ends first)
+     * @return The requested bytes as a stream; the caller closes it
+     * @throws RuntimeException if the file cannot be opened
+     */
+    InputStream openRange(String filePath, long offset, long length);
+
+    /**
+     * Size of a stored file
+     *
+     * @param filePath The path of the file
+     * @return The file size in bytes
+     * @throws RuntimeException if the file does not exist
+     */
+    long getFileSize(String filePath);
+
+    /**
+     * Version token of a stored file: changes whenever the content at the path is replaced
+     * (GCS generation, local modification time + size). Cheap metadata read, no content transfer;
+     * used to validate cached copies.
+     *
+     * @param filePath The path of the file
+     * @return An opaque version string
+     * @throws RuntimeException if the file does not exist
+     */
+    String getVersion(String filePath);
+
+    /**
+     * Concatenate stored files, in order, into a new file (parts of a chunked upload).
+     * The backend joins them itself where it can (GCS compose, local file channels), so the content
+     * does not pass through the application heap. The source files are left in place.
+     *
+     * @param sourcePaths The files to join, in order
+     * @param contentType The MIME type of the result
+     * @param targetPath The path of the new file
+     * @return The storage path of the new file
+     * @throws RuntimeException if a source is missing or the write fails
+     */
+    String compose(List<String> sourcePaths, String contentType, String targetPath);
+
+    /**
+     * Short-lived URL from which the client downloads the file itself, so the bytes do not pass through
+     * the application (GCS: V4 signed URL; local: HMAC-signed link served by SignedFileController).
+     *
+     * @param filePath The path of the file
+     * @param contentType Content-Type of the download response
+     * @param contentDisposition Content-Disposition of the download response (inline/attachment, file name)
+     * @param ttl How long the URL stays valid
+     * @return The URL, or null when the file can only be read through the application for now
+     *         (e.g. GCS returns null when signing fails)
+     * @throws RuntimeException if signing fails
+     */
+    String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl);
+
+    /**
+     * List stored files under a path prefix, one page at a time (metadata only, no content),
+     * e.g. for the orphan sweep (see OrphanFileSweeper).
+     *
+     * @param prefix Path prefix (e.g. "blobs/"); empty for the whole storage
+     * @param pageToken nextPageToken of the previous page, null for the first page
+     * @param pageSize Maximum number of files in the page
+     * @return The page, in path order
+     * @throws RuntimeException if the listing fails
+     */
+    StoredFilePage listFiles(String prefix, String pageToken, int pageSize);
+
     /**
      * Delete a file from storage
      *
@@ -37,6 +126,17 @@ public interface StorageService {
      */
     void deleteFile(String filePath);
 
+    /**
+     * Delete many files with as few backend requests as the backend allows (GCS batch requests of up to
+     * 100 deletes; one by one on local disk). A missing file is not an error on local disk, but is
+     * reported as not deleted by GCS.
+     *
+     * @param filePaths The paths of the files to delete
+     * @return The paths that could not be deleted (empty when all were)
+     * @throws RuntimeException if the batch request itself fails
+     */
+    List<String> deleteFiles(List<String> filePaths);
+
     /**
      * Check if a file exists in storage
      *
@@ -0,0 +1,25 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One page of a storage listing (StorageService.listFiles), in path order.
+ *
+ * @param files the stored files of this page
+ * @param nextPageToken token for the next page, null on the last page
+ */
+public record StoredFilePage(List<StoredFile> files, String nextPageToken) {
+
+    /**
+     * @param path storage path, as given to uploadFile
+     * @param size size in the backend (stored bytes, i.e. compressed size for compressed objects)
+     * @param updated last write time
+     */
+    public record StoredFile(String path, long size, Instant updated) {
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+}
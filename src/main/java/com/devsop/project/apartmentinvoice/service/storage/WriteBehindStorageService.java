@@ -0,0 +1,748 @@
+package com.devsop.project.apartmentinvoice.service.storage;
+
+import com.devsop.project.apartmentinvoice.service.csv.StripedLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind in front of a remote StorageService: an upload is written (and fsynced) to a local spool
+ * directory and acknowledged; background workers copy it to the backend afterwards. A slow or failing
+ * GCS call then delays the copy instead of failing the user's request.
+ *
+ * - Spooled files survive a restart: every entry is a data file plus a small .meta file written last,
+ *   and the spool is re-read on start.
+ * - Until its copy is confirmed, a path is read from the spool (download, stream, range, size, exists).
+ *   A newer upload of the same path replaces the pending one; a delete cancels it.
+ * - Failed copies are retried with exponential backoff (with jitter, capped). After breakerThreshold
+ *   consecutive failures the circuit opens: no copy is attempted for breakerOpenFor, then a single trial
+ *   decides whether it closes again.
+ * - When the spool holds more than maxSpoolBytes, uploads go straight to the backend (back-pressure
+ *   instead of filling the local disk).
+ */
+@Slf4j
+public class WriteBehindStorageService implements StorageService {
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final StorageService delegate;
+    private final Path spoolDir;
+    private final long maxSpoolBytes;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final CircuitBreaker breaker;
+
+    /** Latest unflushed upload per storage path */
+    private final Map<String, SpoolEntry> pending = new ConcurrentHashMap<>();
+    private final DelayQueue<SpoolEntry> queue = new DelayQueue<>();
+    /**
+     * Guards the pending entry of a path (upload, delete, claim and confirm of a flush). Never held while a
+     * flush copies to the backend, so an upload is not stuck behind another path's slow copy.
+     */
+    private final StripedLocks pathLocks = new StripedLocks(64);
+    /** Copy to the backend in progress per path, released when it ends: an older copy never lands last */
+    private final Map<String, CountDownLatch> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong spoolBytes = new AtomicLong();
+    private final ExecutorService workers;
+    private volatile boolean running = true;
+
+    private final Timer flushLatency;
+    private final Counter flushed;
+    private final Counter flushFailures;
+    private final Counter bypassed;
+
+    public WriteBehindStorageService(
+            StorageService delegate,
+            Path spoolDir,
+            int workerCount,
+            long maxSpoolBytes,
+            Duration initialBackoff,
+            Duration maxBackoff,
+            int breakerThreshold,
+            Duration breakerOpenFor,
+            MeterRegistry registry) {
+        this.delegate = delegate;
+        this.spoolDir = spoolDir.toAbsolutePath().normalize();
+        this.maxSpoolBytes = maxSpoolBytes;
+        this.initialBackoffMillis = Math.max(1, initialBackoff.toMillis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoff.toMillis());
+        this.breaker = new CircuitBreaker(breakerThreshold, breakerOpenFor.toMillis());
+
+        this.flushLatency = Timer.builder("apartment.storage.spool.flush.latency")
+                .description("Time from spooling an upload to its confirmed copy in the backend")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.flushed = flushAttempts(registry, "success");
+        this.flushFailures = flushAttempts(registry, "failure");
+        this.bypassed = Counter.builder("apartment.storage.spool.bypassed")
+                .description("Uploads written straight to the backend because the spool was full")
+                .register(registry);
+        Gauge.builder("apartment.storage.spool.depth", this, s -> s.depth())
+                .description("Uploads spooled locally and not yet copied to the backend")
+                .register(registry);
+        Gauge.builder("apartment.storage.spool.bytes", this, s -> s.spoolBytes())
+                .description("Bytes held in the local spool")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("apartment.storage.spool.breaker.open", breaker, b -> b.isOpen() ? 1 : 0)
+                .description("1 while copies to the backend are suspended after repeated failures")
+                .register(registry);
+
+        recover();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        int count = Math.max(1, workerCount);
+        this.workers = Executors.newFixedThreadPool(count, r -> {
+            Thread t = new Thread(r, "storage-flush-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < count; i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    private static Counter flushAttempts(MeterRegistry registry, String result) {
+        return Counter.builder("apartment.storage.spool.flush.attempts")
+                .description("Copies of spooled uploads to the backend by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String uploadFile(InputStream inputStream, String fileName, String contentType, String filePath) {
+        if (spoolBytes.get() >= maxSpoolBytes) {
+            bypassed.increment();
+            return writeThrough(filePath, () -> delegate.uploadFile(inputStream, fileName, contentType, filePath));
+        }
+        SpoolEntry entry = spool(filePath, fileName, contentType, out -> inputStream.transferTo(out));
+        enqueue(entry);
+        return filePath;
+    }
+
+    @Override
+    public byte[] downloadFile(String filePath) {
+        SpoolEntry entry = pending.get(filePath);
+        if (entry != null) {
+            try {
+                return Files.readAllBytes(entry.data);
+            } catch (NoSuchFileException e) {
+                // flushed and removed between lookup and read: the backend has it now
+            } catch (IOException e) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Failed to read spooled file: " + e.getMessage(),
+                        e);
+            }
+        }
+        return delegate.downloadFile(filePath);
+    }
+
+    @Override
+    public InputStream openStream(String filePath) {
+        return openRange(filePath, 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public InputStream openRange(String filePath, long offset, long length) {
+        SpoolEntry entry = pending.get(filePath);
+        if (entry != null) {
+            try {
+                FileChannel channel = FileChannel.open(entry.data, StandardOpenOption.READ);
+                channel.position(offset);
+                long served = Math.max(0, Math.min(length, entry.size - offset));
+                return new BoundedInputStream(Channels.newInputStream(channel), served);
+            } catch (NoSuchFileException e) {
+                // flushed in the meantime
+            } catch (IOException e) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Failed to read spooled file: " + e.getMessage(),
+                        e);
+            }
+        }
+        return delegate.openRange(filePath, offset, length);
+    }
+
+    @Override
+    public long getFileSize(String filePath) {
+        SpoolEntry entry = pending.get(filePath);
+        return entry != null ? entry.size : delegate.getFileSize(filePath);
+    }
+
+    @Override
+    public String getVersion(String filePath) {
+        SpoolEntry entry = pending.get(filePath);
+        return entry != null ? "spool-" + entry.sequence : delegate.getVersion(filePath);
+    }
+
+    /** Null while the file is only in the spool: the backend cannot serve it yet */
+    @Override
+    public String createSignedUrl(String filePath, String contentType, String contentDisposition, Duration ttl) {
+        return pending.containsKey(filePath)
+                ? null
+                : delegate.createSignedUrl(filePath, contentType, contentDisposition, ttl);
+    }
+
+    /**
+     * When every source is still spooled (parts of a chunked upload) they are joined in the spool and
+     * the result is copied later like any upload. Otherwise the spooled sources are copied first and the
+     * backend composes.
+     */
+    @Override
+    public String compose(List<String> sourcePaths, String contentType, String targetPath) {
+        List<SpoolEntry> sources = new ArrayList<>(sourcePaths.size());
+        for (String sourcePath : sourcePaths) {
+            SpoolEntry source = pending.get(sourcePath);
+            if (source == null) {
+                sources = null;
+                break;
+            }
+            sources.add(source);
+        }
+        if (sources != null && spoolBytes.get() < maxSpoolBytes) {
+            try {
+                List<SpoolEntry> parts = sources;
+                String fileName = targetPath.substring(targetPath.lastIndexOf('/') + 1);
+                SpoolEntry entry = spool(targetPath, fileName, contentType, out -> {
+                    for (SpoolEntry part : parts) {
+                        Files.copy(part.data, out);
+                    }
+                });
+                enqueue(entry);
+                return targetPath;
+            } catch (ResponseStatusException e) {
+                // a part was flushed and removed meanwhile: compose in the backend below
+                log.debug("Spool compose of {} fell back to the backend: {}", targetPath, e.getReason());
+            }
+        }
+        for (String sourcePath : sourcePaths) {
+            flushNow(sourcePath);
+        }
+        return writeThrough(targetPath, () -> delegate.compose(sourcePaths, contentType, targetPath));
+    }
+
+    /** Backend listing: files still in the spool appear once they are copied */
+    @Override
+    public StoredFilePage listFiles(String prefix, String pageToken, int pageSize) {
+        return delegate.listFiles(prefix, pageToken, pageSize);
+    }
+
+    @Override
+    public void deleteFile(String filePath) {
+        Lock lock = lockWhenIdle(filePath);
+        try {
+            SpoolEntry entry = pending.remove(filePath);
+            if (entry == null) {
+                delegate.deleteFile(filePath);
+                return;
+            }
+            discard(entry);
+            // an older copy may already be in the backend (GCS fails the delete of a missing object)
+            if (delegate.fileExists(filePath)) {
+                delegate.deleteFile(filePath);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Spooled files one by one (see deleteFile), the others in one batch to the backend */
+    @Override
+    public List<String> deleteFiles(List<String> filePaths) {
+        List<String> failed = new ArrayList<>();
+        List<String> stored = new ArrayList<>();
+        for (String filePath : filePaths) {
+            if (!pending.containsKey(filePath)) {
+                stored.add(filePath);
+                continue;
+            }
+            try {
+                deleteFile(filePath);
+            } catch (RuntimeException e) {
+                failed.add(filePath);
+            }
+        }
+        if (!stored.isEmpty()) {
+            failed.addAll(delegate.deleteFiles(stored));
+        }
+        return failed;
+    }
+
+    @Override
+    public boolean fileExists(String filePath) {
+        return pending.containsKey(filePath) || delegate.fileExists(filePath);
+    }
+
+    public int depth() {
+        return pending.size();
+    }
+
+    public long spoolBytes() {
+        return spoolBytes.get();
+    }
+
+    public boolean isBreakerOpen() {
+        return breaker.isOpen();
+    }
+
+    /**
+     * Stop the workers. Entries not copied yet stay in the spool and are picked up on the next start.
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Storage flush workers did not stop in time; {} uploads left in the spool", depth());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- spool ----------
+
+    @FunctionalInterface
+    private interface SpoolWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /** Write data then metadata (fsynced, atomically renamed) and register the entry as pending */
+    private SpoolEntry spool(String filePath, String fileName, String contentType, SpoolWriter writer) {
+        long seq = sequence.incrementAndGet();
+        String id = String.format("%019d", seq);
+        Path data = spoolDir.resolve(id + DATA_SUFFIX);
+        Path meta = spoolDir.resolve(id + META_SUFFIX);
+        Path dataTemp = spoolDir.resolve(id + DATA_SUFFIX + TEMP_SUFFIX);
+        Path metaTemp = spoolDir.resolve(id + META_SUFFIX + TEMP_SUFFIX);
+        long size;
+        try {
+            try (FileChannel channel = FileChannel.open(dataTemp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writer.write(Channels.newOutputStream(channel));
+                channel.force(true);
+                size = channel.size();
+            }
+            Files.move(dataTemp, data, StandardCopyOption.ATOMIC_MOVE);
+
+            Properties properties = new Properties();
+            properties.setProperty("path", filePath);
+            properties.setProperty("fileName", fileName != null ? fileName : "");
+            properties.setProperty("contentType", contentType != null ? contentType : "application/octet-stream");
+            properties.setProperty("spooledAt", Long.toString(System.currentTimeMillis()));
+            try (FileChannel channel = FileChannel.open(metaTemp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                properties.store(Channels.newOutputStream(channel), null);
+                channel.force(true);
+            }
+            // the .meta file marks the entry complete: only then is it recovered after a restart
+            Files.move(metaTemp, meta, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(dataTemp);
+            deleteQuietly(data);
+            deleteQuietly(metaTemp);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to spool file: " + e.getMessage(),
+                    e);
+        }
+        spoolBytes.addAndGet(size);
+        return new SpoolEntry(seq, filePath, fileName, contentType, data, meta, size, System.currentTimeMillis());
+    }
+
+    /** Make the entry the pending copy of its path (replacing an older one) and queue it */
+    private void enqueue(SpoolEntry entry) {
+        Lock lock = pathLocks.get(entry.path);
+        lock.lock();
+        try {
+            SpoolEntry previous = pending.put(entry.path, entry);
+            if (previous != null) {
+                discard(previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+        queue.add(entry);
+    }
+
+    /** Re-read the spool left by a previous run; incomplete entries (no .meta) are dropped */
+    private void recover() {
+        Map<String, SpoolEntry> latest = new HashMap<>();
+        try {
+            Files.createDirectories(spoolDir);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(spoolDir)) {
+                files = list.sorted().toList();
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    deleteQuietly(file);
+                } else if (name.endsWith(DATA_SUFFIX)
+                        && !Files.exists(spoolDir.resolve(stripSuffix(name, DATA_SUFFIX) + META_SUFFIX))) {
+                    deleteQuietly(file);
+                } else if (name.endsWith(META_SUFFIX)) {
+                    SpoolEntry entry = readEntry(file);
+                    if (entry == null) {
+                        continue;
+                    }
+                    SpoolEntry older = latest.put(entry.path, entry);
+                    if (older != null) {
+                        deleteQuietly(older.data);
+                        deleteQuietly(older.meta);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare storage spool directory: " + spoolDir, e);
+        }
+
+        long maxSequence = 0;
+        for (SpoolEntry entry : latest.values()) {
+            pending.put(entry.path, entry);
+            spoolBytes.addAndGet(entry.size);
+            queue.add(entry);
+            maxSequence = Math.max(maxSequence, entry.sequence);
+        }
+        sequence.set(maxSequence);
+        if (!latest.isEmpty()) {
+            log.info("Recovered {} spooled uploads ({} bytes) from {}", latest.size(), spoolBytes.get(), spoolDir);
+        }
+    }
+
+    private SpoolEntry readEntry(Path meta) {
+        String id = stripSuffix(meta.getFileName().toString(), META_SUFFIX);
+        Path data = spoolDir.resolve(id + DATA_SUFFIX);
+        try (InputStream in = Files.newInputStream(meta)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            return new SpoolEntry(
+                    Long.parseLong(id),
+                    properties.getProperty("path"),
+                    properties.getProperty("fileName"),
+                    properties.getProperty("contentType"),
+                    data,
+                    meta,
+                    Files.size(data),
+                    Long.parseLong(properties.getProperty("spooledAt")));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Dropping unreadable spool entry {}: {}", meta, e.getMessage());
+            deleteQuietly(meta);
+            deleteQuietly(data);
+            return null;
+        }
+    }
+
+    // ---------- flushing ----------
+
+    private void drain() {
+        while (running) {
+            SpoolEntry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending.get(entry.path) != entry) {
+                continue; // replaced or deleted meanwhile
+            }
+            long waitMillis = breaker.millisUntilTrial();
+            if (waitMillis > 0) {
+                entry.retryIn(waitMillis);
+                queue.add(entry);
+                continue;
+            }
+            if (!flush(entry)) {
+                entry.retryIn(backoffMillis(entry.attempts));
+                queue.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Copy one entry to the backend; true when done (copied, or no longer pending).
+     * The entry is claimed under the path lock, copied without it, then confirmed under the lock again:
+     * an upload of the same path meanwhile replaces the entry, and this copy only discards its own files.
+     */
+    private boolean flush(SpoolEntry entry) {
+        Lock lock = pathLocks.get(entry.path);
+        CountDownLatch flight = new CountDownLatch(1);
+        while (true) {
+            CountDownLatch older;
+            lock.lock();
+            try {
+                if (pending.get(entry.path) != entry) {
+                    return true;
+                }
+                older = inFlight.putIfAbsent(entry.path, flight);
+            } finally {
+                lock.unlock();
+            }
+            if (older == null) {
+                break;
+            }
+            // an older copy of the path is still being written: it has to land first
+            if (!await(older)) {
+                return false;
+            }
+        }
+
+        Exception failure = null;
+        try (InputStream in = Files.newInputStream(entry.data)) {
+            delegate.uploadFile(in, entry.fileName, entry.contentType, entry.path);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+
+        lock.lock();
+        try {
+            inFlight.remove(entry.path, flight);
+            if (pending.get(entry.path) != entry) {
+                // replaced (the newer entry is copied after this one) or deleted (deleteFile waited for us)
+                return true;
+            }
+            if (failure != null) {
+                entry.attempts++;
+                flushFailures.increment();
+                breaker.onFailure();
+                log.warn("Copy of spooled {} to the backend failed (attempt {}): {}",
+                        entry.path, entry.attempts, failure.getMessage());
+                return false;
+            }
+            breaker.onSuccess();
+            flushed.increment();
+            flushLatency.record(System.currentTimeMillis() - entry.spooledAt, TimeUnit.MILLISECONDS);
+            // files first: a reader that still finds the entry falls back to the backend, which has it now
+            discard(entry);
+            pending.remove(entry.path, entry);
+            return true;
+        } finally {
+            lock.unlock();
+            flight.countDown();
+        }
+    }
+
+    /**
+     * The path lock, taken once no flush of the path is copying: a delete or direct write made under it
+     * is not overtaken by an older copy landing afterwards.
+     */
+    private Lock lockWhenIdle(String filePath) {
+        Lock lock = pathLocks.get(filePath);
+        while (true) {
+            lock.lock();
+            CountDownLatch flight = inFlight.get(filePath);
+            if (flight == null) {
+                return lock;
+            }
+            lock.unlock();
+            if (!await(flight)) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+            }
+        }
+    }
+
+    /** False when interrupted (shutdown); the interrupt flag is kept */
+    private static boolean await(CountDownLatch flight) {
+        try {
+            flight.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Copy a pending path now, on the caller's thread (compose needs its sources in the backend) */
+    private void flushNow(String filePath) {
+        SpoolEntry entry = pending.get(filePath);
+        if (entry == null) {
+            return;
+        }
+        if (breaker.isOpen() || !flush(entry)) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "Storage backend unavailable, try again later");
+        }
+    }
+
+    /** Operation that must reach the backend now; counted by the circuit breaker like flushes */
+    private String writeThrough(String filePath, Supplier<String> write) {
+        Lock lock = lockWhenIdle(filePath);
+        try {
+            SpoolEntry entry = pending.remove(filePath);
+            if (entry != null) {
+                discard(entry);
+            }
+            String result = write.get();
+            breaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 2^(attempts-1) x initial, capped, with +-20% jitter so retries of many files spread out */
+    private long backoffMillis(int attempts) {
+        long backoff = initialBackoffMillis << Math.min(Math.max(attempts, 1) - 1, 20);
+        backoff = Math.min(maxBackoffMillis, backoff);
+        long jitter = backoff / 5;
+        return backoff + (jitter > 0 ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0);
+    }
+
+    private void discard(SpoolEntry entry) {
+        if (deleteQuietly(entry.meta) | deleteQuietly(entry.data)) {
+            spoolBytes.addAndGet(-entry.size);
+        }
+    }
+
+    private static String stripSuffix(String name, String suffix) {
+        return name.substring(0, name.length() - suffix.length());
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private static final class SpoolEntry implements Delayed {
+        final long sequence;
+        final String path;
+        final String fileName;
+        final String contentType;
+        final Path data;
+        final Path meta;
+        final long size;
+        final long spooledAt;
+        /** Only touched by the worker that took the entry from the queue */
+        int attempts;
+        volatile long nextAttemptAt;
+
+        SpoolEntry(long sequence, String path, String fileName, String contentType,
+                Path data, Path meta, long size, long spooledAt) {
+            this.sequence = sequence;
+            this.path = path;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.data = data;
+            this.meta = meta;
+            this.size = size;
+            this.spooledAt = spooledAt;
+        }
+
+        void retryIn(long millis) {
+            nextAttemptAt = System.currentTimeMillis() + millis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextAttemptAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            SpoolEntry o = (SpoolEntry) other;
+            int byTime = Long.compare(nextAttemptAt, o.nextAttemptAt);
+            return byTime != 0 ? byTime : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Closed: everything goes through. threshold consecutive failures open it for openMillis; after that
+     * one caller gets a trial (half-open) and its result closes or re-opens the circuit.
+     */
+    private static final class CircuitBreaker {
+        private final int threshold;
+        private final long openMillis;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int threshold, long openMillis) {
+            this.threshold = Math.max(1, threshold);
+            this.openMillis = Math.max(0, openMillis);
+        }
+
+        synchronized boolean isOpen() {
+            return consecutiveFailures >= threshold
+                    && (System.currentTimeMillis() < openUntil || trialInFlight);
+        }
+
+        /** 0 when the caller may try now (claiming the trial if half-open), otherwise how long to wait */
+        synchronized long millisUntilTrial() {
+            if (consecutiveFailures < threshold) {
+                return 0;
+            }
+            long wait = openUntil - System.currentTimeMillis();
+            if (wait > 0) {
+                return wait;
+            }
+            if (trialInFlight) {
+                return Math.max(1, Math.min(openMillis, 1000));
+            }
+            trialInFlight = true;
+            return 0;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (consecutiveFailures >= threshold) {
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+        }
+    }
+}
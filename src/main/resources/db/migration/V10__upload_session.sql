@@ -0,0 +1,27 @@
+-- อัปโหลดไฟล์แบบแบ่ง part (resumable): session 1 แถวต่อการอัปโหลด, part ที่ได้รับแล้ว 1 แถวต่อ part
+CREATE TABLE IF NOT EXISTS upload_session (
+    id VARCHAR(36) PRIMARY KEY,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    mime_type VARCHAR(100) NOT NULL,
+    total_size BIGINT NOT NULL,
+    part_size BIGINT NOT NULL,
+    uploaded_by VARCHAR(255) NULL,
+    status VARCHAR(20) NOT NULL,
+    document_id BIGINT NULL,
+    created_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP NULL
+);
+
+CREATE TABLE IF NOT EXISTS upload_part (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    upload_id VARCHAR(36) NOT NULL,
+    part_number INT NOT NULL,
+    size BIGINT NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    storage_path VARCHAR(500) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_upload_part_session FOREIGN KEY (upload_id) REFERENCES upload_session(id),
+    CONSTRAINT ux_upload_part_upload_part_number UNIQUE (upload_id, part_number)
+);
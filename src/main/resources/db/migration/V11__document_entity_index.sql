@@ -0,0 +1,2 @@
+-- เอกสารถูกค้นตามเจ้าของ (entity_type, entity_id) เสมอ ทั้งทีละรายการและทีละหลายรายการ (IN) สำหรับ badge ในตาราง
+CREATE INDEX ix_document_entity ON document (entity_type, entity_id);
@@ -0,0 +1,2 @@
+-- PromptPay ID (เบอร์มือถือ, เลขประจำตัวผู้เสียภาษี หรือ e-wallet ID) สำหรับสร้าง QR ชำระเงินรายใบแจ้งหนี้; NULL = ใช้รูป QR เดิม
+ALTER TABLE invoice_settings ADD COLUMN prompt_pay_id VARCHAR(20) NULL;
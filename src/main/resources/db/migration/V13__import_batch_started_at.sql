@@ -0,0 +1,2 @@
+-- เวลาที่เริ่ม import รอบล่าสุด: batch ที่ค้าง PROCESSING นานเกิน timeout (เช่น server ล่มกลางทาง) นำกลับมา import ใหม่ได้
+ALTER TABLE import_batch ADD COLUMN started_at TIMESTAMP NULL;
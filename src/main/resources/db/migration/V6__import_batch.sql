@@ -0,0 +1,15 @@
+-- ประวัติการ import CSV (ใช้ SHA-256 ของไฟล์กันการ import ไฟล์เดิมซ้ำ)
+CREATE TABLE IF NOT EXISTS import_batch (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    content_hash VARCHAR(64) NOT NULL,
+    file_name VARCHAR(255) NULL,
+    storage_path VARCHAR(500) NULL,
+    file_size BIGINT NULL,
+    status VARCHAR(20) NOT NULL,
+    success_count INT NULL,
+    failure_count INT NULL,
+    errors TEXT NULL,
+    created_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP NULL,
+    CONSTRAINT ux_import_batch_content_hash UNIQUE (content_hash)
+);
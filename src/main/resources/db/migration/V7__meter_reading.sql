@@ -0,0 +1,11 @@
+-- ค่ามิเตอร์ไฟ/น้ำแบบ time series (1 แถวต่อ ห้อง + ประเภทมิเตอร์ + วันที่อ่าน)
+-- unique index เรียง room_id, meter_type, reading_date ใช้ทั้งหา "ค่าก่อนหน้า" และ query ช่วงวันที่สำหรับกราฟ
+CREATE TABLE IF NOT EXISTS meter_reading (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    room_id BIGINT NOT NULL,
+    meter_type VARCHAR(12) NOT NULL,
+    reading_date DATE NOT NULL,
+    reading_value DECIMAL(12,2) NOT NULL,
+    CONSTRAINT fk_meter_reading_room FOREIGN KEY (room_id) REFERENCES room(id),
+    CONSTRAINT ux_meter_reading_room_type_date UNIQUE (room_id, meter_type, reading_date)
+);
@@ -0,0 +1,3 @@
+-- รายงาน error แบบเต็มเก็บเป็นไฟล์ CSV ใน storage, ใน DB เก็บแค่ error ช่วงแรก + จำนวนตามประเภท
+ALTER TABLE import_batch ADD COLUMN error_counts VARCHAR(1000) NULL;
+ALTER TABLE import_batch ADD COLUMN error_report_path VARCHAR(500) NULL;
@@ -0,0 +1,16 @@
+-- เก็บไฟล์เอกสารแบบ content-addressable: ไฟล์ที่เนื้อหาเหมือนกัน (SHA-256 เดียวกัน) เก็บจริงแค่ชุดเดียว
+-- ref_count = จำนวน document ที่ชี้มา, ลบไฟล์ออกจาก storage เมื่อ document สุดท้ายถูกลบ
+CREATE TABLE IF NOT EXISTS document_blob (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    content_hash VARCHAR(64) NOT NULL,
+    storage_path VARCHAR(500) NOT NULL,
+    file_size BIGINT NULL,
+    mime_type VARCHAR(100) NULL,
+    ref_count INT NOT NULL DEFAULT 1,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT ux_document_blob_content_hash UNIQUE (content_hash)
+);
+
+-- document เดิม (ก่อนมี blob) blob_id = NULL และยังใช้ file_path ของตัวเอง
+ALTER TABLE document ADD COLUMN blob_id BIGINT NULL;
+ALTER TABLE document ADD CONSTRAINT fk_document_blob FOREIGN KEY (blob_id) REFERENCES document_blob(id);
@@ -0,0 +1,135 @@
+package com.devsop.project.apartmentinvoice.service.pdf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.devsop.project.apartmentinvoice.service.pdf.PdfWorkerProtocol.Frame;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for the PDF render worker: wire protocol, worker request loop and pool recycling.
+ * In the worker's package because the protocol and the request loop are package-private.
+ */
+class PdfWorkerUnitTest {
+
+    private static final String HTML = "<html><body><p>ใบแจ้งหนี้ 101</p></body></html>";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testProtocol_framesRoundTrip() throws IOException {
+        // Arrange
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        // Act
+        PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.OP_RENDER, HTML.getBytes(StandardCharsets.UTF_8));
+        PdfWorkerProtocol.writeFrame(out, PdfWorkerProtocol.OP_PING, new byte[0]);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        Frame render = PdfWorkerProtocol.readFrame(in);
+        Frame ping = PdfWorkerProtocol.readFrame(in);
+
+        // Assert
+        assertEquals(PdfWorkerProtocol.OP_RENDER, render.type());
+        assertEquals(HTML, new String(render.payload(), StandardCharsets.UTF_8));
+        assertEquals(PdfWorkerProtocol.OP_PING, ping.type());
+        assertEquals(0, ping.payload().length);
+        assertThrows(EOFException.class, () -> PdfWorkerProtocol.readFrame(in));
+    }
+
+    @Test
+    void testProtocol_invalidLength_rejected() throws IOException {
+        // Arrange
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(PdfWorkerProtocol.OP_RENDER);
+        out.writeInt(PdfWorkerProtocol.MAX_FRAME_BYTES + 1);
+
+        // Act & Assert
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        assertThrows(IOException.class, () -> PdfWorkerProtocol.readFrame(in));
+    }
+
+    @Test
+    void testWorker_renderError_answeredAndWorkerKeepsServing() throws Exception {
+        // Arrange: the request loop of PdfWorkerMain with a renderer that rejects "broken" markup
+        Path socket = tempDir.resolve("worker.sock");
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread worker = new Thread(() -> PdfWorkerMain.serve(server, html -> {
+                if (html.contains("broken")) {
+                    throw new IllegalArgumentException("unclosed tag");
+                }
+                return ("%PDF-" + html.length()).getBytes(StandardCharsets.UTF_8);
+            }));
+            worker.setDaemon(true);
+            worker.start();
+
+            // Act
+            Frame error = call(socket, PdfWorkerProtocol.OP_RENDER, "<p>broken");
+            Frame pdf = call(socket, PdfWorkerProtocol.OP_RENDER, "<p>ok</p>");
+            Frame ping = call(socket, PdfWorkerProtocol.OP_PING, "");
+
+            // Assert
+            assertEquals(PdfWorkerProtocol.STATUS_ERROR, error.type());
+            assertEquals("IllegalArgumentException: unclosed tag", new String(error.payload(), StandardCharsets.UTF_8));
+            assertEquals(PdfWorkerProtocol.STATUS_OK, pdf.type());
+            assertEquals("%PDF-9", new String(pdf.payload(), StandardCharsets.UTF_8));
+            assertEquals(PdfWorkerProtocol.STATUS_OK, ping.type());
+            assertTrue(worker.isAlive());
+
+            server.close();
+            worker.join(5000);
+            assertFalse(worker.isAlive());
+        }
+    }
+
+    @Test
+    void testPool_workerRecycledAfterMaxRenders() throws IOException {
+        // Arrange: one worker process, replaced after two renders
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfWorkerPool pool = new PdfWorkerPool(registry, 1, 2, "-Xmx128m -XX:+UseSerialGC",
+                tempDir.toString(), 60, 3600, 60);
+        pool.start();
+        try {
+            // Act
+            for (int i = 0; i < 3; i++) {
+                byte[] pdf = pool.render(HTML);
+
+                // Assert
+                assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII));
+            }
+            assertEquals(1.0, registry.get("apartment.pdf.worker.restarts").counter().count());
+            assertEquals(0.0, registry.get("apartment.pdf.worker.failures").counter().count());
+        } finally {
+            pool.stop();
+        }
+    }
+
+    private static Frame call(Path socket, byte op, String payload) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            PdfWorkerProtocol.writeFrame(new DataOutputStream(Channels.newOutputStream(channel)), op,
+                    payload.getBytes(StandardCharsets.UTF_8));
+            return PdfWorkerProtocol.readFrame(new DataInputStream(Channels.newInputStream(channel)));
+        }
+    }
+}
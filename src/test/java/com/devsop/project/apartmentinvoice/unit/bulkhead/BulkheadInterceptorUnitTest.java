@@ -0,0 +1,93 @@
+package com.devsop.project.apartmentinvoice.unit.bulkhead;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.devsop.project.apartmentinvoice.bulkhead.BulkheadInterceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for BulkheadInterceptor: admission, 429 + Retry-After when full, and permit release.
+ */
+class BulkheadInterceptorUnitTest {
+
+    private SimpleMeterRegistry registry;
+    private BulkheadInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("bulkhead.csv-import.max-concurrent", "1")
+                .withProperty("bulkhead.csv-import.queue-size", "0")
+                .withProperty("bulkhead.csv-import.retry-after-seconds", "7");
+        interceptor = new BulkheadInterceptor(env, registry);
+    }
+
+    @Test
+    void testPreHandle_overLimit_returns429WithRetryAfter() throws Exception {
+        // Arrange
+        MockHttpServletRequest first = new MockHttpServletRequest("POST", "/api/invoices/import-csv");
+        MockHttpServletRequest second = new MockHttpServletRequest("POST", "/api/invoices/import-csv");
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+
+        // Act
+        boolean firstAdmitted = interceptor.preHandle(first, new MockHttpServletResponse(), null);
+        boolean secondAdmitted = interceptor.preHandle(second, rejected, null);
+
+        // Assert
+        assertTrue(firstAdmitted);
+        assertFalse(secondAdmitted);
+        assertEquals(429, rejected.getStatus());
+        assertEquals("7", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, registry.get("apartment.bulkhead.inflight").tag("workload", "csv-import").gauge().value());
+        assertEquals(1.0, registry.get("apartment.bulkhead.rejected").tag("workload", "csv-import").counter().count());
+    }
+
+    @Test
+    void testAfterCompletion_releasesPermit() throws Exception {
+        // Arrange
+        MockHttpServletRequest first = new MockHttpServletRequest("POST", "/api/invoices/import-csv");
+        interceptor.preHandle(first, new MockHttpServletResponse(), null);
+
+        // Act
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), null, null);
+        boolean admitted = interceptor.preHandle(
+                new MockHttpServletRequest("POST", "/api/invoices/import-csv"), new MockHttpServletResponse(), null);
+
+        // Assert
+        assertTrue(admitted);
+    }
+
+    @Test
+    void testPreHandle_dryRunImport_usesSeparateBulkhead() throws Exception {
+        // Arrange: the real-import bulkhead is full
+        interceptor.preHandle(new MockHttpServletRequest("POST", "/api/invoices/import-csv"), new MockHttpServletResponse(), null);
+        MockHttpServletRequest dryRun = new MockHttpServletRequest("POST", "/api/invoices/import-csv");
+        dryRun.setParameter("dryRun", "true");
+
+        // Act
+        boolean admitted = interceptor.preHandle(dryRun, new MockHttpServletResponse(), null);
+
+        // Assert
+        assertTrue(admitted);
+        assertEquals(1.0, registry.get("apartment.bulkhead.inflight").tag("workload", "csv-dry-run").gauge().value());
+    }
+
+    @Test
+    void testPreHandle_unmatchedEndpoint_isNotLimited() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/rooms");
+
+        // Act & Assert
+        for (int i = 0; i < 5; i++) {
+            assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.devsop.project.apartmentinvoice.unit.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Unit tests for the prod profile of application.yaml: the keys read by StorageConfig and DocumentService.
+ */
+class ApplicationProfileUnitTest {
+
+    @Test
+    void testProdProfile_enablesGcsReadThroughCacheAndSignedUrls() throws IOException {
+        // Arrange
+        PropertySource<?> prod = profileDocument("prod");
+
+        // Assert
+        assertEquals("gcs", String.valueOf(prod.getProperty("storage.type")));
+        assertEquals("true", String.valueOf(prod.getProperty("storage.cache.enabled")));
+        assertEquals("true", String.valueOf(prod.getProperty("document.download.signed-urls")));
+        assertNull(prod.getProperty("document.cache.enabled"));
+    }
+
+    private static PropertySource<?> profileDocument(String profile) throws IOException {
+        List<PropertySource<?>> documents = new YamlPropertySourceLoader()
+                .load("application", new ClassPathResource("application.yaml"));
+        return documents.stream()
+                .filter(document -> profile.equals(String.valueOf(
+                        document.getProperty("spring.config.activate.on-profile"))))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + profile + " profile in application.yaml"));
+    }
+}
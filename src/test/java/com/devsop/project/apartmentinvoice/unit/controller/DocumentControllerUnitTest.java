@@ -0,0 +1,96 @@
+package com.devsop.project.apartmentinvoice.unit.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.devsop.project.apartmentinvoice.controller.DocumentController;
+import com.devsop.project.apartmentinvoice.entity.Document;
+import com.devsop.project.apartmentinvoice.service.DocumentService;
+
+/**
+ * Unit tests for DocumentController downloads: streamed by default, redirect to a signed URL on request.
+ */
+@ExtendWith(MockitoExtension.class)
+class DocumentControllerUnitTest {
+
+    private static final String SIGNED_URL = "https://storage.googleapis.com/bucket/lease/1/scan.pdf?X-Goog-Signature=abc";
+
+    @Mock
+    private DocumentService documentService;
+
+    @InjectMocks
+    private DocumentController documentController;
+
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        document = new Document();
+        document.setId(5L);
+        document.setFilePath("lease/1/scan.pdf");
+        document.setFileName("scan.pdf");
+        document.setMimeType("application/pdf");
+        when(documentService.getDocumentById(5L)).thenReturn(document);
+    }
+
+    @Test
+    void testDownload_redirectRequestedAndSigned_returns302ToSignedUrl() {
+        // Arrange
+        when(documentService.getSignedUrl(document, null)).thenReturn(SIGNED_URL);
+
+        // Act
+        ResponseEntity<Resource> response = documentController.downloadDocument(5L, null, true);
+
+        // Assert
+        assertEquals(HttpStatus.FOUND, response.getStatusCode());
+        assertEquals(URI.create(SIGNED_URL), response.getHeaders().getLocation());
+        assertNull(response.getBody());
+        verify(documentService, never()).getFileResource(any(), any());
+    }
+
+    @Test
+    void testDownload_redirectRequestedButNotSigned_streamsFile() {
+        // Arrange: signed URLs off, or signing failed (getSignedUrl returns null)
+        Resource content = new ByteArrayResource("%PDF".getBytes());
+        when(documentService.getSignedUrl(document, null)).thenReturn(null);
+        when(documentService.getFileResource(document, null)).thenReturn(content);
+
+        // Act
+        ResponseEntity<Resource> response = documentController.downloadDocument(5L, null, true);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(content, response.getBody());
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+    }
+
+    @Test
+    void testDownload_default_streamsWithoutSigning() {
+        // Arrange
+        Resource content = new ByteArrayResource("%PDF".getBytes());
+        when(documentService.getFileResource(document, null)).thenReturn(content);
+
+        // Act
+        ResponseEntity<Resource> response = documentController.downloadDocument(5L, null, false);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(content, response.getBody());
+        verify(documentService, never()).getSignedUrl(any(), any());
+    }
+}
@@ -0,0 +1,196 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.devsop.project.apartmentinvoice.service.storage.CachingStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for CachingStorageService with LocalStorageService standing in for GCS.
+ */
+class CachingStorageServiceUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService backend;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        backend = spy(new LocalStorageService(tempDir.resolve("bucket").toString()));
+        registry = new SimpleMeterRegistry();
+        store("lease/1/scan.pdf", "0123456789abcdefghij");
+    }
+
+    @Test
+    void testDownload_secondReadFromDisk_thirdFromHeap() {
+        // Arrange
+        CachingStorageService cache = cache(1024, Duration.ofMinutes(5));
+
+        // Act
+        byte[] first = cache.downloadFile("lease/1/scan.pdf");
+        byte[] second = cache.downloadFile("lease/1/scan.pdf");
+        byte[] third = cache.downloadFile("lease/1/scan.pdf");
+
+        // Assert
+        assertEquals("0123456789abcdefghij", new String(third, StandardCharsets.UTF_8));
+        assertArrayEquals(first, second);
+        verify(backend, times(1)).openStream("lease/1/scan.pdf");
+        verify(backend, never()).downloadFile(anyString());
+        assertEquals(1.0, requests("miss"));
+        assertEquals(1.0, requests("disk_hit"));
+        assertEquals(1.0, requests("heap_hit"));
+        assertEquals(20.0, registry.get("apartment.storage.cache.bytes.served").tag("source", "heap").counter().count());
+        assertEquals(2.0 / 3.0, registry.get("apartment.storage.cache.hit.ratio").gauge().value(), 0.0001);
+    }
+
+    @Test
+    void testDownload_objectReplacedInBackend_isRefetched() {
+        // Arrange: revalidate on every read
+        CachingStorageService cache = cache(1024, Duration.ZERO);
+        cache.downloadFile("lease/1/scan.pdf");
+
+        // Act: overwritten without going through the cache (another pod)
+        store("lease/1/scan.pdf", "new content");
+        byte[] content = cache.downloadFile("lease/1/scan.pdf");
+
+        // Assert
+        assertEquals("new content", new String(content, StandardCharsets.UTF_8));
+        verify(backend, times(2)).openStream("lease/1/scan.pdf");
+        assertEquals(2.0, requests("miss"));
+    }
+
+    @Test
+    void testFill_overDiskBudget_evictsLeastRecentlyUsed() {
+        // Arrange: room for two 20-byte files
+        store("lease/2/scan.pdf", "ABCDEFGHIJKLMNOPQRST");
+        store("lease/3/scan.pdf", "abcdefghijklmnopqrst");
+        CachingStorageService cache = cache(45, Duration.ofMinutes(5));
+        cache.downloadFile("lease/1/scan.pdf");
+        cache.downloadFile("lease/2/scan.pdf");
+        cache.downloadFile("lease/1/scan.pdf"); // 2 is now the least recently used
+
+        // Act
+        cache.downloadFile("lease/3/scan.pdf");
+        cache.downloadFile("lease/1/scan.pdf");
+        cache.downloadFile("lease/2/scan.pdf");
+
+        // Assert
+        verify(backend, times(1)).openStream("lease/1/scan.pdf");
+        verify(backend, times(2)).openStream("lease/2/scan.pdf");
+        assertEquals(2, cache.diskEntryCount());
+        assertTrue(cache.diskBytes() <= 45);
+        assertTrue(registry.get("apartment.storage.cache.evictions").counter().count() >= 1.0);
+    }
+
+    @Test
+    void testOpenRange_servedFromCachedFile() throws IOException {
+        // Arrange
+        CachingStorageService cache = cache(1024, Duration.ofMinutes(5));
+        cache.downloadFile("lease/1/scan.pdf");
+
+        // Act
+        try (InputStream in = cache.openRange("lease/1/scan.pdf", 5, 4)) {
+            // Assert
+            assertEquals("5678", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(20, cache.getFileSize("lease/1/scan.pdf"));
+        verify(backend, never()).openRange(eq("lease/1/scan.pdf"), eq(5L), eq(4L));
+    }
+
+    @Test
+    void testOpenRange_hotSmallFilePromotedToHeap() throws IOException {
+        // Arrange
+        CachingStorageService cache = cache(1024, Duration.ofMinutes(5));
+
+        // Act: range reads only, as document downloads do
+        for (int i = 0; i < 3; i++) {
+            try (InputStream in = cache.openRange("lease/1/scan.pdf", 10, 5)) {
+                assertEquals("abcde", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // Assert: miss, disk hit (promoted), heap hit
+        assertEquals(20, cache.heapBytes());
+        assertEquals(1.0, requests("miss"));
+        assertEquals(1.0, requests("disk_hit"));
+        assertEquals(1.0, requests("heap_hit"));
+        assertEquals(5.0, registry.get("apartment.storage.cache.bytes.served").tag("source", "heap").counter().count());
+    }
+
+    @Test
+    void testMetadataChecks_doNotCountAsHits() {
+        // Arrange
+        CachingStorageService cache = cache(1024, Duration.ofMinutes(5));
+        cache.downloadFile("lease/1/scan.pdf");
+
+        // Act
+        assertTrue(cache.fileExists("lease/1/scan.pdf"));
+        assertEquals(20, cache.getFileSize("lease/1/scan.pdf"));
+
+        // Assert
+        assertEquals(0.0, requests("disk_hit") + requests("heap_hit"));
+        assertEquals(0.0, registry.get("apartment.storage.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void testFill_overDiskBudget_sizeCheckedBeforeDownload() {
+        // Arrange: budget smaller than the 20-byte file
+        CachingStorageService cache = cache(10, Duration.ofMinutes(5));
+
+        // Act
+        byte[] content = cache.downloadFile("lease/1/scan.pdf");
+
+        // Assert: read once, from the backend; never copied for the cache
+        assertEquals("0123456789abcdefghij", new String(content, StandardCharsets.UTF_8));
+        verify(backend).getFileSize("lease/1/scan.pdf");
+        verify(backend, never()).openStream(anyString());
+        verify(backend, times(1)).downloadFile("lease/1/scan.pdf");
+        assertEquals(0, cache.diskEntryCount());
+    }
+
+    @Test
+    void testDelete_dropsCachedCopy() {
+        // Arrange
+        CachingStorageService cache = cache(1024, Duration.ofMinutes(5));
+        cache.downloadFile("lease/1/scan.pdf");
+
+        // Act
+        cache.deleteFile("lease/1/scan.pdf");
+
+        // Assert
+        assertFalse(cache.fileExists("lease/1/scan.pdf"));
+        assertEquals(0, cache.diskEntryCount());
+        assertEquals(0, cache.diskBytes());
+    }
+
+    private CachingStorageService cache(long maxDiskBytes, Duration revalidateAfter) {
+        return new CachingStorageService(backend, tempDir.resolve("cache"),
+                maxDiskBytes, 64, 64, revalidateAfter, registry);
+    }
+
+    private void store(String path, String content) {
+        backend.uploadFile(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "scan.pdf", "application/pdf", path);
+    }
+
+    private double requests(String result) {
+        return registry.get("apartment.storage.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,229 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.entity.Document;
+import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+import com.devsop.project.apartmentinvoice.entity.UploadPart;
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.repository.UploadPartRepository;
+import com.devsop.project.apartmentinvoice.repository.UploadSessionRepository;
+import com.devsop.project.apartmentinvoice.service.ChunkedUploadService;
+import com.devsop.project.apartmentinvoice.service.DocumentService;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+/**
+ * Unit tests for ChunkedUploadService with a 10-byte file sent as 4+4+2 byte parts.
+ */
+class ChunkedUploadServiceUnitTest {
+
+    private static final String UPLOAD_ID = "0b7e6f5a-1111-2222-3333-444455556666";
+    private static final String CONTENT = "ABCDEFGHIJ";
+
+    @TempDir
+    Path tempDir;
+
+    private UploadSessionRepository uploadSessionRepository;
+    private UploadPartRepository uploadPartRepository;
+    private DocumentService documentService;
+    private LocalStorageService storage;
+    private ChunkedUploadService chunkedUploadService;
+
+    private UploadSession session;
+    private final List<UploadPart> storedParts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        uploadPartRepository = mock(UploadPartRepository.class);
+        documentService = mock(DocumentService.class);
+        storage = new LocalStorageService(tempDir.toString());
+        chunkedUploadService = new ChunkedUploadService(
+                uploadSessionRepository, uploadPartRepository, documentService, storage);
+
+        session = new UploadSession();
+        session.setId(UPLOAD_ID);
+        session.setEntityType(EntityType.LEASE);
+        session.setEntityId(1L);
+        session.setFileName("lease.pdf");
+        session.setMimeType("application/pdf");
+        session.setTotalSize((long) CONTENT.length());
+        session.setPartSize(4L);
+        session.setUploadedBy("admin");
+        session.setStatus(UploadSession.Status.OPEN);
+
+        when(uploadSessionRepository.findById(UPLOAD_ID)).thenAnswer(inv -> Optional.of(session));
+        when(uploadSessionRepository.changeStatus(eq(UPLOAD_ID), any(), any())).thenAnswer(inv -> {
+            if (session.getStatus() != inv.getArgument(1)) {
+                return 0;
+            }
+            session.setStatus(inv.getArgument(2));
+            return 1;
+        });
+        when(uploadPartRepository.saveAndFlush(any(UploadPart.class))).thenAnswer(inv -> {
+            UploadPart part = inv.getArgument(0);
+            if (!storedParts.contains(part)) {
+                storedParts.add(part);
+            }
+            return part;
+        });
+        when(uploadPartRepository.findByUploadIdOrderByPartNumber(UPLOAD_ID)).thenAnswer(inv ->
+                storedParts.stream().sorted(Comparator.comparing(UploadPart::getPartNumber)).toList());
+        when(uploadPartRepository.findByUploadIdAndPartNumber(eq(UPLOAD_ID), anyInt())).thenAnswer(inv ->
+                storedParts.stream().filter(p -> p.getPartNumber().equals(inv.getArgument(1))).findFirst());
+    }
+
+    @Test
+    void testCommit_partsInAnyOrder_composedIntoDocument() throws Exception {
+        // Arrange
+        sendPart(3, "IJ");
+        sendPart(1, "ABCD");
+        sendPart(2, "EFGH");
+        sendPart(2, "EFGH"); // retried: the replaced copy is deleted with the parts
+        Document created = new Document();
+        created.setId(7L);
+        when(documentService.createDocument(any(), any(), any(), any(), anyLong(), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    DocumentService.ContentWriter writer = inv.getArgument(7);
+                    writer.writeTo("lease.pdf", "blobs/ab/joined.pdf");
+                    return created;
+                });
+
+        // Act
+        Document document = chunkedUploadService.commit(UPLOAD_ID);
+
+        // Assert
+        assertSame(created, document);
+        assertEquals(CONTENT, Files.readString(tempDir.resolve("blobs/ab/joined.pdf")));
+        verify(documentService).createDocument(eq(EntityType.LEASE), eq(1L), eq("lease.pdf"),
+                eq("application/pdf"), eq(10L), eq("admin"), eq(sha256(CONTENT)), any());
+        assertEquals(UploadSession.Status.COMMITTED, session.getStatus());
+        assertEquals(Long.valueOf(7L), session.getDocumentId());
+        for (UploadPart part : storedParts) {
+            assertFalse(storage.fileExists(part.getStoragePath()));
+        }
+        assertTrue(storage.listFiles("uploads/" + UPLOAD_ID + "/", null, 10).files().isEmpty());
+    }
+
+    @Test
+    void testUploadPart_shaMismatch_rejectedAndFileRemoved() throws Exception {
+        // Act
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> chunkedUploadService.uploadPart(UPLOAD_ID, 1, sha256("XXXX"), body("ABCD")));
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST.value(), ex.getStatusCode().value());
+        assertTrue(ex.getReason().contains("SHA-256 mismatch"));
+        assertTrue(storedParts.isEmpty());
+        Path partDir = tempDir.resolve("uploads").resolve(UPLOAD_ID);
+        if (Files.exists(partDir)) {
+            try (Stream<Path> files = Files.list(partDir)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void testUploadPart_wrongSize_rejected() {
+        // Act & Assert: a middle part must be exactly partSize bytes
+        ResponseStatusException shorter = assertThrows(ResponseStatusException.class,
+                () -> chunkedUploadService.uploadPart(UPLOAD_ID, 2, sha256("EFG"), body("EFG")));
+        ResponseStatusException longer = assertThrows(ResponseStatusException.class,
+                () -> chunkedUploadService.uploadPart(UPLOAD_ID, 2, sha256("EFGHI"), body("EFGHI")));
+        assertEquals(HttpStatus.BAD_REQUEST.value(), shorter.getStatusCode().value());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), longer.getStatusCode().value());
+        assertTrue(storedParts.isEmpty());
+    }
+
+    @Test
+    void testUploadPart_retry_replacesPartButKeepsPreviousCopyUntilAbort() {
+        // Arrange
+        UploadPart first = sendPart(1, "ABCD");
+        String firstPath = first.getStoragePath();
+
+        // Act: a commit that read the part list before the retry may still be joining the first copy
+        UploadPart second = sendPart(1, "ABCD");
+
+        // Assert
+        assertEquals(1, storedParts.size());
+        assertNotEquals(firstPath, second.getStoragePath());
+        assertTrue(storage.fileExists(firstPath));
+        assertTrue(storage.fileExists(second.getStoragePath()));
+
+        chunkedUploadService.abort(UPLOAD_ID);
+        assertFalse(storage.fileExists(firstPath));
+        assertFalse(storage.fileExists(second.getStoragePath()));
+    }
+
+    @Test
+    void testCommit_missingParts_conflict() throws Exception {
+        // Arrange
+        sendPart(2, "EFGH");
+
+        // Act
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> chunkedUploadService.commit(UPLOAD_ID));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT.value(), ex.getStatusCode().value());
+        assertTrue(ex.getReason().contains("[1, 3]"));
+        assertEquals(UploadSession.Status.OPEN, session.getStatus());
+        verify(documentService, never()).createDocument(any(), any(), any(), any(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void testExpireIdleUploads_abortsOpenUploadAndDeletesParts() {
+        // Arrange
+        UploadPart part = sendPart(1, "ABCD");
+        when(uploadSessionRepository.findIdleIds(eq(UploadSession.Status.OPEN), any()))
+                .thenReturn(List.of(UPLOAD_ID));
+
+        // Act
+        int expired = chunkedUploadService.expireIdleUploads(Duration.ofHours(24));
+
+        // Assert
+        assertEquals(1, expired);
+        assertEquals(UploadSession.Status.ABORTED, session.getStatus());
+        assertNotNull(session.getCompletedAt());
+        assertFalse(storage.fileExists(part.getStoragePath()));
+        verify(uploadPartRepository).deleteAll(List.of(part));
+    }
+
+    private UploadPart sendPart(int partNumber, String content) {
+        return chunkedUploadService.uploadPart(UPLOAD_ID, partNumber, sha256(content), body(content));
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String content) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.devsop.project.apartmentinvoice.service.storage.CompressingStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for CompressingStorageService with LocalStorageService as the backend.
+ */
+class CompressingStorageServiceUnitTest {
+
+    private static final String CSV_PATH = "imports/csv/20250101-000000_abcd1234_invoices.csv";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService backend;
+    private SimpleMeterRegistry registry;
+    private CompressingStorageService storage;
+    private byte[] csv;
+
+    @BeforeEach
+    void setUp() {
+        backend = new LocalStorageService(tempDir.toString());
+        registry = new SimpleMeterRegistry();
+        storage = compressing(true);
+
+        StringBuilder rows = new StringBuilder("room,period,water,electricity\n");
+        for (int i = 1; i <= 2000; i++) {
+            rows.append(100 + i % 50).append(",2025-01,").append(i % 30).append(',').append(i % 400).append('\n');
+        }
+        csv = rows.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testUpload_csv_storedAsGzipAndReadBackDecoded() throws IOException {
+        // Act
+        storage.uploadFile(new ByteArrayInputStream(csv), "invoices.csv", "text/csv", CSV_PATH);
+
+        // Assert: several times smaller on disk, a plain gzip file
+        byte[] stored = Files.readAllBytes(tempDir.resolve(CSV_PATH));
+        assertTrue(stored.length * 4 < csv.length, "stored " + stored.length + " of " + csv.length);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+            assertArrayEquals(csv, gzip.readAllBytes());
+        }
+        assertArrayEquals(csv, storage.downloadFile(CSV_PATH));
+        assertEquals(csv.length, storage.getFileSize(CSV_PATH));
+        assertEquals(1.0, registry.get("apartment.storage.compression.files").tag("result", "compressed").counter().count());
+        assertEquals(csv.length, registry.get("apartment.storage.compression.bytes").tag("stage", "raw").counter().count());
+    }
+
+    @Test
+    void testOpenRange_compressedFile_returnsUncompressedBytes() throws IOException {
+        // Arrange
+        storage.uploadFile(new ByteArrayInputStream(csv), "invoices.csv", "text/csv", CSV_PATH);
+
+        // Act
+        try (InputStream in = storage.openRange(CSV_PATH, 1000, 50)) {
+            // Assert
+            assertEquals(new String(csv, 1000, 50, StandardCharsets.UTF_8),
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testUpload_incompressibleOrOtherType_storedAsIs() {
+        // Arrange: random bytes look like an already-compressed PDF
+        byte[] noise = new byte[20_000];
+        new Random(42).nextBytes(noise);
+
+        // Act
+        storage.uploadFile(new ByteArrayInputStream(noise), "scan.pdf", "application/pdf", "blobs/aa/scan.pdf");
+        storage.uploadFile(new ByteArrayInputStream(csv), "photo.png", "image/png", "blobs/bb/photo.png");
+
+        // Assert
+        assertArrayEquals(noise, backend.downloadFile("blobs/aa/scan.pdf"));
+        assertArrayEquals(csv, backend.downloadFile("blobs/bb/photo.png"));
+        assertEquals(1.0, registry.get("apartment.storage.compression.files").tag("result", "plain").counter().count());
+        assertNotNull(storage.createSignedUrl("blobs/aa/scan.pdf", "application/pdf", "attachment", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testWritesDisabled_existingCompressedFilesStillReadable() {
+        // Arrange
+        storage.uploadFile(new ByteArrayInputStream(csv), "invoices.csv", "text/csv", CSV_PATH);
+
+        // Act
+        CompressingStorageService readOnly = compressing(false);
+        readOnly.uploadFile(new ByteArrayInputStream(csv), "report.csv", "text/csv", "imports/csv/report.csv");
+
+        // Assert
+        assertArrayEquals(csv, readOnly.downloadFile(CSV_PATH));
+        assertArrayEquals(csv, backend.downloadFile("imports/csv/report.csv"));
+        assertNull(readOnly.createSignedUrl(CSV_PATH, "text/csv", "attachment", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testSignedUrl_compressedObjectOfTypeNoLongerCompressible_refused() {
+        // Arrange: stored gzip while text/csv was in storage.compression.types
+        storage.uploadFile(new ByteArrayInputStream(csv), "invoices.csv", "text/csv", CSV_PATH);
+
+        // Act: the type list is narrowed afterwards
+        CompressingStorageService narrowed = new CompressingStorageService(backend, true, 6,
+                List.of("application/json"), registry);
+
+        // Assert
+        assertNull(narrowed.createSignedUrl(CSV_PATH, "text/csv", "attachment", Duration.ofMinutes(5)));
+        assertArrayEquals(csv, narrowed.downloadFile(CSV_PATH));
+    }
+
+    private CompressingStorageService compressing(boolean compressWrites) {
+        return new CompressingStorageService(backend, compressWrites, 6,
+                List.of("text/csv", "application/json", "application/pdf"), registry);
+    }
+}
@@ -5,38 +5,57 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.devsop.project.apartmentinvoice.dto.InvoicePeriodKey;
+import com.devsop.project.apartmentinvoice.entity.ImportBatch;
 import com.devsop.project.apartmentinvoice.entity.Invoice;
 import com.devsop.project.apartmentinvoice.entity.Lease;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
 import com.devsop.project.apartmentinvoice.entity.Room;
 import com.devsop.project.apartmentinvoice.entity.Tenant;
 import com.devsop.project.apartmentinvoice.metrics.InvoiceMetrics;
+import com.devsop.project.apartmentinvoice.repository.ImportBatchRepository;
 import com.devsop.project.apartmentinvoice.repository.InvoiceRepository;
 import com.devsop.project.apartmentinvoice.repository.LeaseRepository;
 import com.devsop.project.apartmentinvoice.repository.MaintenanceRepository;
 import com.devsop.project.apartmentinvoice.repository.RoomRepository;
 import com.devsop.project.apartmentinvoice.service.CsvImportService;
 import com.devsop.project.apartmentinvoice.service.CsvImportService.ImportResult;
-import com.devsop.project.apartmentinvoice.service.InvoiceService;
-import com.devsop.project.apartmentinvoice.service.InvoiceService.DebtCalculation;
+import com.devsop.project.apartmentinvoice.service.InvoiceBatchWriter;
+import com.devsop.project.apartmentinvoice.service.InvoiceSettingsService;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.UsageKey;
 import com.devsop.project.apartmentinvoice.service.storage.StorageService;
 
 /**
@@ -59,7 +78,10 @@ class CsvImportServiceUnitTest {
     private MaintenanceRepository maintenanceRepository;
 
     @Mock
-    private InvoiceService invoiceService;
+    private InvoiceSettingsService settingsService;
+
+    @Mock
+    private InvoiceBatchWriter invoiceBatchWriter;
 
     @Mock
     private InvoiceMetrics invoiceMetrics;
@@ -67,6 +89,12 @@ class CsvImportServiceUnitTest {
     @Mock
     private StorageService storageService;
 
+    @Mock
+    private ImportBatchRepository importBatchRepository;
+
+    @Mock
+    private MeterReadingService meterReadingService;
+
     @InjectMocks
     private CsvImportService csvImportService;
 
@@ -99,6 +127,25 @@ class CsvImportServiceUnitTest {
 
         testRoom.setTenant(testTenant);
 
+        ReflectionTestUtils.setField(csvImportService, "chunkSize", 1000);
+        ReflectionTestUtils.setField(csvImportService, "sheetParallelism", 2);
+        ReflectionTestUtils.setField(csvImportService, "inlineErrorLimit", 100);
+
+        // Bulk lookups default to "nothing found"; tests override what they need
+        when(roomRepository.findByNumberIn(any())).thenReturn(Collections.emptyList());
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(invoiceRepository.findPeriodKeysByRoomIdsAndYears(any(), any())).thenReturn(Collections.emptyList());
+        when(invoiceRepository.findUnpaidInvoicesByRoomsBeforePeriod(any(), anyInt(), anyInt(), any()))
+                .thenReturn(Collections.emptyList());
+        when(maintenanceRepository.findByRoom_IdInAndStatusAndCompletedDateBetween(any(), any(), any(), any()))
+                .thenReturn(Collections.emptyList());
+
+        // Batch writer: every invoice inserted successfully
+        when(invoiceBatchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            List<?> invoices = invocation.getArgument(0);
+            return new ArrayList<String>(Collections.nCopies(invoices.size(), null));
+        });
+
         // Setup metrics to just call the supplier
         when(invoiceMetrics.recordImport(any())).thenAnswer(invocation -> {
             java.util.function.Supplier<?> supplier = invocation.getArgument(0);
@@ -130,6 +177,9 @@ class CsvImportServiceUnitTest {
         });
 
         verify(invoiceMetrics).incrementImportErrors();
+        // rejected before hashing: no batch recorded, nothing archived
+        verifyNoInteractions(importBatchRepository);
+        verify(storageService, never()).uploadFile(any(), any(), any(), any());
     }
 
     @Test
@@ -140,15 +190,8 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(1L, 2025, 1))
-                .thenReturn(Optional.empty());
-        when(leaseRepository.findActiveLeaseByRoomOnDate(eq(1L), any(LocalDate.class)))
-                .thenReturn(Optional.of(testLease));
-        when(maintenanceRepository.findByRoom_IdAndStatusAndCompletedDateBetween(anyLong(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(invoiceService.calculateAccumulatedDebt(1L, 2025, 1))
-                .thenReturn(new DebtCalculation(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -156,7 +199,7 @@ class CsvImportServiceUnitTest {
         // Assert
         assertEquals(1, result.getSuccessCount());
         assertEquals(0, result.getFailureCount());
-        verify(invoiceRepository, times(1)).save(any(Invoice.class));
+        verify(invoiceBatchWriter, times(1)).insertAll(argThat(list -> list.size() == 1));
         verify(invoiceMetrics).incrementInvoiceCreated();
     }
 
@@ -175,7 +218,7 @@ class CsvImportServiceUnitTest {
         assertEquals(0, result.getSuccessCount());
         assertEquals(1, result.getFailureCount());
         assertTrue(result.getErrors().get(0).contains("Invalid CSV format"));
-        verify(invoiceRepository, never()).save(any());
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
         verify(invoiceMetrics).incrementImportErrors();
     }
 
@@ -205,7 +248,7 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -225,7 +268,6 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(999)).thenReturn(Optional.empty());
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -245,12 +287,9 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        Invoice existingInvoice = new Invoice();
-        existingInvoice.setId(1L);
-
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(1L, 2025, 1))
-                .thenReturn(Optional.of(existingInvoice)); // Invoice already exists
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(invoiceRepository.findPeriodKeysByRoomIdsAndYears(any(), any()))
+                .thenReturn(List.of(new InvoicePeriodKey(1L, 2025, 1))); // Invoice already exists
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -259,7 +298,7 @@ class CsvImportServiceUnitTest {
         assertEquals(0, result.getSuccessCount());
         assertEquals(1, result.getFailureCount());
         assertTrue(result.getErrors().get(0).contains("Invoice already exists"));
-        verify(invoiceRepository, never()).save(any());
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
         verify(invoiceMetrics).incrementImportErrors();
     }
 
@@ -276,11 +315,7 @@ class CsvImportServiceUnitTest {
         roomWithoutTenant.setNumber(201);
         roomWithoutTenant.setTenant(null); // No tenant
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(roomWithoutTenant));
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(1L, 2025, 1))
-                .thenReturn(Optional.empty());
-        when(leaseRepository.findActiveLeaseByRoomOnDate(eq(1L), any(LocalDate.class)))
-                .thenReturn(Optional.empty()); // No lease either
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(roomWithoutTenant));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -302,16 +337,8 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
-        when(roomRepository.findByNumber(999)).thenReturn(Optional.empty());
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(anyLong(), anyInt(), anyInt()))
-                .thenReturn(Optional.empty());
-        when(leaseRepository.findActiveLeaseByRoomOnDate(eq(1L), any(LocalDate.class)))
-                .thenReturn(Optional.of(testLease));
-        when(maintenanceRepository.findByRoom_IdAndStatusAndCompletedDateBetween(anyLong(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(invoiceService.calculateAccumulatedDebt(anyLong(), anyInt(), anyInt()))
-                .thenReturn(new DebtCalculation(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -320,7 +347,8 @@ class CsvImportServiceUnitTest {
         assertEquals(1, result.getSuccessCount());
         assertEquals(2, result.getFailureCount());
         assertEquals(3, result.getTotalProcessed());
-        verify(invoiceRepository, times(1)).save(any(Invoice.class));
+        verify(invoiceBatchWriter, times(1)).insertAll(argThat(list -> list.size() == 1));
+        verify(roomRepository, times(1)).findByNumberIn(any());
     }
 
     @Test
@@ -331,15 +359,8 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(1L, 2025, 1))
-                .thenReturn(Optional.empty());
-        when(leaseRepository.findActiveLeaseByRoomOnDate(eq(1L), any(LocalDate.class)))
-                .thenReturn(Optional.of(testLease));
-        when(maintenanceRepository.findByRoom_IdAndStatusAndCompletedDateBetween(anyLong(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(invoiceService.calculateAccumulatedDebt(1L, 2025, 1))
-                .thenReturn(new DebtCalculation(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -359,15 +380,210 @@ class CsvImportServiceUnitTest {
 
         MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
 
-        when(roomRepository.findByNumber(201)).thenReturn(Optional.of(testRoom));
-        when(invoiceRepository.findFirstByRoom_IdAndBillingYearAndBillingMonth(1L, 2025, 1))
-                .thenReturn(Optional.empty());
-        when(leaseRepository.findActiveLeaseByRoomOnDate(eq(1L), any(LocalDate.class)))
-                .thenReturn(Optional.of(testLease));
-        when(maintenanceRepository.findByRoom_IdAndStatusAndCompletedDateBetween(anyLong(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(invoiceService.calculateAccumulatedDebt(1L, 2025, 1))
-                .thenReturn(new DebtCalculation(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    @Test
+    void testImportCsv_backfillSameRoom_carriesDebtFromEarlierRowsAndDetectsDuplicates() throws IOException {
+        // Arrange: Jan and Feb for the same room, then Jan again (duplicate within the file)
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,100,50,1,2025,5.00,8.00\n" +
+                            "201,100,50,2,2025,5.00,8.00\n" +
+                            "201,100,50,1,2025,5.00,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getErrors().get(0).startsWith("Line 4"));
+        assertTrue(result.getErrors().get(0).contains("Invoice already exists"));
+
+        verify(invoiceBatchWriter).insertAll(argThat(list -> {
+            Invoice jan = list.get(0);
+            Invoice feb = list.get(1);
+            // Jan: 5000 rent + 500 elec + 400 water + 100 common + 50 garbage
+            return list.size() == 2
+                && jan.getTotalBaht().compareTo(new BigDecimal("6050.00")) == 0
+                && feb.getPreviousBalance().compareTo(jan.getTotalBaht()) == 0;
+        }));
+        // lookups are loaded once for the whole file
+        verify(roomRepository, times(1)).findByNumberIn(any());
+        verify(invoiceRepository, times(1)).findUnpaidInvoicesByRoomsBeforePeriod(any(), eq(2025), eq(2), any());
+    }
+
+    @Test
+    void testImportCsv_blankUnits_derivedFromMeterReadings() throws IOException {
+        // Arrange: both unit columns blank on line 2, water given on line 3
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,,,1,2025,5.00,8.00\n" +
+                            "201,,12,2,2025,5.00,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        when(meterReadingService.findMonthlyUsage(any(), any(), any())).thenReturn(Map.of(
+                new UsageKey(1L, MeterType.ELECTRICITY, 2025, 1), new BigDecimal("120"),
+                new UsageKey(1L, MeterType.WATER, 2025, 1), new BigDecimal("15"),
+                new UsageKey(1L, MeterType.ELECTRICITY, 2025, 2), new BigDecimal("90")));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(2, result.getSuccessCount());
+        verify(invoiceBatchWriter).insertAll(argThat(list ->
+                list.get(0).getElectricityUnits().compareTo(new BigDecimal("120")) == 0
+                && list.get(0).getWaterUnits().compareTo(new BigDecimal("15")) == 0
+                && list.get(0).getElectricityBaht().compareTo(new BigDecimal("600.00")) == 0
+                && list.get(1).getElectricityUnits().compareTo(new BigDecimal("90")) == 0
+                && list.get(1).getWaterUnits().compareTo(new BigDecimal("12")) == 0));
+        // one windowed query for the whole chunk, covering Jan..Feb
+        verify(meterReadingService, times(1)).findMonthlyUsage(any(),
+                eq(LocalDate.of(2025, 1, 1)), eq(LocalDate.of(2025, 2, 28)));
+    }
+
+    @Test
+    void testImportCsv_blankUnitsWithoutUsableReadings_recordsError() throws IOException {
+        // Arrange: Jan has no readings, Feb electricity went backwards
+        String csvContent = "201,,,1,2025,5.00,8.00\n" +
+                            "201,,,2,2025,5.00,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        when(meterReadingService.findMonthlyUsage(any(), any(), any())).thenReturn(Map.of(
+                new UsageKey(1L, MeterType.ELECTRICITY, 2025, 2), new BigDecimal("-30"),
+                new UsageKey(1L, MeterType.WATER, 2025, 2), new BigDecimal("10")));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount());
+        assertEquals("Line 1: No electricity meter readings for room 201 in 2025-1", result.getErrors().get(0));
+        assertTrue(result.getErrors().get(1).contains("lower than the previous reading"));
+    }
+
+    @Test
+    void testImportCsv_unitsGiven_doesNotQueryMeterReadings() throws IOException {
+        // Arrange
+        String csvContent = "201,100,50,1,2025,5.50,8.00";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        verify(meterReadingService, never()).findMonthlyUsage(any(), any(), any());
+    }
+
+    @Test
+    void testImportCsv_manyRooms_partitionedBuildMatchesFileOrder() throws IOException {
+        // Arrange: 40 rooms x 3 months, rows interleaved by month; every 7th room is unknown
+        ReflectionTestUtils.setField(csvImportService, "partitionParallelism", 4);
+        List<Room> rooms = new ArrayList<>();
+        List<Lease> leases = new ArrayList<>();
+        StringBuilder csv = new StringBuilder();
+        for (int month = 1; month <= 3; month++) {
+            for (int n = 1; n <= 40; n++) {
+                csv.append(100 + n).append(",100,50,").append(month).append(",2025,5.00,8.00\n");
+            }
+        }
+        for (int n = 1; n <= 40; n++) {
+            if (n % 7 == 0) {
+                continue;
+            }
+            Room room = new Room();
+            room.setId((long) n);
+            room.setNumber(100 + n);
+            room.setTenant(testTenant);
+            rooms.add(room);
+            Lease lease = new Lease();
+            lease.setRoom(room);
+            lease.setTenant(testTenant);
+            lease.setMonthlyRent(new BigDecimal("5000.00"));
+            lease.setStartDate(LocalDate.of(2024, 1, 1));
+            leases.add(lease);
+        }
+        MultipartFile csvFile = createMockCsvFile(csv.toString(), "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(rooms);
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(leases);
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert: errors in line order, invoices in file order with debt carried per room
+        assertEquals(34 * 3, result.getSuccessCount());
+        assertEquals(5 * 3, result.getFailureCount());
+        assertEquals("Line 7: Room not found: 107", result.getErrors().get(0));
+        assertEquals("Line 14: Room not found: 114", result.getErrors().get(1));
+        assertEquals("Line 47: Room not found: 107", result.getErrors().get(5));
+
+        ArgumentCaptor<List<Invoice>> captor = captureInsertedInvoices();
+        List<Invoice> inserted = captor.getValue();
+        assertEquals(101, inserted.get(0).getRoom().getNumber());
+        assertEquals(1, inserted.get(0).getBillingMonth());
+        Invoice marchOfRoom101 = inserted.get(68);
+        assertEquals(101, marchOfRoom101.getRoom().getNumber());
+        assertEquals(3, marchOfRoom101.getBillingMonth());
+        // Jan + Feb unpaid: 2 x (5000 rent + 500 elec + 400 water)
+        assertEquals(0, new BigDecimal("11800.00").compareTo(marchOfRoom101.getPreviousBalance()));
+    }
+
+    @Test
+    void testImportCsv_insertFailure_recordsErrorForThatLine() throws IOException {
+        // Arrange
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,100,50,1,2025,5.50,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        when(invoiceBatchWriter.insertAll(anyList())).thenReturn(java.util.Arrays.asList("constraint violation"));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getErrors().get(0).contains("Line 2"));
+        verify(invoiceMetrics, never()).incrementInvoiceCreated();
+    }
+
+    @Test
+    void testImportCsv_quotedFields_parsedPerRfc4180() throws IOException {
+        // Arrange: quoted room number and a quoted header cell containing a comma
+        String csvContent = "\"Room, Number\",Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\r\n" +
+                            "\"201\",100,50,\"1\",2025,\"5.50\",8.00\r\n";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
 
         // Act
         ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
@@ -377,6 +593,484 @@ class CsvImportServiceUnitTest {
         assertEquals(0, result.getFailureCount());
     }
 
+    @Test
+    void testImportCsv_unclosedQuote_importsPreviousRowsAndReportsLine() throws IOException {
+        // Arrange
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,100,50,1,2025,5.50,8.00\n" +
+                            "\"201,100,50,2,2025,5.50,8.00\n";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getErrors().get(0).startsWith("Line 3"));
+        assertTrue(result.getErrors().get(0).contains("Unclosed quoted field"));
+    }
+
+    @Test
+    void testImportCsv_chunked_commitsEachChunkSeparately() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(csvImportService, "chunkSize", 1);
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,100,50,1,2025,5.50,8.00\n" +
+                            "201,100,50,2,2025,5.50,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(2, result.getSuccessCount());
+        verify(invoiceBatchWriter, times(2)).insertAll(argThat(list -> list.size() == 1));
+    }
+
+    @Test
+    void testValidateCsv_dryRun_writesNothingAndReportsEveryLine() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(csvImportService, "chunkSize", 1);
+        String csvContent = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate\n" +
+                            "201,100,50,1,2025,5.00,8.00\n" +
+                            "999,100,50,1,2025,5.00,8.00\n" +
+                            "201,100,50,2,2025,5.00,8.00";
+
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.validateCsv(csvFile);
+
+        // Assert
+        assertTrue(result.isDryRun());
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertEquals(3, result.getLines().size());
+
+        assertEquals("OK", result.getLines().get(0).getStatus());
+        assertEquals(0, new BigDecimal("6050.00").compareTo(result.getLines().get(0).getTotalBaht()));
+        assertEquals("ERROR", result.getLines().get(1).getStatus());
+        assertTrue(result.getLines().get(1).getMessage().contains("Room not found"));
+        // Jan was never saved, but Feb (next chunk) still carries it as previous balance
+        assertEquals(0, new BigDecimal("6050.00").compareTo(result.getLines().get(2).getPreviousBalance()));
+
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
+        verify(storageService, never()).uploadFile(any(), any(), any(), any());
+        verify(invoiceMetrics, never()).incrementImportErrors();
+        verify(invoiceMetrics, never()).incrementInvoiceCreated();
+    }
+
+    @Test
+    void testImportCsv_newFile_recordsImportBatchWithContentHash() {
+        // Arrange
+        String csvContent = "201,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        when(importBatchRepository.findByContentHash(any())).thenReturn(Optional.empty());
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        assertFalse(result.isDuplicate());
+
+        ArgumentCaptor<ImportBatch> captor = ArgumentCaptor.forClass(ImportBatch.class);
+        verify(importBatchRepository).save(captor.capture());
+        ImportBatch batch = captor.getValue();
+        assertEquals(sha256Hex(csvContent), batch.getContentHash());
+        assertEquals(ImportBatch.Status.COMPLETED, batch.getStatus());
+        assertEquals(1, batch.getSuccessCount());
+        assertEquals(0, batch.getFailureCount());
+        assertTrue(batch.getStoragePath().startsWith("imports/csv/"));
+        verify(storageService).uploadFile(any(), any(), eq("text/csv"), eq(batch.getStoragePath()));
+    }
+
+    @Test
+    void testImportCsv_sameFileAlreadyImported_returnsEarlierResultWithoutProcessing() {
+        // Arrange
+        String csvContent = "201,100,10,1,2024,8.0,18.0\n999,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        ImportBatch previous = new ImportBatch();
+        previous.setId(42L);
+        previous.setContentHash(sha256Hex(csvContent));
+        previous.setStatus(ImportBatch.Status.COMPLETED);
+        previous.setStoragePath("imports/csv/old_test.csv");
+        previous.setSuccessCount(1);
+        previous.setFailureCount(1);
+        previous.setErrors("Line 2: Room not found: 999");
+        when(importBatchRepository.findByContentHash(sha256Hex(csvContent))).thenReturn(Optional.of(previous));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertTrue(result.isDuplicate());
+        assertEquals(42L, result.getBatchId());
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertEquals("Line 2: Room not found: 999", result.getErrors().get(0));
+
+        verify(roomRepository, never()).findByNumberIn(any());
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
+        verify(importBatchRepository, never()).save(any());
+        // hashed from the upload itself: nothing is copied to storage, so nothing has to be discarded
+        verify(storageService, never()).uploadFile(any(), any(), any(), any());
+        verify(storageService, never()).deleteFile(any());
+    }
+
+    @Test
+    void testImportCsv_sameFileBeingImportedConcurrently_conflictWithoutStorageCopy() {
+        // Arrange: the other request saved the batch between our lookup and our insert
+        String csvContent = "201,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+        when(importBatchRepository.findByContentHash(any())).thenReturn(Optional.empty());
+        when(importBatchRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("uk_import_batch_hash"));
+
+        // Act
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> csvImportService.importInvoicesFromCsv(csvFile));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT.value(), ex.getStatusCode().value());
+        verify(storageService, never()).uploadFile(any(), any(), any(), any());
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
+    }
+
+    @Test
+    void testImportCsv_sameFileStillProcessing_conflict() {
+        // Arrange
+        String csvContent = "201,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+        ImportBatch running = new ImportBatch();
+        running.setId(42L);
+        running.setStatus(ImportBatch.Status.PROCESSING);
+        running.setStartedAt(LocalDateTime.now().minusMinutes(5));
+        when(importBatchRepository.findByContentHash(sha256Hex(csvContent))).thenReturn(Optional.of(running));
+        when(importBatchRepository.reclaimStale(eq(42L), any(), any())).thenReturn(0);
+
+        // Act
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> csvImportService.importInvoicesFromCsv(csvFile));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT.value(), ex.getStatusCode().value());
+        verify(importBatchRepository, never()).saveAndFlush(any());
+        verify(storageService, never()).uploadFile(any(), any(), any(), any());
+    }
+
+    @Test
+    void testImportCsv_sameFileStuckProcessing_reclaimedAfterTimeout() {
+        // Arrange: the server running the import died two hours ago
+        ReflectionTestUtils.setField(csvImportService, "processingTimeoutMinutes", 60L);
+        String csvContent = "201,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        ImportBatch stuck = new ImportBatch();
+        stuck.setId(42L);
+        stuck.setContentHash(sha256Hex(csvContent));
+        stuck.setStatus(ImportBatch.Status.PROCESSING);
+        stuck.setStartedAt(LocalDateTime.now().minusHours(2));
+        when(importBatchRepository.findByContentHash(sha256Hex(csvContent))).thenReturn(Optional.of(stuck));
+        when(importBatchRepository.reclaimStale(eq(42L), any(), any())).thenReturn(1);
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertFalse(result.isDuplicate());
+        assertEquals(1, result.getSuccessCount());
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(importBatchRepository).reclaimStale(eq(42L), cutoff.capture(), any());
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusMinutes(59)));
+        assertEquals(ImportBatch.Status.COMPLETED, stuck.getStatus());
+        assertTrue(stuck.getStartedAt().isAfter(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    @Test
+    void testImportCsv_sameFileWithForce_importsAgain() {
+        // Arrange
+        String csvContent = "201,100,10,1,2024,8.0,18.0";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        ImportBatch previous = new ImportBatch();
+        previous.setId(42L);
+        previous.setContentHash(sha256Hex(csvContent));
+        previous.setStatus(ImportBatch.Status.COMPLETED);
+        previous.setStoragePath("imports/csv/old_test.csv");
+        when(importBatchRepository.findByContentHash(any())).thenReturn(Optional.of(previous));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile, true);
+
+        // Assert
+        assertFalse(result.isDuplicate());
+        assertEquals(42L, result.getBatchId());
+        assertEquals(1, result.getSuccessCount());
+        verify(invoiceBatchWriter).insertAll(anyList());
+        verify(storageService).deleteFile("imports/csv/old_test.csv");
+        assertEquals(ImportBatch.Status.COMPLETED, previous.getStatus());
+    }
+
+    @Test
+    void testImportXlsx_sheetsImportedThroughSamePipeline() throws IOException {
+        // Arrange: one sheet per floor; room 201 Jan-2025 appears on both sheets
+        String header = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate";
+        byte[] xlsx = workbook(new String[] {"Floor 2", "Floor 9"}, new String[][] {
+                {header, "201,100,50,1,2025,5.5,8"},
+                {header, "201,100,50,1,2025,5.5,8", "999,100,50,1,2025,5.5,8"}
+        });
+        MultipartFile file = createMockFile(xlsx, "meters.xlsx");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        List<Invoice> committed = commitInvoices(List.of());
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(file);
+
+        // Assert: first sheet to reach 201 wins, the other copy is a duplicate of the committed invoice
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount());
+        assertTrue(result.getErrors().contains("[Floor 9] Line 3: Room not found: 999"));
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.contains("Line 2: Invoice already exists for room 201")));
+        verify(invoiceBatchWriter, times(1)).insertAll(argThat(list -> list.size() == 1));
+        assertEquals(1, committed.size());
+    }
+
+    @Test
+    void testImportXlsx_sameRowOnTwoSheets_failedInsertDoesNotBlockTheOtherSheet() throws IOException {
+        // Arrange: room 201 Jan-2025 on both sheets; whichever sheet inserts first fails
+        String header = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate";
+        byte[] xlsx = workbook(new String[] {"Floor 2", "Copy"}, new String[][] {
+                {header, "201,100,50,1,2025,5.5,8"},
+                {header, "201,100,50,1,2025,5.5,8"}
+        });
+        MultipartFile file = createMockFile(xlsx, "meters.xlsx");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        List<Invoice> committed = commitInvoices(List.of("connection reset"));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(file);
+
+        // Assert: the failed row is UNEXPECTED, the other sheet's row is inserted rather than reported as a duplicate
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(1, committed.size());
+        assertEquals(1, result.getErrorCounts().get(CsvImportService.ErrorType.UNEXPECTED));
+        assertNull(result.getErrorCounts().get(CsvImportService.ErrorType.DUPLICATE_INVOICE));
+        verify(invoiceBatchWriter, times(2)).insertAll(anyList());
+    }
+
+    @Test
+    void testImportXlsx_sameRoomOnTwoSheets_laterSheetSeesCommittedInvoicesOfTheOther() throws IOException {
+        // Arrange: January of room 201 on one sheet, February on the other, imported in parallel
+        String header = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate";
+        byte[] xlsx = workbook(new String[] {"January", "February"}, new String[][] {
+                {header, "201,100,50,1,2025,5.00,8.00"},
+                {header, "201,100,50,2,2025,5.00,8.00"}
+        });
+        MultipartFile file = createMockFile(xlsx, "meters.xlsx");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        // the database: invoices become visible only once insertAll returns (commit), after a slow write
+        List<Invoice> committed = Collections.synchronizedList(new ArrayList<>());
+        List<Invoice> insertOrder = Collections.synchronizedList(new ArrayList<>());
+        when(invoiceRepository.findUnpaidInvoicesByRoomsBeforePeriod(any(), anyInt(), anyInt(), any()))
+                .thenAnswer(invocation -> new ArrayList<>(committed));
+        when(invoiceBatchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Invoice> invoices = invocation.getArgument(0);
+            insertOrder.addAll(invoices);
+            Thread.sleep(200);
+            committed.addAll(invoices);
+            return new ArrayList<String>(Collections.nCopies(invoices.size(), null));
+        });
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(file);
+
+        // Assert: same as importing the sheets one after the other, in the order they were written
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(2, insertOrder.size());
+        Invoice jan = insertOrder.stream().filter(i -> i.getBillingMonth() == 1).findFirst().orElseThrow();
+        Invoice feb = insertOrder.stream().filter(i -> i.getBillingMonth() == 2).findFirst().orElseThrow();
+        if (insertOrder.get(0) == jan) {
+            // February waited for January's commit, so January is its carried debt
+            assertEquals(0, feb.getPreviousBalance().compareTo(jan.getTotalBaht()));
+        } else {
+            assertEquals(0, feb.getPreviousBalance().signum());
+        }
+    }
+
+    @Test
+    void testImportXlsx_dryRun_reportsSheetPerLine() throws IOException {
+        // Arrange
+        String header = "Room Number,Electricity Units,Water Units,Billing Month,Billing Year,Electricity Rate,Water Rate";
+        byte[] xlsx = workbook(new String[] {"Floor 2"}, new String[][] {{header, "201,100,50,1,2025,5.5,8"}});
+        MultipartFile file = createMockFile(xlsx, "meters.xlsx");
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.validateCsv(file);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        assertEquals("Floor 2", result.getLines().get(0).getSheet());
+        assertEquals(2, result.getLines().get(0).getLineNumber());
+        verify(invoiceBatchWriter, never()).insertAll(anyList());
+    }
+
+    @Test
+    void testImportCsv_manyErrors_capsInlineErrorsAndStoresFullReport() throws IOException {
+        // Arrange: 12 unknown rooms + 3 bad numbers, only 5 errors inline
+        ReflectionTestUtils.setField(csvImportService, "inlineErrorLimit", 5);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= 12; i++) {
+            csv.append(900 + i).append(",100,50,1,2025,5.00,8.00\n");
+        }
+        csv.append("201,abc,50,1,2025,5.00,8.00\n".repeat(3));
+        MultipartFile csvFile = createMockCsvFile(csv.toString(), "test.csv");
+
+        List<String> report = new ArrayList<>();
+        doAnswer(invocation -> {
+            String path = invocation.getArgument(3);
+            if (path.startsWith("imports/errors/")) {
+                java.io.InputStream in = invocation.getArgument(0);
+                report.addAll(List.of(new String(in.readAllBytes()).split("\r\n")));
+            }
+            return path;
+        }).when(storageService).uploadFile(any(), any(), any(), any());
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertEquals(15, result.getFailureCount());
+        assertEquals(5, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+        assertEquals(12, result.getErrorCounts().get(CsvImportService.ErrorType.ROOM_NOT_FOUND));
+        assertEquals(3, result.getErrorCounts().get(CsvImportService.ErrorType.INVALID_NUMBER));
+
+        assertTrue(result.getErrorReportPath().startsWith("imports/errors/"));
+        assertTrue(result.getErrorReportPath().endsWith("_test.errors.csv"));
+        assertEquals(16, report.size());
+        assertEquals("sheet,line,type,message", report.get(0));
+        assertEquals(",1,ROOM_NOT_FOUND,Room not found: 901", report.get(1));
+        assertTrue(report.get(15).startsWith(",15,INVALID_NUMBER,"));
+
+        ArgumentCaptor<ImportBatch> captor = ArgumentCaptor.forClass(ImportBatch.class);
+        verify(importBatchRepository).save(captor.capture());
+        assertEquals(result.getErrorReportPath(), captor.getValue().getErrorReportPath());
+        assertEquals("INVALID_NUMBER=3\nROOM_NOT_FOUND=12", captor.getValue().getErrorCounts());
+        assertEquals(5, captor.getValue().getErrors().split("\n").length);
+    }
+
+    @Test
+    void testImportCsv_noErrors_storesNoReport() throws IOException {
+        // Arrange
+        MultipartFile csvFile = createMockCsvFile("201,100,50,1,2025,5.50,8.00", "test.csv");
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        assertNull(result.getErrorReportPath());
+        assertTrue(result.getErrorCounts().isEmpty());
+        verify(storageService, never()).uploadFile(any(), any(), any(), startsWith("imports/errors/"));
+    }
+
+    @Test
+    void testGetErrorReport_streamedFromStorage() throws IOException {
+        // Arrange
+        ImportBatch batch = new ImportBatch();
+        batch.setId(7L);
+        batch.setErrorReportPath("imports/errors/abc_test.errors.csv");
+        byte[] report = "sheet,line,type,message\r\n,1,ROOM_NOT_FOUND,Room not found: 901\r\n".getBytes();
+        when(importBatchRepository.findById(7L)).thenReturn(Optional.of(batch));
+        when(storageService.getFileSize("imports/errors/abc_test.errors.csv")).thenReturn((long) report.length);
+        when(storageService.openStream("imports/errors/abc_test.errors.csv"))
+                .thenReturn(new ByteArrayInputStream(report));
+
+        // Act
+        Resource resource = csvImportService.getErrorReport(7L);
+
+        // Assert: nothing read until the response body is written
+        verify(storageService, never()).openStream(any());
+        assertEquals(report.length, resource.contentLength());
+        assertEquals("import-7-errors.csv", resource.getFilename());
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(report, in.readAllBytes());
+        }
+        verify(storageService, never()).downloadFile(any());
+    }
+
+    @Test
+    void testGetErrorReport_batchWithoutReport_notFound() {
+        // Arrange
+        when(importBatchRepository.findById(7L)).thenReturn(Optional.of(new ImportBatch()));
+
+        // Act & Assert
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> csvImportService.getErrorReport(7L));
+        assertEquals(HttpStatus.NOT_FOUND.value(), ex.getStatusCode().value());
+    }
+
+    @Test
+    void testImportCsv_errorTypeSetWhereRaised_notReadFromMessage() {
+        // Arrange: one error of each kind; the insert error's text looks like a missing room
+        Room noTenantRoom = new Room();
+        noTenantRoom.setId(2L);
+        noTenantRoom.setNumber(202);
+        String csvContent = "201,100,50,13,2025,5.00,8.00\n"
+                + "201,100,50\n"
+                + "999,100,50,1,2025,5.00,8.00\n"
+                + "202,100,50,1,2025,5.00,8.00\n"
+                + "201,100,50,1,2025,5.00,8.00\n"
+                + "201,100,50,1,2025,5.00,8.00";
+        MultipartFile csvFile = createMockCsvFile(csvContent, "test.csv");
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(testRoom, noTenantRoom));
+        when(leaseRepository.findActiveLeasesByRoomsBetween(any(), any(), any())).thenReturn(List.of(testLease));
+        when(invoiceBatchWriter.insertAll(anyList())).thenReturn(new ArrayList<>(List.of("Room not found: 201")));
+
+        // Act
+        ImportResult result = csvImportService.importInvoicesFromCsv(csvFile);
+
+        // Assert
+        Map<CsvImportService.ErrorType, Integer> counts = result.getErrorCounts();
+        assertEquals(6, result.getFailureCount());
+        assertEquals(1, counts.get(CsvImportService.ErrorType.INVALID_MONTH));
+        assertEquals(1, counts.get(CsvImportService.ErrorType.INVALID_FORMAT));
+        assertEquals(1, counts.get(CsvImportService.ErrorType.ROOM_NOT_FOUND));
+        assertEquals(1, counts.get(CsvImportService.ErrorType.NO_TENANT));
+        assertEquals(1, counts.get(CsvImportService.ErrorType.DUPLICATE_INVOICE));
+        assertEquals(1, counts.get(CsvImportService.ErrorType.UNEXPECTED));
+    }
+
     @Test
     void testImportResult_countsCorrectly() {
         // Test ImportResult DTO
@@ -400,20 +1094,89 @@ class CsvImportServiceUnitTest {
         assertTrue(errors.get(0).contains("Error 1"));
     }
 
+    private static String sha256Hex(String content) {
+        try {
+            return java.util.HexFormat.of().formatHex(
+                    java.security.MessageDigest.getInstance("SHA-256").digest(content.getBytes()));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     // Helper method to create mock CSV file
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<List<Invoice>> captureInsertedInvoices() {
+        ArgumentCaptor<List<Invoice>> captor = ArgumentCaptor.forClass(List.class);
+        verify(invoiceBatchWriter).insertAll(captor.capture());
+        return captor;
+    }
+
     private MultipartFile createMockCsvFile(String content, String filename) {
+        return createMockFile(content.getBytes(), filename);
+    }
+
+    private MultipartFile createMockFile(byte[] bytes, String filename) {
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(mockFile.isEmpty()).thenReturn(content.isEmpty());
+        when(mockFile.isEmpty()).thenReturn(bytes.length == 0);
         when(mockFile.getOriginalFilename()).thenReturn(filename);
         when(mockFile.getContentType()).thenReturn("text/csv");
 
         try {
-            InputStream inputStream = new ByteArrayInputStream(content.getBytes());
-            when(mockFile.getInputStream()).thenReturn(inputStream);
+            when(mockFile.getSize()).thenReturn((long) bytes.length);
+            // fresh stream per call, like a real upload (storage copy and parsing each read it)
+            when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
         return mockFile;
     }
+
+    /**
+     * The database behind insertAll and the duplicate lookup: the n-th insertAll call fails its
+     * invoices with insertErrors[n] (null or missing = success); successful ones become
+     * visible to findPeriodKeysByRoomIdsAndYears. Returns the committed invoices.
+     */
+    private List<Invoice> commitInvoices(List<String> insertErrors) {
+        List<Invoice> committed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger calls = new AtomicInteger();
+        when(invoiceRepository.findPeriodKeysByRoomIdsAndYears(any(), any())).thenAnswer(invocation -> {
+            synchronized (committed) {
+                return committed.stream()
+                        .map(i -> new InvoicePeriodKey(i.getRoom().getId(), i.getBillingYear(), i.getBillingMonth()))
+                        .toList();
+            }
+        });
+        when(invoiceBatchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Invoice> invoices = invocation.getArgument(0);
+            int call = calls.getAndIncrement();
+            String error = call < insertErrors.size() ? insertErrors.get(call) : null;
+            if (error == null) {
+                committed.addAll(invoices);
+            }
+            return new ArrayList<String>(Collections.nCopies(invoices.size(), error));
+        });
+        return committed;
+    }
+
+    private static byte[] workbook(String[] sheetNames, String[][] sheetCsv) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int s = 0; s < sheetNames.length; s++) {
+                XSSFSheet sheet = workbook.createSheet(sheetNames[s]);
+                for (int r = 0; r < sheetCsv[s].length; r++) {
+                    Row row = sheet.createRow(r);
+                    String[] cells = sheetCsv[s][r].split(",");
+                    for (int c = 0; c < cells.length; c++) {
+                        if (r > 0) {
+                            row.createCell(c).setCellValue(Double.parseDouble(cells[c]));
+                        } else {
+                            row.createCell(c).setCellValue(cells[c]);
+                        }
+                    }
+                }
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvFormatException;
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvRecord;
+
+/**
+ * Unit tests for CsvRecordReader (RFC 4180 quoting, line endings, line numbers).
+ */
+class CsvRecordReaderUnitTest {
+
+    @Test
+    void testNext_quotedFieldsWithCommaQuoteAndNewline() throws IOException {
+        // Arrange
+        String csv = "a,\"b,c\",\"say \"\"hi\"\"\"\r\n\"multi\nline\",x\n";
+
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            // Act
+            CsvRecord first = reader.next();
+            CsvRecord second = reader.next();
+            CsvRecord end = reader.next();
+
+            // Assert
+            assertEquals(List.of("a", "b,c", "say \"hi\""), first.fields());
+            assertEquals(1, first.lineNumber());
+            assertEquals(List.of("multi\nline", "x"), second.fields());
+            assertEquals(2, second.lineNumber());
+            assertNull(end);
+        }
+    }
+
+    @Test
+    void testNext_lineNumbersCountEmbeddedNewlinesAndBlankLines() throws IOException {
+        // Arrange
+        String csv = "\uFEFFh1,h2\n\n\"x\ny\",1\nlast,2";
+
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            // Act
+            CsvRecord header = reader.next();
+            CsvRecord blank = reader.next();
+            CsvRecord quoted = reader.next();
+            CsvRecord last = reader.next();
+
+            // Assert
+            assertEquals("h1", header.get(0));
+            assertTrue(blank.isBlank());
+            assertEquals(3, quoted.lineNumber());
+            assertEquals(5, last.lineNumber());
+            assertEquals(List.of("last", "2"), last.fields());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testNext_unclosedQuote_throwsWithStartLine() throws IOException {
+        // Arrange
+        String csv = "ok,1\n\"broken,2\n";
+
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            reader.next();
+
+            // Act & Assert
+            CsvFormatException e = assertThrows(CsvFormatException.class, reader::next);
+            assertEquals(2, e.getLineNumber());
+        }
+    }
+}
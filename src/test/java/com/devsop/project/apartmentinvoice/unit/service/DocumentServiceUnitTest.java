@@ -0,0 +1,280 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.dto.EntityDocumentCount;
+import com.devsop.project.apartmentinvoice.entity.Document;
+import com.devsop.project.apartmentinvoice.entity.Document.EntityType;
+import com.devsop.project.apartmentinvoice.entity.DocumentBlob;
+import com.devsop.project.apartmentinvoice.repository.DocumentBlobRepository;
+import com.devsop.project.apartmentinvoice.repository.DocumentRepository;
+import com.devsop.project.apartmentinvoice.service.DocumentService;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+
+/**
+ * Unit tests for DocumentService: content-addressable blobs, reference counting, deletion, batch lookups
+ * and signed download URLs.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DocumentServiceUnitTest {
+
+    // SHA-256 of "receipt"
+    private static final String RECEIPT_HASH = "6f32860910ca0fb2a20c7fda143666b09dbf8db5238195c90a586fb542ff0cad";
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Mock
+    private StorageService storageService;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @InjectMocks
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() {
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(documentBlobRepository.saveAndFlush(any(DocumentBlob.class))).thenAnswer(invocation -> {
+            DocumentBlob blob = invocation.getArgument(0);
+            blob.setId(7L);
+            return blob;
+        });
+
+        // Storage: consume the stream like a real backend (the upload is hashed while streaming)
+        when(storageService.uploadFile(any(), anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            InputStream in = invocation.getArgument(0);
+            in.transferTo(OutputStream.nullOutputStream());
+            return invocation.getArgument(3);
+        });
+    }
+
+    @Test
+    void testUpload_newContent_storesBlobUnderHash() throws IOException {
+        // Arrange
+        MultipartFile file = createMockFile("receipt", "slip.png");
+
+        // Act
+        Document document = documentService.uploadDocument(file, EntityType.INVOICE, 12L, "admin");
+
+        // Assert
+        ArgumentCaptor<String> path = ArgumentCaptor.forClass(String.class);
+        verify(storageService, times(1)).uploadFile(any(), anyString(), eq("image/png"), path.capture());
+        assertTrue(path.getValue().startsWith("blobs/6f/" + RECEIPT_HASH + "_"));
+        assertTrue(path.getValue().endsWith(".png"));
+
+        ArgumentCaptor<DocumentBlob> blob = ArgumentCaptor.forClass(DocumentBlob.class);
+        verify(documentBlobRepository).saveAndFlush(blob.capture());
+        assertEquals(RECEIPT_HASH, blob.getValue().getContentHash());
+        assertEquals(1, blob.getValue().getRefCount());
+        assertEquals(path.getValue(), document.getFilePath());
+        assertSame(blob.getValue(), document.getBlob());
+        assertEquals("slip.png", document.getFileName());
+        verify(imageVariantService).generateAsync(path.getValue());
+    }
+
+    @Test
+    void testUpload_duplicateContent_referencesExistingBlobWithoutWriting() throws IOException {
+        // Arrange
+        DocumentBlob existing = blob(3L, "blobs/6f/" + RECEIPT_HASH + "_abcd1234.png");
+        when(documentBlobRepository.findByContentHash(RECEIPT_HASH)).thenReturn(Optional.of(existing));
+        when(documentBlobRepository.incrementRefCount(3L)).thenReturn(1);
+        MultipartFile file = createMockFile("receipt", "copy.png");
+
+        // Act
+        Document document = documentService.uploadDocument(file, EntityType.LEASE, 4L, "admin");
+
+        // Assert
+        verify(storageService, never()).uploadFile(any(), anyString(), anyString(), anyString());
+        verify(documentBlobRepository, never()).saveAndFlush(any());
+        assertSame(existing, document.getBlob());
+        assertEquals(existing.getStoragePath(), document.getFilePath());
+        assertEquals("copy.png", document.getFileName());
+    }
+
+    @Test
+    void testDelete_sharedBlob_keepsFile() {
+        // Arrange
+        Document document = document(20L, blob(3L, "blobs/6f/shared.png"));
+        when(documentRepository.findById(20L)).thenReturn(Optional.of(document));
+        when(documentBlobRepository.deleteIfUnreferenced(3L)).thenReturn(0);
+
+        // Act
+        documentService.deleteDocument(20L);
+
+        // Assert
+        verify(documentRepository).deleteById(20L);
+        verify(documentBlobRepository).decrementRefCount(3L);
+        verify(storageService, never()).deleteFile(anyString());
+    }
+
+    @Test
+    void testDelete_lastReference_deletesBlobFileAndVariants() {
+        // Arrange
+        Document document = document(20L, blob(3L, "blobs/6f/last.png"));
+        document.setMimeType("image/png");
+        when(documentRepository.findById(20L)).thenReturn(Optional.of(document));
+        when(documentBlobRepository.deleteIfUnreferenced(3L)).thenReturn(1);
+
+        // Act
+        documentService.deleteDocument(20L);
+
+        // Assert
+        verify(storageService, times(1)).deleteFile("blobs/6f/last.png");
+        verify(imageVariantService).deleteVariants("blobs/6f/last.png");
+    }
+
+    @Test
+    void testDelete_legacyDocumentWithoutBlob_deletesOwnFile() {
+        // Arrange
+        Document document = document(21L, null);
+        document.setFilePath("lease/4/old.pdf");
+        when(documentRepository.findById(21L)).thenReturn(Optional.of(document));
+
+        // Act
+        documentService.deleteDocument(21L);
+
+        // Assert
+        verify(storageService).deleteFile("lease/4/old.pdf");
+        verifyNoInteractions(documentBlobRepository);
+    }
+
+    @Test
+    void testGetSignedUrl_offByDefaultAndNullWhenSigningFails() {
+        // Arrange
+        Document document = new Document();
+        document.setId(5L);
+        document.setFilePath("lease/1/scan.pdf");
+        document.setFileName("scan.pdf");
+        document.setMimeType("application/pdf");
+        when(storageService.createSignedUrl(anyString(), anyString(), anyString(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to sign"));
+
+        // Act & Assert: switched off unless document.download.signed-urls is set
+        assertNull(documentService.getSignedUrl(document, null));
+        verify(storageService, never()).createSignedUrl(anyString(), anyString(), anyString(), any());
+
+        // Act & Assert: switched on, signing fails -> the caller streams instead
+        ReflectionTestUtils.setField(documentService, "signedUrls", true);
+        assertNull(documentService.getSignedUrl(document, null));
+    }
+
+    @Test
+    void testGetDocumentsByEntities_oneQueryGroupedInRequestOrder() {
+        // Arrange
+        Document first = document(1L, null);
+        first.setEntityId(5L);
+        Document second = document(2L, null);
+        second.setEntityId(5L);
+        Document third = document(3L, null);
+        third.setEntityId(9L);
+        when(documentRepository.findByEntityTypeAndEntityIdInOrderByEntityIdAscIdAsc(eq(EntityType.MAINTENANCE), any()))
+                .thenReturn(List.of(first, second, third));
+
+        // Act
+        Map<Long, List<Document>> result = documentService.getDocumentsByEntities(
+                EntityType.MAINTENANCE, List.of(9L, 7L, 5L, 9L));
+
+        // Assert
+        assertEquals(List.of(9L, 7L, 5L), List.copyOf(result.keySet()));
+        assertEquals(List.of(first, second), result.get(5L));
+        assertEquals(List.of(third), result.get(9L));
+        assertTrue(result.get(7L).isEmpty());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(documentRepository, times(1))
+                .findByEntityTypeAndEntityIdInOrderByEntityIdAscIdAsc(eq(EntityType.MAINTENANCE), ids.capture());
+        assertEquals(3, ids.getValue().size());
+        verify(documentRepository, never()).findByEntityTypeAndEntityId(any(), any());
+    }
+
+    @Test
+    void testCountDocumentsByEntities_missingEntitiesCountZero() {
+        // Arrange
+        when(documentRepository.countByEntityTypeAndEntityIdIn(eq(EntityType.LEASE), any()))
+                .thenReturn(List.of(new EntityDocumentCount(4L, 2L)));
+
+        // Act
+        Map<Long, Long> counts = documentService.countDocumentsByEntities(EntityType.LEASE, List.of(4L, 5L));
+
+        // Assert
+        assertEquals(Map.of(4L, 2L, 5L, 0L), counts);
+    }
+
+    @Test
+    void testBatchLookup_tooManyOrNoIds() {
+        // Arrange
+        List<Long> tooMany = LongStream.rangeClosed(1, 501).boxed().toList();
+
+        // Act & Assert
+        assertThrows(ResponseStatusException.class,
+                () -> documentService.getDocumentsByEntities(EntityType.INVOICE, tooMany));
+        assertTrue(documentService.countDocumentsByEntities(EntityType.INVOICE, List.of()).isEmpty());
+        verify(documentRepository, never()).countByEntityTypeAndEntityIdIn(any(), any());
+    }
+
+    private static DocumentBlob blob(Long id, String storagePath) {
+        DocumentBlob blob = new DocumentBlob();
+        blob.setId(id);
+        blob.setContentHash(RECEIPT_HASH);
+        blob.setStoragePath(storagePath);
+        blob.setRefCount(1);
+        return blob;
+    }
+
+    private static Document document(Long id, DocumentBlob blob) {
+        Document document = new Document();
+        document.setId(id);
+        document.setEntityType(EntityType.INVOICE);
+        document.setEntityId(12L);
+        document.setFileName("slip.png");
+        document.setBlob(blob);
+        if (blob != null) {
+            document.setFilePath(blob.getStoragePath());
+        }
+        return document;
+    }
+
+    private MultipartFile createMockFile(String content, String filename) throws IOException {
+        byte[] bytes = content.getBytes();
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(mockFile.isEmpty()).thenReturn(false);
+        when(mockFile.getSize()).thenReturn((long) bytes.length);
+        when(mockFile.getContentType()).thenReturn("image/png");
+        when(mockFile.getOriginalFilename()).thenReturn(filename);
+        when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+        return mockFile;
+    }
+}
@@ -0,0 +1,53 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import com.devsop.project.apartmentinvoice.service.csv.ErrorReportWriter;
+
+/**
+ * Unit tests for ErrorReportWriter (RFC 4180 escaping, appending sheet parts, cleanup).
+ */
+class ErrorReportWriterUnitTest {
+
+    @Test
+    void testWrite_escapesFieldsAndAppendsParts() throws IOException {
+        // Arrange
+        ErrorReportWriter report = ErrorReportWriter.create();
+        ErrorReportWriter sheet = ErrorReportWriter.createPart();
+
+        // Act
+        report.write(null, 2, "ROOM_NOT_FOUND", "Room not found: 901");
+        sheet.write("Floor 2", 5, "OTHER", "bad \"value\", see line\nnext");
+        report.append(sheet);
+        Path file = report.finish();
+
+        // Assert
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        assertEquals("sheet,line,type,message\r\n"
+                + ",2,ROOM_NOT_FOUND,Room not found: 901\r\n"
+                + "Floor 2,5,OTHER,\"bad \"\"value\"\", see line\nnext\"\r\n", content);
+        assertEquals(2, report.getRows());
+        Files.delete(file);
+    }
+
+    @Test
+    void testDiscard_deletesTempFile() throws IOException {
+        // Arrange
+        ErrorReportWriter report = ErrorReportWriter.create();
+        report.write(null, 1, "OTHER", "x");
+        Path file = report.finish();
+
+        // Act
+        report.discard();
+
+        // Assert
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,102 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService;
+import com.devsop.project.apartmentinvoice.service.image.ImageVariantService.Variant;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+/**
+ * Unit tests for ImageVariantService (sizes, storage next to the original, one generation per image).
+ */
+class ImageVariantServiceUnitTest {
+
+    private static final String ORIGINAL = "blobs/ab/photo.png";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService storage;
+    private ImageVariantService imageVariantService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = spy(new LocalStorageService(tempDir.toString()));
+        imageVariantService = new ImageVariantService(storage);
+        ReflectionTestUtils.setField(imageVariantService, "thumbSize", 100);
+        ReflectionTestUtils.setField(imageVariantService, "webSize", 400);
+        ReflectionTestUtils.setField(imageVariantService, "jpegQuality", 0.8f);
+        ReflectionTestUtils.setField(imageVariantService, "workers", 1);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), "png", png);
+        storage.uploadFile(new ByteArrayInputStream(png.toByteArray()), "photo.png", "image/png", ORIGINAL);
+    }
+
+    @Test
+    void testEnsure_generatesBothVariantsWithinConfiguredSizes() throws IOException {
+        // Act
+        String thumbPath = imageVariantService.ensure(ORIGINAL, Variant.THUMB);
+
+        // Assert
+        assertEquals("blobs/ab/photo.png.thumb.jpg", thumbPath);
+        BufferedImage thumb = ImageIO.read(new ByteArrayInputStream(storage.downloadFile(thumbPath)));
+        assertEquals(100, thumb.getWidth());
+        assertEquals(50, thumb.getHeight());
+
+        BufferedImage web = ImageIO.read(new ByteArrayInputStream(
+                storage.downloadFile(ImageVariantService.variantPath(ORIGINAL, Variant.WEB))));
+        assertEquals(400, web.getWidth());
+        assertEquals(200, web.getHeight());
+    }
+
+    @Test
+    void testEnsure_existingVariants_originalNotReadAgain() {
+        // Arrange
+        imageVariantService.ensure(ORIGINAL, Variant.THUMB);
+
+        // Act
+        imageVariantService.ensure(ORIGINAL, Variant.WEB);
+        imageVariantService.ensure(ORIGINAL, Variant.THUMB);
+
+        // Assert
+        verify(storage, times(1)).openStream(ORIGINAL);
+    }
+
+    @Test
+    void testDeleteVariants_removesGeneratedFiles() {
+        // Arrange
+        imageVariantService.ensure(ORIGINAL, Variant.THUMB);
+
+        // Act
+        imageVariantService.deleteVariants(ORIGINAL);
+
+        // Assert
+        assertFalse(storage.fileExists("blobs/ab/photo.png.thumb.jpg"));
+        assertFalse(storage.fileExists("blobs/ab/photo.png.web.jpg"));
+        assertTrue(storage.fileExists(ORIGINAL));
+    }
+
+    @Test
+    void testVariantFromParam_unknownValue_throwsBadRequest() {
+        // Act & Assert
+        assertNull(Variant.fromParam(null));
+        assertEquals(Variant.THUMB, Variant.fromParam("thumb"));
+        assertThrows(ResponseStatusException.class, () -> Variant.fromParam("huge"));
+    }
+}
@@ -0,0 +1,214 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.service.storage.InstrumentedStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Unit tests for InstrumentedStorageService over LocalStorageService: meters and spans per backend call.
+ */
+class InstrumentedStorageServiceUnitTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path tempDir;
+
+    private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+    private OpenTelemetrySdk openTelemetry;
+    private SimpleMeterRegistry registry;
+    private InstrumentedStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        SpanExporter exporter = new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> batch) {
+                spans.addAll(batch);
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+        openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                        .build())
+                .build();
+        registry = new SimpleMeterRegistry();
+        storage = new InstrumentedStorageService(
+                new LocalStorageService(tempDir.toString()), "local", registry, openTelemetry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        openTelemetry.close();
+    }
+
+    @Test
+    void testCalls_timedCountedAndTracedUnderRequestSpan() throws IOException {
+        // Arrange: the span of the HTTP request
+        Span request = openTelemetry.getTracer("test").spanBuilder("GET /api/documents/1/download").startSpan();
+
+        // Act
+        try (Scope ignored = request.makeCurrent()) {
+            storage.uploadFile(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                    "scan.pdf", "application/pdf", "lease/1/scan.pdf");
+            try (InputStream in = storage.openRange("lease/1/scan.pdf", 5, 10)) {
+                in.readAllBytes();
+            }
+            assertTrue(storage.fileExists("lease/1/scan.pdf"));
+        } finally {
+            request.end();
+        }
+
+        // Assert: meters
+        assertEquals(1, registry.get("apartment.storage.backend.latency")
+                .tags("backend", "local", "operation", "upload", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("apartment.storage.backend.latency")
+                .tags("operation", "read", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("apartment.storage.backend.latency")
+                .tags("operation", "exists").timer().count());
+        assertEquals(CONTENT.length(), registry.get("apartment.storage.backend.bytes")
+                .tag("direction", "written").counter().count());
+        assertEquals(10.0, registry.get("apartment.storage.backend.bytes")
+                .tag("direction", "read").counter().count());
+
+        // Assert: one child span per call, in the request's trace
+        List<SpanData> storageSpans = spans.stream().filter(s -> s.getName().startsWith("storage ")).toList();
+        assertEquals(List.of("storage upload", "storage read", "storage exists"),
+                storageSpans.stream().map(SpanData::getName).toList());
+        for (SpanData span : storageSpans) {
+            assertEquals(request.getSpanContext().getTraceId(), span.getTraceId());
+            assertEquals(request.getSpanContext().getSpanId(), span.getParentSpanId());
+        }
+    }
+
+    @Test
+    void testMissingFile_errorCountedByCauseAndSpanMarked() {
+        // Act
+        assertThrows(ResponseStatusException.class, () -> storage.getFileSize("lease/9/missing.pdf"));
+
+        // Assert
+        assertEquals(1.0, registry.get("apartment.storage.backend.errors")
+                .tags("backend", "local", "operation", "metadata", "cause", "not_found").counter().count());
+        assertEquals(1, registry.get("apartment.storage.backend.latency")
+                .tags("operation", "metadata", "outcome", "error").timer().count());
+        SpanData span = spans.get(0);
+        assertEquals("storage metadata", span.getName());
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+    }
+
+    @Test
+    void testStreamedRead_latencyAndSpanCoverTheTransfer() throws IOException {
+        // Arrange: a backend that opens at once but takes 200 ms to deliver the bytes (like a lazy GCS channel)
+        LocalStorageService slow = new LocalStorageService(tempDir.toString()) {
+            @Override
+            public InputStream openStream(String filePath) {
+                return new FilterInputStream(super.openStream(filePath)) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        sleep(200);
+                        return super.read(b, off, len);
+                    }
+                };
+            }
+        };
+        storage = new InstrumentedStorageService(slow, "local", registry, openTelemetry);
+        slow.uploadFile(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                "scan.pdf", "application/pdf", "lease/1/scan.pdf");
+
+        // Act
+        try (InputStream in = storage.openStream("lease/1/scan.pdf")) {
+            assertTrue(spans.isEmpty(), "span still open while the stream is read");
+            in.readAllBytes();
+        }
+
+        // Assert
+        double millis = registry.get("apartment.storage.backend.latency")
+                .tags("operation", "read", "outcome", "success").timer().totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(millis >= 200, "latency " + millis + " ms");
+        assertEquals(1, spans.size());
+        SpanData span = spans.get(0);
+        assertEquals("storage read", span.getName());
+        assertTrue(span.getEndEpochNanos() - span.getStartEpochNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void testStreamedRead_readError_recordedAsFailedRead() {
+        // Arrange
+        LocalStorageService broken = new LocalStorageService(tempDir.toString()) {
+            @Override
+            public InputStream openStream(String filePath) {
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                };
+            }
+        };
+        storage = new InstrumentedStorageService(broken, "local", registry, openTelemetry);
+
+        // Act
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = storage.openStream("lease/1/scan.pdf")) {
+                in.read();
+            }
+        });
+
+        // Assert: failed once, not also counted as a success on close
+        assertEquals(1, registry.get("apartment.storage.backend.latency")
+                .tags("operation", "read", "outcome", "error").timer().count());
+        assertTrue(registry.find("apartment.storage.backend.latency")
+                .tags("operation", "read", "outcome", "success").timers().isEmpty());
+        assertEquals(1.0, registry.get("apartment.storage.backend.errors")
+                .tags("operation", "read", "cause", "io").counter().count());
+        assertEquals(StatusCode.ERROR, spans.get(0).getStatus().getStatusCode());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.entity.Invoice;
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.entity.Tenant;
+import com.devsop.project.apartmentinvoice.service.InvoicePdfService;
+import com.devsop.project.apartmentinvoice.service.InvoiceSettingsService;
+import com.devsop.project.apartmentinvoice.service.PdfService;
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayQrService;
+
+/**
+ * Unit tests for InvoicePdfService focusing on mode selection, bulk error handling and the stamped background cache.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class InvoicePdfServiceUnitTest {
+
+    @Mock
+    private PdfService pdfService;
+
+    @Mock
+    private InvoiceSettingsService settingsService;
+
+    @Mock
+    private PromptPayQrService promptPayQrService;
+
+    @InjectMocks
+    private InvoicePdfService invoicePdfService;
+
+    private InvoiceSettings settings;
+
+    @BeforeEach
+    void setUp() {
+        settings = new InvoiceSettings();
+        settings.setId(1L);
+        settings.setQrCodeImagePath("qr/test.png");
+        settings.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 0, 0));
+
+        ReflectionTestUtils.setField(invoicePdfService, "uploadBaseDir", "./uploads");
+        ReflectionTestUtils.setField(invoicePdfService, "stampingEnabled", false);
+
+        when(settingsService.getSettings()).thenReturn(settings);
+    }
+
+    @Test
+    void testRenderInvoice_fullMode_rendersInvoiceTemplateWithSettings() {
+        // Arrange
+        Invoice invoice = invoice(1L);
+        byte[] pdf = "%PDF-1.4".getBytes();
+        when(pdfService.renderTemplateToPdf(eq("invoice"), anyMap())).thenReturn(pdf);
+
+        // Act
+        byte[] result = invoicePdfService.renderInvoice(invoice);
+
+        // Assert
+        assertArrayEquals(pdf, result);
+        verify(pdfService).renderTemplateToPdf(eq("invoice"), argThat((Map<String, Object> model) ->
+            model.get("invoice") == invoice
+                && model.get("settings") == settings
+                && ((String) model.get("qrCodeFullPath")).endsWith("uploads/qr/test.png")
+        ));
+    }
+
+    @Test
+    void testRenderInvoices_fullMode_skipsFailedInvoicesAndMerges() {
+        // Arrange
+        Invoice ok = invoice(1L);
+        Invoice broken = invoice(2L);
+        byte[] pdf = "%PDF-1.4".getBytes();
+        when(pdfService.renderTemplateToPdf(eq("invoice"), argThat((Map<String, Object> m) -> m.get("invoice") == ok)))
+                .thenReturn(pdf);
+        when(pdfService.renderTemplateToPdf(eq("invoice"), argThat((Map<String, Object> m) -> m.get("invoice") == broken)))
+                .thenThrow(new RuntimeException("template error"));
+        when(pdfService.mergePdfs(anyList())).thenReturn(pdf);
+
+        // Act
+        byte[] result = invoicePdfService.renderInvoices(List.of(ok, broken));
+
+        // Assert
+        assertArrayEquals(pdf, result);
+        verify(pdfService).mergePdfs(argThat(list -> list.size() == 1));
+        verify(settingsService, times(1)).getSettings();
+    }
+
+    @Test
+    void testRenderInvoice_promptPayConfigured_embedsQrForAccumulatedTotal() {
+        // Arrange
+        settings.setPromptPayId("0812345678");
+        Invoice invoice = invoice(1L);
+        invoice.setTotalBaht(new BigDecimal("8234.00"));
+        invoice.setAccumulatedTotal(new BigDecimal("9452.00"));
+        when(promptPayQrService.qrDataUri("0812345678", new BigDecimal("9452.00")))
+                .thenReturn("data:image/png;base64,QR");
+        when(pdfService.renderTemplateToPdf(eq("invoice"), anyMap())).thenReturn("%PDF-1.4".getBytes());
+
+        // Act
+        invoicePdfService.renderInvoice(invoice);
+
+        // Assert
+        verify(pdfService).renderTemplateToPdf(eq("invoice"), argThat((Map<String, Object> model) ->
+            "data:image/png;base64,QR".equals(model.get("qrCodeDataUri"))));
+    }
+
+    @Test
+    void testRenderInvoice_paidInvoice_noPromptPayQr() {
+        // Arrange
+        settings.setPromptPayId("0812345678");
+        Invoice invoice = invoice(1L);
+        invoice.setStatus(Invoice.Status.PAID);
+        when(pdfService.renderTemplateToPdf(eq("invoice"), anyMap())).thenReturn("%PDF-1.4".getBytes());
+
+        // Act
+        invoicePdfService.renderInvoice(invoice);
+
+        // Assert
+        verify(promptPayQrService, never()).qrDataUri(anyString(), any());
+        verify(pdfService).renderTemplateToPdf(eq("invoice"), argThat((Map<String, Object> model) ->
+            model.get("qrCodeDataUri") == null));
+    }
+
+    @Test
+    void testRenderInvoices_allFail_throwsBadRequest() {
+        // Arrange
+        when(pdfService.renderTemplateToPdf(anyString(), anyMap()))
+                .thenThrow(new RuntimeException("template error"));
+
+        // Act & Assert
+        assertThrows(ResponseStatusException.class, () ->
+            invoicePdfService.renderInvoices(List.of(invoice(1L))));
+        verify(pdfService, never()).mergePdfs(anyList());
+    }
+
+    @Test
+    void testRenderInvoices_stampedMode_backgroundRenderedOnceAndFieldsDrawnWithOneFont() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(invoicePdfService, "stampingEnabled", true);
+        when(pdfService.renderTemplateToPdf(eq("invoice-stamp"), anyMap())).thenReturn(onePagePdf());
+
+        // Act
+        byte[] result = invoicePdfService.renderInvoices(List.of(invoice(1L), invoice(2L), invoice(3L)));
+
+        // Assert: one HTML render in total, fields drawn without the renderer
+        verify(pdfService, times(1)).renderTemplateToPdf(eq("invoice-stamp"), anyMap());
+        verify(pdfService, never()).mergePdfs(anyList());
+        try (PDDocument merged = PDDocument.load(result)) {
+            assertEquals(3, merged.getNumberOfPages());
+            assertEquals(1, distinctResources(merged, "font"));
+
+            String text = new PDFTextStripper().getText(merged);
+            assertTrue(text.contains("8,234.00"));
+            assertTrue(text.contains("02/09/2025"));
+        }
+    }
+
+    @Test
+    void testRenderInvoices_stampedMode_backgroundReusedUntilSettingsChange() {
+        // Arrange
+        ReflectionTestUtils.setField(invoicePdfService, "stampingEnabled", true);
+        when(pdfService.renderTemplateToPdf(eq("invoice-stamp"), anyMap())).thenReturn(onePagePdf());
+
+        // Act
+        invoicePdfService.renderInvoices(List.of(invoice(1L), invoice(2L)));
+        invoicePdfService.renderInvoices(List.of(invoice(3L)));
+        settings.setUpdatedAt(LocalDateTime.of(2025, 2, 1, 0, 0));
+        invoicePdfService.renderInvoices(List.of(invoice(4L)));
+
+        // Assert: cached across requests, rebuilt once for the new settings version
+        verify(pdfService, times(2)).renderTemplateToPdf(eq("invoice-stamp"), anyMap());
+    }
+
+    @Test
+    void testRenderInvoices_stampedMode_samePromptPayQrEmbeddedOnce() throws IOException {
+        // Arrange: three unpaid invoices for the same amount
+        ReflectionTestUtils.setField(invoicePdfService, "stampingEnabled", true);
+        settings.setPromptPayId("0812345678");
+        when(pdfService.renderTemplateToPdf(eq("invoice-stamp"), anyMap())).thenReturn(onePagePdf());
+        when(promptPayQrService.qrDataUri(eq("0812345678"), any())).thenReturn(qrDataUri());
+
+        // Act
+        byte[] result = invoicePdfService.renderInvoices(List.of(invoice(1L), invoice(2L), invoice(3L)));
+
+        // Assert
+        try (PDDocument merged = PDDocument.load(result)) {
+            assertEquals(3, merged.getNumberOfPages());
+            assertEquals(1, distinctResources(merged, "image"));
+        }
+    }
+
+    @Test
+    void testRenderInvoices_stampedMode_brokenInvoiceSkipped() throws IOException {
+        // Arrange: invoice 2 has no room
+        ReflectionTestUtils.setField(invoicePdfService, "stampingEnabled", true);
+        when(pdfService.renderTemplateToPdf(eq("invoice-stamp"), anyMap())).thenReturn(onePagePdf());
+        Invoice broken = invoice(2L);
+        broken.setRoom(null);
+
+        // Act
+        byte[] result = invoicePdfService.renderInvoices(List.of(invoice(1L), broken));
+
+        // Assert
+        try (PDDocument merged = PDDocument.load(result)) {
+            assertEquals(1, merged.getNumberOfPages());
+        }
+    }
+
+    private Invoice invoice(Long id) {
+        Tenant tenant = new Tenant();
+        tenant.setName("สมชาย ใจดี");
+        Room room = new Room();
+        room.setNumber(100 + id.intValue());
+
+        Invoice invoice = new Invoice();
+        invoice.setId(id);
+        invoice.setRoom(room);
+        invoice.setTenant(tenant);
+        invoice.setBillingYear(2025);
+        invoice.setBillingMonth(9);
+        invoice.setIssueDate(LocalDate.of(2025, 9, 2));
+        invoice.setDueDate(LocalDate.of(2025, 9, 9));
+        invoice.setRentBaht(new BigDecimal("7000.00"));
+        invoice.setTotalBaht(new BigDecimal("8234.00"));
+        return invoice;
+    }
+
+    /** Number of distinct font or image objects referenced by the pages */
+    private static long distinctResources(PDDocument document, String kind) throws IOException {
+        Set<COSBase> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PDPage page : document.getPages()) {
+            PDResources resources = page.getResources();
+            if ("font".equals(kind)) {
+                for (COSName name : resources.getFontNames()) {
+                    objects.add(resources.getFont(name).getCOSObject());
+                }
+            } else {
+                for (COSName name : resources.getXObjectNames()) {
+                    if (resources.isImageXObject(name)) {
+                        objects.add(resources.getXObject(name).getCOSObject());
+                    }
+                }
+            }
+        }
+        return objects.size();
+    }
+
+    private static String qrDataUri() {
+        try (ByteArrayOutputStream png = new ByteArrayOutputStream()) {
+            ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_BINARY), "png", png);
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(png.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** A blank A4 page, as the renderer would return it for one stamp layer */
+    private static byte[] onePagePdf() {
+        try (PDDocument document = new PDDocument();
+             ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(bytes);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.devsop.project.apartmentinvoice.entity.InvoiceSettings;
+import com.devsop.project.apartmentinvoice.repository.InvoiceSettingsRepository;
+import com.devsop.project.apartmentinvoice.service.InvoiceSettingsService;
+
+/**
+ * Unit tests for InvoiceSettingsService focusing on PromptPay ID validation.
+ */
+@ExtendWith(MockitoExtension.class)
+class InvoiceSettingsServiceUnitTest {
+
+    @Mock
+    private InvoiceSettingsRepository settingsRepository;
+
+    @InjectMocks
+    private InvoiceSettingsService settingsService;
+
+    private InvoiceSettings existing;
+
+    @BeforeEach
+    void setUp() {
+        existing = new InvoiceSettings();
+        existing.setId(1L);
+        when(settingsRepository.findById(1L)).thenReturn(Optional.of(existing));
+        lenient().when(settingsRepository.save(any(InvoiceSettings.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void testUpdateSettings_formattedMobileNumber_storedAsDigits() {
+        // Act
+        InvoiceSettings saved = settingsService.updateSettings(promptPay(" 081-234 5678 "));
+
+        // Assert
+        assertEquals("0812345678", saved.getPromptPayId());
+    }
+
+    @Test
+    void testUpdateSettings_textAroundNumber_rejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () ->
+            settingsService.updateSettings(promptPay("id: 081-234-5678 (office)")));
+        verify(settingsRepository, never()).save(any());
+    }
+
+    @Test
+    void testUpdateSettings_longerThanColumn_rejected() {
+        // Act & Assert: 15 digits padded past VARCHAR(20) with dashes is still valid, 16 digits is not
+        assertEquals("123456789012345",
+            settingsService.updateSettings(promptPay("1-2-3-4-5-6-7-8-9-0-1-2-3-4-5")).getPromptPayId());
+        assertThrows(IllegalArgumentException.class, () ->
+            settingsService.updateSettings(promptPay("1234567890123456")));
+    }
+
+    @Test
+    void testUpdateSettings_blank_clearsPromptPay() {
+        // Arrange
+        existing.setPromptPayId("0812345678");
+
+        // Act
+        InvoiceSettings saved = settingsService.updateSettings(promptPay("  "));
+
+        // Assert
+        assertNull(saved.getPromptPayId());
+    }
+
+    private static InvoiceSettings promptPay(String promptPayId) {
+        InvoiceSettings settings = new InvoiceSettings();
+        settings.setPromptPayId(promptPayId);
+        return settings;
+    }
+}
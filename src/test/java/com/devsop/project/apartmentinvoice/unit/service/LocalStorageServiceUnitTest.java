@@ -0,0 +1,163 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.StorageResource;
+import com.devsop.project.apartmentinvoice.service.storage.StorageService;
+import com.devsop.project.apartmentinvoice.service.storage.StoredFilePage;
+
+/**
+ * Unit tests for the streaming reads of LocalStorageService and for StorageResource range handling.
+ */
+class LocalStorageServiceUnitTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageService(tempDir.toString());
+        storage.uploadFile(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                "scan.pdf", "application/pdf", "lease/1/scan.pdf");
+    }
+
+    @Test
+    void testOpenStream_readsWholeFile() throws IOException {
+        // Act
+        try (InputStream in = storage.openStream("lease/1/scan.pdf")) {
+            // Assert
+            assertEquals(CONTENT, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testOpenRange_readsOnlyTheRange() throws IOException {
+        // Act
+        try (InputStream in = storage.openRange("lease/1/scan.pdf", 5, 4)) {
+            // Assert
+            assertEquals("5678", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(20, storage.getFileSize("lease/1/scan.pdf"));
+    }
+
+    @Test
+    void testOpenRange_missingOrOutsideRoot_throws() {
+        // Act & Assert
+        assertThrows(ResponseStatusException.class, () -> storage.openStream("lease/1/missing.pdf"));
+        assertThrows(ResponseStatusException.class, () -> storage.openStream("../outside.txt"));
+        assertThrows(ResponseStatusException.class, () -> storage.getFileSize("lease/1/missing.pdf"));
+    }
+
+    @Test
+    void testSignedUrl_verifiesOnlyUnchangedLink() {
+        // Arrange
+        LocalStorageService signing = new LocalStorageService(tempDir.toString(), "test-signing-secret");
+        String disposition = "attachment; filename=\"scan 1.pdf\"";
+
+        // Act
+        String url = signing.createSignedUrl("lease/1/scan.pdf", "application/pdf", disposition, Duration.ofMinutes(5));
+
+        // Assert
+        assertTrue(url.startsWith("/files/lease/1/scan.pdf?"));
+        MultiValueMap<String, String> query = UriComponentsBuilder.fromUriString(url).build().getQueryParams();
+        long expires = Long.parseLong(query.getFirst("expires"));
+        String signature = query.getFirst("signature");
+        assertEquals(disposition, URLDecoder.decode(query.getFirst("disposition"), StandardCharsets.UTF_8));
+        assertTrue(signing.verifySignedUrl("lease/1/scan.pdf", "application/pdf", disposition, expires, signature));
+        assertFalse(signing.verifySignedUrl("lease/2/scan.pdf", "application/pdf", disposition, expires, signature));
+        assertFalse(signing.verifySignedUrl("lease/1/scan.pdf", "text/html", disposition, expires, signature));
+        assertFalse(signing.verifySignedUrl("lease/1/scan.pdf", "application/pdf", disposition, expires + 60, signature));
+        assertFalse(new LocalStorageService(tempDir.toString(), "another-secret")
+                .verifySignedUrl("lease/1/scan.pdf", "application/pdf", disposition, expires, signature));
+        assertFalse(signing.verifySignedUrl("lease/1/scan.pdf", "application/pdf", disposition,
+                System.currentTimeMillis() / 1000 - 1, signature));
+    }
+
+    @Test
+    void testCompose_joinsFilesInOrder() {
+        // Arrange
+        storage.uploadFile(new ByteArrayInputStream("klmno".getBytes(StandardCharsets.UTF_8)),
+                "00002", "application/octet-stream", "uploads/u1/00002");
+        storage.uploadFile(new ByteArrayInputStream("ABCDE".getBytes(StandardCharsets.UTF_8)),
+                "00001", "application/octet-stream", "uploads/u1/00001");
+
+        // Act
+        storage.compose(List.of("uploads/u1/00001", "uploads/u1/00002"), "application/pdf", "blobs/ab/joined.pdf");
+
+        // Assert
+        assertEquals("ABCDEklmno", new String(storage.downloadFile("blobs/ab/joined.pdf"), StandardCharsets.UTF_8));
+        assertTrue(storage.fileExists("uploads/u1/00001"));
+        assertThrows(ResponseStatusException.class,
+                () -> storage.compose(List.of("uploads/u1/missing"), "application/pdf", "blobs/ab/other.pdf"));
+        assertFalse(storage.fileExists("blobs/ab/other.pdf"));
+    }
+
+    @Test
+    void testStorageResource_skipBeforeReadOpensRangeAtOffset() throws IOException {
+        // Arrange
+        StorageService spy = spy(storage);
+        StorageResource resource = new StorageResource(spy, "lease/1/scan.pdf", 20, "scan.pdf");
+
+        // Act: what Spring's ResourceRegion writer does for "Range: bytes=10-14"
+        String region;
+        try (InputStream in = resource.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamUtils.copyRange(in, out, 10, 14);
+            region = out.toString(StandardCharsets.UTF_8);
+        }
+
+        // Assert
+        assertEquals("abcde", region);
+        assertEquals(20, resource.contentLength());
+        verify(spy).openRange("lease/1/scan.pdf", 10, 10);
+        verify(spy, never()).openStream(anyString());
+        verify(spy, never()).downloadFile(anyString());
+    }
+
+    @Test
+    void testListFiles_pagesInPathOrderUnderPrefix() {
+        // Arrange
+        for (String path : List.of("blobs/bb/2.pdf", "blobs/aa/1.pdf", "blobs/aa/3.pdf", "blobsx/4.pdf")) {
+            storage.uploadFile(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                    "f.pdf", "application/pdf", path);
+        }
+
+        // Act
+        StoredFilePage first = storage.listFiles("blobs/", null, 2);
+        StoredFilePage second = storage.listFiles("blobs/", first.nextPageToken(), 2);
+
+        // Assert
+        assertEquals(List.of("blobs/aa/1.pdf", "blobs/aa/3.pdf"),
+                first.files().stream().map(StoredFilePage.StoredFile::path).toList());
+        assertEquals(List.of("blobs/bb/2.pdf"),
+                second.files().stream().map(StoredFilePage.StoredFile::path).toList());
+        assertFalse(second.hasNext());
+        assertEquals(CONTENT.length(), first.files().get(0).size());
+        assertTrue(storage.listFiles("missing/", null, 10).files().isEmpty());
+    }
+}
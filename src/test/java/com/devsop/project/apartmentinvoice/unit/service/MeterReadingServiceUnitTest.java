@@ -0,0 +1,135 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devsop.project.apartmentinvoice.dto.MeterReadingRequest;
+import com.devsop.project.apartmentinvoice.entity.MeterReading.MeterType;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.repository.RoomRepository;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.IngestResult;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.ReadingDelta;
+import com.devsop.project.apartmentinvoice.service.MeterReadingService.UsageKey;
+
+/**
+ * Unit tests for MeterReadingService: monthly usage from reading deltas and bulk ingest validation.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MeterReadingServiceUnitTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private RoomRepository roomRepository;
+
+    @InjectMocks
+    private MeterReadingService meterReadingService;
+
+    @BeforeEach
+    void setUp() {
+        Room room = new Room();
+        room.setId(1L);
+        room.setNumber(201);
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(room));
+
+        // Transaction: just run the callback
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFindMonthlyUsage_sumsDeltasPerMonth_andSkipsFirstReading() {
+        // Arrange: first reading ever (no previous), two readings in Feb
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of(
+                new ReadingDelta(1L, MeterType.ELECTRICITY, LocalDate.of(2025, 1, 1), new BigDecimal("1000"), null),
+                new ReadingDelta(1L, MeterType.ELECTRICITY, LocalDate.of(2025, 2, 1), new BigDecimal("1100"), new BigDecimal("1000")),
+                new ReadingDelta(1L, MeterType.ELECTRICITY, LocalDate.of(2025, 2, 15), new BigDecimal("1150"), new BigDecimal("1100")),
+                new ReadingDelta(1L, MeterType.WATER, LocalDate.of(2025, 2, 1), new BigDecimal("40"), new BigDecimal("52"))));
+
+        // Act
+        Map<UsageKey, BigDecimal> usage = meterReadingService.findMonthlyUsage(
+                List.of(1L), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 28));
+
+        // Assert
+        assertFalse(usage.containsKey(new UsageKey(1L, MeterType.ELECTRICITY, 2025, 1)));
+        assertEquals(0, new BigDecimal("150").compareTo(usage.get(new UsageKey(1L, MeterType.ELECTRICITY, 2025, 2))));
+        assertEquals(0, new BigDecimal("-12").compareTo(usage.get(new UsageKey(1L, MeterType.WATER, 2025, 2))));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    void testFindDeltas_noRooms_doesNotQuery() {
+        // Act
+        List<ReadingDelta> deltas = meterReadingService.findDeltas(Collections.emptyList(),
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+
+        // Assert
+        assertTrue(deltas.isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testIngest_invalidAndDuplicateRows_areReportedAndValidRowsBatched() {
+        // Arrange
+        LocalDate date = LocalDate.of(2025, 2, 1);
+        List<MeterReadingRequest> readings = Arrays.asList(
+                new MeterReadingRequest(201, MeterType.ELECTRICITY, date, new BigDecimal("1100")), // ok
+                new MeterReadingRequest(201, MeterType.WATER, date, new BigDecimal("52")),         // ok
+                new MeterReadingRequest(999, MeterType.WATER, date, new BigDecimal("10")),         // unknown room
+                new MeterReadingRequest(201, null, date, new BigDecimal("10")),                    // no meter type
+                new MeterReadingRequest(201, MeterType.WATER, date, new BigDecimal("-1")),         // negative
+                new MeterReadingRequest(201, MeterType.ELECTRICITY, date, new BigDecimal("1200"))); // duplicate of row 1
+
+        // Act
+        IngestResult result = meterReadingService.ingest(readings);
+
+        // Assert
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(4, result.getFailureCount());
+        assertEquals("Row 3: Room not found: 999", result.getErrors().get(0));
+        assertEquals("Row 4: meterType is required", result.getErrors().get(1));
+        assertEquals("Row 5: readingValue must not be negative", result.getErrors().get(2));
+        assertTrue(result.getErrors().get(3).startsWith("Row 6: Reading already exists"));
+
+        // existing keys prefetched once, valid rows written as one batch
+        verify(jdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        ArgumentCaptor<SqlParameterSource[]> captor = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), captor.capture());
+        assertEquals(2, captor.getValue().length);
+    }
+}
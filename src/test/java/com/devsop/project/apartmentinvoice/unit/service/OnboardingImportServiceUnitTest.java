@@ -0,0 +1,266 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.entity.Lease;
+import com.devsop.project.apartmentinvoice.entity.Room;
+import com.devsop.project.apartmentinvoice.entity.Tenant;
+import com.devsop.project.apartmentinvoice.repository.LeaseRepository;
+import com.devsop.project.apartmentinvoice.repository.RoomRepository;
+import com.devsop.project.apartmentinvoice.repository.TenantRepository;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.ChunkResult;
+import com.devsop.project.apartmentinvoice.service.OnboardingBatchWriter.RoomPlan;
+import com.devsop.project.apartmentinvoice.service.OnboardingImportService;
+import com.devsop.project.apartmentinvoice.service.OnboardingImportService.OnboardingResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for OnboardingImportService: CSV/JSON parsing, in-memory validation and chunked writes.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OnboardingImportServiceUnitTest {
+
+    @Mock
+    private RoomRepository roomRepository;
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    @Mock
+    private TenantRepository tenantRepository;
+
+    @Mock
+    private OnboardingBatchWriter batchWriter;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @InjectMocks
+    private OnboardingImportService onboardingImportService;
+
+    private static final String HEADER =
+            "roomNumber,commonFeeBaht,garbageFeeBaht,tenantName,tenantPhone,tenantLineId,leaseStartDate,leaseEndDate,monthlyRent,depositBaht\n";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(onboardingImportService, "batchSize", 200);
+
+        when(roomRepository.findByNumberIn(any())).thenReturn(Collections.emptyList());
+        when(leaseRepository.findByRoom_IdInAndStatus(any(), any())).thenReturn(Collections.emptyList());
+        when(tenantRepository.findByNameIn(any())).thenReturn(Collections.emptyList());
+
+        // Writer: report what the chunk would create
+        when(batchWriter.writeChunk(anyList(), anyMap())).thenAnswer(invocation -> {
+            List<RoomPlan> chunk = invocation.getArgument(0);
+            int rooms = (int) chunk.stream().filter(p -> p.roomId() == null).count();
+            int tenants = (int) chunk.stream().map(RoomPlan::newTenant).filter(t -> t != null).distinct().count();
+            int leases = (int) chunk.stream().filter(p -> p.lease() != null).count();
+            return new ChunkResult(rooms, tenants, leases);
+        });
+    }
+
+    @Test
+    void testImportCsv_validRows_plansRoomsTenantsAndLeases() {
+        // Arrange: 101 vacant, 102 + 103 rented by the same tenant
+        String csv = HEADER
+                + "101,100,50,,,,,,,\n"
+                + "102,100,50,Somchai,0812345678,somchai,2025-01-01,2025-12-31,4500,9000\n"
+                + "103,100,50,Somchai,0812345678,,2025-02-01,,4800,\n";
+        MultipartFile file = createMockFile(csv, "building.csv");
+
+        // Act
+        OnboardingResult result = onboardingImportService.importFile(file);
+
+        // Assert
+        assertEquals(3, result.getSuccessCount());
+        assertEquals(0, result.getFailureCount());
+        assertEquals(3, result.getRoomsCreated());
+        assertEquals(1, result.getTenantsCreated());
+        assertEquals(2, result.getLeasesCreated());
+
+        List<RoomPlan> plans = captureSingleChunk();
+        assertNull(plans.get(0).lease());
+        assertNull(plans.get(0).newTenant());
+        assertEquals(plans.get(1).newTenant(), plans.get(2).newTenant());
+        assertEquals("somchai", plans.get(1).newTenant().lineId());
+        assertEquals(LocalDate.of(2025, 1, 1), plans.get(1).lease().startDate());
+        assertEquals(0, new BigDecimal("4800").compareTo(plans.get(2).lease().monthlyRent()));
+
+        // 3 prefetch queries, no per-row lookups
+        verify(roomRepository, times(1)).findByNumberIn(any());
+        verify(roomRepository, never()).existsByNumber(any());
+        verify(leaseRepository, never()).findByRoom_IdAndStatus(any(), any());
+    }
+
+    @Test
+    void testImportCsv_invalidRows_areReportedAndSkipped() {
+        // Arrange
+        Room existingVacant = room(5L, 201);
+        Room existingRented = room(6L, 202);
+        Lease activeLease = new Lease();
+        activeLease.setRoom(existingRented);
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(existingVacant, existingRented));
+        when(leaseRepository.findByRoom_IdInAndStatus(any(), eq(Lease.Status.ACTIVE))).thenReturn(List.of(activeLease));
+
+        String csv = HEADER
+                + "201,100,50,,,,,,,\n"                                  // line 2: exists, nothing to add
+                + "202,100,50,Somsri,,,2025-01-01,,4500,\n"              // line 3: room has ACTIVE lease
+                + "301,100,50,,,,2025-01-01,,,\n"                        // line 4: lease without tenant
+                + "302,100,50,Somsak,,,2025-05-01,2025-01-01,4500,\n"    // line 5: end before start
+                + "303,abc,50,,,,,,,\n"                                  // line 6: bad number
+                + "304,100,50,,,,,,,\n"                                  // line 7: ok
+                + "304,100,50,,,,,,,\n"                                  // line 8: duplicate in file
+                + "201,100,50,Somsri,,,2025-01-01,,4500,\n";             // line 9: duplicate of line 2
+        MultipartFile file = createMockFile(csv, "building.csv");
+
+        // Act
+        OnboardingResult result = onboardingImportService.importFile(file);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(7, result.getFailureCount());
+        List<String> errors = result.getErrors();
+        assertTrue(errors.get(0).startsWith("Line 2: Room number already exists"));
+        assertTrue(errors.get(1).startsWith("Line 3: Room 202 already has an ACTIVE lease"));
+        assertTrue(errors.get(2).startsWith("Line 4: Lease columns require a tenant name"));
+        assertTrue(errors.get(3).startsWith("Line 5: leaseEndDate is before leaseStartDate"));
+        assertTrue(errors.get(4).startsWith("Line 6: Invalid number format"));
+        assertTrue(errors.get(5).startsWith("Line 8: Duplicate room number in file: 304"));
+        assertTrue(errors.get(6).startsWith("Line 9: Duplicate room number in file: 201"));
+        assertEquals(304, captureSingleChunk().get(0).roomNumber());
+    }
+
+    @Test
+    void testImportCsv_existingRoomAndTenant_areReused() {
+        // Arrange
+        Room existing = room(5L, 201);
+        Tenant tenant = new Tenant(9L, "Somsri", "0899999999", null);
+        when(roomRepository.findByNumberIn(any())).thenReturn(List.of(existing));
+        when(tenantRepository.findByNameIn(any())).thenReturn(List.of(tenant));
+
+        String csv = "201,,,Somsri,0899999999,,2025-01-01,,4500,\n";
+        MultipartFile file = createMockFile(csv, "building.csv");
+
+        // Act
+        OnboardingResult result = onboardingImportService.importFile(file);
+
+        // Assert
+        assertEquals(1, result.getSuccessCount());
+        RoomPlan plan = captureSingleChunk().get(0);
+        assertEquals(5L, plan.roomId());
+        assertEquals(9L, plan.tenantId());
+        assertNull(plan.newTenant());
+        assertNotNull(plan.lease());
+    }
+
+    @Test
+    void testImportJson_rows_areImported() {
+        // Arrange
+        String json = """
+                [
+                  {"roomNumber": 101, "commonFeeBaht": 100},
+                  {"roomNumber": 102, "tenantName": "Somchai", "leaseStartDate": "2025-01-01", "monthlyRent": 4500},
+                  {"tenantName": "NoRoom"}
+                ]
+                """;
+        MultipartFile file = createMockFile(json, "building.json");
+
+        // Act
+        OnboardingResult result = onboardingImportService.importFile(file);
+
+        // Assert
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertEquals("Row 3: roomNumber is required", result.getErrors().get(0));
+        assertEquals(1, result.getLeasesCreated());
+    }
+
+    @Test
+    void testImport_writesOneTransactionPerChunk_andReportsRolledBackChunk() {
+        // Arrange
+        ReflectionTestUtils.setField(onboardingImportService, "batchSize", 2);
+        when(batchWriter.writeChunk(anyList(), anyMap()))
+                .thenReturn(new ChunkResult(2, 0, 0))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        String csv = "101,,,,,,,,,\n102,,,,,,,,,\n103,,,,,,,,,\n104,,,,,,,,,\n";
+        MultipartFile file = createMockFile(csv, "building.csv");
+
+        // Act
+        OnboardingResult result = onboardingImportService.importFile(file);
+
+        // Assert
+        verify(batchWriter, times(2)).writeChunk(anyList(), anyMap());
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(2, result.getRoomsCreated());
+        assertEquals(2, result.getFailureCount());
+        assertTrue(result.getErrors().get(0).startsWith("Line 3: Not saved (batch rolled back)"));
+    }
+
+    @Test
+    void testImport_unsupportedFile_throwsBadRequest() {
+        // Arrange
+        MultipartFile file = createMockFile("101", "building.txt");
+
+        // Act & Assert
+        assertThrows(ResponseStatusException.class, () -> onboardingImportService.importFile(file));
+        verify(batchWriter, never()).writeChunk(anyList(), anyMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RoomPlan> captureSingleChunk() {
+        ArgumentCaptor<List<RoomPlan>> captor = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter).writeChunk(captor.capture(), any(Map.class));
+        return captor.getValue();
+    }
+
+    private static Room room(Long id, Integer number) {
+        Room room = new Room();
+        room.setId(id);
+        room.setNumber(number);
+        room.setStatus("FREE");
+        return room;
+    }
+
+    private MultipartFile createMockFile(String content, String filename) {
+        MultipartFile mockFile = mock(MultipartFile.class);
+        when(mockFile.isEmpty()).thenReturn(content.isEmpty());
+        when(mockFile.getOriginalFilename()).thenReturn(filename);
+
+        try {
+            byte[] bytes = content.getBytes();
+            when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return mockFile;
+    }
+}
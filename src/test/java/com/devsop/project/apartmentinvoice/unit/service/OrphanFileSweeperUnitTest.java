@@ -0,0 +1,194 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.devsop.project.apartmentinvoice.dto.StoredPathRef;
+import com.devsop.project.apartmentinvoice.entity.UploadSession;
+import com.devsop.project.apartmentinvoice.repository.DocumentBlobRepository;
+import com.devsop.project.apartmentinvoice.repository.DocumentRepository;
+import com.devsop.project.apartmentinvoice.repository.ImportBatchRepository;
+import com.devsop.project.apartmentinvoice.repository.UploadPartRepository;
+import com.devsop.project.apartmentinvoice.service.ChunkedUploadService;
+import com.devsop.project.apartmentinvoice.service.OrphanFileSweeper;
+import com.devsop.project.apartmentinvoice.service.OrphanFileSweeper.SweepResult;
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for OrphanFileSweeper over LocalStorageService, with references from mocked repositories.
+ */
+class OrphanFileSweeperUnitTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService storage;
+    private DocumentRepository documentRepository;
+    private DocumentBlobRepository documentBlobRepository;
+    private ImportBatchRepository importBatchRepository;
+    private UploadPartRepository uploadPartRepository;
+    private ChunkedUploadService chunkedUploadService;
+    private SimpleMeterRegistry registry;
+    private OrphanFileSweeper sweeper;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalStorageService(tempDir.toString());
+        documentRepository = mock(DocumentRepository.class);
+        documentBlobRepository = mock(DocumentBlobRepository.class);
+        importBatchRepository = mock(ImportBatchRepository.class);
+        uploadPartRepository = mock(UploadPartRepository.class);
+        chunkedUploadService = mock(ChunkedUploadService.class);
+        registry = new SimpleMeterRegistry();
+        sweeper = new OrphanFileSweeper(storage, documentRepository, documentBlobRepository,
+                importBatchRepository, uploadPartRepository, chunkedUploadService, registry);
+        ReflectionTestUtils.setField(sweeper, "prefixes", List.of(OrphanFileSweeper.DEFAULT_PREFIXES.split(",")));
+        ReflectionTestUtils.setField(sweeper, "graceHours", 24L);
+        ReflectionTestUtils.setField(sweeper, "pageSize", 2);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+        ReflectionTestUtils.setField(sweeper, "maxDeletes", 100L);
+
+        when(documentBlobRepository.findStoragePaths(anyLong(), any()))
+                .thenReturn(List.of(new StoredPathRef(1L, "blobs/aa/photo.png")));
+        when(documentRepository.findFilePaths(anyLong(), any()))
+                .thenReturn(List.of(new StoredPathRef(7L, "lease/1/legacy.pdf")));
+        when(importBatchRepository.findErrorReportPaths(anyLong(), any()))
+                .thenReturn(List.of(new StoredPathRef(3L, "imports/errors/report.csv")));
+
+        for (String path : List.of(
+                "blobs/aa/photo.png",
+                "blobs/aa/photo.png.thumb.jpg",
+                "blobs/aa/photo.png.web.jpg",
+                "blobs/bb/lost.pdf",
+                "blobs/bb/lost.pdf.thumb.jpg",
+                "imports/errors/report.csv",
+                "imports/csv/old.csv",
+                "lease/1/legacy.pdf")) {
+            store(path, Instant.now().minus(Duration.ofDays(2)));
+        }
+        store("blobs/cc/uploading.pdf", Instant.now().minus(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testSweep_deletesOnlyOldUnreferencedFiles() {
+        // Act
+        SweepResult result = sweeper.sweep();
+
+        // Assert
+        assertEquals(7, result.scanned());
+        assertEquals(2, result.orphans());
+        assertEquals(2, result.deleted());
+        assertEquals(2L * CONTENT.length(), result.bytesReclaimed());
+        assertFalse(storage.fileExists("blobs/bb/lost.pdf"));
+        assertFalse(storage.fileExists("blobs/bb/lost.pdf.thumb.jpg"));
+        assertTrue(storage.fileExists("blobs/aa/photo.png"));
+        assertTrue(storage.fileExists("blobs/aa/photo.png.web.jpg"));
+        assertTrue(storage.fileExists("lease/1/legacy.pdf"));
+        assertTrue(storage.fileExists("blobs/cc/uploading.pdf"));
+        assertEquals(2.0, registry.get("apartment.storage.sweeper.files").tag("result", "deleted").counter().count());
+        assertEquals(2.0 * CONTENT.length(), registry.get("apartment.storage.sweeper.reclaimed").counter().count());
+    }
+
+    @Test
+    void testSweep_defaultPrefixes_keepUntrackedCsvArchive() {
+        // Arrange: archived by CsvImportService before import_batch rows existed, so nothing references it
+        assertFalse(OrphanFileSweeper.DEFAULT_PREFIXES.contains("imports/"));
+
+        // Act
+        sweeper.sweep();
+
+        // Assert
+        assertTrue(storage.fileExists("imports/csv/old.csv"));
+        assertTrue(storage.fileExists("imports/errors/report.csv"));
+    }
+
+    @Test
+    void testSweep_dryRunAndMaxDeletes_keepFiles() {
+        // Arrange
+        ReflectionTestUtils.setField(sweeper, "dryRun", true);
+        ReflectionTestUtils.setField(sweeper, "maxDeletes", 2L);
+
+        // Act
+        SweepResult result = sweeper.sweep();
+
+        // Assert: stopped after two orphans, nothing deleted
+        assertTrue(result.dryRun());
+        assertEquals(2, result.orphans());
+        assertEquals(0, result.deleted());
+        assertTrue(storage.fileExists("blobs/bb/lost.pdf"));
+        assertTrue(storage.fileExists("imports/csv/old.csv"));
+    }
+
+    @Test
+    void testSweep_idleUploadsExpiredAndOnlyLivePartsReferenced() throws IOException {
+        // Arrange
+        store("uploads/live/00001-aaaa1111", Instant.now().minus(Duration.ofDays(2)));
+        store("uploads/abandoned/00001-bbbb2222", Instant.now().minus(Duration.ofDays(2)));
+        when(uploadPartRepository.findStoragePaths(anyLong(), any(), any()))
+                .thenReturn(List.of(new StoredPathRef(5L, "uploads/live/00001-aaaa1111")));
+
+        // Act
+        sweeper.sweep();
+
+        // Assert
+        verify(chunkedUploadService).expireIdleUploads(Duration.ofHours(24));
+        verify(uploadPartRepository).findStoragePaths(anyLong(),
+                eq(Set.of(UploadSession.Status.OPEN, UploadSession.Status.COMMITTING)), any());
+        assertTrue(storage.fileExists("uploads/live/00001-aaaa1111"));
+        assertFalse(storage.fileExists("uploads/abandoned/00001-bbbb2222"));
+    }
+
+    @Test
+    void testSweep_oneDeleteCallPerBatch_failedPathsCounted() throws IOException {
+        // Arrange: three orphans with batch-size 2; the backend cannot delete the last one
+        store("blobs/dd/stuck.pdf", Instant.now().minus(Duration.ofDays(2)));
+        LocalStorageService backend = spy(storage);
+        doReturn(List.of("blobs/dd/stuck.pdf")).when(backend).deleteFiles(List.of("blobs/dd/stuck.pdf"));
+        sweeper = new OrphanFileSweeper(backend, documentRepository, documentBlobRepository,
+                importBatchRepository, uploadPartRepository, chunkedUploadService, registry);
+        ReflectionTestUtils.setField(sweeper, "prefixes", List.of("blobs/"));
+        ReflectionTestUtils.setField(sweeper, "graceHours", 24L);
+        ReflectionTestUtils.setField(sweeper, "pageSize", 2);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+        ReflectionTestUtils.setField(sweeper, "maxDeletes", 100L);
+
+        // Act
+        SweepResult result = sweeper.sweep();
+
+        // Assert
+        verify(backend).deleteFiles(List.of("blobs/bb/lost.pdf", "blobs/bb/lost.pdf.thumb.jpg"));
+        verify(backend).deleteFiles(List.of("blobs/dd/stuck.pdf"));
+        assertEquals(3, result.orphans());
+        assertEquals(2, result.deleted());
+        assertEquals(1, result.failed());
+        assertEquals(1.0, registry.get("apartment.storage.sweeper.files").tag("result", "failed").counter().count());
+        assertTrue(storage.fileExists("blobs/dd/stuck.pdf"));
+    }
+
+    private void store(String path, Instant modified) throws IOException {
+        storage.uploadFile(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                path.substring(path.lastIndexOf('/') + 1), "application/octet-stream", path);
+        Files.setLastModifiedTime(tempDir.resolve(path), FileTime.from(modified));
+    }
+}
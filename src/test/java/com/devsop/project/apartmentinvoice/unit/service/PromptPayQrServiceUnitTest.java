@@ -0,0 +1,63 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayPayload;
+import com.devsop.project.apartmentinvoice.service.payment.PromptPayQrService;
+
+/**
+ * Unit tests for PromptPay payload generation (EMVCo TLV + CRC) and the QR data URI cache.
+ */
+class PromptPayQrServiceUnitTest {
+
+    private PromptPayQrService qrService;
+
+    @BeforeEach
+    void setUp() {
+        qrService = new PromptPayQrService(2);
+    }
+
+    @Test
+    void testBuild_mobileWithAmount_returnsDynamicPayloadWithCrc() {
+        // Act
+        String payload = PromptPayPayload.build("081-234-5678", new BigDecimal("9452"));
+
+        // Assert
+        assertEquals("00020101021229370016A00000067701011101130066812345678"
+                + "530376454079452.005802TH63041423", payload);
+    }
+
+    @Test
+    void testBuild_noAmount_returnsStaticPayload() {
+        // Act
+        String payload = PromptPayPayload.build("1234567890123", null);
+
+        // Assert
+        assertTrue(payload.startsWith("000201010211"));
+        assertTrue(payload.contains("02131234567890123"));
+        assertFalse(payload.contains("5407"));
+    }
+
+    @Test
+    void testNormalize_invalidId_throwsIllegalArgument() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PromptPayPayload.normalize("12345"));
+        assertThrows(IllegalArgumentException.class, () -> PromptPayPayload.normalize(null));
+    }
+
+    @Test
+    void testQrDataUri_sameAccountAndAmount_returnsCachedPng() {
+        // Act
+        String first = qrService.qrDataUri("0812345678", new BigDecimal("100"));
+        String second = qrService.qrDataUri("081-234-5678", new BigDecimal("100.00"));
+
+        // Assert
+        assertTrue(first.startsWith("data:image/png;base64,"));
+        assertSame(first, second);
+    }
+}
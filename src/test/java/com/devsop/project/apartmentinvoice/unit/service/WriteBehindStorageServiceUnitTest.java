@@ -0,0 +1,239 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devsop.project.apartmentinvoice.service.storage.LocalStorageService;
+import com.devsop.project.apartmentinvoice.service.storage.WriteBehindStorageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for WriteBehindStorageService with LocalStorageService standing in for GCS.
+ */
+class WriteBehindStorageServiceUnitTest {
+
+    private static final String PATH = "blobs/ab/receipt.pdf";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageService backend;
+    private SimpleMeterRegistry registry;
+    private WriteBehindStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        backend = spy(new LocalStorageService(tempDir.resolve("bucket").toString()));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void testUpload_acknowledgedBeforeBackendWrite_readableFromSpool() throws Exception {
+        // Arrange: the backend hangs until released
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return inv.callRealMethod();
+        }).when(backend).uploadFile(any(), any(), any(), anyString());
+        service = writeBehind(2, 3);
+
+        // Act
+        service.uploadFile(body("receipt"), "receipt.pdf", "application/pdf", PATH);
+
+        // Assert: served from the spool while the copy is pending
+        assertEquals(1, service.depth());
+        assertFalse(backend.fileExists(PATH));
+        assertTrue(service.fileExists(PATH));
+        assertEquals(7, service.getFileSize(PATH));
+        assertEquals("receipt", new String(service.downloadFile(PATH), StandardCharsets.UTF_8));
+        try (InputStream in = service.openRange(PATH, 2, 3)) {
+            assertEquals("cei", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        release.countDown();
+        awaitFlushed();
+        assertEquals("receipt", new String(backend.downloadFile(PATH), StandardCharsets.UTF_8));
+        assertEquals(0, service.spoolBytes());
+        assertEquals(1, registry.get("apartment.storage.spool.flush.latency").timer().count());
+        assertEquals(0.0, registry.get("apartment.storage.spool.depth").gauge().value());
+    }
+
+    @Test
+    void testFlush_backendFailsTwice_retriedUntilCopied() throws Exception {
+        // Arrange
+        doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "backend down"))
+                .doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "backend down"))
+                .doCallRealMethod()
+                .when(backend).uploadFile(any(), any(), any(), anyString());
+        service = writeBehind(2, 5);
+
+        // Act
+        service.uploadFile(body("receipt"), "receipt.pdf", "application/pdf", PATH);
+
+        // Assert
+        awaitFlushed();
+        assertTrue(backend.fileExists(PATH));
+        assertEquals(2.0, attempts("failure"));
+        assertEquals(1.0, attempts("success"));
+    }
+
+    @Test
+    void testBreaker_opensAfterThreshold_noFurtherAttempts() throws Exception {
+        // Arrange
+        doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "backend down"))
+                .when(backend).uploadFile(any(), any(), any(), anyString());
+        service = writeBehind(1, 2); // one worker: attempts happen one after the other
+
+        // Act
+        service.uploadFile(body("a"), "a.pdf", "application/pdf", "lease/1/a.pdf");
+        service.uploadFile(body("b"), "b.pdf", "application/pdf", "lease/2/b.pdf");
+        service.uploadFile(body("c"), "c.pdf", "application/pdf", "lease/3/c.pdf");
+
+        // Assert: two failures open the circuit, the remaining files wait in the spool
+        verify(backend, after(300).times(2)).uploadFile(any(), any(), any(), anyString());
+        assertTrue(service.isBreakerOpen());
+        assertEquals(3, service.depth());
+        assertEquals("c", new String(service.downloadFile("lease/3/c.pdf"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testRestart_spooledFilesRecoveredAndCopied() throws Exception {
+        // Arrange: spooled while the backend is down, then the instance stops
+        doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "backend down"))
+                .when(backend).uploadFile(any(), any(), any(), anyString());
+        service = writeBehind(1, 3);
+        service.uploadFile(body("receipt"), "receipt.pdf", "application/pdf", PATH);
+        service.close();
+
+        // Act
+        LocalStorageService healthy = new LocalStorageService(tempDir.resolve("bucket").toString());
+        service = new WriteBehindStorageService(healthy, tempDir.resolve("spool"), 1, 1024 * 1024,
+                Duration.ofMillis(5), Duration.ofMillis(20), 3, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+        // Assert
+        awaitFlushed();
+        assertEquals("receipt", new String(healthy.downloadFile(PATH), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDelete_pendingUpload_neverCopied() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return inv.callRealMethod();
+        }).when(backend).uploadFile(any(), any(), any(), eq("lease/9/hold.pdf"));
+        service = writeBehind(1, 3); // the only worker is busy with hold.pdf
+        service.uploadFile(body("hold"), "hold.pdf", "application/pdf", "lease/9/hold.pdf");
+        service.uploadFile(body("receipt"), "receipt.pdf", "application/pdf", PATH);
+
+        // Act
+        service.deleteFile(PATH);
+        release.countDown();
+
+        // Assert
+        awaitFlushed();
+        assertFalse(service.fileExists(PATH));
+        assertFalse(backend.fileExists(PATH));
+        verify(backend, never()).uploadFile(any(), any(), any(), eq(PATH));
+    }
+
+    @Test
+    void testUpload_whileOlderCopyInFlight_notBlockedAndNewestLandsLast() throws Exception {
+        // Arrange: the first copy of PATH hangs in the backend until released
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger copies = new AtomicInteger();
+        doAnswer(inv -> {
+            if (copies.incrementAndGet() == 1) {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return inv.callRealMethod();
+        }).when(backend).uploadFile(any(), any(), any(), eq(PATH));
+        service = writeBehind(2, 3);
+        service.uploadFile(body("v1"), "receipt.pdf", "application/pdf", PATH);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act: a new version is acknowledged while v1 is still being copied
+        assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> service.uploadFile(body("v2"), "receipt.pdf", "application/pdf", PATH));
+        assertEquals("v2", new String(service.downloadFile(PATH), StandardCharsets.UTF_8));
+        release.countDown();
+
+        // Assert: v2 was copied after v1 finished, so the backend ends with v2
+        awaitFlushed();
+        assertEquals("v2", new String(backend.downloadFile(PATH), StandardCharsets.UTF_8));
+        assertEquals(2, copies.get());
+    }
+
+    @Test
+    void testCompose_spooledParts_joinedInSpool() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return inv.callRealMethod();
+        }).when(backend).uploadFile(any(), any(), any(), anyString());
+        service = writeBehind(2, 3);
+        service.uploadFile(body("ABCD"), "00001", "application/octet-stream", "uploads/u1/00001");
+        service.uploadFile(body("EF"), "00002", "application/octet-stream", "uploads/u1/00002");
+
+        // Act
+        service.compose(List.of("uploads/u1/00001", "uploads/u1/00002"), "application/pdf", PATH);
+
+        // Assert
+        assertEquals("ABCDEF", new String(service.downloadFile(PATH), StandardCharsets.UTF_8));
+        verify(backend, never()).compose(any(), any(), any());
+        release.countDown();
+        awaitFlushed();
+        assertEquals("ABCDEF", new String(backend.downloadFile(PATH), StandardCharsets.UTF_8));
+    }
+
+    private WriteBehindStorageService writeBehind(int workers, int breakerThreshold) {
+        return new WriteBehindStorageService(backend, tempDir.resolve("spool"), workers, 1024 * 1024,
+                Duration.ofMillis(5), Duration.ofMillis(20), breakerThreshold, Duration.ofMinutes(1), registry);
+    }
+
+    private void awaitFlushed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.depth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, service.depth());
+    }
+
+    private double attempts(String result) {
+        return registry.get("apartment.storage.spool.flush.attempts").tag("result", result).counter().count();
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+package com.devsop.project.apartmentinvoice.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.devsop.project.apartmentinvoice.service.csv.CsvRecordReader.CsvRecord;
+import com.devsop.project.apartmentinvoice.service.csv.XlsxRecordReader;
+
+/**
+ * Unit tests for XlsxRecordReader (sheet listing, sparse cells, numeric formatting, row numbers).
+ */
+class XlsxRecordReaderUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSheetNames_inWorkbookOrder() throws IOException {
+        // Arrange
+        File file = writeWorkbook(workbook -> {
+            workbook.createSheet("Floor 1");
+            workbook.createSheet("Floor 2");
+        });
+
+        // Act
+        List<String> names = XlsxRecordReader.sheetNames(file);
+
+        // Assert
+        assertEquals(List.of("Floor 1", "Floor 2"), names);
+    }
+
+    @Test
+    void testReadSheet_sparseCellsAndFormattedNumbers() throws IOException {
+        // Arrange
+        File file = writeWorkbook(workbook -> {
+            workbook.createSheet("Floor 1");
+            XSSFSheet sheet = workbook.createSheet("Floor 2");
+            CellStyle thousands = workbook.createCellStyle();
+            thousands.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Room Number");
+            header.createCell(1).setCellValue("Electricity Units");
+
+            // row 3 (index 2): row 2 left empty, column B skipped
+            Row data = sheet.createRow(2);
+            data.createCell(0).setCellValue(301);
+            data.createCell(2).setCellValue(1234.5);
+            data.getCell(2).setCellStyle(thousands);
+        });
+        List<CsvRecord> records = new ArrayList<>();
+
+        // Act
+        XlsxRecordReader.readSheet(file, 1, records::add);
+
+        // Assert
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).lineNumber());
+        assertEquals(List.of("Room Number", "Electricity Units"), records.get(0).fields());
+        assertEquals(3, records.get(1).lineNumber());
+        assertEquals(List.of("301", "", "1234.5"), records.get(1).fields());
+    }
+
+    @Test
+    void testReadSheet_notAWorkbook_throwsIOException() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("broken.xlsx");
+        Files.writeString(file, "201,100,50,1,2025,5.50,8.00");
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> XlsxRecordReader.readSheet(file.toFile(), 0, r -> { }));
+    }
+
+    private interface WorkbookBuilder {
+        void build(XSSFWorkbook workbook);
+    }
+
+    private File writeWorkbook(WorkbookBuilder builder) throws IOException {
+        Path file = tempDir.resolve("meters.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            builder.build(workbook);
+            workbook.write(out);
+        }
+        return file.toFile();
+    }
+}